@@ -74,6 +74,18 @@ public abstract class AbstractContainer implements Asn1Container
      * for constructed types */
     private boolean isGathering = false;
 
+    /** A flag telling if the TLVs should be recycled */
+    private boolean tlvPoolEnabled = false;
+
+    /** The recycled TLVs, indexed by their depth in the PDU */
+    private TLV[] tlvPool;
+
+    /** A flag telling if the decoded Values can reference the stream */
+    private boolean streamRetained = false;
+
+    /** The initial number of TLVs in the pool */
+    private static final int DEFAULT_TLV_POOL_SIZE = 16;
+
 
     /**
      * Creates a new instance of AbstractContainer with a starting state.
@@ -332,4 +344,76 @@ public abstract class AbstractContainer implements Asn1Container
         this.isGathering = isGathering;
     }
 
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isTlvPoolEnabled()
+    {
+        return tlvPoolEnabled;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setTlvPoolEnabled( boolean tlvPoolEnabled )
+    {
+        this.tlvPoolEnabled = tlvPoolEnabled;
+
+        if ( !tlvPoolEnabled )
+        {
+            tlvPool = null;
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public TLV getPooledTLV( int depth, int id )
+    {
+        if ( tlvPool == null )
+        {
+            tlvPool = new TLV[Math.max( DEFAULT_TLV_POOL_SIZE, depth + 1 )];
+        }
+        else if ( depth >= tlvPool.length )
+        {
+            TLV[] newPool = new TLV[Math.max( tlvPool.length * 2, depth + 1 )];
+            System.arraycopy( tlvPool, 0, newPool, 0, tlvPool.length );
+            tlvPool = newPool;
+        }
+
+        TLV pooled = tlvPool[depth];
+
+        if ( pooled == null )
+        {
+            pooled = new TLV( id );
+            tlvPool[depth] = pooled;
+        }
+        else
+        {
+            pooled.recycle( id );
+        }
+
+        return pooled;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isStreamRetained()
+    {
+        return streamRetained;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setStreamRetained( boolean streamRetained )
+    {
+        this.streamRetained = streamRetained;
+    }
 }
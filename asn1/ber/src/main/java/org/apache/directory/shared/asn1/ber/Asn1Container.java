@@ -210,4 +210,50 @@ public interface Asn1Container
      * into the container. If not set, the default value is 'false'
      */
     void setGathering( boolean isGathering );
+
+
+    /**
+     * @return true if the container recycles the TLVs it has already used,
+     * instead of letting the Asn1Decoder create a new TLV for each tag.
+     */
+    boolean isTlvPoolEnabled();
+
+
+    /**
+     * Set the TLV pool flag. When enabled, the container keeps one TLV per
+     * depth in the PDU, and reuse it for every TLV decoded at this depth. The
+     * primitive Values are then not copied from the stream until they are read.
+     *
+     * @param tlvPoolEnabled true to recycle the TLVs. The default value is 'false'
+     */
+    void setTlvPoolEnabled( boolean tlvPoolEnabled );
+
+
+    /**
+     * Gets the TLV to use for a given depth in the PDU. This TLV will be
+     * reset before being returned.
+     *
+     * @param depth The depth of the TLV in the PDU, 0 for the enclosing TLV
+     * @param id The id to give to the TLV
+     * @return A TLV that can be used to decode the next tag
+     */
+    TLV getPooledTLV( int depth, int id );
+
+
+    /**
+     * @return true if the decoded Values are allowed to keep a reference on
+     * the stream they have been read from, instead of copying it.
+     */
+    boolean isStreamRetained();
+
+
+    /**
+     * Set the stream retained flag. When set, the Values which are fully
+     * contained in a stream are exposed as read-only slices of this stream,
+     * so the caller must not modify a stream once it has been decoded.
+     *
+     * @param streamRetained true to let the decoded Values reference the stream.
+     * The default value is 'false'
+     */
+    void setStreamRetained( boolean streamRetained );
 }
@@ -90,14 +90,29 @@ public class Asn1Decoder implements TLVBerDecoderMBean
         {
             byte octet = stream.get();
 
-            TLV tlv = new TLV( container.getNewTlvId() );
+            TLV parent = container.getParentTLV();
+            int depth = ( parent == null ? 0 : parent.getDepth() + 1 );
+            TLV tlv;
+
+            if ( container.isTlvPoolEnabled() )
+            {
+                // Reuse the TLV already used at this depth : it has been
+                // fully decoded, and is not a parent of the new TLV
+                tlv = container.getPooledTLV( depth, container.getNewTlvId() );
+            }
+            else
+            {
+                tlv = new TLV( container.getNewTlvId() );
+            }
+
             tlv.setTag( octet );
+            tlv.setDepth( depth );
 
             // Store the current TLV in the container.
             container.setCurrentTLV( tlv );
 
             // Create a link between the current TLV with its parent
-            tlv.setParent( container.getParentTLV() );
+            tlv.setParent( parent );
 
             // Switch to the next state, which is the Length decoding
             container.setState( TLVStateEnum.LENGTH_STATE_START );
@@ -170,9 +185,9 @@ public class Asn1Decoder implements TLVBerDecoderMBean
 
         BerValue value = current.getValue();
 
-        if ( ( value != null ) && ( value.getData() != null ) )
+        if ( ( value != null ) && ( value.getDataLength() >= 0 ) )
         {
-            return ( current.getExpectedLength() == value.getData().length );
+            return ( current.getExpectedLength() == value.getDataLength() );
         }
         else
         {
@@ -496,7 +511,8 @@ public class Asn1Decoder implements TLVBerDecoderMBean
     /**
      * Treat the Value part. We will distinguish two cases : - if the Tag is a
      * Primitive one, we will get the value. - if the Tag is a Constructed one,
-     * nothing will be done.
+     * nothing will be done. A Value which is not fully contained in the stream
+     * is copied into its own buffer, and is not a view on the stream.
      * 
      * @param stream The ByteBuffer containing the PDU to decode
      * @param container The container that stores the current state,
@@ -527,6 +543,18 @@ public class Asn1Decoder implements TLVBerDecoderMBean
 
                 return END;
             }
+            else if ( container.isTlvPoolEnabled() || container.isStreamRetained() )
+            {
+                // The whole Value is in the stream : don't copy it, it will be
+                // read by the action before the stream is modified, or the
+                // stream won't be modified at all
+                int start = stream.position();
+                currentTlv.getValue().setView( stream, start, length );
+                stream.position( start + length );
+                container.setState( TLVStateEnum.TLV_STATE_DONE );
+
+                return MORE;
+            }
             else
             {
                 currentTlv.getValue().init( length );
@@ -540,7 +568,9 @@ public class Asn1Decoder implements TLVBerDecoderMBean
 
 
     /**
-     * Treat a pending Value when we get more bytes in the buffer.
+     * Treat a pending Value when we get more bytes in the buffer. The bytes
+     * are copied straight into the Value's buffer : a Value spanning several
+     * reads is never a view on the stream, so it's not decoded without copy.
      * 
      * @param stream The ByteBuffer containing the PDU to decode
      * @param container The container that stores the current state,
@@ -566,10 +596,7 @@ public class Asn1Decoder implements TLVBerDecoderMBean
         }
         else
         {
-            int remaining = length - currentLength;
-            byte[] data = new byte[remaining];
-            stream.get( data, 0, remaining );
-            currentTlv.getValue().addData( data );
+            currentTlv.getValue().addData( stream, length - currentLength );
             container.setState( TLVStateEnum.TLV_STATE_DONE );
 
             return MORE;
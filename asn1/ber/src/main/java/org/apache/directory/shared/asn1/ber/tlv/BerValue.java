@@ -43,6 +43,18 @@ public class BerValue
     /** The current position of the last byte in the data buffer */
     private int currentPos;
 
+    /** The buffer the data are read from, when the Value is a view on the decoded stream */
+    private ByteBuffer view;
+
+    /** The position of the first byte of the Value in the view */
+    private int viewStart;
+
+    /** The number of bytes of the Value in the view */
+    private int viewLength;
+
+    /** A shared empty byte array, used for zero length Values */
+    private static final byte[] EMPTY_DATA = new byte[0];
+
     /** The encoded byte for a TRUE value */
     public static final byte TRUE_VALUE = ( byte ) 0xFF;
 
@@ -143,6 +155,63 @@ public class BerValue
     {
         data = null;
         currentPos = 0;
+        view = null;
+        viewStart = 0;
+        viewLength = 0;
+    }
+
+
+    /**
+     * Make the Value a view on a part of the stream being decoded, without
+     * copying the bytes. The data will only be copied in a byte[] when
+     * {@link #getData()} is called, so this method must only be used when the
+     * Value is going to be read before the stream content is modified.
+     *
+     * @param stream The stream containing the Value
+     * @param start The position of the first byte of the Value in the stream
+     * @param length The number of bytes of the Value
+     */
+    public void setView( ByteBuffer stream, int start, int length )
+    {
+        data = null;
+        currentPos = 0;
+        view = stream;
+        viewStart = start;
+        viewLength = length;
+    }
+
+
+    /**
+     * Tells if the Value is a view on the decoded stream. When it's not, the
+     * Value's data are stored in a byte[] owned by this Value, which is never
+     * modified once the Value has been decoded.
+     *
+     * @return <code>true</code> if the Value is a view on the decoded stream
+     */
+    public boolean isView()
+    {
+        return view != null;
+    }
+
+
+    /**
+     * @return The number of bytes in this Value, without copying them if
+     * the Value is a view on the decoded stream, or -1 if no data has been set
+     */
+    public int getDataLength()
+    {
+        if ( data != null )
+        {
+            return data.length;
+        }
+        else if ( view != null )
+        {
+            return viewLength;
+        }
+        else
+        {
+            return -1;
+        }
     }
 
 
@@ -155,10 +224,64 @@ public class BerValue
             justification="The return of the direct value (without cloning) was intended. Even if we modify the interned value, it won't have any impact")
     public byte[] getData()
     {
+        if ( ( data == null ) && ( view != null ) )
+        {
+            if ( viewLength == 0 )
+            {
+                data = EMPTY_DATA;
+            }
+            else
+            {
+                data = new byte[viewLength];
+
+                if ( view.hasArray() )
+                {
+                    System.arraycopy( view.array(), view.arrayOffset() + viewStart, data, 0, viewLength );
+                }
+                else
+                {
+                    for ( int i = 0; i < viewLength; i++ )
+                    {
+                        data[i] = view.get( viewStart + i );
+                    }
+                }
+            }
+
+            view = null;
+        }
+
         return data;
     }
 
 
+    /**
+     * Get the Value's data as a read-only buffer. If the Value is a view on
+     * the decoded stream, the returned buffer is a slice of this stream, and
+     * the data are not copied.
+     *
+     * @return A read-only buffer containing the data, or null if no data has been set
+     */
+    public ByteBuffer getDataBuffer()
+    {
+        if ( view != null )
+        {
+            ByteBuffer slice = view.duplicate();
+            slice.limit( viewStart + viewLength );
+            slice.position( viewStart );
+
+            return slice.slice().asReadOnlyBuffer();
+        }
+        else if ( data != null )
+        {
+            return ByteBuffer.wrap( data ).asReadOnlyBuffer();
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+
     /**
      * Set a block of bytes in the Value
      *
@@ -185,6 +308,20 @@ public class BerValue
     }
 
 
+    /**
+     * Append some bytes read from a buffer to the data buffer, without any
+     * intermediate copy.
+     *
+     * @param buffer The buffer to read the data from
+     * @param length The number of bytes to append
+     */
+    public void addData( ByteBuffer buffer, int length )
+    {
+        buffer.get( data, currentPos, length );
+        currentPos += length;
+    }
+
+
     /**
      * Set a block of bytes in the Value
      *
@@ -922,10 +1059,10 @@ public class BerValue
         StringBuilder sb = new StringBuilder();
         sb.append( "DATA" );
 
-        if ( data != null )
+        if ( ( data != null ) || ( view != null ) )
         {
             sb.append( '[' );
-            sb.append( Asn1StringUtils.dumpBytes( data ) );
+            sb.append( Asn1StringUtils.dumpBytes( getData() ) );
             sb.append( ']' );
         }
         else
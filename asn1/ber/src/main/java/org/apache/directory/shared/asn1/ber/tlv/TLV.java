@@ -61,6 +61,9 @@ public class TLV
      */
     private int expectedLength;
 
+    /** The depth of this TLV in the PDU, the enclosing TLV being at depth 0 */
+    private int depth;
+
     /** tag flag for the primitive/constructed bit - 0010 0000 - 0x20 */
     public static final byte CONSTRUCTED_FLAG = 0x20;
 
@@ -175,6 +178,22 @@ public class TLV
     }
 
 
+    /**
+     * Reset the TLV and give it a new id, so that the same instance can be
+     * used for another TLV of the PDU being decoded.
+     *
+     * @param id the TLV's new id
+     */
+    public void recycle( int id )
+    {
+        reset();
+        this.id = id;
+        lengthBytesRead = 0;
+        parent = null;
+        depth = 0;
+    }
+
+
     /**
      * @return Returns the tag.
      */
@@ -358,6 +377,26 @@ public class TLV
     }
 
 
+    /**
+     * @return The depth of this TLV in the PDU, 0 for the enclosing TLV
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+
+    /**
+     * Set the depth of this TLV in the PDU.
+     *
+     * @param depth The depth of this TLV, 0 for the enclosing TLV
+     */
+    public void setDepth( int depth )
+    {
+        this.depth = depth;
+    }
+
+
     /**
      * @return The number of bytes necessary to store the TLV's length
      */
@@ -784,5 +784,39 @@ public class ValueTest
         
         assertEquals( "0x03 0x03 0x06 0x00 0x40 ", Asn1StringUtils.dumpBytes( buffer.array() )  );
     }
-}
 
+
+    /**
+     * Test that a Value created as a view on a buffer only copies its data when read
+     */
+    @Test
+    public void testValueView()
+    {
+        ByteBuffer heapBuffer = ByteBuffer.wrap( new byte[]
+            { 0x04, 0x03, 'a', 'b', 'c' } );
+        BerValue value = new BerValue();
+        value.setView( heapBuffer, 2, 3 );
+
+        assertEquals( 3, value.getDataLength() );
+        assertTrue( Arrays.equals( new byte[]
+            { 'a', 'b', 'c' }, value.getData() ) );
+
+        // The data has been copied, modifying the buffer does not change the value
+        heapBuffer.put( 2, ( byte ) 'z' );
+        assertEquals( 'a', value.getData()[0] );
+
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect( 5 );
+        directBuffer.put( new byte[]
+            { 0x04, 0x03, 'a', 'b', 'c' } );
+        value.setView( directBuffer, 3, 2 );
+
+        assertTrue( Arrays.equals( new byte[]
+            { 'b', 'c' }, value.getData() ) );
+
+        value.setView( directBuffer, 5, 0 );
+        assertEquals( 0, value.getData().length );
+
+        value.reset();
+        assertEquals( -1, value.getDataLength() );
+    }
+}
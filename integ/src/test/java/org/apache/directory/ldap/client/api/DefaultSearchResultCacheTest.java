@@ -0,0 +1,344 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.message.SearchRequest;
+import org.apache.directory.shared.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+import org.apache.directory.shared.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.shared.ldap.model.message.SearchScope;
+import org.apache.directory.shared.ldap.model.message.controls.ManageDsaITImpl;
+import org.apache.directory.shared.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Test the DefaultSearchResultCache class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DefaultSearchResultCacheTest
+{
+    private static SchemaManager schemaManager;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    private static DefaultSearchResultCache newCache()
+    {
+        return new DefaultSearchResultCache( schemaManager, 100, 10, 1L, TimeUnit.HOURS );
+    }
+
+
+    private static SearchRequest newRequest( String base, String filter, String... attributes ) throws Exception
+    {
+        SearchRequest searchRequest = new SearchRequestImpl();
+        searchRequest.setMessageId( 7 );
+        searchRequest.setBase( new Dn( schemaManager, base ) );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( filter );
+        searchRequest.addAttributes( attributes );
+
+        return searchRequest;
+    }
+
+
+    private static List<Response> newResponses( String... dns ) throws Exception
+    {
+        List<Response> responses = new ArrayList<Response>();
+
+        for ( String dn : dns )
+        {
+            SearchResultEntry entry = new SearchResultEntryImpl( 3 );
+            entry.setEntry( new DefaultEntry( schemaManager, dn, "objectClass: person", "cn: john", "sn: doe" ) );
+            responses.add( entry );
+        }
+
+        SearchResultDone done = new SearchResultDoneImpl( 3 );
+        done.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+        responses.add( done );
+
+        return responses;
+    }
+
+
+    private static void put( DefaultSearchResultCache cache, SearchRequest searchRequest, String... dns )
+        throws Exception
+    {
+        cache.put( searchRequest, newResponses( dns ), cache.getVersion() );
+    }
+
+
+    @Test
+    public void testGetPut() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+        SearchRequest searchRequest = newRequest( "ou=system", "(cn=john)" );
+
+        assertNull( cache.get( searchRequest ) );
+
+        put( cache, searchRequest, "cn=john,ou=system" );
+
+        List<Response> responses = cache.get( searchRequest );
+
+        assertNotNull( responses );
+        assertEquals( 2, responses.size() );
+        assertEquals( new Dn( schemaManager, "cn=john,ou=system" ), ( ( SearchResultEntry ) responses.get( 0 ) )
+            .getObjectName() );
+        assertEquals( ResultCodeEnum.SUCCESS, ( ( SearchResultDone ) responses.get( 1 ) ).getLdapResult()
+            .getResultCode() );
+        assertEquals( 1, cache.size() );
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+    }
+
+
+    @Test
+    public void testEquivalentFiltersShareTheKey() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+
+        put( cache, newRequest( "ou=system", "(&(cn=John)(objectClass=person))" ), "cn=john,ou=system" );
+
+        assertNotNull( cache.get( newRequest( "ou=system", "(&(objectClass=PERSON)(commonName= john ))" ) ) );
+        assertNotNull( cache.get( newRequest( "OU=System", "(&(cn=john)(&(objectClass=person)))" ) ) );
+        assertNull( cache.get( newRequest( "ou=system", "(&(cn=jane)(objectClass=person))" ) ) );
+        assertNull( cache.get( newRequest( "ou=system", "(|(cn=john)(objectClass=person))" ) ) );
+    }
+
+
+    @Test
+    public void testUnknownAttributesAreKept() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+
+        put( cache, newRequest( "ou=system", "(&(objectClass=person)(acmeDept=sales))" ), "cn=john,ou=system" );
+
+        assertNotNull( cache.get( newRequest( "ou=system", "(&(objectClass=person)(acmeDept=sales))" ) ) );
+        assertNull( cache.get( newRequest( "ou=system", "(&(objectClass=person)(acmeDept=hr))" ) ) );
+    }
+
+
+    @Test
+    public void testKeyAttributes() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+
+        put( cache, newRequest( "ou=system", "(cn=john)", "cn", "sn" ), "cn=john,ou=system" );
+
+        // The requested attributes are a set
+        assertNotNull( cache.get( newRequest( "ou=system", "(cn=john)", "SN", " cn " ) ) );
+        assertNull( cache.get( newRequest( "ou=system", "(cn=john)", "cn" ) ) );
+        assertNull( cache.get( newRequest( "ou=system", "(cn=john)" ) ) );
+
+        // So are the scope and the base
+        SearchRequest oneLevel = newRequest( "ou=system", "(cn=john)", "cn", "sn" );
+        oneLevel.setScope( SearchScope.ONELEVEL );
+
+        assertNull( cache.get( oneLevel ) );
+        assertNull( cache.get( newRequest( "dc=example,dc=com", "(cn=john)", "cn", "sn" ) ) );
+    }
+
+
+    @Test
+    public void testKeyControls() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+        SearchRequest withControl = newRequest( "ou=system", "(cn=john)" );
+        withControl.addControl( new ManageDsaITImpl() );
+
+        put( cache, withControl, "cn=john,ou=system" );
+
+        assertNull( cache.get( newRequest( "ou=system", "(cn=john)" ) ) );
+
+        SearchRequest sameControl = newRequest( "ou=system", "(cn=john)" );
+        sameControl.addControl( new ManageDsaITImpl() );
+
+        assertNotNull( cache.get( sameControl ) );
+
+        SearchRequest criticalControl = newRequest( "ou=system", "(cn=john)" );
+        criticalControl.addControl( new ManageDsaITImpl( true ) );
+
+        assertNull( cache.get( criticalControl ) );
+
+        // The paged searches are not cached
+        SearchRequest paged = newRequest( "ou=system", "(cn=john)" );
+        paged.addControl( new PagedResultsImpl() );
+
+        assertFalse( cache.isCacheable( paged ) );
+        put( cache, paged, "cn=john,ou=system" );
+        assertNull( cache.get( paged ) );
+    }
+
+
+    @Test
+    public void testExpiration() throws Exception
+    {
+        DefaultSearchResultCache cache = new DefaultSearchResultCache( schemaManager, 100, 10, 50L,
+            TimeUnit.MILLISECONDS );
+        SearchRequest searchRequest = newRequest( "ou=system", "(cn=john)" );
+
+        put( cache, searchRequest, "cn=john,ou=system" );
+        assertNotNull( cache.get( searchRequest ) );
+
+        Thread.sleep( 100L );
+
+        assertNull( cache.get( searchRequest ) );
+    }
+
+
+    @Test
+    public void testCopyOnPut() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+        SearchRequest searchRequest = newRequest( "ou=system", "(cn=john)" );
+        List<Response> responses = newResponses( "cn=john,ou=system" );
+
+        cache.put( searchRequest, responses, cache.getVersion() );
+
+        // Modifying the stored responses does not modify the cached ones
+        ( ( SearchResultEntry ) responses.get( 0 ) ).getEntry().add( "description", "modified" );
+        responses.clear();
+
+        List<Response> cached = cache.get( searchRequest );
+
+        assertEquals( 2, cached.size() );
+        assertFalse( ( ( SearchResultEntry ) cached.get( 0 ) ).getEntry().containsAttribute( "description" ) );
+    }
+
+
+    @Test
+    public void testCopyOnGet() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+        SearchRequest searchRequest = newRequest( "ou=system", "(cn=john)" );
+
+        put( cache, searchRequest, "cn=john,ou=system" );
+
+        List<Response> responses1 = cache.get( searchRequest );
+        ( ( SearchResultEntry ) responses1.get( 0 ) ).getEntry().add( "description", "modified" );
+
+        List<Response> responses2 = cache.get( searchRequest );
+
+        assertNotSame( responses1.get( 0 ), responses2.get( 0 ) );
+        assertFalse( ( ( SearchResultEntry ) responses2.get( 0 ) ).getEntry().containsAttribute( "description" ) );
+
+        // The copies carry the message ID of the request
+        assertEquals( 7, responses2.get( 0 ).getMessageId() );
+        assertEquals( 7, responses2.get( 1 ).getMessageId() );
+    }
+
+
+    @Test
+    public void testSubtreeInvalidation() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+        SearchRequest root = newRequest( "dc=example,dc=com", "(cn=john)" );
+        SearchRequest people = newRequest( "ou=people,dc=example,dc=com", "(cn=john)" );
+        SearchRequest person = newRequest( "cn=john,ou=people,dc=example,dc=com", "(objectClass=*)" );
+        SearchRequest groups = newRequest( "ou=groups,dc=example,dc=com", "(cn=john)" );
+        SearchRequest system = newRequest( "ou=system", "(cn=john)" );
+
+        put( cache, root, "cn=john,ou=people,dc=example,dc=com" );
+        put( cache, people, "cn=john,ou=people,dc=example,dc=com" );
+        put( cache, person, "cn=john,ou=people,dc=example,dc=com" );
+        put( cache, groups );
+        put( cache, system );
+
+        assertEquals( 5, cache.size() );
+        assertEquals( 5, cache.getIndexedBaseCount() );
+
+        // The results based above or below the modified entry are removed
+        cache.invalidate( new Dn( schemaManager, "ou=People,dc=Example,dc=com" ) );
+
+        assertNull( cache.get( root ) );
+        assertNull( cache.get( people ) );
+        assertNull( cache.get( person ) );
+        assertNotNull( cache.get( groups ) );
+        assertNotNull( cache.get( system ) );
+        assertEquals( 3, cache.getInvalidationCount() );
+        assertEquals( 2, cache.getIndexedBaseCount() );
+    }
+
+
+    @Test
+    public void testStaleResultsAreNotCached() throws Exception
+    {
+        DefaultSearchResultCache cache = newCache();
+        SearchRequest searchRequest = newRequest( "ou=system", "(cn=john)" );
+        long version = cache.getVersion();
+
+        // An entry is modified while the search is running
+        cache.invalidate( new Dn( schemaManager, "cn=john,ou=system" ) );
+        cache.put( searchRequest, newResponses( "cn=john,ou=system" ), version );
+
+        assertNull( cache.get( searchRequest ) );
+        assertEquals( 0, cache.size() );
+    }
+
+
+    @Test
+    public void testIndexIsPruned() throws Exception
+    {
+        // The cache holds 4 results, and the index is pruned once it holds 8 keys
+        DefaultSearchResultCache cache = new DefaultSearchResultCache( schemaManager, 4, 10, 1L, TimeUnit.HOURS );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            put( cache, newRequest( "ou=test" + i + ",ou=system", "(cn=john)" ) );
+        }
+
+        // The base Dns of the evicted results have been removed from the index
+        assertTrue( cache.size() <= 4 );
+        assertTrue( cache.getIndexedBaseCount() <= 5 );
+
+        // The invalidation still removes the cached results
+        cache.invalidate( new Dn( schemaManager, "ou=system" ) );
+
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getIndexedBaseCount() );
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.future;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.ldap.client.api.DefaultSearchResultCache;
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.message.SearchRequest;
+import org.apache.directory.shared.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+import org.apache.directory.shared.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.shared.ldap.model.message.SearchScope;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Test the CachingSearchFuture class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingSearchFutureTest
+{
+    private static SchemaManager schemaManager;
+
+    /** A connection on which no request is outstanding */
+    private static LdapConnection connection;
+
+    private DefaultSearchResultCache cache;
+
+    private SearchRequest searchRequest;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+
+        connection = ( LdapConnection ) Proxy.newProxyInstance( CachingSearchFutureTest.class.getClassLoader(),
+            new Class<?>[]
+                { LdapConnection.class }, new InvocationHandler()
+            {
+                public Object invoke( Object proxy, Method method, Object[] args )
+                {
+                    if ( "doesFutureExistFor".equals( method.getName() ) )
+                    {
+                        return false;
+                    }
+
+                    return null;
+                }
+            } );
+    }
+
+
+    @Before
+    public void init() throws Exception
+    {
+        // At most 2 entries per cached search
+        cache = new DefaultSearchResultCache( schemaManager, 100, 2, 1L, TimeUnit.HOURS );
+
+        searchRequest = new SearchRequestImpl();
+        searchRequest.setMessageId( 1 );
+        searchRequest.setBase( new Dn( schemaManager, "ou=system" ) );
+        searchRequest.setScope( SearchScope.SUBTREE );
+        searchRequest.setFilter( "(cn=john)" );
+    }
+
+
+    private CachingSearchFuture newFuture()
+    {
+        return new CachingSearchFuture( connection, 1, cache, searchRequest, cache.getVersion() );
+    }
+
+
+    private static SearchResultEntry newEntry( String dn ) throws Exception
+    {
+        SearchResultEntry entry = new SearchResultEntryImpl( 1 );
+        entry.setEntry( new DefaultEntry( schemaManager, dn, "objectClass: person", "cn: john" ) );
+
+        return entry;
+    }
+
+
+    private static SearchResultDone newDone( ResultCodeEnum resultCode )
+    {
+        SearchResultDone done = new SearchResultDoneImpl( 1 );
+        done.getLdapResult().setResultCode( resultCode );
+
+        return done;
+    }
+
+
+    @Test
+    public void testSuccessfulSearchIsCached() throws Exception
+    {
+        CachingSearchFuture future = newFuture();
+        SearchResultEntry entry = newEntry( "cn=john,ou=system" );
+        SearchResultDone done = newDone( ResultCodeEnum.SUCCESS );
+
+        future.set( entry );
+
+        // Nothing is cached before the search is done
+        assertNull( cache.get( searchRequest ) );
+
+        future.set( done );
+
+        // The responses are still delivered
+        assertSame( entry, future.get() );
+        assertSame( done, future.get() );
+
+        List<Response> responses = cache.get( searchRequest );
+
+        assertNotNull( responses );
+        assertEquals( 2, responses.size() );
+        assertEquals( entry.getObjectName(), ( ( SearchResultEntry ) responses.get( 0 ) ).getObjectName() );
+    }
+
+
+    @Test
+    public void testFailedSearchIsNotCached() throws Exception
+    {
+        CachingSearchFuture future = newFuture();
+
+        future.set( newEntry( "cn=john,ou=system" ) );
+        future.set( newDone( ResultCodeEnum.SIZE_LIMIT_EXCEEDED ) );
+
+        assertNull( cache.get( searchRequest ) );
+    }
+
+
+    @Test
+    public void testLargeSearchIsNotCached() throws Exception
+    {
+        CachingSearchFuture future = newFuture();
+
+        future.set( newEntry( "cn=john,ou=system" ) );
+        future.set( newEntry( "cn=jane,ou=system" ) );
+        future.set( newEntry( "cn=jim,ou=system" ) );
+        future.set( newDone( ResultCodeEnum.SUCCESS ) );
+
+        assertNull( cache.get( searchRequest ) );
+
+        // A search returning as many entries as the cache accepts is cached
+        future = newFuture();
+
+        future.set( newEntry( "cn=john,ou=system" ) );
+        future.set( newEntry( "cn=jane,ou=system" ) );
+        future.set( newDone( ResultCodeEnum.SUCCESS ) );
+
+        assertEquals( 3, cache.get( searchRequest ).size() );
+    }
+
+
+    @Test
+    public void testCancelledSearchIsNotCached() throws Exception
+    {
+        CachingSearchFuture future = newFuture();
+
+        future.set( newEntry( "cn=john,ou=system" ) );
+        future.cancel( true );
+        future.set( newDone( ResultCodeEnum.SUCCESS ) );
+
+        assertNull( cache.get( searchRequest ) );
+    }
+
+
+    @Test
+    public void testInvalidatedSearchIsNotCached() throws Exception
+    {
+        CachingSearchFuture future = newFuture();
+
+        future.set( newEntry( "cn=john,ou=system" ) );
+
+        // The entry is modified while the search is running
+        cache.invalidate( new Dn( schemaManager, "cn=john,ou=system" ) );
+
+        future.set( newDone( ResultCodeEnum.SUCCESS ) );
+
+        assertNull( cache.get( searchRequest ) );
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.entry;
+
+
+import static org.junit.Assert.assertTrue;
+
+import org.apache.directory.shared.ldap.model.entry.CompactEntry;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compare the memory used by DefaultEntries and CompactEntries holding the same
+ * typical user entries.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class CompactEntryPerfTest
+{
+    /** The number of entries kept in memory */
+    private static final int NB_ENTRIES = 20000;
+
+    private static SchemaManager schemaManager;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    /**
+     * The way the entries are created
+     */
+    private interface EntryFactory
+    {
+        Entry create( Dn dn ) throws LdapException;
+    }
+
+
+    /**
+     * Creates a user entry with 15 attributes
+     */
+    private static void fill( Entry entry, int i ) throws LdapException
+    {
+        entry.add( "objectClass", "top", "person", "organizationalPerson", "inetOrgPerson" );
+        entry.add( "uid", "user" + i );
+        entry.add( "cn", "User " + i );
+        entry.add( "sn", "Number " + i );
+        entry.add( "givenName", "User" );
+        entry.add( "displayName", "User number " + i );
+        entry.add( "mail", "user" + i + "@example.com" );
+        entry.add( "telephoneNumber", "+1 555 " + i );
+        entry.add( "mobile", "+1 666 " + i );
+        entry.add( "title", "Engineer" );
+        entry.add( "ou", "people" );
+        entry.add( "l", "Paris" );
+        entry.add( "employeeNumber", Integer.toString( i ) );
+        entry.add( "description", "A test user", "with two descriptions" );
+        entry.add( "seeAlso", "ou=people,dc=example,dc=com" );
+    }
+
+
+    /**
+     * @return The memory used by NB_ENTRIES entries, in bytes
+     */
+    private long measure( EntryFactory factory ) throws Exception
+    {
+        // Create the Dns first, we only measure the entries
+        Dn[] dns = new Dn[NB_ENTRIES];
+
+        for ( int i = 0; i < NB_ENTRIES; i++ )
+        {
+            dns[i] = new Dn( schemaManager, "uid=user" + i + ",ou=people,dc=example,dc=com" );
+        }
+
+        long before = usedMemory();
+        Entry[] entries = new Entry[NB_ENTRIES];
+
+        for ( int i = 0; i < NB_ENTRIES; i++ )
+        {
+            entries[i] = factory.create( dns[i] );
+            fill( entries[i], i );
+        }
+
+        long after = usedMemory();
+
+        // Keep the entries alive until we have measured them
+        assertTrue( entries[NB_ENTRIES - 1].size() == 15 );
+
+        return after - before;
+    }
+
+
+    private static long usedMemory() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+
+        for ( int i = 0; i < 5; i++ )
+        {
+            System.gc();
+            Thread.sleep( 100 );
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+
+    @Test
+    public void testMemoryFootprint() throws Exception
+    {
+        EntryFactory defaultFactory = new EntryFactory()
+        {
+            public Entry create( Dn dn )
+            {
+                return new DefaultEntry( schemaManager, dn );
+            }
+        };
+
+        EntryFactory compactFactory = new EntryFactory()
+        {
+            public Entry create( Dn dn )
+            {
+                return new CompactEntry( schemaManager, dn );
+            }
+        };
+
+        // Warm up
+        measure( defaultFactory );
+        measure( compactFactory );
+
+        long defaultMemory = measure( defaultFactory );
+        long compactMemory = measure( compactFactory );
+
+        System.out.println( "testMemoryFootprint, " + NB_ENTRIES + " entries, DefaultEntry = "
+            + ( defaultMemory / NB_ENTRIES ) + " bytes per entry, CompactEntry = " + ( compactMemory / NB_ENTRIES )
+            + " bytes per entry" );
+
+        assertTrue( compactMemory < defaultMemory );
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.entry;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+
+import org.apache.directory.shared.ldap.model.entry.Attribute;
+import org.apache.directory.shared.ldap.model.entry.CompactEntry;
+import org.apache.directory.shared.ldap.model.entry.DefaultAttribute;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.entry.Value;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.schema.AttributeType;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * A test class for the CompactEntry class, which must behave like a DefaultEntry
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CompactEntryTest
+{
+    private static SchemaManager schemaManager;
+
+    private static Dn dn;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+        dn = new Dn( schemaManager, "uid=jdoe,ou=people,dc=example,dc=com" );
+    }
+
+
+    private Object[] getElements()
+    {
+        return new Object[]
+            {
+                "objectClass: top",
+                "objectClass: person",
+                "objectClass: inetOrgPerson",
+                "uid: jdoe",
+                "cn: John Doe",
+                "sn: Doe",
+                "givenName: John",
+                "mail: jdoe@example.com",
+                "telephoneNumber: 1234",
+                "description: a test entry" };
+    }
+
+
+    @Test
+    public void testSameAsDefaultEntry() throws Exception
+    {
+        Entry defaultEntry = new DefaultEntry( schemaManager, dn, getElements() );
+        Entry compactEntry = new CompactEntry( schemaManager, dn, getElements() );
+
+        assertEquals( defaultEntry, compactEntry );
+        assertEquals( compactEntry, defaultEntry );
+        assertEquals( defaultEntry.hashCode(), compactEntry.hashCode() );
+        assertEquals( 8, compactEntry.size() );
+        assertTrue( compactEntry.isSchemaAware() );
+
+        assertTrue( compactEntry.contains( "objectClass", "top", "person", "inetOrgPerson" ) );
+        assertTrue( compactEntry.contains( "CN", "john doe" ) );
+        assertTrue( compactEntry.hasObjectClass( "person" ) );
+        assertTrue( compactEntry.containsAttribute( "2.5.4.3", "sn" ) );
+        assertFalse( compactEntry.containsAttribute( "seeAlso" ) );
+        assertEquals( defaultEntry.get( "commonName" ), compactEntry.get( "cn" ) );
+
+        AttributeType mailAT = schemaManager.lookupAttributeTypeRegistry( "mail" );
+        assertEquals( "jdoe@example.com", compactEntry.get( mailAT ).getString() );
+
+        int nbAttributes = 0;
+
+        for ( Attribute attribute : compactEntry )
+        {
+            assertEquals( attribute, defaultEntry.get( attribute.getAttributeType() ) );
+            nbAttributes++;
+        }
+
+        assertEquals( 8, nbAttributes );
+    }
+
+
+    @Test
+    public void testModifications() throws Exception
+    {
+        Entry defaultEntry = new DefaultEntry( schemaManager, dn, getElements() );
+        Entry compactEntry = new CompactEntry( schemaManager, dn, getElements() );
+
+        for ( Entry entry : new Entry[]
+            { defaultEntry, compactEntry } )
+        {
+            entry.add( "cn", "Johnny" );
+            entry.add( "cn", "JOHNNY" );
+            entry.put( "seeAlso", "ou=people,dc=example,dc=com" );
+            entry.remove( "sn", "Doe" );
+            entry.removeAttributes( "description", "telephoneNumber" );
+            entry.add( new DefaultAttribute( schemaManager.lookupAttributeTypeRegistry( "ou" ), "people" ) );
+            entry.remove( "givenName", "unknown" );
+        }
+
+        assertEquals( defaultEntry, compactEntry );
+        assertEquals( 7, compactEntry.size() );
+        assertEquals( 2, compactEntry.get( "cn" ).size() );
+        assertNull( compactEntry.get( "sn" ) );
+        assertNull( compactEntry.get( "description" ) );
+        assertEquals( "people", compactEntry.get( "ou" ).getString() );
+
+        compactEntry.clear();
+        assertEquals( 0, compactEntry.size() );
+        assertFalse( compactEntry.iterator().hasNext() );
+    }
+
+
+    @Test
+    public void testManyValues() throws Exception
+    {
+        Entry entry = new CompactEntry( schemaManager, dn );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            entry.add( "member", "cn=user" + i + ",dc=example,dc=com" );
+        }
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            entry.add( "description", "value " + i );
+        }
+
+        assertEquals( 100, entry.get( "member" ).size() );
+        assertEquals( 10, entry.get( "description" ).size() );
+        assertTrue( entry.contains( "member", "cn=user99,dc=example,dc=com" ) );
+
+        // Values are kept in insertion order
+        Iterator<Value<?>> values = entry.get( "description" ).iterator();
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            assertEquals( "value " + i, values.next().getString() );
+        }
+
+        for ( int i = 0; i < 100; i += 2 )
+        {
+            entry.remove( "member", "cn=user" + i + ",dc=example,dc=com" );
+        }
+
+        assertEquals( 50, entry.get( "member" ).size() );
+        assertFalse( entry.contains( "member", "cn=user0,dc=example,dc=com" ) );
+        assertTrue( entry.contains( "member", "cn=user1,dc=example,dc=com" ) );
+    }
+
+
+    @Test
+    public void testCloneAndCopy() throws Exception
+    {
+        Entry entry = new CompactEntry( schemaManager, dn, getElements() );
+        Entry clone = entry.clone();
+
+        assertTrue( clone instanceof CompactEntry );
+        assertEquals( entry, clone );
+
+        clone.add( "cn", "Johnny" );
+        assertEquals( 1, entry.get( "cn" ).size() );
+        assertEquals( 2, clone.get( "cn" ).size() );
+
+        // Copy a non schema aware entry
+        Entry copy = new CompactEntry( schemaManager, new DefaultEntry( "dc=example,dc=com", "objectClass: top",
+            "objectClass: domain", "DC: example" ) );
+
+        assertTrue( copy.get( "dc" ).isInstanceOf( schemaManager.lookupAttributeTypeRegistry( "dc" ) ) );
+        assertEquals( 2, copy.size() );
+    }
+
+
+    @Test
+    public void testNotSchemaAware() throws Exception
+    {
+        Entry entry = new CompactEntry();
+        entry.setDn( "dc=example,dc=com" );
+        entry.add( "objectClass", "top", "domain" );
+        entry.add( "DC", "example" );
+
+        assertFalse( entry.isSchemaAware() );
+        assertTrue( entry.contains( "dc", "example" ) );
+        assertEquals( 2, entry.get( "objectclass" ).size() );
+
+        Entry copy = new CompactEntry( null, entry );
+
+        assertEquals( entry, copy );
+        assertNotSame( entry.get( "dc" ), copy.get( "dc" ) );
+    }
+
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        Entry entry = new CompactEntry( null, new DefaultEntry( "dc=example,dc=com", "objectClass: top",
+            "objectClass: domain", "dc: example" ) );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream oOut = new ObjectOutputStream( out );
+        oOut.writeObject( entry );
+        oOut.close();
+
+        ObjectInputStream oIn = new ObjectInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+        Entry read = ( Entry ) oIn.readObject();
+        oIn.close();
+
+        assertTrue( read instanceof CompactEntry );
+        assertEquals( entry, read );
+    }
+}
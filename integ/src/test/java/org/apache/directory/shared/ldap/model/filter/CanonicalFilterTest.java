@@ -0,0 +1,168 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.filter;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * A test class for the CanonicalFilter.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CanonicalFilterTest
+{
+    private static SchemaManager schemaManager;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    private static CanonicalFilter canonical( String filter ) throws Exception
+    {
+        return new CanonicalFilter( schemaManager, filter );
+    }
+
+
+    private static void assertSameFilter( String filter1, String filter2 ) throws Exception
+    {
+        CanonicalFilter canonical1 = canonical( filter1 );
+        CanonicalFilter canonical2 = canonical( filter2 );
+
+        assertEquals( canonical1.toString(), canonical2.toString() );
+        assertEquals( canonical1.getHash(), canonical2.getHash() );
+        assertEquals( canonical1, canonical2 );
+        assertEquals( canonical1.hashCode(), canonical2.hashCode() );
+    }
+
+
+    private static void assertDifferentFilter( String filter1, String filter2 ) throws Exception
+    {
+        CanonicalFilter canonical1 = canonical( filter1 );
+        CanonicalFilter canonical2 = canonical( filter2 );
+
+        assertFalse( canonical1.toString().equals( canonical2.toString() ) );
+        assertTrue( canonical1.getHash() != canonical2.getHash() );
+        assertFalse( canonical1.equals( canonical2 ) );
+    }
+
+
+    @Test
+    public void testLeaves() throws Exception
+    {
+        assertEquals( "(2.5.4.3=john doe)", canonical( "(CN=  John   DOE )" ).toString() );
+        assertEquals( "(2.5.4.3=*)", canonical( "(commonName=*)" ).toString() );
+        assertEquals( "(2.5.4.3=j*d*e)", canonical( "(cn=J*D*E)" ).toString() );
+        assertEquals( "(2.5.4.3>=m)", canonical( "(cn>=M)" ).toString() );
+        assertEquals( "(2.5.4.3~=jon)", canonical( "(cn~=Jon)" ).toString() );
+        assertEquals( "(2.5.4.3:dn:2.5.13.5:=John)", canonical( "(cn:dn:caseExactMatch:=John)" ).toString() );
+
+        // The values are escaped
+        assertEquals( "(2.5.4.3=a\\2Ab\\28\\29)", canonical( "(cn=A\\2ab\\28\\29)" ).toString() );
+    }
+
+
+    @Test
+    public void testSameFilters() throws Exception
+    {
+        assertSameFilter( "(cn=John Doe)", "(2.5.4.3=JOHN  DOE)" );
+        assertSameFilter( "(&(cn=a)(sn=b))", "(&(sn=B)(commonName=A))" );
+        assertSameFilter( "(|(cn=a)(sn=b)(cn=a))", "(|(sn=b)(cn=a))" );
+        assertSameFilter( "(&(cn=a)(&(sn=b)(uid=c)))", "(&(&(cn=a)(sn=b))(uid=c))" );
+        assertSameFilter( "(|(cn=a)(|(sn=b)(|(uid=c))))", "(|(uid=c)(sn=b)(cn=a))" );
+        assertSameFilter( "(&(cn=a))", "(cn=a)" );
+        assertSameFilter( "(!(!(cn=a)))", "(cn=a)" );
+        assertSameFilter( "(&(objectClass=person)(|(cn=a*)(mail=*@EXAMPLE.com)))",
+            "(&(|(2.5.4.3=A*)(0.9.2342.19200300.100.1.3=*@example.COM))(objectclass=PERSON))" );
+    }
+
+
+    @Test
+    public void testDifferentFilters() throws Exception
+    {
+        assertDifferentFilter( "(cn=a)", "(sn=a)" );
+        assertDifferentFilter( "(cn=a)", "(cn=b)" );
+        assertDifferentFilter( "(cn=a)", "(cn>=a)" );
+        assertDifferentFilter( "(cn=a)", "(!(cn=a))" );
+        assertDifferentFilter( "(&(cn=a)(sn=b))", "(|(cn=a)(sn=b))" );
+        assertDifferentFilter( "(&(cn=a)(|(sn=b)(uid=c)))", "(|(&(cn=a)(sn=b))(uid=c))" );
+
+        // caseExactMatch does not ignore the case
+        assertDifferentFilter( "(cn:caseExactMatch:=a)", "(cn:caseExactMatch:=A)" );
+    }
+
+
+    @Test
+    public void testCanonicalFilterCanBeParsed() throws Exception
+    {
+        String filter = "(&(objectClass=inetOrgPerson)(|(cn=John*)(mail=*@example.com))(!(l=Paris)))";
+        CanonicalFilter canonical = canonical( filter );
+
+        assertEquals( canonical, canonical( canonical.toString() ) );
+    }
+
+
+    @Test
+    public void testNotSchemaAware() throws Exception
+    {
+        CanonicalFilter canonical1 = new CanonicalFilter( null, FilterParser.parse( "(&(CN=John)(sn=Doe))" ) );
+        CanonicalFilter canonical2 = new CanonicalFilter( null, FilterParser.parse( "(&(sn=Doe)(cn=John))" ) );
+
+        assertEquals( "(&(cn=John)(sn=Doe))", canonical1.toString() );
+        assertEquals( canonical1, canonical2 );
+
+        // The AttributeTypes are resolved if a SchemaManager is given
+        assertEquals( canonical( "(&(CN=John)(sn=Doe))" ), new CanonicalFilter( schemaManager, FilterParser
+            .parse( "(&(CN=John)(sn=Doe))" ) ) );
+    }
+
+
+    @Test
+    public void testUnknownAttributes() throws Exception
+    {
+        // The assertions on unknown attributes are kept
+        assertDifferentFilter( "(&(objectClass=person)(acmeDept=sales))", "(&(objectClass=person)(acmeDept=hr))" );
+        assertSameFilter( "(&(objectClass=person)(AcmeDept=sales))", "(&(acmeDept=sales)(objectClass=PERSON))" );
+        assertEquals( "(&(2.5.4.0=person)(acmedept=sales))", canonical( "(&(objectClass=person)(acmeDept=sales))" )
+            .toString() );
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUndefinedAssertion() throws Exception
+    {
+        // The schema aware parser drops the assertions on unknown attributes
+        ExprNode filter = FilterParser.parse( schemaManager, "(&(objectClass=person)(acmeDept=sales))" );
+
+        new CanonicalFilter( schemaManager, filter );
+    }
+}
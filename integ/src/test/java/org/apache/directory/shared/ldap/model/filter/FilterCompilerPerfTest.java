@@ -0,0 +1,238 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.filter;
+
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.directory.shared.ldap.model.entry.Attribute;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.entry.Value;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.schema.AttributeType;
+import org.apache.directory.shared.ldap.model.schema.MatchingRule;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compare the compiled filters with an evaluation walking the filter tree, resolving
+ * the AttributeTypes and normalizing the assertion values for each entry.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class FilterCompilerPerfTest
+{
+    /** The number of entries to check */
+    private static final int NB_ENTRIES = 10000;
+
+    /** The number of times the entries are checked */
+    private static final int NB_LOOPS = 20;
+
+    /** A typical search filter */
+    private static final String FILTER = "(&(objectClass=person)(|(cn=*user 1*)(mail=user2*))(!(l=London))(employeeNumber>=100))";
+
+    private static SchemaManager schemaManager;
+
+    private static Entry[] entries;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+        entries = new Entry[NB_ENTRIES];
+
+        for ( int i = 0; i < NB_ENTRIES; i++ )
+        {
+            entries[i] = new DefaultEntry( schemaManager, "uid=user" + i + ",ou=people,dc=example,dc=com",
+                "objectClass: top",
+                "objectClass: person",
+                "objectClass: organizationalPerson",
+                "objectClass: inetOrgPerson",
+                "uid: user" + i,
+                "cn: User " + i,
+                "sn: Number " + i,
+                "mail: user" + i + "@example.com",
+                "l: " + ( ( i % 2 == 0 ) ? "Paris" : "London" ),
+                "employeeNumber: " + i );
+        }
+    }
+
+
+    /**
+     * Evaluates a node the way a simple filter visitor would do it
+     */
+    private static boolean evaluate( ExprNode node, Entry entry ) throws LdapException
+    {
+        if ( node instanceof AndNode )
+        {
+            for ( ExprNode child : ( ( AndNode ) node ).getChildren() )
+            {
+                if ( !evaluate( child, entry ) )
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+        else if ( node instanceof OrNode )
+        {
+            for ( ExprNode child : ( ( OrNode ) node ).getChildren() )
+            {
+                if ( evaluate( child, entry ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+        else if ( node instanceof NotNode )
+        {
+            return !evaluate( ( ( NotNode ) node ).getFirstChild(), entry );
+        }
+
+        AttributeType attributeType = schemaManager.lookupAttributeTypeRegistry( ( ( LeafNode ) node ).getAttribute() );
+        Attribute attribute = entry.get( attributeType );
+
+        if ( attribute == null )
+        {
+            return false;
+        }
+
+        if ( node instanceof SubstringNode )
+        {
+            MatchingRule matchingRule = attributeType.getSubstring();
+
+            if ( matchingRule == null )
+            {
+                matchingRule = attributeType.getEquality();
+            }
+
+            for ( Value<?> value : attribute )
+            {
+                String normValue = matchingRule.getNormalizer().normalize( value.getString() );
+
+                if ( ( ( SubstringNode ) node ).getRegex( matchingRule.getNormalizer() ).matcher( normValue ).matches() )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+        else if ( node instanceof GreaterEqNode )
+        {
+            MatchingRule matchingRule = attributeType.getOrdering();
+
+            if ( matchingRule == null )
+            {
+                matchingRule = attributeType.getEquality();
+            }
+
+            return compare( matchingRule, ( ( GreaterEqNode<?> ) node ).getValue(), attribute, true );
+        }
+
+        return compare( attributeType.getEquality(), ( ( EqualityNode<?> ) node ).getValue(), attribute, false );
+    }
+
+
+    /**
+     * Normalizes the assertion and the values, and compare them
+     */
+    private static boolean compare( MatchingRule matchingRule, Value<?> assertionValue, Attribute attribute,
+        boolean greater ) throws LdapException
+    {
+        Object assertion = matchingRule.getNormalizer().normalize( assertionValue.getString() );
+
+        for ( Value<?> value : attribute )
+        {
+            Object normValue = matchingRule.getNormalizer().normalize( value.getString() );
+            int comparison = matchingRule.getLdapComparator().compare( normValue, assertion );
+
+            if ( greater ? comparison >= 0 : comparison == 0 )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    @Test
+    public void testCompiledFilter() throws Exception
+    {
+        ExprNode filter = FilterParser.parse( FILTER );
+
+        // Warm up and check the two evaluations agree
+        EntryMatcher matcher = FilterCompiler.compile( schemaManager, filter );
+        int nbCompiled = 0;
+        int nbNaive = 0;
+
+        for ( Entry entry : entries )
+        {
+            if ( matcher.matches( entry ) )
+            {
+                nbCompiled++;
+            }
+
+            if ( evaluate( filter, entry ) )
+            {
+                nbNaive++;
+            }
+        }
+
+        assertEquals( nbNaive, nbCompiled );
+
+        long t0 = System.currentTimeMillis();
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            for ( Entry entry : entries )
+            {
+                evaluate( filter, entry );
+            }
+        }
+
+        long t1 = System.currentTimeMillis();
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            for ( Entry entry : entries )
+            {
+                matcher.matches( entry );
+            }
+        }
+
+        long t2 = System.currentTimeMillis();
+
+        System.out.println( "Filter " + FILTER + " matches " + nbCompiled + " entries out of " + NB_ENTRIES );
+        System.out.println( "Delta walking the filter tree : " + ( t1 - t0 ) );
+        System.out.println( "Delta with the compiled filter : " + ( t2 - t1 ) );
+    }
+}
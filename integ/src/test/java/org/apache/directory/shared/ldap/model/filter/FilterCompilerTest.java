@@ -0,0 +1,226 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.filter;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * A test class for the FilterCompiler and the EntryMatchers it creates.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class FilterCompilerTest
+{
+    private static SchemaManager schemaManager;
+
+    private static Entry entry;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+
+        entry = new DefaultEntry( schemaManager, "uid=jdoe,ou=people,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: person",
+            "objectClass: organizationalPerson",
+            "objectClass: inetOrgPerson",
+            "uid: jdoe",
+            "cn: John  Doe",
+            "cn: Johnny",
+            "sn: Doe",
+            "mail: JDoe@Example.com",
+            "employeeNumber: 1234",
+            "telephoneNumber: +1 555 0101" );
+    }
+
+
+    private static boolean matches( String filter ) throws Exception
+    {
+        return FilterCompiler.compile( schemaManager, filter ).matches( entry );
+    }
+
+
+    @Test
+    public void testEquality() throws Exception
+    {
+        assertTrue( matches( "(uid=jdoe)" ) );
+        assertTrue( matches( "(UID=JDOE)" ) );
+        assertTrue( matches( "(cn=john doe)" ) );
+        assertTrue( matches( "(2.5.4.3=  JOHNNY )" ) );
+        assertTrue( matches( "(mail=jdoe@example.com)" ) );
+        assertTrue( matches( "(objectClass=person)" ) );
+        assertFalse( matches( "(uid=jdoe2)" ) );
+        assertFalse( matches( "(objectClass=groupOfNames)" ) );
+
+        // telephoneNumber ignores the spaces
+        assertTrue( matches( "(telephoneNumber=+15550101)" ) );
+    }
+
+
+    @Test
+    public void testDescendants() throws Exception
+    {
+        // cn and sn are descendants of name
+        assertTrue( matches( "(name=doe)" ) );
+        assertTrue( matches( "(name=johnny)" ) );
+        assertFalse( matches( "(name=jdoe)" ) );
+    }
+
+
+    @Test
+    public void testPresence() throws Exception
+    {
+        assertTrue( matches( "(objectClass=*)" ) );
+        assertTrue( matches( "(mail=*)" ) );
+        assertTrue( matches( "(name=*)" ) );
+        assertFalse( matches( "(description=*)" ) );
+    }
+
+
+    @Test
+    public void testSubstring() throws Exception
+    {
+        assertTrue( matches( "(cn=john*)" ) );
+        assertTrue( matches( "(cn=*DOE)" ) );
+        assertTrue( matches( "(cn=j*n*e)" ) );
+        assertTrue( matches( "(mail=*@example.*)" ) );
+        assertTrue( matches( "(name=*nny)" ) );
+        assertFalse( matches( "(cn=*smith*)" ) );
+        assertFalse( matches( "(cn=doe*)" ) );
+    }
+
+
+    @Test
+    public void testOrdering() throws Exception
+    {
+        assertTrue( matches( "(employeeNumber>=1000)" ) );
+        assertTrue( matches( "(employeeNumber<=2000)" ) );
+        assertTrue( matches( "(sn>=D)" ) );
+        assertTrue( matches( "(sn<=doe)" ) );
+        assertFalse( matches( "(sn>=e)" ) );
+        assertFalse( matches( "(sn<=a)" ) );
+    }
+
+
+    @Test
+    public void testExtensible() throws Exception
+    {
+        assertTrue( matches( "(sn:caseExactMatch:=Doe)" ) );
+        assertFalse( matches( "(sn:caseExactMatch:=DOE)" ) );
+        assertTrue( matches( "(sn:=DOE)" ) );
+        assertFalse( matches( "(sn:unknownMatch:=Doe)" ) );
+
+        // The assertions without attribute are checked against all the attributes
+        ExprNode filter = FilterParser.parse( "(:caseIgnoreMatch:=johnny)" );
+        assertTrue( FilterCompiler.compile( schemaManager, filter ).matches( entry ) );
+        filter = FilterParser.parse( "(:caseIgnoreMatch:=jsmith)" );
+        assertFalse( FilterCompiler.compile( schemaManager, filter ).matches( entry ) );
+    }
+
+
+    @Test
+    public void testBranches() throws Exception
+    {
+        assertTrue( matches( "(&(objectClass=person)(uid=jdoe))" ) );
+        assertFalse( matches( "(&(objectClass=person)(uid=jsmith))" ) );
+        assertTrue( matches( "(|(uid=jsmith)(cn=johnny))" ) );
+        assertFalse( matches( "(|(uid=jsmith)(cn=john))" ) );
+        assertTrue( matches( "(!(uid=jsmith))" ) );
+        assertFalse( matches( "(!(objectClass=*))" ) );
+        assertTrue( matches( "(&(objectClass=inetOrgPerson)(|(mail=*@example.com)(uid=x))(!(sn=smith)))" ) );
+    }
+
+
+    @Test
+    public void testUnknownAttribute() throws Exception
+    {
+        assertFalse( matches( "(unknown=jdoe)" ) );
+        assertFalse( matches( "(unknown=*)" ) );
+        assertTrue( matches( "(|(unknown=jdoe)(uid=jdoe))" ) );
+        assertFalse( matches( "(&(unknown=jdoe)(uid=jdoe))" ) );
+
+        // The negation of an Undefined assertion is Undefined (RFC 4511, 4.5.1.7)
+        assertFalse( matches( "(!(unknown=jdoe))" ) );
+        assertFalse( matches( "(!(|(unknown=jdoe)(uid=jsmith)))" ) );
+        assertFalse( matches( "(!(&(unknown=jdoe)(uid=jdoe)))" ) );
+        assertTrue( matches( "(!(&(unknown=jdoe)(uid=jsmith)))" ) );
+        assertFalse( matches( "(!(|(unknown=jdoe)(uid=jdoe)))" ) );
+    }
+
+
+    @Test
+    public void testNotSchemaAwareFilter() throws Exception
+    {
+        // The AttributeTypes are resolved when the filter is compiled
+        ExprNode filter = FilterParser.parse( "(&(UID=JDOE)(name=doe)(unknown=x))" );
+        assertFalse( FilterCompiler.compile( schemaManager, filter ).matches( entry ) );
+
+        filter = FilterParser.parse( "(&(UID=JDOE)(name=doe)(!(unknown=x)))" );
+        assertFalse( FilterCompiler.compile( schemaManager, filter ).matches( entry ) );
+
+        filter = FilterParser.parse( "(&(UID=JDOE)(name=doe)(!(uid=x)))" );
+        assertTrue( FilterCompiler.compile( schemaManager, filter ).matches( entry ) );
+    }
+
+
+    @Test
+    public void testNotSchemaAwareEntry() throws Exception
+    {
+        Entry plainEntry = new DefaultEntry( "uid=jsmith,ou=people,dc=example,dc=com",
+            "objectClass: person",
+            "UID: JSmith",
+            "cn: Jane Smith",
+            "sn: Smith" );
+
+        assertTrue( FilterCompiler.compile( schemaManager, "(&(uid=jsmith)(cn=jane*))" ).matches( plainEntry ) );
+        assertFalse( FilterCompiler.compile( schemaManager, "(uid=jdoe)" ).matches( plainEntry ) );
+        assertFalse( FilterCompiler.compile( schemaManager, "(uid=jdoe)" ).matches( null ) );
+    }
+
+
+    @Test
+    public void testEvaluationOrder() throws Exception
+    {
+        // The discriminant equality is checked before the substring and the ObjectClass
+        EntryMatcher matcher = FilterCompiler.compile( schemaManager,
+            "(&(objectClass=person)(cn=*doe*)(uid=jdoe))" );
+
+        assertEquals( "(&(uid=jdoe)(objectClass=person)(cn=*doe*))", matcher.toString() );
+
+        // The presence is checked first in an OR
+        matcher = FilterCompiler.compile( schemaManager, "(|(cn=*doe*)(uid=jdoe)(mail=*))" );
+
+        assertEquals( "(|(mail=*)(uid=jdoe)(cn=*doe*))", matcher.toString() );
+        assertTrue( matcher.matches( entry ) );
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.name;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.directory.shared.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Test the DnCache class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DnCacheTest
+{
+    private static SchemaManager schemaManager;
+
+
+    @BeforeClass
+    public static void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    @Test
+    public void testGetDn() throws Exception
+    {
+        DnCache dnCache = new DnCache( 10 );
+
+        Dn dn1 = dnCache.getDn( schemaManager, "ou=People, dc=Example, dc=COM" );
+        Dn dn2 = dnCache.getDn( schemaManager, "ou=People, dc=Example, dc=COM" );
+
+        assertSame( dn1, dn2 );
+        assertTrue( dn1.isShared() );
+        assertTrue( dn1.isSchemaAware() );
+        assertEquals( "ou=People, dc=Example, dc=COM", dn1.getName() );
+        assertEquals( "2.5.4.11=people,0.9.2342.19200300.100.1.25=example,0.9.2342.19200300.100.1.25=com",
+            dn1.getNormName() );
+        assertEquals( new Dn( schemaManager, "ou=People, dc=Example, dc=COM" ), dn1 );
+
+        assertEquals( 1, dnCache.getHitCount() );
+        assertEquals( 1, dnCache.getMissCount() );
+        assertEquals( 0.5d, dnCache.getHitRatio(), 0d );
+    }
+
+
+    @Test
+    public void testKeyedBySchemaManager() throws Exception
+    {
+        DnCache dnCache = new DnCache( 10 );
+
+        Dn dn1 = dnCache.getDn( "ou=People, dc=Example, dc=COM" );
+        Dn dn2 = dnCache.getDn( schemaManager, "ou=People, dc=Example, dc=COM" );
+
+        assertNotSame( dn1, dn2 );
+        assertFalse( dn1.isSchemaAware() );
+        assertTrue( dn2.isSchemaAware() );
+        assertEquals( 2, dnCache.size() );
+        assertEquals( 2, dnCache.getMissCount() );
+    }
+
+
+    @Test
+    public void testSharedDnIsNotModified() throws Exception
+    {
+        DnCache dnCache = new DnCache( 10 );
+
+        Dn dn = dnCache.getDn( "ou=People, dc=Example, dc=COM" );
+        Dn normalized = dn.apply( schemaManager );
+
+        assertNotSame( dn, normalized );
+        assertFalse( dn.isSchemaAware() );
+        assertEquals( "ou=People,dc=Example,dc=COM", dn.getNormName() );
+        assertTrue( normalized.isSchemaAware() );
+        assertFalse( normalized.isShared() );
+        assertEquals( "ou=People, dc=Example, dc=COM", normalized.getName() );
+        assertEquals( new Dn( schemaManager, "ou=People, dc=Example, dc=COM" ), normalized );
+
+        // The cached Dn is still the original one
+        assertSame( dn, dnCache.getDn( "ou=People, dc=Example, dc=COM" ) );
+
+        // Applying the same SchemaManager to a schema aware Dn does not copy it
+        Dn schemaAwareDn = dnCache.getDn( schemaManager, "dc=example, dc=com" );
+        assertSame( schemaAwareDn, schemaAwareDn.apply( schemaManager ) );
+    }
+
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        // A single segment, so that the eviction is strictly LRU
+        DnCache dnCache = new DnCache( 3, 1 );
+
+        Dn dn0 = dnCache.getDn( schemaManager, "cn=test0, dc=example, dc=com" );
+
+        for ( int i = 1; i < 4; i++ )
+        {
+            dnCache.getDn( schemaManager, "cn=test" + i + ", dc=example, dc=com" );
+        }
+
+        assertEquals( 3, dnCache.size() );
+
+        // The least recently used Dn has been evicted
+        assertNotSame( dn0, dnCache.getDn( schemaManager, "cn=test0, dc=example, dc=com" ) );
+        assertEquals( 5, dnCache.getMissCount() );
+        assertEquals( 0, dnCache.getHitCount() );
+
+        dnCache.clear();
+
+        assertEquals( 0, dnCache.size() );
+    }
+
+
+    @Test
+    public void testInvalidDnIsNotCached() throws Exception
+    {
+        DnCache dnCache = new DnCache( 10 );
+
+        try
+        {
+            dnCache.getDn( schemaManager, "this is not a dn" );
+            fail();
+        }
+        catch ( LdapInvalidDnException lide )
+        {
+            // Expected
+        }
+
+        assertEquals( 0, dnCache.size() );
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.directory.shared.ldap.model.message.LdapResult;
+import org.apache.directory.shared.ldap.model.name.Dn;
+
+
+/**
+ * The outcome of a {@link BulkWriter} run : the number of succeeded and failed
+ * operations, the failures, and the throughput and latency statistics.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class BulkWriteResult
+{
+    /** The number of operations which have succeeded */
+    private int successCount;
+
+    /** The failed operations */
+    private List<Failure> failures = new ArrayList<Failure>();
+
+    /** The operations which have not been answered before the timeout */
+    private List<Dn> uncompleted = new ArrayList<Dn>();
+
+    /** The number of operations answered by the server */
+    private int answeredCount;
+
+    /** The sum of the operations latencies, in nanoseconds */
+    private long totalLatency;
+
+    /** The lowest operation latency, in nanoseconds */
+    private long minLatency = Long.MAX_VALUE;
+
+    /** The highest operation latency, in nanoseconds */
+    private long maxLatency;
+
+    /** The time the whole run took, in nanoseconds */
+    private long elapsedTime;
+
+
+    /**
+     * A failed operation : either the server has returned an error, or
+     * the request could not be sent.
+     */
+    public static class Failure
+    {
+        /** The entry the operation was applied on */
+        private Dn dn;
+
+        /** The result returned by the server, if any */
+        private LdapResult ldapResult;
+
+        /** The exception raised while sending the request, if any */
+        private Throwable cause;
+
+
+        /**
+         * Creates a new instance of Failure.
+         *
+         * @param dn The entry the operation was applied on
+         * @param ldapResult The result returned by the server, if any
+         * @param cause The exception raised while sending the request, if any
+         */
+        public Failure( Dn dn, LdapResult ldapResult, Throwable cause )
+        {
+            this.dn = dn;
+            this.ldapResult = ldapResult;
+            this.cause = cause;
+        }
+
+
+        /**
+         * @return The entry the operation was applied on
+         */
+        public Dn getDn()
+        {
+            return dn;
+        }
+
+
+        /**
+         * @return The result returned by the server, or null if the request has not been sent
+         */
+        public LdapResult getLdapResult()
+        {
+            return ldapResult;
+        }
+
+
+        /**
+         * @return The exception raised while sending the request, or null
+         */
+        public Throwable getCause()
+        {
+            return cause;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString()
+        {
+            if ( ldapResult != null )
+            {
+                return dn + " : " + ldapResult.getResultCode() + " " + ldapResult.getDiagnosticMessage();
+            }
+
+            return dn + " : " + cause;
+        }
+    }
+
+
+    /**
+     * Records a succeeded operation.
+     *
+     * @param latency The operation latency, in nanoseconds
+     */
+    synchronized void addSuccess( long latency )
+    {
+        successCount++;
+        addLatency( latency );
+    }
+
+
+    /**
+     * Records an operation which has been rejected by the server.
+     *
+     * @param dn The entry the operation was applied on
+     * @param ldapResult The result returned by the server
+     * @param latency The operation latency, in nanoseconds
+     */
+    synchronized void addFailure( Dn dn, LdapResult ldapResult, long latency )
+    {
+        failures.add( new Failure( dn, ldapResult, null ) );
+        addLatency( latency );
+    }
+
+
+    /**
+     * Records an operation which could not be sent, or has been cancelled.
+     *
+     * @param dn The entry the operation was applied on
+     * @param cause The failure cause
+     */
+    synchronized void addFailure( Dn dn, Throwable cause )
+    {
+        failures.add( new Failure( dn, null, cause ) );
+    }
+
+
+    /**
+     * Records an operation which has not been answered before the timeout.
+     *
+     * @param dn The entry the operation was applied on
+     */
+    synchronized void addUncompleted( Dn dn )
+    {
+        uncompleted.add( dn );
+    }
+
+
+    private void addLatency( long latency )
+    {
+        answeredCount++;
+        totalLatency += latency;
+        minLatency = Math.min( minLatency, latency );
+        maxLatency = Math.max( maxLatency, latency );
+    }
+
+
+    /**
+     * @param elapsedTime The time the whole run took, in nanoseconds
+     */
+    synchronized void setElapsedTime( long elapsedTime )
+    {
+        this.elapsedTime = elapsedTime;
+    }
+
+
+    /**
+     * @return The number of operations which have succeeded
+     */
+    public synchronized int getSuccessCount()
+    {
+        return successCount;
+    }
+
+
+    /**
+     * @return The number of operations which have failed
+     */
+    public synchronized int getFailureCount()
+    {
+        return failures.size();
+    }
+
+
+    /**
+     * @return The failed operations, in the order their failure has been received
+     */
+    public synchronized List<Failure> getFailures()
+    {
+        return Collections.unmodifiableList( new ArrayList<Failure>( failures ) );
+    }
+
+
+    /**
+     * @return The number of operations which have not been answered before the timeout
+     */
+    public synchronized int getUncompletedCount()
+    {
+        return uncompleted.size();
+    }
+
+
+    /**
+     * @return The entries whose operation has not been answered before the timeout. Their
+     * outcome on the server is unknown.
+     */
+    public synchronized List<Dn> getUncompleted()
+    {
+        return Collections.unmodifiableList( new ArrayList<Dn>( uncompleted ) );
+    }
+
+
+    /**
+     * @return The time the whole run took, in milliseconds
+     */
+    public synchronized long getElapsedTime()
+    {
+        return elapsedTime / 1000000L;
+    }
+
+
+    /**
+     * @return The number of operations processed per second
+     */
+    public synchronized double getThroughput()
+    {
+        if ( elapsedTime == 0 )
+        {
+            return 0;
+        }
+
+        return ( successCount + failures.size() ) * 1000000000.0 / elapsedTime;
+    }
+
+
+    /**
+     * @return The mean latency of the answered operations, in milliseconds
+     */
+    public synchronized double getMeanLatency()
+    {
+        if ( answeredCount == 0 )
+        {
+            return 0;
+        }
+
+        return totalLatency / 1000000.0 / answeredCount;
+    }
+
+
+    /**
+     * @return The lowest latency of the answered operations, in milliseconds
+     */
+    public synchronized double getMinLatency()
+    {
+        if ( minLatency == Long.MAX_VALUE )
+        {
+            return 0;
+        }
+
+        return minLatency / 1000000.0;
+    }
+
+
+    /**
+     * @return The highest latency of the answered operations, in milliseconds
+     */
+    public synchronized double getMaxLatency()
+    {
+        return maxLatency / 1000000.0;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "Bulk write : " ).append( getSuccessCount() ).append( " succeeded, " );
+        sb.append( getFailureCount() ).append( " failed, " );
+        sb.append( getUncompletedCount() ).append( " uncompleted in " ).append( getElapsedTime() ).append( " ms, " );
+        sb.append( String.format( "%.1f ops/s, latency min/mean/max = %.2f/%.2f/%.2f ms", getThroughput(),
+            getMinLatency(), getMeanLatency(), getMaxLatency() ) );
+
+        return sb.toString();
+    }
+}
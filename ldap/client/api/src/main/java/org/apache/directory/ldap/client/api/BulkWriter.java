@@ -0,0 +1,592 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.apache.directory.ldap.client.api.future.ResponseListener;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.entry.Modification;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.ldif.LdifEntry;
+import org.apache.directory.shared.ldap.model.ldif.LdifReader;
+import org.apache.directory.shared.ldap.model.message.AddRequest;
+import org.apache.directory.shared.ldap.model.message.AddRequestImpl;
+import org.apache.directory.shared.ldap.model.message.AddResponse;
+import org.apache.directory.shared.ldap.model.message.DeleteRequest;
+import org.apache.directory.shared.ldap.model.message.DeleteRequestImpl;
+import org.apache.directory.shared.ldap.model.message.DeleteResponse;
+import org.apache.directory.shared.ldap.model.message.ModifyDnRequest;
+import org.apache.directory.shared.ldap.model.message.ModifyDnRequestImpl;
+import org.apache.directory.shared.ldap.model.message.ModifyDnResponse;
+import org.apache.directory.shared.ldap.model.message.ModifyRequest;
+import org.apache.directory.shared.ldap.model.message.ModifyRequestImpl;
+import org.apache.directory.shared.ldap.model.message.ModifyResponse;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.message.ResultResponse;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.name.Rdn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Applies a large number of add, modify, delete and moddn operations on a connection,
+ * keeping a window of requests in flight instead of waiting for each response before
+ * sending the next request. The results are gathered into a {@link BulkWriteResult}.
+ * <br/>
+ * The operations are sent in order. As the server may process them concurrently, an
+ * operation is held until the operations in flight on the same entry, on its parent or
+ * on its children have been answered : a hierarchical LDIF file can be imported as is.
+ * <br/>
+ * If no response is received during the timeout, the remaining operations are not sent,
+ * the unanswered ones are abandoned, and all of them are reported as uncompleted.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class BulkWriter
+{
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger( BulkWriter.class );
+
+    /** The default number of requests in flight */
+    public static final int DEFAULT_WINDOW = 128;
+
+    /** The connection used to send the requests */
+    private LdapAsyncConnection connection;
+
+    /** The maximum number of requests in flight */
+    private int window;
+
+    /** The time to wait for a response before giving up, in milliseconds */
+    private long timeout = LdapConnectionConfig.DEFAULT_TIMEOUT;
+
+
+    /**
+     * The requests in flight during a run : their number is bounded by the window size,
+     * and an operation is held while an operation on the same entry, on its parent or on
+     * one of its children is in flight, so that the server can't process them out of order.
+     * All the fields are accessed with the window's lock held.
+     */
+    private static class Window
+    {
+        /** The maximum number of requests in flight */
+        private final int size;
+
+        /** The time to wait for a response before giving up, in nanoseconds */
+        private final long timeout;
+
+        /** The number of requests in flight */
+        private int inFlightCount;
+
+        /** The normalized Dns of the entries the requests in flight apply to, with their count */
+        private final Map<String, Integer> inFlightDns = new HashMap<String, Integer>();
+
+        /** The normalized Dns of the parents of these entries, with their count */
+        private final Map<String, Integer> inFlightParents = new HashMap<String, Integer>();
+
+        /** The operations waiting for their response */
+        private final Map<ResultListener<?>, Dn> pending = new HashMap<ResultListener<?>, Dn>();
+
+        /** Tells if the server has stopped answering */
+        private boolean stalled;
+
+        /** The statistics to update */
+        private final BulkWriteResult result = new BulkWriteResult();
+
+        /** The time the run has started */
+        private final long start = System.nanoTime();
+
+
+        private Window( int size, long timeout )
+        {
+            this.size = size;
+            this.timeout = TimeUnit.MILLISECONDS.toNanos( timeout );
+        }
+
+
+        /**
+         * Waits until a request on an entry can be sent, and reserves its slot.
+         *
+         * @return false if no response has been received during the timeout
+         */
+        private synchronized boolean acquire( Dn dn ) throws InterruptedException
+        {
+            long deadline = System.nanoTime() + timeout;
+
+            while ( !stalled && ( ( inFlightCount >= size ) || dependsOnInFlight( dn ) ) )
+            {
+                long remaining = deadline - System.nanoTime();
+
+                if ( remaining <= 0L )
+                {
+                    LOG.debug( "No response received in time, giving up" );
+                    stalled = true;
+                }
+                else
+                {
+                    TimeUnit.NANOSECONDS.timedWait( this, remaining );
+                }
+            }
+
+            if ( stalled )
+            {
+                return false;
+            }
+
+            inFlightCount++;
+            increment( inFlightDns, dn.getNormName() );
+            increment( inFlightParents, dn.getParent().getNormName() );
+
+            return true;
+        }
+
+
+        /**
+         * Tells if an operation on the entry, on its parent or on one of its children is in flight
+         */
+        private boolean dependsOnInFlight( Dn dn )
+        {
+            String normName = dn.getNormName();
+
+            return inFlightDns.containsKey( normName ) || inFlightParents.containsKey( normName )
+                || inFlightDns.containsKey( dn.getParent().getNormName() );
+        }
+
+
+        /**
+         * Releases the slot of an operation
+         */
+        private synchronized void release( Dn dn )
+        {
+            inFlightCount--;
+            decrement( inFlightDns, dn.getNormName() );
+            decrement( inFlightParents, dn.getParent().getNormName() );
+            notifyAll();
+        }
+
+
+        private static void increment( Map<String, Integer> counts, String key )
+        {
+            Integer count = counts.get( key );
+            counts.put( key, ( count == null ) ? 1 : count + 1 );
+        }
+
+
+        private static void decrement( Map<String, Integer> counts, String key )
+        {
+            Integer count = counts.get( key );
+
+            if ( ( count == null ) || ( count == 1 ) )
+            {
+                counts.remove( key );
+            }
+            else
+            {
+                counts.put( key, count - 1 );
+            }
+        }
+
+
+        /**
+         * Listens to the response of a sent request
+         */
+        private <R extends ResultResponse> void listen( ResponseFuture<R> future, ResultListener<R> listener )
+        {
+            synchronized ( this )
+            {
+                listener.future = future;
+                pending.put( listener, listener.dn );
+            }
+
+            future.setResponseListener( listener );
+        }
+
+
+        /**
+         * Removes an answered operation from the pending ones, and releases its slot
+         *
+         * @return false if the operation has already been reported as uncompleted
+         */
+        private synchronized boolean complete( ResultListener<?> listener )
+        {
+            if ( pending.remove( listener ) == null )
+            {
+                return false;
+            }
+
+            release( listener.dn );
+
+            return true;
+        }
+
+
+        /**
+         * Records a request which could not be sent, and releases its slot
+         */
+        private void sendFailed( Dn dn, Throwable cause )
+        {
+            result.addFailure( dn, cause );
+            release( dn );
+        }
+
+
+        /**
+         * Records an operation which has not been sent because the server has stopped answering
+         */
+        private void notSent( Dn dn )
+        {
+            result.addUncompleted( dn );
+        }
+
+
+        /**
+         * Waits until all the requests in flight have been answered, or until no response
+         * has been received during the timeout. The operations which have not been
+         * answered are then abandoned, and reported as uncompleted.
+         */
+        private BulkWriteResult waitForCompletion() throws InterruptedException
+        {
+            List<ResultListener<?>> abandoned = new ArrayList<ResultListener<?>>();
+
+            synchronized ( this )
+            {
+                long deadline = System.nanoTime() + timeout;
+                int answered = inFlightCount;
+
+                while ( !stalled && ( inFlightCount > 0 ) )
+                {
+                    if ( inFlightCount < answered )
+                    {
+                        // Some responses have been received, wait again for the next ones
+                        answered = inFlightCount;
+                        deadline = System.nanoTime() + timeout;
+                    }
+
+                    long remaining = deadline - System.nanoTime();
+
+                    if ( remaining <= 0L )
+                    {
+                        stalled = true;
+                    }
+                    else
+                    {
+                        TimeUnit.NANOSECONDS.timedWait( this, remaining );
+                    }
+                }
+
+                for ( Map.Entry<ResultListener<?>, Dn> entry : pending.entrySet() )
+                {
+                    LOG.debug( "No response received for {}", entry.getValue() );
+                    result.addUncompleted( entry.getValue() );
+                    abandoned.add( entry.getKey() );
+                }
+
+                pending.clear();
+            }
+
+            // Abandon the unanswered operations, so that the connection forgets them
+            for ( ResultListener<?> listener : abandoned )
+            {
+                try
+                {
+                    listener.future.cancel( true );
+                }
+                catch ( RuntimeException re )
+                {
+                    LOG.debug( "Cannot abandon the operation on {} : {}", listener.dn, re.getMessage() );
+                }
+            }
+
+            result.setElapsedTime( System.nanoTime() - start );
+
+            LOG.debug( "{}", result );
+
+            return result;
+        }
+    }
+
+
+    /**
+     * A listener recording the result of an operation, and releasing its slot in the window.
+     */
+    private static class ResultListener<R extends ResultResponse> implements ResponseListener<R>
+    {
+        /** The entry the operation is applied on */
+        private Dn dn;
+
+        /** The time the request has been sent */
+        private long start;
+
+        /** The window the request has been sent in */
+        private Window window;
+
+        /** The operation's future */
+        private ResponseFuture<R> future;
+
+
+        private ResultListener( Dn dn, Window window )
+        {
+            this.dn = dn;
+            this.window = window;
+            start = System.nanoTime();
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public void responseReceived( ResponseFuture<R> future, R response )
+        {
+            long latency = System.nanoTime() - start;
+
+            // The operation may already have been reported as uncompleted
+            if ( !window.complete( this ) )
+            {
+                return;
+            }
+
+            if ( response.getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
+            {
+                window.result.addSuccess( latency );
+            }
+            else
+            {
+                window.result.addFailure( dn, response.getLdapResult(), latency );
+            }
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public void operationCancelled( ResponseFuture<R> future )
+        {
+            if ( !window.complete( this ) )
+            {
+                return;
+            }
+
+            Throwable cause = future.getCause();
+
+            if ( cause == null )
+            {
+                cause = new LdapException( "The operation has been cancelled" );
+            }
+
+            window.result.addFailure( dn, cause );
+        }
+    }
+
+
+    /**
+     * Creates a new instance of BulkWriter, with the default window.
+     *
+     * @param connection The connection used to send the requests
+     */
+    public BulkWriter( LdapAsyncConnection connection )
+    {
+        this( connection, DEFAULT_WINDOW );
+    }
+
+
+    /**
+     * Creates a new instance of BulkWriter.
+     *
+     * @param connection The connection used to send the requests
+     * @param window The maximum number of requests in flight
+     */
+    public BulkWriter( LdapAsyncConnection connection, int window )
+    {
+        if ( window <= 0 )
+        {
+            throw new IllegalArgumentException( "The window must be positive : " + window );
+        }
+
+        this.connection = connection;
+        this.window = window;
+
+        if ( connection.getConfig() != null )
+        {
+            timeout = connection.getConfig().getDefaultTimeout();
+        }
+    }
+
+
+    /**
+     * Sets the time to wait for a response before giving up. The operations still
+     * unanswered when this delay expires are reported as uncompleted in the
+     * {@link BulkWriteResult}. It defaults to the connection's default timeout.
+     *
+     * @param timeout The timeout, in milliseconds
+     */
+    public void setTimeout( long timeout )
+    {
+        if ( timeout <= 0 )
+        {
+            throw new IllegalArgumentException( "The timeout must be positive : " + timeout );
+        }
+
+        this.timeout = timeout;
+    }
+
+
+    /**
+     * Adds all the given entries, and waits for all the responses. If no response is
+     * received during the timeout, the remaining entries are not sent.
+     *
+     * @param entries The entries to add
+     * @return The results of the run
+     * @throws InterruptedException If the thread is interrupted while waiting for the responses
+     */
+    public BulkWriteResult add( Iterator<Entry> entries ) throws InterruptedException
+    {
+        Window run = new Window( window, timeout );
+
+        while ( entries.hasNext() )
+        {
+            Entry entry = entries.next();
+
+            if ( !run.acquire( entry.getDn() ) )
+            {
+                run.notSent( entry.getDn() );
+                continue;
+            }
+
+            AddRequest addRequest = new AddRequestImpl();
+            addRequest.setEntry( entry );
+
+            try
+            {
+                ResultListener<AddResponse> listener = new ResultListener<AddResponse>( entry.getDn(), run );
+                run.listen( connection.addAsync( addRequest ), listener );
+            }
+            catch ( LdapException le )
+            {
+                LOG.debug( "Cannot send the AddRequest for {} : {}", entry.getDn(), le.getMessage() );
+                run.sendFailed( entry.getDn(), le );
+            }
+        }
+
+        return run.waitForCompletion();
+    }
+
+
+    /**
+     * Applies all the entries read by the LdifReader : the entries without changetype
+     * and the add changes are added, the modify, delete, modrdn and moddn changes
+     * are applied on the existing entries. Waits for all the responses. If no response
+     * is received during the timeout, the remaining entries are not sent.
+     *
+     * @param reader The LdifReader to read the entries from
+     * @return The results of the run
+     * @throws InterruptedException If the thread is interrupted while waiting for the responses
+     */
+    public BulkWriteResult apply( LdifReader reader ) throws InterruptedException
+    {
+        Window run = new Window( window, timeout );
+
+        for ( LdifEntry ldifEntry : reader )
+        {
+            if ( !run.acquire( ldifEntry.getDn() ) )
+            {
+                run.notSent( ldifEntry.getDn() );
+                continue;
+            }
+
+            try
+            {
+                send( ldifEntry, run );
+            }
+            catch ( LdapException le )
+            {
+                LOG.debug( "Cannot send the request for {} : {}", ldifEntry.getDn(), le.getMessage() );
+                run.sendFailed( ldifEntry.getDn(), le );
+            }
+        }
+
+        return run.waitForCompletion();
+    }
+
+
+    /**
+     * Sends the request corresponding to a LDIF entry.
+     */
+    private void send( LdifEntry ldifEntry, Window run ) throws LdapException
+    {
+        Dn dn = ldifEntry.getDn();
+
+        if ( ldifEntry.isEntry() || ldifEntry.isChangeAdd() )
+        {
+            AddRequest addRequest = new AddRequestImpl();
+            addRequest.setEntry( ldifEntry.getEntry() );
+
+            ResultListener<AddResponse> listener = new ResultListener<AddResponse>( dn, run );
+            run.listen( connection.addAsync( addRequest ), listener );
+        }
+        else if ( ldifEntry.isChangeModify() )
+        {
+            ModifyRequest modifyRequest = new ModifyRequestImpl();
+            modifyRequest.setName( dn );
+
+            for ( Modification modification : ldifEntry.getModifications() )
+            {
+                modifyRequest.addModification( modification );
+            }
+
+            ResultListener<ModifyResponse> listener = new ResultListener<ModifyResponse>( dn, run );
+            run.listen( connection.modifyAsync( modifyRequest ), listener );
+        }
+        else if ( ldifEntry.isChangeDelete() )
+        {
+            DeleteRequest deleteRequest = new DeleteRequestImpl();
+            deleteRequest.setName( dn );
+
+            ResultListener<DeleteResponse> listener = new ResultListener<DeleteResponse>( dn, run );
+            run.listen( connection.deleteAsync( deleteRequest ), listener );
+        }
+        else if ( ldifEntry.isChangeModDn() || ldifEntry.isChangeModRdn() )
+        {
+            ModifyDnRequest modifyDnRequest = new ModifyDnRequestImpl();
+            modifyDnRequest.setName( dn );
+            modifyDnRequest.setNewRdn( new Rdn( ldifEntry.getNewRdn() ) );
+            modifyDnRequest.setDeleteOldRdn( ldifEntry.isDeleteOldRdn() );
+
+            if ( ldifEntry.getNewSuperior() != null )
+            {
+                modifyDnRequest.setNewSuperior( new Dn( ldifEntry.getNewSuperior() ) );
+            }
+
+            ResultListener<ModifyDnResponse> listener = new ResultListener<ModifyDnResponse>( dn, run );
+            run.listen( connection.modifyDnAsync( modifyDnRequest ), listener );
+        }
+        else
+        {
+            throw new LdapException( "Unsupported LDIF change type : " + ldifEntry.getChangeType() );
+        }
+    }
+}
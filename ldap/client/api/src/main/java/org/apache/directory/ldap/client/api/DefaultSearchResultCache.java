@@ -0,0 +1,679 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.directory.shared.ldap.codec.api.CodecControl;
+import org.apache.directory.shared.ldap.codec.api.LdapApiServiceFactory;
+import org.apache.directory.shared.ldap.model.filter.CanonicalFilter;
+import org.apache.directory.shared.ldap.model.message.AliasDerefMode;
+import org.apache.directory.shared.ldap.model.message.Control;
+import org.apache.directory.shared.ldap.model.message.LdapResult;
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.SearchRequest;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+import org.apache.directory.shared.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.shared.ldap.model.message.SearchResultReference;
+import org.apache.directory.shared.ldap.model.message.SearchResultReferenceImpl;
+import org.apache.directory.shared.ldap.model.message.SearchScope;
+import org.apache.directory.shared.ldap.model.message.controls.PagedResults;
+import org.apache.directory.shared.ldap.model.message.controls.PersistentSearch;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.util.ConcurrentLruCache;
+import org.apache.directory.shared.util.Strings;
+
+
+/**
+ * The default {@link SearchResultCache}. It holds a bounded number of entries, the
+ * least recently used results being evicted first, and the results expire after a
+ * given delay. Only the searches returning a few entries are cached.
+ * <br/>
+ * The results are cached by base Dn, scope, alias dereferencing mode, size limit,
+ * typesOnly flag, requested attributes and controls, and by the canonical form of the
+ * filter, so that equivalent filters share the same results.
+ * <br/>
+ * The searches using the paged results, persistent search or sync request controls
+ * are not cached. The cached results are invalidated by the writes done through the
+ * connections using the cache, but not by the ones done by other clients, nor by the
+ * extended operations : the expiration delay bounds how long such changes are not seen.
+ * <br/>
+ * The cached results are indexed by their base Dn : an invalidation compares the modified
+ * entry with each distinct cached base Dn, and only removes the results based above or
+ * below it. Its cost grows with the number of distinct base Dns, not with the number of
+ * cached results, and it's almost free when the cache is empty.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DefaultSearchResultCache implements SearchResultCache
+{
+    /** The default maximum number of cached entries */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** The default maximum number of entries a cached search can return */
+    public static final int DEFAULT_MAX_ENTRIES_PER_RESULT = 100;
+
+    /** The sync request control OID */
+    private static final String SYNC_REQUEST_OID = "1.3.6.1.4.1.4203.1.9.1.1";
+
+    /** The cached responses */
+    private final ConcurrentLruCache<SearchKey, List<Response>> cache;
+
+    /** The SchemaManager used to make the filters canonical, if any */
+    private final SchemaManager schemaManager;
+
+    /** The maximum number of entries a cached search can return */
+    private final int maxEntriesPerResult;
+
+    /** The maximum number of cached entries */
+    private final int maxEntries;
+
+    /** The keys of the cached results, by normalized base Dn. Some may have been evicted */
+    private final ConcurrentMap<String, BaseKeys> keysByBase = new ConcurrentHashMap<String, BaseKeys>();
+
+    /** The approximate number of indexed keys */
+    private final AtomicInteger indexedCount = new AtomicInteger();
+
+    /** The version, incremented by each invalidation */
+    private final AtomicLong version = new AtomicLong();
+
+    /** The number of results removed by the invalidations */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+
+    /**
+     * Creates a new DefaultSearchResultCache, holding at most DEFAULT_MAX_ENTRIES entries,
+     * from searches returning at most DEFAULT_MAX_ENTRIES_PER_RESULT entries.
+     *
+     * @param timeToLive The delay after which the results expire
+     * @param unit The unit of the delay
+     */
+    public DefaultSearchResultCache( long timeToLive, TimeUnit unit )
+    {
+        this( null, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_ENTRIES_PER_RESULT, timeToLive, unit );
+    }
+
+
+    /**
+     * Creates a new DefaultSearchResultCache.
+     *
+     * @param schemaManager The SchemaManager used to make the filters canonical, or null
+     * if the attributes names should only be lower cased
+     * @param maxEntries The maximum number of cached entries
+     * @param maxEntriesPerResult The maximum number of entries a cached search can return
+     * @param timeToLive The delay after which the results expire
+     * @param unit The unit of the delay
+     */
+    public DefaultSearchResultCache( SchemaManager schemaManager, int maxEntries, int maxEntriesPerResult,
+        long timeToLive, TimeUnit unit )
+    {
+        if ( timeToLive <= 0 )
+        {
+            throw new IllegalArgumentException( "Invalid time to live : " + timeToLive );
+        }
+
+        this.schemaManager = schemaManager;
+        this.maxEntriesPerResult = maxEntriesPerResult;
+        this.maxEntries = maxEntries;
+
+        // Each result weighs its number of responses
+        cache = new ConcurrentLruCache<SearchKey, List<Response>>( maxEntries,
+            new ConcurrentLruCache.Weigher<SearchKey, List<Response>>()
+            {
+                public int weigh( SearchKey key, List<Response> responses )
+                {
+                    return responses.size();
+                }
+            }, timeToLive, unit, ConcurrentLruCache.DEFAULT_CONCURRENCY_LEVEL );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isCacheable( SearchRequest searchRequest )
+    {
+        return createKey( searchRequest ) != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Response> get( SearchRequest searchRequest )
+    {
+        SearchKey key = createKey( searchRequest );
+
+        if ( key == null )
+        {
+            return null;
+        }
+
+        List<Response> responses = cache.get( key );
+
+        if ( responses == null )
+        {
+            return null;
+        }
+
+        return copy( responses, searchRequest.getMessageId() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getMaxEntriesPerResult()
+    {
+        return maxEntriesPerResult;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getVersion()
+    {
+        return version.get();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void put( SearchRequest searchRequest, List<Response> responses, long version )
+    {
+        if ( ( responses.size() - 1 > maxEntriesPerResult ) || ( version != this.version.get() ) )
+        {
+            return;
+        }
+
+        for ( Response response : responses )
+        {
+            if ( !( response instanceof SearchResultEntry ) && !( response instanceof SearchResultReference )
+                && !( response instanceof SearchResultDone ) )
+            {
+                // Intermediate responses are not cached
+                return;
+            }
+        }
+
+        SearchKey key = createKey( searchRequest );
+
+        if ( key == null )
+        {
+            return;
+        }
+
+        cache.put( key, copy( responses, 0 ) );
+        index( key );
+
+        // The cache may have been invalidated while the results were put : the
+        // invalidation might not have seen them
+        if ( version != this.version.get() )
+        {
+            cache.remove( key );
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void invalidate( Dn dn )
+    {
+        // Increment the version first, so that the searches running now are not cached
+        version.incrementAndGet();
+
+        if ( keysByBase.isEmpty() )
+        {
+            return;
+        }
+
+        for ( Map.Entry<String, BaseKeys> entry : keysByBase.entrySet() )
+        {
+            BaseKeys baseKeys = entry.getValue();
+
+            if ( ( baseKeys.base.isDescendantOf( dn ) || dn.isDescendantOf( baseKeys.base ) )
+                && keysByBase.remove( entry.getKey(), baseKeys ) )
+            {
+                indexedCount.addAndGet( -baseKeys.keys.size() );
+
+                for ( SearchKey key : baseKeys.keys.keySet() )
+                {
+                    if ( cache.remove( key ) != null )
+                    {
+                        invalidationCount.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear()
+    {
+        version.incrementAndGet();
+        cache.clear();
+        keysByBase.clear();
+        indexedCount.set( 0 );
+    }
+
+
+    /**
+     * @return The number of searches which results have been found in the cache
+     */
+    public long getHitCount()
+    {
+        return cache.getHitCount();
+    }
+
+
+    /**
+     * @return The number of searches which results have not been found in the cache,
+     * or have expired
+     */
+    public long getMissCount()
+    {
+        return cache.getMissCount();
+    }
+
+
+    /**
+     * @return The proportion of searches which results have been found in the cache,
+     * between 0 and 1
+     */
+    public double getHitRate()
+    {
+        long hits = cache.getHitCount();
+        long total = hits + cache.getMissCount();
+
+        return total == 0L ? 0d : ( double ) hits / total;
+    }
+
+
+    /**
+     * @return The number of results removed because an entry has been modified
+     */
+    public long getInvalidationCount()
+    {
+        return invalidationCount.get();
+    }
+
+
+    /**
+     * @return The number of results evicted because the cache was full
+     */
+    public long getEvictionCount()
+    {
+        return cache.getEvictionCount();
+    }
+
+
+    /**
+     * @return The number of cached results
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+
+    /**
+     * @return The number of base Dns in the index. Some of them may have no cached
+     * results left, until the index is pruned
+     */
+    int getIndexedBaseCount()
+    {
+        return keysByBase.size();
+    }
+
+
+    /**
+     * Resets the hit, miss, eviction and invalidation counters.
+     */
+    public void resetStatistics()
+    {
+        cache.resetStatistics();
+        invalidationCount.set( 0L );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString()
+    {
+        return "DefaultSearchResultCache : " + size() + " results, hit rate " + getHitRate() + ", "
+            + getInvalidationCount() + " invalidations";
+    }
+
+
+    /**
+     * Adds a cached key to the index. A key added to the keys of a base Dn which are
+     * concurrently removed is added again : the removal may not have seen it.
+     */
+    private void index( SearchKey key )
+    {
+        while ( true )
+        {
+            BaseKeys baseKeys = keysByBase.get( key.normBase );
+
+            if ( baseKeys == null )
+            {
+                baseKeys = new BaseKeys( key.base );
+                BaseKeys previous = keysByBase.putIfAbsent( key.normBase, baseKeys );
+
+                if ( previous != null )
+                {
+                    baseKeys = previous;
+                }
+            }
+
+            boolean added = baseKeys.keys.put( key, Boolean.TRUE ) == null;
+
+            if ( keysByBase.get( key.normBase ) == baseKeys )
+            {
+                // The evicted and expired results are not removed from the index : it's
+                // pruned once it holds twice as many keys as the cache can
+                if ( added && ( indexedCount.incrementAndGet() > 2 * maxEntries ) )
+                {
+                    pruneIndex();
+                }
+
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Removes the keys of the evicted and expired results from the index, and the base
+     * Dns which have no cached results left
+     */
+    private synchronized void pruneIndex()
+    {
+        if ( indexedCount.get() <= 2 * maxEntries )
+        {
+            // Already pruned by another thread
+            return;
+        }
+
+        Set<SearchKey> cachedKeys = new HashSet<SearchKey>( cache.keys() );
+        int count = 0;
+
+        for ( Map.Entry<String, BaseKeys> entry : keysByBase.entrySet() )
+        {
+            BaseKeys baseKeys = entry.getValue();
+
+            for ( SearchKey key : baseKeys.keys.keySet() )
+            {
+                if ( !cachedKeys.contains( key ) )
+                {
+                    baseKeys.keys.remove( key );
+                }
+            }
+
+            if ( baseKeys.keys.isEmpty() )
+            {
+                keysByBase.remove( entry.getKey(), baseKeys );
+            }
+            else
+            {
+                count += baseKeys.keys.size();
+            }
+        }
+
+        indexedCount.set( count );
+    }
+
+
+    /**
+     * Copy the responses, so that the cached entries can't be modified
+     */
+    private static List<Response> copy( List<Response> responses, int messageId )
+    {
+        List<Response> copies = new ArrayList<Response>( responses.size() );
+
+        for ( Response response : responses )
+        {
+            Response copy;
+
+            if ( response instanceof SearchResultEntry )
+            {
+                SearchResultEntry entry = new SearchResultEntryImpl( messageId );
+                entry.setEntry( ( ( SearchResultEntry ) response ).getEntry().clone() );
+                copy = entry;
+            }
+            else if ( response instanceof SearchResultReference )
+            {
+                SearchResultReference reference = new SearchResultReferenceImpl( messageId );
+                reference.setReferral( ( ( SearchResultReference ) response ).getReferral() );
+                copy = reference;
+            }
+            else
+            {
+                SearchResultDone done = new SearchResultDoneImpl( messageId );
+                LdapResult result = ( ( SearchResultDone ) response ).getLdapResult();
+                done.getLdapResult().setResultCode( result.getResultCode() );
+                done.getLdapResult().setMatchedDn( result.getMatchedDn() );
+                done.getLdapResult().setDiagnosticMessage( result.getDiagnosticMessage() );
+                done.getLdapResult().setReferral( result.getReferral() );
+                copy = done;
+            }
+
+            Collection<Control> controls = response.getControls().values();
+            copy.addAllControls( controls.toArray( new Control[controls.size()] ) );
+            copies.add( copy );
+        }
+
+        return copies;
+    }
+
+
+    /**
+     * Creates the key of a search request
+     *
+     * @return The key, or null if the search can't be cached
+     */
+    private SearchKey createKey( SearchRequest searchRequest )
+    {
+        if ( ( searchRequest.getBase() == null ) || ( searchRequest.getFilter() == null ) )
+        {
+            return null;
+        }
+
+        // The controls, sorted by OID
+        Map<String, Control> controls = new TreeMap<String, Control>( searchRequest.getControls() );
+
+        if ( controls.containsKey( PagedResults.OID ) || controls.containsKey( PersistentSearch.OID )
+            || controls.containsKey( SYNC_REQUEST_OID ) )
+        {
+            return null;
+        }
+
+        StringBuilder controlsKey = new StringBuilder();
+
+        for ( Control control : controls.values() )
+        {
+            byte[] value;
+
+            try
+            {
+                CodecControl<?> codecControl;
+
+                if ( control instanceof CodecControl )
+                {
+                    codecControl = ( CodecControl<?> ) control;
+                }
+                else
+                {
+                    codecControl = LdapApiServiceFactory.getSingleton().newControl( control );
+                }
+
+                value = codecControl.getValue();
+            }
+            catch ( RuntimeException re )
+            {
+                // The control can't be encoded
+                return null;
+            }
+
+            controlsKey.append( control.getOid() ).append( control.isCritical() ? ":T:" : ":F:" );
+
+            if ( value != null )
+            {
+                controlsKey.append( Strings.dumpBytes( value ) );
+            }
+
+            controlsKey.append( ';' );
+        }
+
+        Set<String> attributes = new TreeSet<String>();
+
+        for ( String attribute : searchRequest.getAttributes() )
+        {
+            attributes.add( Strings.toLowerCase( Strings.trim( attribute ) ) );
+        }
+
+        CanonicalFilter filter;
+
+        try
+        {
+            filter = new CanonicalFilter( schemaManager, searchRequest.getFilter() );
+        }
+        catch ( IllegalArgumentException iae )
+        {
+            // The filter contains undefined assertions, it can't be told apart from other filters
+            return null;
+        }
+
+        return new SearchKey( searchRequest.getBase(), searchRequest.getScope(), searchRequest.getDerefAliases(),
+            searchRequest.getSizeLimit(), searchRequest.getTypesOnly(), filter, attributes, controlsKey.toString() );
+    }
+
+
+    /**
+     * The keys of the results cached for a base Dn
+     */
+    private static final class BaseKeys
+    {
+        private final Dn base;
+        private final ConcurrentMap<SearchKey, Boolean> keys = new ConcurrentHashMap<SearchKey, Boolean>();
+
+
+        private BaseKeys( Dn base )
+        {
+            this.base = base;
+        }
+    }
+
+
+    /**
+     * The key of a cached search
+     */
+    private static final class SearchKey
+    {
+        private final Dn base;
+        private final String normBase;
+        private final SearchScope scope;
+        private final AliasDerefMode derefAliases;
+        private final long sizeLimit;
+        private final boolean typesOnly;
+        private final CanonicalFilter filter;
+        private final Set<String> attributes;
+        private final String controls;
+        private final int hashCode;
+
+
+        private SearchKey( Dn base, SearchScope scope, AliasDerefMode derefAliases, long sizeLimit,
+            boolean typesOnly, CanonicalFilter filter, Set<String> attributes, String controls )
+        {
+            this.base = base;
+            this.normBase = base.getNormName();
+            this.scope = scope;
+            this.derefAliases = derefAliases;
+            this.sizeLimit = sizeLimit;
+            this.typesOnly = typesOnly;
+            this.filter = filter;
+            this.attributes = attributes;
+            this.controls = controls;
+
+            int h = 37;
+            h = h * 17 + normBase.hashCode();
+            h = h * 17 + filter.hashCode();
+            h = h * 17 + scope.hashCode();
+            h = h * 17 + attributes.hashCode();
+            hashCode = h;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+
+            if ( !( obj instanceof SearchKey ) )
+            {
+                return false;
+            }
+
+            SearchKey that = ( SearchKey ) obj;
+
+            return ( hashCode == that.hashCode ) && ( scope == that.scope ) && ( derefAliases == that.derefAliases )
+                && ( sizeLimit == that.sizeLimit ) && ( typesOnly == that.typesOnly ) && normBase.equals( that.normBase )
+                && filter.equals( that.filter ) && attributes.equals( that.attributes )
+                && controls.equals( that.controls );
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.apache.directory.ldap.client.api.future.ExtendedFuture;
 import org.apache.directory.ldap.client.api.future.ModifyDnFuture;
 import org.apache.directory.ldap.client.api.future.ModifyFuture;
 import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.shared.ldap.model.cursor.SearchCursor;
 import org.apache.directory.shared.ldap.model.entry.Entry;
 import org.apache.directory.shared.ldap.model.exception.LdapException;
 import org.apache.directory.shared.ldap.model.message.AddRequest;
@@ -46,6 +47,11 @@ import org.apache.directory.shared.ldap.model.name.Dn;
 
 /**
  * Root interface for all asynchronous LDAP connections.
+ * <br/>
+ * The returned futures can be waited on, or be given a 
+ * {@link org.apache.directory.ldap.client.api.future.ResponseListener}, which is
+ * notified of the responses by the thread receiving them, so that many operations
+ * can be in flight without blocking a thread for each of them.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -196,6 +202,32 @@ public interface LdapAsyncConnection extends LdapConnection
     SearchFuture searchAsync( SearchRequest searchRequest ) throws LdapException;
 
 
+    /**
+     * Do a search, delivering the responses to the given subscriber at the pace
+     * it requests them. The subscriber's onSubscribe method is called before any
+     * response is delivered. While the subscriber's demand is exhausted, the
+     * connection stops reading from the server, which holds back the responses 
+     * of all the operations running on this connection.
+     * 
+     * @param searchRequest The search request to send to the server
+     * @param subscriber The subscriber to feed with the responses
+     * @throws LdapException if some error occurred
+     */
+    void searchAsync( SearchRequest searchRequest, SearchSubscriber subscriber ) throws LdapException;
+
+
+    /**
+     * Do a search, reading the results page by page using the PagedResults control.
+     * The next page is requested while the current one is still being read.
+     * 
+     * @param searchRequest The search request to send to the server
+     * @param pageSize The number of entries per page
+     * @return A cursor on all the search results
+     * @throws LdapException if some error occurred
+     */
+    SearchCursor searchPaged( SearchRequest searchRequest, int pageSize ) throws LdapException;
+
+
     /**
      * Performs an asynchronous modify operation based on the modifications present in
      * the ModifyRequest.
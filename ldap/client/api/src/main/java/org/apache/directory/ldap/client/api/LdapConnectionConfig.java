@@ -98,6 +98,9 @@ public class LdapConnectionConfig
     /** The class used to detect if an attribute is HR or not */
     private BinaryAttributeDetector binaryAttributeDetector;
 
+    /** The cache for the search results, shared by the connections using this configuration, if any */
+    private SearchResultCache searchResultCache;
+
     /**
      * Creates a default LdapConnectionConfig instance
      */
@@ -434,4 +437,25 @@ public class LdapConnectionConfig
     {
         this.binaryAttributeDetector = binaryAttributeDetector;
     }
+
+
+    /**
+     * @return the cache for the search results, or null if the results are not cached
+     */
+    public SearchResultCache getSearchResultCache()
+    {
+        return searchResultCache;
+    }
+
+
+    /**
+     * Sets the cache for the search results. The connections created with this
+     * configuration share it, and invalidate the results affected by their writes.
+     *
+     * @param searchResultCache the cache for the search results, or null to disable the cache
+     */
+    public void setSearchResultCache( SearchResultCache searchResultCache )
+    {
+        this.searchResultCache = searchResultCache;
+    }
 }
@@ -52,6 +52,7 @@ import org.apache.directory.ldap.client.api.callback.SaslCallbackHandler;
 import org.apache.directory.ldap.client.api.exception.InvalidConnectionException;
 import org.apache.directory.ldap.client.api.future.AddFuture;
 import org.apache.directory.ldap.client.api.future.BindFuture;
+import org.apache.directory.ldap.client.api.future.CachingSearchFuture;
 import org.apache.directory.ldap.client.api.future.CompareFuture;
 import org.apache.directory.ldap.client.api.future.DeleteFuture;
 import org.apache.directory.ldap.client.api.future.ExtendedFuture;
@@ -199,6 +200,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     /** a map to hold the ResponseFutures for all operations */
     private Map<Integer, ResponseFuture<? extends Response>> futureMap = new ConcurrentHashMap<Integer, ResponseFuture<? extends Response>>();
 
+    /** The Dns of the entries modified by the pending write requests, if the search results are cached */
+    private Map<Integer, Dn[]> pendingWrites = new ConcurrentHashMap<Integer, Dn[]>();
+
     /** list of controls supported by the server */
     private List<String> supportedControls;
 
@@ -211,6 +215,12 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     /** A flag indicating that the connection is connected or not */
     private AtomicBoolean connected = new AtomicBoolean( false );
 
+    /** The number of search subscriptions which have suspended the reads on the session */
+    private int readSuspensions;
+
+    /** The lock protecting the read suspensions count */
+    private final Object readSuspensionsLock = new Object();
+
     /** a list of listeners interested in getting notified when the
      *  connection's session gets closed cause of network issues
      */
@@ -655,6 +665,12 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         // Initialize the MessageId
         messageId.set( 0 );
 
+        // The new session's reads are not suspended
+        synchronized ( readSuspensionsLock )
+        {
+            readSuspensions = 0;
+        }
+
         // And return
         return true;
     }
@@ -836,6 +852,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         addRequest.setMessageId( newId );
         AddFuture addFuture = new AddFuture( this, newId );
         addToFutureMap( newId, addFuture );
+        invalidateSearchResults( newId, addRequest.getEntryDn() );
 
         // Send the request to the server
         writeRequest( addRequest );
@@ -1550,10 +1567,48 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         int newId = messageId.incrementAndGet();
         searchRequest.setMessageId( newId );
 
+        SearchResultCache cache = config.getSearchResultCache();
+        SearchFuture searchFuture;
+
+        if ( ( cache != null ) && cache.isCacheable( searchRequest ) )
+        {
+            // Read the version before looking into the cache, so that the results are
+            // not cached if an entry is modified while the search is running
+            long version = cache.getVersion();
+            List<Response> responses = cache.get( searchRequest );
+
+            if ( responses != null )
+            {
+                LOG.debug( "Search results found in the cache for \n{}", searchRequest );
+
+                // The future is not registered, the request is not sent
+                searchFuture = new SearchFuture( this, newId );
+
+                try
+                {
+                    for ( Response response : responses )
+                    {
+                        searchFuture.set( response );
+                    }
+                }
+                catch ( Exception e )
+                {
+                    throw new LdapException( e );
+                }
+
+                return searchFuture;
+            }
+
+            searchFuture = new CachingSearchFuture( this, newId, cache, searchRequest, version );
+        }
+        else
+        {
+            searchFuture = new SearchFuture( this, newId );
+        }
+
         LOG.debug( "-----------------------------------------------------------------" );
         LOG.debug( "Sending request \n{}", searchRequest );
 
-        SearchFuture searchFuture = new SearchFuture( this, searchRequest.getMessageId() );
         addToFutureMap( searchRequest.getMessageId(), searchFuture );
 
         // Send the request to the server
@@ -1591,6 +1646,46 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void searchAsync( SearchRequest searchRequest, SearchSubscriber subscriber ) throws LdapException
+    {
+        if ( subscriber == null )
+        {
+            String msg = "Cannot process a null subscriber";
+            LOG.debug( msg );
+            throw new IllegalArgumentException( msg );
+        }
+
+        SearchFuture searchFuture = searchAsync( searchRequest );
+        SearchSubscriptionImpl subscription = new SearchSubscriptionImpl( this, searchFuture, subscriber );
+
+        subscriber.onSubscribe( subscription );
+
+        // The responses received so far are handed to the subscription
+        searchFuture.setResponseListener( subscription );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public SearchCursor searchPaged( SearchRequest searchRequest, int pageSize ) throws LdapException
+    {
+        if ( searchRequest == null )
+        {
+            String msg = "Cannot process a null searchRequest";
+            LOG.debug( msg );
+            throw new IllegalArgumentException( msg );
+        }
+
+        long timeout = getTimeout( searchRequest.getTimeLimit() );
+
+        return new PagedSearchCursorImpl( this, searchRequest, pageSize, timeout, TimeUnit.MILLISECONDS );
+    }
+
+
     //------------------------ The LDAP operations ------------------------//
     // Unbind operations                                                   //
     //---------------------------------------------------------------------//
@@ -1694,8 +1789,10 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 int messageId = ( ( MessageEncoderException ) realCause ).getMessageId();
 
                 ResponseFuture<?> response = futureMap.get( messageId );
-                response.cancel( true );
+
+                // Set the cause first, so that the listener, if any, can get it
                 response.setCause( realCause );
+                response.cancel( true );
             }
         }
 
@@ -1733,6 +1830,17 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
     @Override
     public void messageReceived( IoSession session, Object message ) throws Exception
     {
+        if ( message instanceof List<?> )
+        {
+            // A batch of messages decoded from a single read
+            for ( Object batchedMessage : ( List<?> ) message )
+            {
+                messageReceived( session, batchedMessage );
+            }
+
+            return;
+        }
+
         // Feed the response and store it into the session
         Message response = ( Message ) message;
         LOG.debug( "-------> {} Message received <-------", response );
@@ -1781,6 +1889,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     }
                 }
 
+                // The results cached while the request was processed may be stale
+                invalidateSearchResults( messageId );
+
                 // Store the response into the future
                 addFuture.set( addResponse );
 
@@ -1866,6 +1977,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     }
                 }
 
+                // The results cached while the request was processed may be stale
+                invalidateSearchResults( messageId );
+
                 // Store the response into the future
                 deleteFuture.set( deleteResponse );
 
@@ -1950,6 +2064,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     }
                 }
 
+                // The results cached while the request was processed may be stale
+                invalidateSearchResults( messageId );
+
                 // Store the response into the future
                 modifyFuture.set( modifyResponse );
 
@@ -1978,6 +2095,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                     }
                 }
 
+                // The results cached while the request was processed may be stale
+                invalidateSearchResults( messageId );
+
                 // Store the response into the future
                 modifyDnFuture.set( modifyDnResponse );
 
@@ -2219,6 +2339,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         ModifyFuture modifyFuture = new ModifyFuture( this, newId );
         addToFutureMap( newId, modifyFuture );
+        invalidateSearchResults( newId, modRequest.getName() );
 
         // Send the request to the server
         writeRequest( modRequest );
@@ -2525,6 +2646,19 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
         ModifyDnFuture modifyDnFuture = new ModifyDnFuture( this, newId );
         addToFutureMap( newId, modifyDnFuture );
 
+        if ( config.getSearchResultCache() != null )
+        {
+            // The entry is removed from its old position, and added to the new one
+            Dn newSuperior = modDnRequest.getNewSuperior();
+
+            if ( newSuperior == null )
+            {
+                newSuperior = modDnRequest.getName().getParent();
+            }
+
+            invalidateSearchResults( newId, modDnRequest.getName(), newSuperior.add( modDnRequest.getNewRdn() ) );
+        }
+
         // Send the request to the server
         writeRequest( modDnRequest );
 
@@ -2714,6 +2848,7 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
         DeleteFuture deleteFuture = new DeleteFuture( this, newId );
         addToFutureMap( newId, deleteFuture );
+        invalidateSearchResults( newId, deleteRequest.getName() );
 
         // Send the request to the server
         writeRequest( deleteRequest );
@@ -3260,10 +3395,22 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
             schemaManager = tmp;
 
-            // Change the container's BinaryDetector
-            ldapSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR,
-                new LdapMessageContainer<MessageDecorator<? extends Message>>( codec,
-                    new SchemaBinaryAttributeDetector( schemaManager ) ) );
+            // Change the container's BinaryDetector. The container is kept, as the
+            // session's decoder holds a reference on it.
+            LdapMessageContainer<MessageDecorator<? extends Message>> container =
+                ( LdapMessageContainer<MessageDecorator<? extends Message>> ) ldapSession
+                    .getAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR );
+
+            if ( container != null )
+            {
+                container.setBinaryAttributeDetector( new SchemaBinaryAttributeDetector( schemaManager ) );
+            }
+            else
+            {
+                ldapSession.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR,
+                    new LdapMessageContainer<MessageDecorator<? extends Message>>( codec,
+                        new SchemaBinaryAttributeDetector( schemaManager ) ) );
+            }
 
         }
         catch ( LdapException le )
@@ -3431,11 +3578,108 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
 
 
     /**
-     * clears the async listener, responseQueue and future mapppings to the corresponding request IDs
+     * fails the pending operations, and clears the future mappings to the corresponding request IDs
      */
     private void clearMaps()
     {
+        // No response will be received for the pending operations : fail them, so
+        // that their listeners are notified
+        InvalidConnectionException cause = new InvalidConnectionException( "The connection has been closed" );
+
+        for ( ResponseFuture<? extends Response> responseFuture : futureMap.values() )
+        {
+            responseFuture.fail( cause );
+        }
+
         futureMap.clear();
+        pendingWrites.clear();
+    }
+
+
+    /**
+     * Invalidates the cached search results affected by a write request, when it is
+     * sent. The results are invalidated again when the response is received, as a
+     * search may have been completed before the server processed the request.
+     *
+     * @param msgId The write request message ID
+     * @param dns The Dns of the entries modified by the request
+     */
+    private void invalidateSearchResults( int msgId, Dn... dns )
+    {
+        SearchResultCache cache = config.getSearchResultCache();
+
+        if ( cache != null )
+        {
+            pendingWrites.put( msgId, dns );
+
+            for ( Dn dn : dns )
+            {
+                cache.invalidate( dn );
+            }
+        }
+    }
+
+
+    /**
+     * Invalidates the cached search results affected by a write request, when its
+     * response is received.
+     *
+     * @param msgId The write request message ID
+     */
+    private void invalidateSearchResults( int msgId )
+    {
+        Dn[] dns = pendingWrites.remove( msgId );
+        SearchResultCache cache = config.getSearchResultCache();
+
+        if ( ( dns != null ) && ( cache != null ) )
+        {
+            for ( Dn dn : dns )
+            {
+                cache.invalidate( dn );
+            }
+        }
+    }
+
+
+    /**
+     * Suspends the reads on the session, on behalf of a search subscription
+     * which has no demand left. The reads are suspended as long as at least
+     * one subscription needs it.
+     */
+    void suspendRead()
+    {
+        synchronized ( readSuspensionsLock )
+        {
+            readSuspensions++;
+
+            if ( ( readSuspensions == 1 ) && ( ldapSession != null ) )
+            {
+                ldapSession.suspendRead();
+            }
+        }
+    }
+
+
+    /**
+     * Resumes the reads on the session, once no search subscription needs
+     * them to be suspended anymore.
+     */
+    void resumeRead()
+    {
+        synchronized ( readSuspensionsLock )
+        {
+            if ( readSuspensions == 0 )
+            {
+                return;
+            }
+
+            readSuspensions--;
+
+            if ( ( readSuspensions == 0 ) && ( ldapSession != null ) )
+            {
+                ldapSession.resumeRead();
+            }
+        }
     }
 
 
@@ -3479,6 +3723,9 @@ public class LdapNetworkConnection extends AbstractLdapConnection implements Lda
                 codec, config.getBinaryAttributeDetector() );
 
         session.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR, ldapMessageContainer );
+
+        // The responses decoded from a single read are processed in one batch
+        session.setAttribute( LdapDecoder.BATCHED_DELIVERY_ATTR, Boolean.TRUE );
     }
 
 
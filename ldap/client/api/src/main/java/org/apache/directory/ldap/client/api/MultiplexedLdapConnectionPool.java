@@ -0,0 +1,379 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A pool sharing a few bound LdapConnections between many concurrent callers, as
+ * a single LDAP connection can carry many outstanding requests. Each call to
+ * {@link #getConnection()} leases the least loaded connection, and must be paired
+ * with a call to {@link #releaseConnection(LdapConnection)} once the operation is
+ * completed. A new connection is only opened when all the existing ones carry the
+ * maximum number of in-flight operations.
+ * <br/>
+ * As the connections are shared, the callers must not bind, unbind or close them.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class MultiplexedLdapConnectionPool
+{
+    /** The logger */
+    private static final Logger LOG = LoggerFactory.getLogger( MultiplexedLdapConnectionPool.class );
+
+    /** The default maximum number of connections */
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+
+    /** The default maximum number of in-flight operations per connection */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+    /** The factory used to create and bind the connections */
+    private PoolableLdapConnectionFactory factory;
+
+    /** The maximum number of connections */
+    private int maxConnections;
+
+    /** The maximum number of in-flight operations per connection */
+    private int maxInFlight;
+
+    /** The pooled connections */
+    private List<PooledConnection> connections = new ArrayList<PooledConnection>();
+
+    /** The number of connections being created */
+    private int creating;
+
+    /** Tells if the pool has been closed */
+    private boolean closed;
+
+
+    /**
+     * A connection and the number of operations it carries.
+     */
+    private static class PooledConnection
+    {
+        /** The shared connection */
+        private LdapConnection connection;
+
+        /** The number of callers currently using the connection */
+        private int inFlight;
+
+
+        private PooledConnection( LdapConnection connection )
+        {
+            this.connection = connection;
+        }
+    }
+
+
+    /**
+     * Instantiates a new multiplexed LDAP connection pool, with the default limits.
+     *
+     * @param factory the LDAP connection factory
+     */
+    public MultiplexedLdapConnectionPool( PoolableLdapConnectionFactory factory )
+    {
+        this( factory, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_IN_FLIGHT );
+    }
+
+
+    /**
+     * Instantiates a new multiplexed LDAP connection pool.
+     *
+     * @param factory the LDAP connection factory
+     * @param maxConnections the maximum number of connections
+     * @param maxInFlight the maximum number of in-flight operations per connection
+     */
+    public MultiplexedLdapConnectionPool( PoolableLdapConnectionFactory factory, int maxConnections, int maxInFlight )
+    {
+        if ( ( maxConnections <= 0 ) || ( maxInFlight <= 0 ) )
+        {
+            throw new IllegalArgumentException( "The pool limits must be positive" );
+        }
+
+        this.factory = factory;
+        this.maxConnections = maxConnections;
+        this.maxInFlight = maxInFlight;
+    }
+
+
+    /**
+     * Leases the least loaded connection, opening a new one if all the connections are
+     * saturated, and blocking until a connection is released if the pool is full.
+     *
+     * @return a shared LdapConnection
+     * @throws Exception if an error occurs while creating a connection
+     */
+    public LdapConnection getConnection() throws Exception
+    {
+        while ( true )
+        {
+            List<LdapConnection> dropped = new ArrayList<LdapConnection>();
+            LdapConnection leased = null;
+            boolean create = false;
+
+            synchronized ( this )
+            {
+                if ( closed )
+                {
+                    throw new IllegalStateException( "The pool is closed" );
+                }
+
+                PooledConnection leastLoaded = getLeastLoaded( dropped );
+
+                if ( ( leastLoaded != null ) && ( leastLoaded.inFlight < maxInFlight ) )
+                {
+                    leastLoaded.inFlight++;
+                    leased = leastLoaded.connection;
+                }
+                else if ( connections.size() + creating < maxConnections )
+                {
+                    // The connection will be created out of the lock
+                    creating++;
+                    create = true;
+                }
+                else if ( dropped.isEmpty() )
+                {
+                    wait();
+                }
+            }
+
+            // The dropped connections are destroyed out of the lock
+            destroy( dropped );
+
+            if ( leased != null )
+            {
+                return leased;
+            }
+
+            if ( create )
+            {
+                return createConnection();
+            }
+        }
+    }
+
+
+    /**
+     * Creates a new connection, leased by the caller. The slot of the connection
+     * must have been reserved.
+     */
+    private LdapConnection createConnection() throws Exception
+    {
+        LdapConnection connection = null;
+        boolean added = false;
+
+        try
+        {
+            LOG.debug( "Adding a connection to the pool" );
+            connection = factory.makeObject();
+        }
+        finally
+        {
+            synchronized ( this )
+            {
+                creating--;
+
+                if ( ( connection != null ) && !closed )
+                {
+                    PooledConnection pooledConnection = new PooledConnection( connection );
+                    pooledConnection.inFlight = 1;
+                    connections.add( pooledConnection );
+                    added = true;
+                }
+
+                notifyAll();
+            }
+        }
+
+        if ( !added )
+        {
+            // The pool has been closed while the connection was created
+            factory.destroyObject( connection );
+
+            throw new IllegalStateException( "The pool is closed" );
+        }
+
+        return connection;
+    }
+
+
+    /**
+     * Gets the least loaded connection, removing the connections which have been closed
+     * and which are not used anymore. Must be called while holding the pool's lock.
+     *
+     * @param dropped The list the removed connections are added to, to be destroyed
+     * once the lock is released
+     */
+    private PooledConnection getLeastLoaded( List<LdapConnection> dropped )
+    {
+        PooledConnection leastLoaded = null;
+        Iterator<PooledConnection> iterator = connections.iterator();
+
+        while ( iterator.hasNext() )
+        {
+            PooledConnection pooledConnection = iterator.next();
+
+            if ( !pooledConnection.connection.isConnected() )
+            {
+                if ( pooledConnection.inFlight == 0 )
+                {
+                    iterator.remove();
+                    dropped.add( pooledConnection.connection );
+                }
+
+                continue;
+            }
+
+            if ( ( leastLoaded == null ) || ( pooledConnection.inFlight < leastLoaded.inFlight ) )
+            {
+                leastLoaded = pooledConnection;
+            }
+        }
+
+        return leastLoaded;
+    }
+
+
+    /**
+     * Ends a lease on a connection obtained from {@link #getConnection()}.
+     * 
+     * @param connection the LdapConnection to be released
+     */
+    public void releaseConnection( LdapConnection connection )
+    {
+        synchronized ( this )
+        {
+            PooledConnection released = null;
+
+            for ( PooledConnection pooledConnection : connections )
+            {
+                if ( pooledConnection.connection == connection )
+                {
+                    released = pooledConnection;
+                    break;
+                }
+            }
+
+            if ( released == null )
+            {
+                LOG.warn( "The connection {} does not belong to the pool", connection );
+
+                return;
+            }
+
+            if ( released.inFlight > 0 )
+            {
+                released.inFlight--;
+            }
+
+            notifyAll();
+
+            if ( ( released.inFlight > 0 ) || connection.isConnected() )
+            {
+                return;
+            }
+
+            // The connection has been closed and is not used anymore
+            connections.remove( released );
+        }
+
+        // It's destroyed out of the lock
+        destroy( Collections.singletonList( connection ) );
+    }
+
+
+    /**
+     * @return the number of opened connections
+     */
+    public synchronized int getNumConnections()
+    {
+        return connections.size();
+    }
+
+
+    /**
+     * @return the number of operations in flight on all the connections
+     */
+    public synchronized int getNumInFlight()
+    {
+        int inFlight = 0;
+
+        for ( PooledConnection pooledConnection : connections )
+        {
+            inFlight += pooledConnection.inFlight;
+        }
+
+        return inFlight;
+    }
+
+
+    /**
+     * Closes all the connections. The pool can't be used anymore.
+     */
+    public void close()
+    {
+        List<PooledConnection> toClose;
+
+        synchronized ( this )
+        {
+            closed = true;
+            toClose = connections;
+            connections = new ArrayList<PooledConnection>();
+            notifyAll();
+        }
+
+        List<LdapConnection> toDestroy = new ArrayList<LdapConnection>( toClose.size() );
+
+        for ( PooledConnection pooledConnection : toClose )
+        {
+            toDestroy.add( pooledConnection.connection );
+        }
+
+        destroy( toDestroy );
+    }
+
+
+    /**
+     * Destroys some connections. Must be called without holding the pool's lock,
+     * as closing a connection may block.
+     */
+    private void destroy( List<LdapConnection> toDestroy )
+    {
+        for ( LdapConnection connection : toDestroy )
+        {
+            try
+            {
+                factory.destroyObject( connection );
+            }
+            catch ( Exception e )
+            {
+                LOG.warn( "Cannot close the connection {} : {}", connection, e.getMessage() );
+            }
+        }
+    }
+}
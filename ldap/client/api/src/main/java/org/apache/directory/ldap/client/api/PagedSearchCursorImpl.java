@@ -0,0 +1,477 @@
+/*
+ *   Licensed to the Apache Software Foundation (ASF) under one
+ *   or more contributor license agreements.  See the NOTICE file
+ *   distributed with this work for additional information
+ *   regarding copyright ownership.  The ASF licenses this file
+ *   to you under the Apache License, Version 2.0 (the
+ *   "License"); you may not use this file except in compliance
+ *   with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing,
+ *   software distributed under the License is distributed on an
+ *   "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *   KIND, either express or implied.  See the License for the
+ *   specific language governing permissions and limitations
+ *   under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.shared.i18n.I18n;
+import org.apache.directory.shared.ldap.codec.controls.search.pagedSearch.PagedResultsDecorator;
+import org.apache.directory.shared.ldap.model.cursor.AbstractCursor;
+import org.apache.directory.shared.ldap.model.cursor.InvalidCursorPositionException;
+import org.apache.directory.shared.ldap.model.cursor.SearchCursor;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.message.Control;
+import org.apache.directory.shared.ldap.model.message.IntermediateResponse;
+import org.apache.directory.shared.ldap.model.message.Referral;
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.message.SearchRequest;
+import org.apache.directory.shared.ldap.model.message.SearchRequestImpl;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+import org.apache.directory.shared.ldap.model.message.controls.PagedResults;
+import org.apache.directory.shared.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A SearchCursor which reads the results of a search page by page, using the
+ * PagedResults control, and transparently sends the request for the next page.
+ * <br/>
+ * The next page is requested as soon as the SearchResultDone of the current page
+ * has been received, while the current page's entries are still being read, so that
+ * the round trip to the server is hidden to the caller.
+ * 
+ * Note: This is a forward only cursor hence the only valid operations are next(), get() and close() 
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class PagedSearchCursorImpl extends AbstractCursor<Response> implements SearchCursor
+{
+    /** A dedicated log for cursors */
+    private static final Logger LOG_CURSOR = LoggerFactory.getLogger( "CURSOR" );
+
+    /** Speedup for logs */
+    private static final boolean IS_DEBUG = LOG_CURSOR.isDebugEnabled();
+
+    /** The connection used to send the requests */
+    private LdapAsyncConnection connection;
+
+    /** The caller's search request, copied for each page */
+    private SearchRequest searchRequest;
+
+    /** The number of entries per page */
+    private int pageSize;
+
+    /** wait time while polling for a SearchResponse */
+    private long timeout;
+
+    /** time units of timeout value */
+    private TimeUnit timeUnit;
+
+    /** The future of the page being read */
+    private SearchFuture currentFuture;
+
+    /** The cursor on the page being read */
+    private SearchCursorImpl currentCursor;
+
+    /** The future of the next page, requested before the current page has been fully read */
+    private SearchFuture nextFuture;
+
+    /** the done flag */
+    private boolean done;
+
+    /** a reference to hold the last SearchResultDone response */
+    private SearchResultDone searchDoneResp;
+
+
+    /**
+     * Instantiates a new paged search cursor, and sends the request for the first page.
+     *
+     * @param connection The connection used to send the requests
+     * @param searchRequest The search request
+     * @param pageSize The number of entries per page
+     * @param timeout the timeout
+     * @param timeUnit the time unit
+     * @throws LdapException If the first page can't be requested
+     */
+    public PagedSearchCursorImpl( LdapAsyncConnection connection, SearchRequest searchRequest, int pageSize,
+        long timeout, TimeUnit timeUnit ) throws LdapException
+    {
+        if ( IS_DEBUG )
+        {
+            LOG_CURSOR.debug( "Creating PagedSearchCursorImpl {}", this );
+        }
+
+        this.connection = connection;
+        this.searchRequest = searchRequest;
+        this.pageSize = pageSize;
+        this.timeout = timeout;
+        this.timeUnit = timeUnit;
+
+        currentFuture = requestPage( null );
+        currentCursor = new SearchCursorImpl( currentFuture, timeout, timeUnit );
+    }
+
+
+    /**
+     * Sends the search request for a page.
+     *
+     * @param cookie The cookie returned with the previous page, null for the first page
+     * @return The page's future
+     */
+    private SearchFuture requestPage( byte[] cookie ) throws LdapException
+    {
+        PagedResultsDecorator pagedResults = new PagedResultsDecorator( connection.getCodecService() );
+        pagedResults.setSize( pageSize );
+
+        if ( cookie != null )
+        {
+            pagedResults.setCookie( cookie );
+        }
+
+        // The caller's request is left untouched : each page is requested with a copy
+        SearchRequest pageRequest = new SearchRequestImpl();
+        pageRequest.setBase( searchRequest.getBase() );
+        pageRequest.setScope( searchRequest.getScope() );
+        pageRequest.setDerefAliases( searchRequest.getDerefAliases() );
+        pageRequest.setSizeLimit( searchRequest.getSizeLimit() );
+        pageRequest.setTimeLimit( searchRequest.getTimeLimit() );
+        pageRequest.setTypesOnly( searchRequest.getTypesOnly() );
+        pageRequest.setFilter( searchRequest.getFilter() );
+
+        List<String> attributes = searchRequest.getAttributes();
+        pageRequest.addAttributes( attributes.toArray( new String[attributes.size()] ) );
+
+        for ( Control control : searchRequest.getControls().values() )
+        {
+            if ( !PagedResults.OID.equals( control.getOid() ) )
+            {
+                pageRequest.addControl( control );
+            }
+        }
+
+        pageRequest.addControl( pagedResults );
+
+        return connection.searchAsync( pageRequest );
+    }
+
+
+    /**
+     * Gets the cookie returned with a page.
+     *
+     * @param searchResultDone The page's SearchResultDone
+     * @return The cookie, or null if this was the last page
+     */
+    private byte[] getCookie( SearchResultDone searchResultDone )
+    {
+        if ( searchResultDone.getLdapResult().getResultCode() != ResultCodeEnum.SUCCESS )
+        {
+            return null;
+        }
+
+        PagedResults pagedResults = ( PagedResults ) searchResultDone.getControl( PagedResults.OID );
+
+        if ( ( pagedResults == null ) || Strings.isEmpty( pagedResults.getCookie() ) )
+        {
+            return null;
+        }
+
+        return pagedResults.getCookie();
+    }
+
+
+    /**
+     * Requests the next page if the current page's SearchResultDone has been
+     * received, and if there is a next page.
+     */
+    private void prefetch() throws LdapException
+    {
+        if ( nextFuture != null )
+        {
+            return;
+        }
+
+        SearchResultDone searchResultDone = currentFuture.getSearchResultDone();
+
+        if ( searchResultDone != null )
+        {
+            byte[] cookie = getCookie( searchResultDone );
+
+            if ( cookie != null )
+            {
+                if ( IS_DEBUG )
+                {
+                    LOG_CURSOR.debug( "Requesting the next page for PagedSearchCursorImpl {}", this );
+                }
+
+                nextFuture = requestPage( cookie );
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean next() throws Exception
+    {
+        while ( !done )
+        {
+            prefetch();
+
+            if ( currentCursor.next() )
+            {
+                return true;
+            }
+
+            SearchResultDone searchResultDone = currentCursor.getSearchResultDone();
+
+            if ( searchResultDone != null )
+            {
+                // The current page has been read before we could see its SearchResultDone
+                prefetch();
+            }
+
+            if ( ( searchResultDone == null ) || ( nextFuture == null ) )
+            {
+                // The search has been cancelled, or this was the last page
+                done = true;
+                searchDoneResp = searchResultDone;
+
+                return false;
+            }
+
+            currentFuture = nextFuture;
+            currentCursor = new SearchCursorImpl( currentFuture, timeout, timeUnit );
+            nextFuture = null;
+        }
+
+        return false;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Response get() throws Exception
+    {
+        if ( !available() )
+        {
+            throw new InvalidCursorPositionException();
+        }
+
+        return currentCursor.get();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchDoneResp;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean available()
+    {
+        return !done && currentCursor.available();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception
+    {
+        close( null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close( Exception cause ) throws Exception
+    {
+        if ( IS_DEBUG )
+        {
+            LOG_CURSOR.debug( "Closing PagedSearchCursorImpl {}", this );
+        }
+
+        // Abandon the prefetched page, if any
+        if ( ( nextFuture != null ) && !nextFuture.isCancelled() )
+        {
+            nextFuture.cancel( true );
+        }
+
+        currentCursor.close( cause );
+
+        if ( cause != null )
+        {
+            super.close( cause );
+        }
+        else
+        {
+            super.close();
+        }
+    }
+
+
+    // rest of all operations will throw UnsupportedOperationException
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    public void after( Response element ) throws Exception
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_02014_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "after( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    public void afterLast() throws Exception
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_02014_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "afterLast()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    public void before( Response element ) throws Exception
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_02014_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "before( Response element )" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    public void beforeFirst() throws Exception
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_02014_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "beforeFirst()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    public boolean first() throws Exception
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_02014_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "first()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    public boolean last() throws Exception
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_02014_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "last()" ) ) );
+    }
+
+
+    /**
+     * This operation is not supported in SearchCursor.
+     * {@inheritDoc}
+     */
+    public boolean previous() throws Exception
+    {
+        throw new UnsupportedOperationException( I18n.err( I18n.ERR_02014_UNSUPPORTED_OPERATION, getClass().getName()
+            .concat( "." ).concat( "previous()" ) ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isDone()
+    {
+        return done;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isReferral()
+    {
+        return !done && currentCursor.isReferral();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Referral getReferral() throws LdapException
+    {
+        return currentCursor.getReferral();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isEntry()
+    {
+        return !done && currentCursor.isEntry();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Entry getEntry() throws LdapException
+    {
+        return currentCursor.getEntry();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isIntermediate()
+    {
+        return !done && currentCursor.isIntermediate();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public IntermediateResponse getIntermediate() throws LdapException
+    {
+        return currentCursor.getIntermediate();
+    }
+}
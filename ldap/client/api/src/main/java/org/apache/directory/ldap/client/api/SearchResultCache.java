@@ -0,0 +1,100 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.List;
+
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.SearchRequest;
+import org.apache.directory.shared.ldap.model.name.Dn;
+
+
+/**
+ * A cache for the search results, set in the {@link LdapConnectionConfig}. The
+ * connections created with the same configuration share the cache : the writes done
+ * by any of them invalidate the cached results they affect.
+ * <br/>
+ * A search is only cached once its SearchResultDone has been received. The cache uses
+ * a version, incremented by each invalidation, so that a search which was running
+ * while some entries were modified is not cached.
+ *
+ * @see DefaultSearchResultCache
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface SearchResultCache
+{
+    /**
+     * Tells if the results of a search can be cached.
+     *
+     * @param searchRequest The search request
+     * @return <code>true</code> if the results can be cached
+     */
+    boolean isCacheable( SearchRequest searchRequest );
+
+
+    /**
+     * Gets the cached results of a search.
+     *
+     * @param searchRequest The search request
+     * @return A copy of the cached responses, the last one being the SearchResultDone,
+     * or null if the results are not cached
+     */
+    List<Response> get( SearchRequest searchRequest );
+
+
+    /**
+     * @return The maximum number of entries and references a search can return to be
+     * cached : the responses of a longer search are not kept while it's running
+     */
+    int getMaxEntriesPerResult();
+
+
+    /**
+     * @return The current version of the cache, to get before sending a search request
+     */
+    long getVersion();
+
+
+    /**
+     * Caches the results of a search. They are not cached if the cache has been invalidated
+     * since the given version.
+     *
+     * @param searchRequest The search request
+     * @param responses The responses, the last one being the SearchResultDone
+     * @param version The version of the cache when the search request was sent
+     */
+    void put( SearchRequest searchRequest, List<Response> responses, long version );
+
+
+    /**
+     * Removes the cached results which may contain an entry, or its descendants.
+     * This is called when an entry is added, modified, deleted, moved or renamed.
+     *
+     * @param dn The modified entry Dn
+     */
+    void invalidate( Dn dn );
+
+
+    /**
+     * Removes all the cached results.
+     */
+    void clear();
+}
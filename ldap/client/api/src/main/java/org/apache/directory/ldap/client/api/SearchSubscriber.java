@@ -0,0 +1,73 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+
+
+/**
+ * A receiver of search results, fed at the pace it asks for through its
+ * {@link SearchSubscription}. No response is pushed to the subscriber beyond the
+ * demand it has signaled, and the connection stops reading from the server while
+ * this demand is exhausted.
+ * <br/>
+ * All the methods are called sequentially, but possibly from different threads :
+ * the connection's I/O thread, or the thread calling {@link SearchSubscription#request(long)}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface SearchSubscriber
+{
+    /**
+     * Called once, before any other method, with the subscription used to
+     * request responses or to cancel the search.
+     *
+     * @param subscription The search subscription
+     */
+    void onSubscribe( SearchSubscription subscription );
+
+
+    /**
+     * Called for each requested response : a SearchResultEntry, a SearchResultReference
+     * or an IntermediateResponse.
+     *
+     * @param response The received response
+     */
+    void onNext( Response response );
+
+
+    /**
+     * Called when the search is done, after all the other responses have been delivered.
+     * It does not need any demand. The search result code has to be checked by the subscriber.
+     *
+     * @param searchResultDone The final response
+     */
+    void onComplete( SearchResultDone searchResultDone );
+
+
+    /**
+     * Called when the search has failed. No other method will be called afterward.
+     *
+     * @param cause The failure cause
+     */
+    void onError( Throwable cause );
+}
@@ -0,0 +1,45 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+/**
+ * The link between a {@link SearchSubscriber} and the search it follows, used to
+ * signal the demand for responses, or to cancel the search.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface SearchSubscription
+{
+    /**
+     * Adds the given number of responses to the demand. The responses already received
+     * are delivered immediately, and the connection resumes reading if it had been
+     * suspended. Long.MAX_VALUE stands for an unbounded demand.
+     *
+     * @param n The number of responses the subscriber is ready to process, strictly positive
+     */
+    void request( long n );
+
+
+    /**
+     * Cancels the search : an AbandonRequest is sent, and no response will be delivered anymore.
+     */
+    void cancel();
+}
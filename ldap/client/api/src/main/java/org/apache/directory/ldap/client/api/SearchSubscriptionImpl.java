@@ -0,0 +1,286 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.apache.directory.ldap.client.api.future.ResponseFuture;
+import org.apache.directory.ldap.client.api.future.ResponseListener;
+import org.apache.directory.ldap.client.api.future.SearchFuture;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+
+
+/**
+ * A {@link SearchSubscription} fed by the listener of a {@link SearchFuture}. The
+ * responses which exceed the subscriber's demand are kept until it asks for them,
+ * and the connection's reads are suspended meanwhile : as a single read may carry
+ * many PDUs, a few responses can still arrive before the reads are actually stopped.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+class SearchSubscriptionImpl implements SearchSubscription, ResponseListener<Response>
+{
+    /** The connection the search has been sent on */
+    private final LdapNetworkConnection connection;
+
+    /** The future associated with the search */
+    private final SearchFuture future;
+
+    /** The subscriber to feed */
+    private final SearchSubscriber subscriber;
+
+    /** The received responses, not yet delivered to the subscriber */
+    private final Queue<Response> pending = new LinkedList<Response>();
+
+    /** The number of responses the subscriber is ready to process */
+    private long demand;
+
+    /** Set while a thread is delivering responses to the subscriber */
+    private boolean draining;
+
+    /** Set when this subscription has suspended the connection's reads */
+    private boolean readSuspended;
+
+    /** Set when the search is completed, has failed, or has been cancelled */
+    private boolean terminated;
+
+    /** The error which has terminated the search, not yet delivered to the subscriber */
+    private Throwable error;
+
+
+    /**
+     * Creates a new instance of SearchSubscriptionImpl.
+     *
+     * @param connection The connection the search has been sent on
+     * @param future The future associated with the search
+     * @param subscriber The subscriber to feed
+     */
+    SearchSubscriptionImpl( LdapNetworkConnection connection, SearchFuture future, SearchSubscriber subscriber )
+    {
+        this.connection = connection;
+        this.future = future;
+        this.subscriber = subscriber;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void request( long n )
+    {
+        if ( n <= 0 )
+        {
+            throw new IllegalArgumentException( "The number of requested responses must be positive : " + n );
+        }
+
+        synchronized ( this )
+        {
+            demand += n;
+
+            if ( demand < 0 )
+            {
+                // Overflow : the demand is unbounded
+                demand = Long.MAX_VALUE;
+            }
+        }
+
+        drain();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void cancel()
+    {
+        synchronized ( this )
+        {
+            if ( terminated )
+            {
+                return;
+            }
+
+            terminated = true;
+            pending.clear();
+            updateReads();
+        }
+
+        // Abandon the search. The listener will ignore the cancellation notification.
+        future.cancel( true );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void responseReceived( ResponseFuture<Response> future, Response response )
+    {
+        synchronized ( this )
+        {
+            if ( terminated )
+            {
+                return;
+            }
+
+            pending.add( response );
+        }
+
+        drain();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void operationCancelled( ResponseFuture<Response> future )
+    {
+        Throwable cause = future.getCause();
+
+        if ( cause == null )
+        {
+            cause = new LdapException( "The search has been cancelled" );
+        }
+
+        synchronized ( this )
+        {
+            if ( terminated )
+            {
+                return;
+            }
+
+            terminated = true;
+            error = cause;
+            pending.clear();
+            updateReads();
+        }
+
+        // The error is delivered once the response being delivered, if any, has been processed
+        drain();
+    }
+
+
+    /**
+     * Delivers the pending responses as long as there is some demand. The SearchResultDone
+     * is delivered as soon as it's the next pending response, and the error terminating
+     * the search as soon as it's known. Only one thread delivers
+     * the responses at a time : the other ones just leave their responses and demand
+     * to this thread.
+     */
+    private void drain()
+    {
+        synchronized ( this )
+        {
+            if ( draining )
+            {
+                return;
+            }
+
+            draining = true;
+        }
+
+        while ( true )
+        {
+            Response response = null;
+            Throwable cause = null;
+
+            synchronized ( this )
+            {
+                if ( error != null )
+                {
+                    cause = error;
+                    error = null;
+                }
+                else if ( !terminated )
+                {
+                    Response next = pending.peek();
+
+                    if ( next instanceof SearchResultDone )
+                    {
+                        terminated = true;
+                        response = pending.poll();
+                    }
+                    else if ( ( next != null ) && ( demand > 0 ) )
+                    {
+                        if ( demand != Long.MAX_VALUE )
+                        {
+                            demand--;
+                        }
+
+                        response = pending.poll();
+                    }
+                }
+
+                if ( ( response == null ) && ( cause == null ) )
+                {
+                    // Nothing more to deliver : the decision to stop is taken
+                    // while holding the lock, so no response can be missed
+                    draining = false;
+                    updateReads();
+
+                    return;
+                }
+            }
+
+            if ( cause != null )
+            {
+                subscriber.onError( cause );
+            }
+            else if ( response instanceof SearchResultDone )
+            {
+                synchronized ( this )
+                {
+                    updateReads();
+                }
+
+                subscriber.onComplete( ( SearchResultDone ) response );
+            }
+            else
+            {
+                subscriber.onNext( response );
+            }
+        }
+    }
+
+
+    /**
+     * Suspends the connection's reads when the demand is exhausted, and resumes them
+     * when the demand returns, or when the search is over. Must be called while holding
+     * this subscription's lock.
+     */
+    private void updateReads()
+    {
+        boolean suspend = !terminated && ( demand == 0 );
+
+        if ( suspend && !readSuspended )
+        {
+            readSuspended = true;
+            connection.suspendRead();
+        }
+        else if ( !suspend && readSuspended )
+        {
+            readSuspended = false;
+            connection.resumeRead();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.ldap.client.api.future;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.directory.ldap.client.api.LdapConnection;
+import org.apache.directory.ldap.client.api.SearchResultCache;
+import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.message.SearchRequest;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+
+
+/**
+ * A SearchFuture which records the responses it receives, and stores them in a
+ * {@link SearchResultCache} once the search has successfully completed. The responses
+ * are dropped as soon as the search returns more results than the cache accepts.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingSearchFuture extends SearchFuture
+{
+    /** The cache the results are stored in */
+    private final SearchResultCache cache;
+
+    /** The cached search request */
+    private final SearchRequest searchRequest;
+
+    /** The cache version when the search request has been sent */
+    private final long version;
+
+    /** The responses received so far, or null if the results won't be cached */
+    private List<Response> responses = new ArrayList<Response>();
+
+
+    /**
+     * Creates a new instance of CachingSearchFuture.
+     *
+     * @param connection the LDAP connection
+     * @param messageId The associated messageId
+     * @param cache The cache the results are stored in
+     * @param searchRequest The search request
+     * @param version The cache version, read before sending the request
+     */
+    public CachingSearchFuture( LdapConnection connection, int messageId, SearchResultCache cache,
+        SearchRequest searchRequest, long version )
+    {
+        super( connection, messageId );
+        this.cache = cache;
+        this.searchRequest = searchRequest;
+        this.version = version;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void set( Response response ) throws InterruptedException, ExecutionException
+    {
+        if ( responses != null )
+        {
+            if ( cancelled )
+            {
+                responses = null;
+            }
+            else if ( response instanceof SearchResultDone )
+            {
+                responses.add( response );
+
+                if ( ( ( SearchResultDone ) response ).getLdapResult().getResultCode() == ResultCodeEnum.SUCCESS )
+                {
+                    cache.put( searchRequest, responses, version );
+                }
+
+                responses = null;
+            }
+            else if ( responses.size() < cache.getMaxEntriesPerResult() )
+            {
+                responses.add( response );
+            }
+            else
+            {
+                // The search returns too many results to be cached
+                responses = null;
+            }
+        }
+
+        super.set( response );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "CachingSearchFuture" ).append( super.toString() );
+
+        return sb.toString();
+    }
+}
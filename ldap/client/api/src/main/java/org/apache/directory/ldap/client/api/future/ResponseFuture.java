@@ -30,10 +30,16 @@ import java.util.concurrent.TimeoutException;
 
 import org.apache.directory.ldap.client.api.LdapConnection;
 import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.ResultResponse;
 
 
 /**
  * A Future implementation used in LdapConnection operations.
+ * <br/>
+ * The responses can either be read with the blocking <tt>get</tt> methods, or be pushed
+ * to a {@link ResponseListener}, which is called as soon as a response is received,
+ * without parking any thread. Once a listener is set, the responses are not queued
+ * anymore, and the <tt>get</tt> methods must not be used.
  *
  * @param <R> The result type returned by this Future's <tt>get</tt> method
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
@@ -55,6 +61,12 @@ public class ResponseFuture<R extends Response> implements Future<Response>
     /** The connection used by the request */
     protected LdapConnection connection;
 
+    /** The listener notified of the responses, if any */
+    protected ResponseListener<R> listener;
+
+    /** flag set when the last response for the request has been received */
+    protected volatile boolean done = false;
+
 
     /**
      * Creates a new instance of ResponseFuture.
@@ -93,6 +105,13 @@ public class ResponseFuture<R extends Response> implements Future<Response>
         // hits the server
         queue.clear();
 
+        ResponseListener<R> currentListener = getResponseListener();
+
+        if ( currentListener != null )
+        {
+            currentListener.operationCancelled( this );
+        }
+
         return cancelled;
     }
 
@@ -115,9 +134,58 @@ public class ResponseFuture<R extends Response> implements Future<Response>
      * {@inheritDoc}
      * @throws InterruptedException if the operation has been cancelled by client
      */
-    public void set( R response ) throws InterruptedException, ExecutionException
+    public synchronized void set( R response ) throws InterruptedException, ExecutionException
+    {
+        // All the final responses are ResultResponses, entries, references and
+        // intermediate responses are not
+        if ( response instanceof ResultResponse )
+        {
+            done = true;
+        }
+
+        if ( listener != null )
+        {
+            listener.responseReceived( this, response );
+        }
+        else
+        {
+            queue.add( response );
+        }
+    }
+
+
+    /**
+     * Sets the listener which will be notified of the responses received for this
+     * future, instead of queuing them. The responses already received are delivered
+     * to the listener immediately, in the order they have been received.
+     *
+     * @param listener The listener to notify
+     */
+    public synchronized void setResponseListener( ResponseListener<R> listener )
+    {
+        this.listener = listener;
+
+        R response = queue.poll();
+
+        while ( response != null )
+        {
+            listener.responseReceived( this, response );
+            response = queue.poll();
+        }
+
+        if ( cancelled && !done )
+        {
+            listener.operationCancelled( this );
+        }
+    }
+
+
+    /**
+     * @return The listener notified of the responses, or null if there is none
+     */
+    public synchronized ResponseListener<R> getResponseListener()
     {
-        queue.add( response );
+        return listener;
     }
 
 
@@ -143,13 +211,14 @@ public class ResponseFuture<R extends Response> implements Future<Response>
 
 
     /**
-     * This operation is not supported in this implementation of Future.
+     * Tells if the last response for the request has been received, or if
+     * the operation has been cancelled.
      * 
      * {@inheritDoc}
      */
     public boolean isDone()
     {
-        throw new UnsupportedOperationException( "Operation not supported" );
+        return done || cancelled;
     }
 
 
@@ -172,6 +241,31 @@ public class ResponseFuture<R extends Response> implements Future<Response>
     }
 
 
+    /**
+     * Fails the operation, when no response can be received anymore, for instance
+     * because the connection has been closed. The future is cancelled without sending
+     * an AbandonRequest, and its listener, if any, is notified. Nothing is done if the
+     * last response has already been received.
+     *
+     * @param cause The reason of the failure
+     */
+    public synchronized void fail( Throwable cause )
+    {
+        if ( done || cancelled )
+        {
+            return;
+        }
+
+        this.cause = cause;
+        cancelled = true;
+
+        if ( listener != null )
+        {
+            listener.operationCancelled( this );
+        }
+    }
+
+
     /**
      * Cancel the Future
      *
@@ -192,6 +286,7 @@ public class ResponseFuture<R extends Response> implements Future<Response>
 
         sb.append( "[msgId : " ).append( messageId ).append( ", " );
         sb.append( "size : " ).append( queue.size() ).append( ", " );
+        sb.append( "Done :" ).append( done ).append( ", " );
         sb.append( "Canceled :" ).append( cancelled ).append( "]" );
 
         return sb.toString();
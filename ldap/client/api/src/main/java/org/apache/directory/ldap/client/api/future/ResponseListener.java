@@ -0,0 +1,56 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api.future;
+
+
+import org.apache.directory.shared.ldap.model.message.Response;
+
+
+/**
+ * A listener notified of the responses received for a {@link ResponseFuture}, so that
+ * an asynchronous operation can be followed without blocking a thread on the future's
+ * <tt>get</tt> methods. The listener is called by the thread which has received the
+ * response, usually the connection's I/O thread : it must not block.
+ *
+ * @param <R> The type of response the listener is notified of
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public interface ResponseListener<R extends Response>
+{
+    /**
+     * Called for each response received for the operation. A search will call it for
+     * every entry and reference, and a last time with the SearchResultDone.
+     *
+     * @param future The future the response has been received for
+     * @param response The received response
+     */
+    void responseReceived( ResponseFuture<R> future, R response );
+
+
+    /**
+     * Called when the operation has been cancelled, either by the user, or because
+     * the request could not be sent, or the connection has been closed before the
+     * last response was received. In the latter cases, the cause is available
+     * through {@link ResponseFuture#getCause()}.
+     *
+     * @param future The cancelled future
+     */
+    void operationCancelled( ResponseFuture<R> future );
+}
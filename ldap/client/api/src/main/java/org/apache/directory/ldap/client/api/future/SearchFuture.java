@@ -26,6 +26,7 @@ import java.util.concurrent.TimeoutException;
 
 import org.apache.directory.ldap.client.api.LdapConnection;
 import org.apache.directory.shared.ldap.model.message.Response;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
 
 
 /**
@@ -35,6 +36,10 @@ import org.apache.directory.shared.ldap.model.message.Response;
  */
 public class SearchFuture extends ResponseFuture<Response>
 {
+    /** The SearchResultDone, stored as soon as it is received */
+    private volatile SearchResultDone searchResultDone;
+
+
     /**
      * Creates a new instance of SearchFuture.
      *
@@ -88,6 +93,32 @@ public class SearchFuture extends ResponseFuture<Response>
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public void set( Response response ) throws InterruptedException, ExecutionException
+    {
+        if ( response instanceof SearchResultDone )
+        {
+            searchResultDone = ( SearchResultDone ) response;
+        }
+
+        super.set( response );
+    }
+
+
+    /**
+     * Gets the SearchResultDone as soon as it has been received, even if the
+     * responses preceding it have not been read yet.
+     *
+     * @return The SearchResultDone, or null if it has not been received yet
+     */
+    public SearchResultDone getSearchResultDone()
+    {
+        return searchResultDone;
+    }
+
+
     /**
      * {@inheritDoc}
      */
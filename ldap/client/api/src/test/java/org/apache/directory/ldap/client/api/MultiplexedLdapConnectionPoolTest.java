@@ -0,0 +1,310 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.ldap.client.api;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * A test class for the MultiplexedLdapConnectionPool, using stub connections.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class MultiplexedLdapConnectionPoolTest
+{
+    /** The stub factory */
+    private StubFactory factory;
+
+
+    /**
+     * A connection which is only connected until it's closed
+     */
+    private static class StubConnection implements InvocationHandler
+    {
+        private volatile boolean connected = true;
+
+
+        public Object invoke( Object proxy, Method method, Object[] args )
+        {
+            String name = method.getName();
+
+            if ( "isConnected".equals( name ) )
+            {
+                return connected;
+            }
+            else if ( "close".equals( name ) )
+            {
+                connected = false;
+
+                return true;
+            }
+            else if ( "hashCode".equals( name ) )
+            {
+                return System.identityHashCode( proxy );
+            }
+            else if ( "equals".equals( name ) )
+            {
+                return proxy == args[0];
+            }
+            else if ( "toString".equals( name ) )
+            {
+                return "StubConnection@" + System.identityHashCode( proxy );
+            }
+
+            return null;
+        }
+    }
+
+
+    /**
+     * A factory creating stub connections, and recording the destroyed ones
+     */
+    private static class StubFactory extends PoolableLdapConnectionFactory
+    {
+        private final List<LdapConnection> created = Collections.synchronizedList( new ArrayList<LdapConnection>() );
+        private final List<LdapConnection> destroyed = Collections.synchronizedList( new ArrayList<LdapConnection>() );
+
+
+        private StubFactory()
+        {
+            super( null );
+        }
+
+
+        public LdapConnection makeObject()
+        {
+            LdapConnection connection = ( LdapConnection ) Proxy.newProxyInstance( getClass().getClassLoader(),
+                new Class<?>[]
+                    { LdapConnection.class }, new StubConnection() );
+            created.add( connection );
+
+            return connection;
+        }
+
+
+        public void destroyObject( LdapConnection connection )
+        {
+            destroyed.add( connection );
+        }
+    }
+
+
+    /**
+     * Simulates a connection closed by the server
+     */
+    private static void disconnect( LdapConnection connection ) throws Exception
+    {
+        connection.close();
+    }
+
+
+    @Before
+    public void init()
+    {
+        factory = new StubFactory();
+    }
+
+
+    @Test
+    public void testConnectionIsShared() throws Exception
+    {
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( factory, 2, 3 );
+
+        LdapConnection connection1 = pool.getConnection();
+        LdapConnection connection2 = pool.getConnection();
+        LdapConnection connection3 = pool.getConnection();
+
+        // A single connection is opened until it carries the maximum number of operations
+        assertSame( connection1, connection2 );
+        assertSame( connection1, connection3 );
+        assertEquals( 1, pool.getNumConnections() );
+        assertEquals( 3, pool.getNumInFlight() );
+
+        LdapConnection connection4 = pool.getConnection();
+
+        assertNotSame( connection1, connection4 );
+        assertEquals( 2, pool.getNumConnections() );
+        assertEquals( 4, pool.getNumInFlight() );
+
+        pool.releaseConnection( connection1 );
+        pool.releaseConnection( connection2 );
+        pool.releaseConnection( connection3 );
+        pool.releaseConnection( connection4 );
+
+        assertEquals( 0, pool.getNumInFlight() );
+        assertEquals( 2, pool.getNumConnections() );
+        assertEquals( 2, factory.created.size() );
+    }
+
+
+    @Test
+    public void testLeastLoadedConnectionIsLeased() throws Exception
+    {
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( factory, 2, 2 );
+
+        LdapConnection connection1 = pool.getConnection();
+        pool.getConnection();
+        LdapConnection connection2 = pool.getConnection();
+        pool.getConnection();
+
+        assertNotSame( connection1, connection2 );
+
+        // connection2 now carries a single operation
+        pool.releaseConnection( connection2 );
+
+        assertSame( connection2, pool.getConnection() );
+
+        // Both carry a single operation once connection1 is released twice
+        pool.releaseConnection( connection1 );
+        pool.releaseConnection( connection1 );
+
+        assertSame( connection1, pool.getConnection() );
+        assertEquals( 3, pool.getNumInFlight() );
+        assertEquals( 2, factory.created.size() );
+    }
+
+
+    @Test
+    public void testPoolIsCapped() throws Exception
+    {
+        final MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( factory, 1, 1 );
+        final LdapConnection connection = pool.getConnection();
+        final AtomicReference<LdapConnection> leased = new AtomicReference<LdapConnection>();
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        Thread thread = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    leased.set( pool.getConnection() );
+                }
+                catch ( Exception e )
+                {
+                    failed.set( true );
+                }
+            }
+        };
+
+        thread.start();
+
+        // The pool is full : the caller waits until the connection is released
+        thread.join( 200L );
+        assertTrue( thread.isAlive() );
+        assertEquals( 1, factory.created.size() );
+
+        pool.releaseConnection( connection );
+        thread.join( 5000L );
+
+        assertFalse( thread.isAlive() );
+        assertFalse( failed.get() );
+        assertSame( connection, leased.get() );
+        assertEquals( 1, pool.getNumConnections() );
+        assertEquals( 1, factory.created.size() );
+    }
+
+
+    @Test
+    public void testClosedIdleConnectionIsDestroyed() throws Exception
+    {
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( factory, 1, 2 );
+
+        LdapConnection connection1 = pool.getConnection();
+        pool.releaseConnection( connection1 );
+        disconnect( connection1 );
+
+        // The closed connection is dropped, destroyed, and replaced
+        LdapConnection connection2 = pool.getConnection();
+
+        assertNotSame( connection1, connection2 );
+        assertEquals( 1, pool.getNumConnections() );
+        assertEquals( 1, factory.destroyed.size() );
+        assertSame( connection1, factory.destroyed.get( 0 ) );
+    }
+
+
+    @Test
+    public void testClosedLeasedConnectionIsDestroyedOnRelease() throws Exception
+    {
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( factory, 2, 2 );
+
+        LdapConnection connection = pool.getConnection();
+        pool.getConnection();
+        disconnect( connection );
+
+        // The closed connection is not leased anymore, but it's kept as long as it's used
+        LdapConnection newConnection = pool.getConnection();
+
+        assertNotSame( connection, newConnection );
+        pool.releaseConnection( connection );
+        assertEquals( 2, pool.getNumConnections() );
+        assertTrue( factory.destroyed.isEmpty() );
+
+        pool.releaseConnection( connection );
+
+        assertEquals( 1, pool.getNumConnections() );
+        assertEquals( 1, pool.getNumInFlight() );
+        assertEquals( 1, factory.destroyed.size() );
+        assertSame( connection, factory.destroyed.get( 0 ) );
+    }
+
+
+    @Test
+    public void testClose() throws Exception
+    {
+        MultiplexedLdapConnectionPool pool = new MultiplexedLdapConnectionPool( factory, 2, 1 );
+
+        pool.getConnection();
+        pool.getConnection();
+        pool.close();
+
+        assertEquals( 0, pool.getNumConnections() );
+        assertEquals( 2, factory.destroyed.size() );
+
+        try
+        {
+            pool.getConnection();
+            fail();
+        }
+        catch ( IllegalStateException ise )
+        {
+            // Expected
+        }
+    }
+}
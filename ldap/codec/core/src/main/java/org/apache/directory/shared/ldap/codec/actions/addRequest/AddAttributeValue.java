@@ -24,6 +24,7 @@ import org.apache.directory.shared.asn1.ber.grammar.GrammarAction;
 import org.apache.directory.shared.asn1.ber.tlv.TLV;
 import org.apache.directory.shared.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.shared.ldap.codec.decorators.AddRequestDecorator;
+import org.apache.directory.shared.ldap.model.entry.BinaryValue;
 import org.apache.directory.shared.ldap.model.exception.LdapException;
 import org.apache.directory.shared.util.Strings;
 import org.slf4j.Logger;
@@ -81,14 +82,20 @@ public class AddAttributeValue extends GrammarAction<LdapMessageContainer<AddReq
             {
                 if ( container.isBinary( addRequest.getCurrentAttributeType() ) )
                 {
-                    value = tlv.getValue().getData();
-
-                    if ( IS_DEBUG )
+                    if ( container.isStreamRetained() && tlv.getValue().isView() )
                     {
-                        LOG.debug( "Adding value {}", Strings.dumpBytes( ( byte[] ) value ) );
+                        // Don't copy the value, it will be read from the stream when needed
+                        value = BinaryValue.wrap( tlv.getValue().getDataBuffer() );
                     }
+                    else
+                    {
+                        // The value has been copied in its own buffer, don't copy it again
+                        value = BinaryValue.adopt( tlv.getValue().getData() );
+                    }
+
+                    LOG.debug( "Adding value {}", value );
 
-                    addRequest.addAttributeValue( ( byte[] ) value );
+                    addRequest.addAttributeValue( ( BinaryValue ) value );
                 }
                 else
                 {
@@ -24,6 +24,7 @@ import org.apache.directory.shared.asn1.ber.grammar.GrammarAction;
 import org.apache.directory.shared.asn1.ber.tlv.TLV;
 import org.apache.directory.shared.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.shared.ldap.codec.decorators.ModifyRequestDecorator;
+import org.apache.directory.shared.ldap.model.entry.BinaryValue;
 import org.apache.directory.shared.ldap.model.exception.LdapException;
 import org.apache.directory.shared.util.StringConstants;
 import org.apache.directory.shared.util.Strings;
@@ -72,13 +73,20 @@ public class StoreModifyRequestAttributeValue extends GrammarAction<LdapMessageC
             {
                 modifyRequestDecorator.addAttributeValue( "" );
             }
+            else if ( container.isBinary( modifyRequestDecorator.getCurrentAttributeType() )
+                && container.isStreamRetained() && tlv.getValue().isView() )
+            {
+                // Don't copy the value, it will be read from the stream when needed
+                modifyRequestDecorator.addAttributeValue( BinaryValue.wrap( tlv.getValue().getDataBuffer() ) );
+            }
             else
             {
                 value = tlv.getValue().getData();
 
                 if ( container.isBinary( modifyRequestDecorator.getCurrentAttributeType() ) )
                 {
-                    modifyRequestDecorator.addAttributeValue( value );
+                    // The value has been copied in its own buffer, don't copy it again
+                    modifyRequestDecorator.addAttributeValue( BinaryValue.adopt( value ) );
                 }
                 else
                 {
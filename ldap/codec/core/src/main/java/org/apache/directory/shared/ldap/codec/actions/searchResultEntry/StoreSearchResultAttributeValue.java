@@ -24,6 +24,7 @@ import org.apache.directory.shared.asn1.ber.grammar.GrammarAction;
 import org.apache.directory.shared.asn1.ber.tlv.TLV;
 import org.apache.directory.shared.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.shared.ldap.codec.decorators.SearchResultEntryDecorator;
+import org.apache.directory.shared.ldap.model.entry.BinaryValue;
 import org.apache.directory.shared.ldap.model.exception.LdapException;
 import org.apache.directory.shared.util.Strings;
 import org.slf4j.Logger;
@@ -83,12 +84,18 @@ public class StoreSearchResultAttributeValue extends GrammarAction<LdapMessageCo
             {
                 if ( container.isBinary( searchResultEntry.getCurrentAttribute().getId() ) )
                 {
-                    value = tlv.getValue().getData();
-
-                    if ( IS_DEBUG )
+                    if ( container.isStreamRetained() && tlv.getValue().isView() )
+                    {
+                        // Don't copy the value, it will be read from the stream when needed
+                        value = BinaryValue.wrap( tlv.getValue().getDataBuffer() );
+                    }
+                    else
                     {
-                        LOG.debug( "Attribute value {}", Strings.dumpBytes( ( byte[] ) value ) );
+                        // The value has been copied in its own buffer, don't copy it again
+                        value = BinaryValue.adopt( tlv.getValue().getData() );
                     }
+
+                    LOG.debug( "Attribute value {}", value );
                 }
                 else
                 {
@@ -63,6 +63,16 @@ public interface LdapApiService
     boolean isControlRegistered( String oid );
 
 
+    /**
+     * Gets the UTF-8 encoded OID of a registered control. The bytes are computed 
+     * once, when the control factory is registered, and must not be modified.
+     * 
+     * @param oid The OID of the control
+     * @return The encoded OID, or null if no control is registered with this OID
+     */
+    byte[] getControlOidBytes( String oid );
+
+
     /**
      * Registers an {@link ControlFactory} with this service.
      * 
@@ -54,6 +54,31 @@ public class LdapDecoder
     /** The maximum PDU size, stored into the LDAPSession's attribute */
     public static final String MAX_PDU_SIZE_ATTR = "LDAP-maxPduSize";
 
+    /**
+     * The name of the LdapSession's attribute which, when set to true, asks the protocol
+     * decoder to deliver all the messages decoded from a single read as one List of
+     * messages, instead of one message at a time. Each read delivers its own List, which
+     * the handler owns.
+     */
+    public static final String BATCHED_DELIVERY_ATTR = "LDAP-batchedDelivery";
+
+    /**
+     * The name of the LdapSession's attribute which, when set to true, asks the protocol
+     * decoder to recycle the TLVs of the message container.
+     *
+     * @see org.apache.directory.shared.asn1.ber.Asn1Container#setTlvPoolEnabled(boolean)
+     */
+    public static final String TLV_POOL_ENABLED_ATTR = "LDAP-tlvPoolEnabled";
+
+    /**
+     * The name of the LdapSession's attribute which, when set to true, lets the decoded
+     * binary values reference the buffers they have been read from, instead of copying
+     * them. It must only be set when the transport does not recycle its read buffers.
+     *
+     * @see org.apache.directory.shared.asn1.ber.Asn1Container#setStreamRetained(boolean)
+     */
+    public static final String STREAM_RETAINED_ATTR = "LDAP-streamRetained";
+
 
     /**
      * Creates an instance of a Ldap Decoder implementation.
@@ -65,16 +65,29 @@ public class LdapEncoder
 
 
     /**
-     * Compute the control's encoded length
+     * Get the UTF-8 encoded control's OID. Registered controls have their OID
+     * encoded once by the codec service, the other ones are encoded on the fly.
      */
-    private int computeControlLength( Control control )
+    private byte[] getOidBytes( Control control )
     {
-        // First, compute the control's value length
-        int controlValueLength = ( ( CodecControl<?> ) control ).computeLength();
+        byte[] oidBytes = codec.getControlOidBytes( control.getOid() );
 
-        // Now, compute the envelop length
+        if ( oidBytes == null )
+        {
+            oidBytes = Strings.getBytesUtf8( control.getOid() );
+        }
+
+        return oidBytes;
+    }
+
+
+    /**
+     * Compute the control's encoded length, given its value length
+     */
+    private int computeControlLength( Control control, int controlValueLength )
+    {
         // The OID
-        int oidLengh = Strings.getBytesUtf8( control.getOid() ).length;
+        int oidLengh = getOidBytes( control ).length;
         int controlLength = 1 + TLV.getNbBytes( oidLengh ) + oidLengh;
 
         // The criticality, only if true
@@ -95,7 +108,8 @@ public class LdapEncoder
     /**
      * Encode a control to a byte[]
      */
-    private ByteBuffer encodeControl( ByteBuffer buffer, Control control ) throws EncoderException
+    private ByteBuffer encodeControl( ByteBuffer buffer, Control control, int controlValueLength )
+        throws EncoderException
     {
         if ( buffer == null )
         {
@@ -108,7 +122,7 @@ public class LdapEncoder
             buffer.put( UniversalTag.SEQUENCE.getValue() );
 
             // The length has been calculated by the computeLength method
-            int controlLength = computeControlLength( control );
+            int controlLength = computeControlLength( control, controlValueLength );
             buffer.put( TLV.getBytes( controlLength ) );
         }
         catch ( BufferOverflowException boe )
@@ -117,7 +131,7 @@ public class LdapEncoder
         }
 
         // The control type
-        BerValue.encode( buffer, control.getOid().getBytes() );
+        BerValue.encode( buffer, getOidBytes( control ) );
 
         // The control criticality, if true
         if ( control.isCritical() )
@@ -159,6 +173,100 @@ public class LdapEncoder
         int length = computeMessageLength( decorator );
         ByteBuffer buffer = ByteBuffer.allocate( length );
 
+        encodeMessage( buffer, decorator );
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+
+    /**
+     * Generate the PDU which contains the encoded object, and append it to a
+     * buffer, starting at its current position. This allows a caller to reuse
+     * the same buffer, which can be a direct one, for many messages, and to
+     * store more than one PDU in a buffer before writing it to a socket.
+     * 
+     * If the buffer does not have enough room for the PDU, a bigger buffer is
+     * allocated, of the same kind (heap or direct), and the bytes already
+     * written in the original buffer are copied into it. The buffer is not
+     * flipped : the caller must do it before reading the PDUs.
+     * 
+     * @param buffer The buffer where to append the PDU. If null, a heap buffer
+     * will be allocated
+     * @param message The message to encode
+     * @return The buffer containing the PDU, which is the given buffer if it was
+     * big enough, positioned after the PDU
+     * @throws EncoderException If anything goes wrong. The buffer position is then
+     * restored, so that the PDUs already written in it can still be used
+     */
+    public ByteBuffer encodeMessage( ByteBuffer buffer, Message message ) throws EncoderException
+    {
+        MessageDecorator<? extends Message> decorator = MessageDecorator.getDecorator( codec, message );
+        int length = computeMessageLength( decorator );
+
+        if ( buffer == null )
+        {
+            buffer = ByteBuffer.allocate( length );
+        }
+        else if ( buffer.remaining() < length )
+        {
+            buffer = expand( buffer, length );
+        }
+
+        int start = buffer.position();
+
+        try
+        {
+            encodeMessage( buffer, decorator );
+        }
+        catch ( EncoderException ee )
+        {
+            // Drop the partially written PDU, the previous ones are left untouched
+            buffer.position( start );
+            throw ee;
+        }
+
+        return buffer;
+    }
+
+
+    /**
+     * Allocate a new buffer with room for at least some more bytes, and copy
+     * the bytes already written in the given buffer into it
+     */
+    private ByteBuffer expand( ByteBuffer buffer, int length )
+    {
+        int capacity = Math.max( buffer.capacity() * 2, buffer.position() + length );
+        ByteBuffer newBuffer;
+
+        if ( buffer.isDirect() )
+        {
+            newBuffer = ByteBuffer.allocateDirect( capacity );
+        }
+        else
+        {
+            newBuffer = ByteBuffer.allocate( capacity );
+        }
+
+        // The given buffer is left untouched, in case the encoding fails
+        ByteBuffer written = buffer.duplicate();
+        written.flip();
+        newBuffer.put( written );
+
+        return newBuffer;
+    }
+
+
+    /**
+     * Encode a message which length has already been computed into a buffer
+     * which is known to have enough room for it.
+     */
+    private void encodeMessage( ByteBuffer buffer, MessageDecorator<? extends Message> decorator )
+        throws EncoderException
+    {
+        Message message = decorator.getDecorated();
+
         try
         {
             try
@@ -189,13 +297,17 @@ public class LdapEncoder
                 buffer.put( ( byte ) LdapConstants.CONTROLS_TAG );
                 buffer.put( TLV.getBytes( decorator.getControlsLength() ) );
 
-                // Encode each control
+                // Encode each control, using the values lengths computed by computeMessageLength
+                int[] controlValuesLength = decorator.getControlValuesLength();
+                int controlPos = 0;
+
                 for ( Control control : controls.values() )
                 {
-                    encodeControl( buffer, control );
+                    int controlValueLength = controlValuesLength[controlPos++];
+
+                    encodeControl( buffer, control, controlValueLength );
 
                     // The OctetString tag if the value is not null
-                    int controlValueLength = ( ( CodecControl<?> ) control ).computeLength();
 
                     if ( controlValueLength > 0 )
                     {
@@ -214,10 +326,6 @@ public class LdapEncoder
 
             throw exception;
         }
-
-        buffer.flip();
-
-        return buffer;
     }
 
 
@@ -271,15 +379,23 @@ public class LdapEncoder
             // LdapMessageLength = LdapMessageLength + Length(0x90)
             // + Length(L3) + L3
             int controlsSequenceLength = 0;
+            int[] controlValuesLength = new int[controls.size()];
+            int controlPos = 0;
 
             // We may have more than one control. ControlsLength is L4.
             for ( Control control : controls.values() )
             {
-                int controlLength = computeControlLength( control );
+                // The control's value length is computed only once, and reused when encoding
+                int controlValueLength = ( ( CodecControl<?> ) control ).computeLength();
+                controlValuesLength[controlPos++] = controlValueLength;
+
+                int controlLength = computeControlLength( control, controlValueLength );
 
                 controlsSequenceLength += 1 + TLV.getNbBytes( controlLength ) + controlLength;
             }
 
+            messageDecorator.setControlValuesLength( controlValuesLength );
+
             // Computes the controls length
             // 1 + Length.getNbBytes( controlsSequenceLength ) + controlsSequenceLength;
             messageDecorator.setControlsLength( controlsSequenceLength );
@@ -41,7 +41,7 @@ public class LdapMessageContainer<E extends MessageDecorator<? extends Message>>
     private E messageDecorator;
 
     /** checks if attribute is binary */
-    private final BinaryAttributeDetector binaryAttributeDetector;
+    private BinaryAttributeDetector binaryAttributeDetector;
 
     /** The message ID */
     private int messageId;
@@ -137,6 +137,18 @@ public class LdapMessageContainer<E extends MessageDecorator<? extends Message>>
     }
 
 
+    /**
+     * Changes the BinaryAttributeDetector used by this container. This should be done
+     * between two PDUs, as it changes the way the following attributes values are decoded.
+     *
+     * @param binaryAttributeDetector checks if an attribute is binary
+     */
+    public void setBinaryAttributeDetector( BinaryAttributeDetector binaryAttributeDetector )
+    {
+        this.binaryAttributeDetector = binaryAttributeDetector;
+    }
+
+
     /**
      * @return The message ID
      */
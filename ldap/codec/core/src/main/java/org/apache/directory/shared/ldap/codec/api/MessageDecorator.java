@@ -92,6 +92,9 @@ public abstract class MessageDecorator<E extends Message> implements Message, De
     /** The length of the controls */
     private int controlsLength;
 
+    /** The lengths of the controls values, in the controls order */
+    private int[] controlValuesLength;
+
     /** The LdapCodecService */
     private final LdapApiService codec;
 
@@ -238,6 +241,24 @@ public abstract class MessageDecorator<E extends Message> implements Message, De
     }
 
 
+    /**
+     * @param controlValuesLength the encoded controls values lengths, in the controls order
+     */
+    public void setControlValuesLength( int[] controlValuesLength )
+    {
+        this.controlValuesLength = controlValuesLength;
+    }
+
+
+    /**
+     * @return the encoded controls values lengths, in the controls order
+     */
+    public int[] getControlValuesLength()
+    {
+        return controlValuesLength;
+    }
+
+
     /**
      * @param messageLength The encoded message length
      */
@@ -38,6 +38,7 @@ import org.apache.directory.shared.ldap.model.entry.DefaultAttribute;
 import org.apache.directory.shared.ldap.model.entry.DefaultModification;
 import org.apache.directory.shared.ldap.model.entry.Modification;
 import org.apache.directory.shared.ldap.model.entry.ModificationOperation;
+import org.apache.directory.shared.ldap.model.entry.Value;
 import org.apache.directory.shared.ldap.model.exception.LdapException;
 import org.apache.directory.shared.ldap.model.exception.MessageException;
 import org.apache.directory.shared.ldap.model.message.Control;
@@ -233,6 +234,17 @@ public class ModifyRequestDecorator extends SingleReplyRequestDecorator<ModifyRe
     }
 
 
+    /**
+     * Add a new value to the current attribute
+     * 
+     * @param value The value to add
+     */
+    public void addAttributeValue( Value<?> value ) throws LdapException
+    {
+        currentAttribute.add( value );
+    }
+
+
     //-------------------------------------------------------------------------
     // The ModifyRequest methods
     //-------------------------------------------------------------------------
@@ -210,6 +210,10 @@ public class SearchResultEntryDecorator extends MessageDecorator<SearchResultEnt
         {
             currentAttribute.add( ( String ) value );
         }
+        else if ( value instanceof Value<?> )
+        {
+            currentAttribute.add( ( Value<?> ) value );
+        }
         else
         {
             currentAttribute.add( ( byte[] ) value );
@@ -75,6 +75,9 @@ public class DefaultLdapCodecService implements LdapApiService
     /** The map of registered {@link org.apache.directory.shared.ldap.codec.api.ControlFactory}'s */
     private Map<String, ControlFactory<?, ?>> controlFactories = new HashMap<String, ControlFactory<?, ?>>();
 
+    /** The encoded OIDs of the registered {@link ControlFactory}'s, computed once at registration */
+    private Map<String, byte[]> controlOidBytes = new HashMap<String, byte[]>();
+
     /** The map of registered {@link org.apache.directory.shared.ldap.codec.api.ExtendedRequestFactory}'s by request OID */
     private Map<String, ExtendedRequestFactory<?, ?>> extReqFactories = new HashMap<String, ExtendedRequestFactory<?, ?>>();
 
@@ -100,27 +103,27 @@ public class DefaultLdapCodecService implements LdapApiService
     private void loadStockControls()
     {
         ControlFactory<?, ?> factory = new CascadeFactory( this );
-        controlFactories.put( factory.getOid(), factory );
+        registerControl( factory );
         LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
 
         factory = new EntryChangeFactory( this );
-        controlFactories.put( factory.getOid(), factory );
+        registerControl( factory );
         LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
 
         factory = new ManageDsaITFactory( this );
-        controlFactories.put( factory.getOid(), factory );
+        registerControl( factory );
         LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
 
         factory = new PagedResultsFactory( this );
-        controlFactories.put( factory.getOid(), factory );
+        registerControl( factory );
         LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
 
         factory = new PersistentSearchFactory( this );
-        controlFactories.put( factory.getOid(), factory );
+        registerControl( factory );
         LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
 
         factory = new SubentriesFactory( this );
-        controlFactories.put( factory.getOid(), factory );
+        registerControl( factory );
         LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
     }
 
@@ -134,6 +137,8 @@ public class DefaultLdapCodecService implements LdapApiService
      */
     public ControlFactory<?, ?> registerControl( ControlFactory<?, ?> factory )
     {
+        controlOidBytes.put( factory.getOid(), Strings.getBytesUtf8( factory.getOid() ) );
+
         return controlFactories.put( factory.getOid(), factory );
     }
 
@@ -143,10 +148,21 @@ public class DefaultLdapCodecService implements LdapApiService
      */
     public ControlFactory<?, ?> unregisterControl( String oid )
     {
+        controlOidBytes.remove( oid );
+
         return controlFactories.remove( oid );
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getControlOidBytes( String oid )
+    {
+        return controlOidBytes.get( oid );
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -20,8 +20,10 @@
 package org.apache.directory.shared.ldap.codec;
 
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -35,12 +37,20 @@ import org.apache.directory.shared.asn1.ber.Asn1Decoder;
 import org.apache.directory.shared.ldap.codec.api.CodecControl;
 import org.apache.directory.shared.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.shared.ldap.codec.api.MessageDecorator;
+import org.apache.directory.shared.ldap.codec.controls.manageDsaIT.ManageDsaITDecorator;
+import org.apache.directory.shared.ldap.codec.controls.search.pagedSearch.PagedResultsDecorator;
 import org.apache.directory.shared.ldap.codec.decorators.AbandonRequestDecorator;
 import org.apache.directory.shared.ldap.codec.osgi.AbstractCodecServiceTest;
 import org.apache.directory.shared.ldap.model.message.AbandonRequest;
 import org.apache.directory.shared.ldap.model.message.AbandonRequestImpl;
 import org.apache.directory.shared.ldap.model.message.Control;
 import org.apache.directory.shared.ldap.model.message.Message;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.message.SearchResultDone;
+import org.apache.directory.shared.ldap.model.message.SearchResultDoneImpl;
+import org.apache.directory.shared.ldap.model.message.controls.ManageDsaIT;
+import org.apache.directory.shared.ldap.model.message.controls.ManageDsaITImpl;
+import org.apache.directory.shared.ldap.model.message.controls.PagedResults;
 import org.apache.directory.shared.util.Strings;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -459,4 +469,52 @@ public class LdapControlTest extends AbstractCodecServiceTest
 
         fail( "We should not reach this point" );
     }
+
+
+    /**
+     * Test the encoding of a Response with registered controls, which OIDs
+     * are encoded once by the codec service
+     */
+    @Test
+    public void testEncodeResponseWithRegisteredControls() throws Exception
+    {
+        assertArrayEquals( Strings.getBytesUtf8( PagedResults.OID ), codec.getControlOidBytes( PagedResults.OID ) );
+        assertNull( codec.getControlOidBytes( "1.3.6.1.5.5.1" ) );
+
+        SearchResultDone searchResultDone = new SearchResultDoneImpl( 4 );
+        searchResultDone.getLdapResult().setResultCode( ResultCodeEnum.SUCCESS );
+
+        PagedResultsDecorator pagedResults = new PagedResultsDecorator( codec );
+        pagedResults.setSize( 10 );
+        pagedResults.setCookie( Strings.getBytesUtf8( "cookie" ) );
+        searchResultDone.addControl( pagedResults );
+
+        ManageDsaITDecorator manageDsaIT = new ManageDsaITDecorator( codec, new ManageDsaITImpl() );
+        manageDsaIT.setCritical( true );
+        searchResultDone.addControl( manageDsaIT );
+
+        ByteBuffer bb = encoder.encodeMessage( searchResultDone );
+
+        // The control values lengths are memoized, a second encoding must produce the same PDU
+        ByteBuffer bb2 = encoder.encodeMessage( searchResultDone );
+        assertEquals( bb, bb2 );
+
+        // Decode the generated PDU, and compare it with the initial message
+        Asn1Decoder ldapDecoder = new Asn1Decoder();
+        LdapMessageContainer<MessageDecorator<? extends Message>> ldapMessageContainer =
+            new LdapMessageContainer<MessageDecorator<? extends Message>>( codec );
+
+        ldapDecoder.decode( bb, ldapMessageContainer );
+
+        Message message = ldapMessageContainer.getMessage();
+        assertEquals( 4, message.getMessageId() );
+        assertEquals( 2, message.getControls().size() );
+
+        PagedResults decodedPagedResults = ( PagedResults ) message.getControl( PagedResults.OID );
+        assertEquals( 10, decodedPagedResults.getSize() );
+        assertEquals( "cookie", Strings.utf8ToString( decodedPagedResults.getCookie() ) );
+        assertFalse( decodedPagedResults.isCritical() );
+
+        assertTrue( message.getControl( ManageDsaIT.OID ).isCritical() );
+    }
 }
@@ -350,4 +350,45 @@ public class LdapMessageTest extends AbstractCodecServiceTest
             fail( ee.getMessage() );
         }
     }
+
+
+    /**
+     * Test the encoding of many messages into the same buffer, starting with
+     * a direct buffer too small for all of them
+     */
+    @Test
+    public void testEncodeMessagesIntoBuffer() throws EncoderException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect( 10 );
+        buffer.put( ( byte ) 0x55 );
+
+        for ( int i = 1; i <= 3; i++ )
+        {
+            UnbindRequest unbindRequest = new UnbindRequestImpl();
+            unbindRequest.setMessageId( 499 + i );
+
+            buffer = encoder.encodeMessage( buffer, unbindRequest );
+        }
+
+        assertTrue( buffer.isDirect() );
+        assertEquals( 1 + 3 * 0x08, buffer.position() );
+
+        buffer.flip();
+
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get( result );
+
+        assertEquals( "0x55 "
+            + "0x30 0x06 0x02 0x02 0x01 0xF4 0x42 0x00 "
+            + "0x30 0x06 0x02 0x02 0x01 0xF5 0x42 0x00 "
+            + "0x30 0x06 0x02 0x02 0x01 0xF6 0x42 0x00 ", Strings.dumpBytes( result ) );
+
+        // A buffer big enough is used as is
+        ByteBuffer bigBuffer = ByteBuffer.allocate( 16 );
+        UnbindRequest unbindRequest = new UnbindRequestImpl();
+        unbindRequest.setMessageId( 500 );
+
+        assertTrue( bigBuffer == encoder.encodeMessage( bigBuffer, unbindRequest ) );
+        assertEquals( 0x08, bigBuffer.position() );
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.codec.search;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.apache.directory.shared.asn1.ber.Asn1Decoder;
+import org.apache.directory.shared.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.shared.ldap.codec.decorators.SearchResultEntryDecorator;
+import org.apache.directory.shared.ldap.codec.osgi.AbstractCodecServiceTest;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntryImpl;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compare the decoding of SearchResultEntries with and without the TLV pool.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class SearchResultEntryPerfTest extends AbstractCodecServiceTest
+{
+    /** The number of PDUs to decode */
+    private static final int NB_LOOPS = 1000000;
+
+
+    /**
+     * Encode a typical SearchResultEntry
+     */
+    private ByteBuffer createSearchResultEntryPdu() throws Exception
+    {
+        Entry entry = new DefaultEntry( "uid=jdoe,ou=people,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: person",
+            "objectClass: organizationalPerson",
+            "objectClass: inetOrgPerson",
+            "uid: jdoe",
+            "cn: John Doe",
+            "sn: Doe",
+            "givenName: John",
+            "mail: john.doe@example.com",
+            "telephoneNumber: +1 408 555 1234",
+            "description: A typical user entry, as returned by a subtree search" );
+
+        SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 12 );
+        searchResultEntry.setEntry( entry );
+
+        return encoder.encodeMessage( new SearchResultEntryDecorator( codec, searchResultEntry ) );
+    }
+
+
+    /**
+     * Decode the same PDU NB_LOOPS times with the given container
+     */
+    private long decode( ByteBuffer pdu, LdapMessageContainer<SearchResultEntryDecorator> container )
+        throws Exception
+    {
+        Asn1Decoder ldapDecoder = new Asn1Decoder();
+        long t0 = System.currentTimeMillis();
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            pdu.rewind();
+            ldapDecoder.decode( pdu, container );
+            assertEquals( 12, container.getMessage().getMessageId() );
+            container.clean();
+        }
+
+        return System.currentTimeMillis() - t0;
+    }
+
+
+    @Test
+    public void testDecodeSearchResultEntryPerf() throws Exception
+    {
+        ByteBuffer pdu = createSearchResultEntryPdu();
+
+        LdapMessageContainer<SearchResultEntryDecorator> container =
+            new LdapMessageContainer<SearchResultEntryDecorator>( codec );
+
+        LdapMessageContainer<SearchResultEntryDecorator> pooledContainer =
+            new LdapMessageContainer<SearchResultEntryDecorator>( codec );
+        pooledContainer.setTlvPoolEnabled( true );
+
+        // Warm up
+        decode( pdu, container );
+        decode( pdu, pooledContainer );
+
+        long delta = decode( pdu, container );
+        long pooledDelta = decode( pdu, pooledContainer );
+
+        System.out.println( "testDecodeSearchResultEntryPerf, " + NB_LOOPS + " loops, PDU length = " + pdu.limit()
+            + ", Delta = " + delta + ", Delta with TLV pool = " + pooledDelta );
+    }
+}
@@ -21,10 +21,12 @@ package org.apache.directory.shared.ldap.codec.search;
 
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
 
 import javax.naming.NamingException;
@@ -37,9 +39,13 @@ import org.apache.directory.shared.ldap.codec.api.LdapMessageContainer;
 import org.apache.directory.shared.ldap.codec.decorators.SearchResultEntryDecorator;
 import org.apache.directory.shared.ldap.codec.osgi.AbstractCodecServiceTest;
 import org.apache.directory.shared.ldap.model.entry.Attribute;
+import org.apache.directory.shared.ldap.model.entry.BinaryValue;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
 import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.entry.Value;
 import org.apache.directory.shared.ldap.model.message.Control;
 import org.apache.directory.shared.ldap.model.message.SearchResultEntry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntryImpl;
 import org.apache.directory.shared.util.Strings;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -1996,4 +2002,123 @@ public class SearchResultEntryTest extends AbstractCodecServiceTest
             fail( ee.getMessage() );
         }
     }
+
+
+    /**
+     * Test the decoding of SearchResultEntries with a container recycling its TLVs,
+     * the second PDU being split in two buffers
+     */
+    @Test
+    public void testDecodeSearchResultEntryTlvPool() throws NamingException
+    {
+        Asn1Decoder ldapDecoder = new Asn1Decoder();
+
+        byte[] pdu = new byte[]
+            {
+                0x30, 0x4e,                 // LDAPMessage ::=SEQUENCE {
+                  0x02, 0x01, 0x01,         // messageID MessageID
+                  0x64, 0x49,               // CHOICE { ..., searchResEntry SearchResultEntry,
+                    0x04, 0x1b,             // objectName LDAPDN,
+                      'o', 'u', '=', 'c', 'o', 'n', 't', 'a', 'c', 't', 's', ',',
+                      'd', 'c', '=', 'i', 'k', 't', 'e', 'k', ',', 'd', 'c', '=', 'c', 'o', 'm',
+                    0x30, 0x2a,             // attributes PartialAttributeList }
+                      0x30, 0x28,
+                        0x04, 0x0b,         // type AttributeDescription,
+                          'o', 'b', 'j', 'e', 'c', 't', 'c', 'l', 'a', 's', 's',
+                        0x31, 0x19,         // vals SET OF AttributeValue }
+                          0x04, 0x03,
+                            't', 'o', 'p',
+                          0x04, 0x12,
+                            'o', 'r', 'g', 'a', 'n', 'i', 'z', 'a', 't', 'i', 'o', 'n', 'a', 'l', 'U', 'n', 'i', 't'
+            };
+
+        // Allocate a SearchResultEntry Container, recycling its TLVs
+        LdapMessageContainer<SearchResultEntryDecorator> ldapMessageContainer =
+            new LdapMessageContainer<SearchResultEntryDecorator>( codec );
+        ldapMessageContainer.setTlvPoolEnabled( true );
+
+        try
+        {
+            // First PDU, in one single buffer
+            ldapDecoder.decode( ByteBuffer.wrap( pdu ), ldapMessageContainer );
+            checkSearchResultEntryTlvPool( ldapMessageContainer.getMessage() );
+            ldapMessageContainer.clean();
+
+            // Second PDU, split in the middle of the attribute type
+            ByteBuffer stream = ByteBuffer.allocate( pdu.length );
+            stream.put( pdu, 0, 0x32 );
+            stream.flip();
+            ldapDecoder.decode( stream, ldapMessageContainer );
+
+            stream.clear();
+            stream.put( pdu, 0x32, pdu.length - 0x32 );
+            stream.flip();
+            ldapDecoder.decode( stream, ldapMessageContainer );
+        }
+        catch ( DecoderException de )
+        {
+            de.printStackTrace();
+            fail( de.getMessage() );
+        }
+
+        checkSearchResultEntryTlvPool( ldapMessageContainer.getMessage() );
+    }
+
+
+    /**
+     * Check the SearchResultEntry decoded by testDecodeSearchResultEntryTlvPool
+     */
+    private void checkSearchResultEntryTlvPool( SearchResultEntry searchResultEntry )
+    {
+        assertEquals( 1, searchResultEntry.getMessageId() );
+        assertEquals( "ou=contacts,dc=iktek,dc=com", searchResultEntry.getObjectName().toString() );
+
+        Entry entry = searchResultEntry.getEntry();
+
+        assertEquals( 1, entry.size() );
+
+        Attribute attribute = entry.get( "objectclass" );
+
+        assertEquals( 2, attribute.size() );
+        assertTrue( attribute.contains( "top" ) );
+        assertTrue( attribute.contains( "organizationalUnit" ) );
+    }
+
+
+    /**
+     * Test the decoding of a SearchResultEntry with a binary value, the container
+     * retaining the stream
+     */
+    @Test
+    public void testDecodeSearchResultEntryStreamRetained() throws Exception
+    {
+        byte[] photo = new byte[4096];
+
+        for ( int i = 0; i < photo.length; i++ )
+        {
+            photo[i] = ( byte ) i;
+        }
+
+        SearchResultEntry encoded = new SearchResultEntryImpl( 2 );
+        encoded.setEntry( new DefaultEntry( "cn=test,ou=people", "cn", "test", "jpegPhoto", photo ) );
+        ByteBuffer stream = encoder.encodeMessage( new SearchResultEntryDecorator( codec, encoded ) );
+
+        Asn1Decoder ldapDecoder = new Asn1Decoder();
+
+        LdapMessageContainer<SearchResultEntryDecorator> ldapMessageContainer =
+            new LdapMessageContainer<SearchResultEntryDecorator>( codec );
+        ldapMessageContainer.setStreamRetained( true );
+
+        ldapDecoder.decode( stream, ldapMessageContainer );
+
+        SearchResultEntry searchResultEntry = ldapMessageContainer.getMessage();
+        Value<?> value = searchResultEntry.getEntry().get( "jpegPhoto" ).get();
+
+        // The value has not been copied from the stream
+        assertTrue( ( ( BinaryValue ) value ).isBuffered() );
+        assertEquals( photo.length, value.length() );
+        assertTrue( Arrays.equals( photo, value.getBytes() ) );
+        assertFalse( ( ( BinaryValue ) value ).isBuffered() );
+        assertEquals( "test", searchResultEntry.getEntry().get( "cn" ).getString() );
+    }
 }
@@ -71,6 +71,9 @@ public class StandaloneLdapApiService implements LdapApiService
     /** The map of registered {@link org.apache.directory.shared.ldap.codec.api.ControlFactory}'s */
     private Map<String, ControlFactory<?, ?>> controlFactories = new HashMap<String, ControlFactory<?, ?>>();
 
+    /** The encoded OIDs of the registered {@link ControlFactory}'s, computed once at registration */
+    private Map<String, byte[]> controlOidBytes = new HashMap<String, byte[]>();
+
     /** The map of registered {@link org.apache.directory.shared.ldap.codec.api.ExtendedRequestFactory}'s by request OID */
     private Map<String, ExtendedRequestFactory<?, ?>> extReqFactories = new HashMap<String, ExtendedRequestFactory<?, ?>>();
 
@@ -228,7 +231,7 @@ public class StandaloneLdapApiService implements LdapApiService
 
             ControlFactory<?, ?> factory = ( ControlFactory<?, ?> ) constructor.newInstance( new Object[]
                 { this } );
-            controlFactories.put( factory.getOid(), factory );
+            registerControl( factory );
             LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
         }
     }
@@ -257,7 +260,7 @@ public class StandaloneLdapApiService implements LdapApiService
 
             ControlFactory<?, ?> factory = ( ControlFactory<?, ?> ) constructor.newInstance( new Object[]
                 { this } );
-            controlFactories.put( factory.getOid(), factory );
+            registerControl( factory );
             LOG.info( "Registered pre-bundled control factory: {}", factory.getOid() );
         }
     }
@@ -353,6 +356,8 @@ public class StandaloneLdapApiService implements LdapApiService
      */
     public ControlFactory<?, ?> registerControl( ControlFactory<?, ?> factory )
     {
+        controlOidBytes.put( factory.getOid(), Strings.getBytesUtf8( factory.getOid() ) );
+
         return controlFactories.put( factory.getOid(), factory );
     }
 
@@ -362,10 +367,21 @@ public class StandaloneLdapApiService implements LdapApiService
      */
     public ControlFactory<?, ?> unregisterControl( String oid )
     {
+        controlOidBytes.remove( oid );
+
         return controlFactories.remove( oid );
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getControlOidBytes( String oid )
+    {
+        return controlOidBytes.get( oid );
+    }
+
+
     /**
      * {@inheritDoc}
      */
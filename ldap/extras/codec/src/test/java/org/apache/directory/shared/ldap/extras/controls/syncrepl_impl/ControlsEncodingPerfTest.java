@@ -0,0 +1,128 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.extras.controls.syncrepl_impl;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.apache.directory.shared.ldap.codec.controls.search.pagedSearch.PagedResultsDecorator;
+import org.apache.directory.shared.ldap.extras.AbstractCodecServiceTest;
+import org.apache.directory.shared.ldap.extras.controls.SyncStateTypeEnum;
+import org.apache.directory.shared.ldap.extras.controls.SyncStateValue;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntry;
+import org.apache.directory.shared.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.shared.util.Strings;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Measure the encoding throughput of SearchResultEntries carrying a PagedResults
+ * and a SyncStateValue control, with and without the SyncStateValue factory
+ * registered (ie, with and without a precomputed control OID).
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class ControlsEncodingPerfTest extends AbstractCodecServiceTest
+{
+    /** The number of PDUs to encode */
+    private static final int NB_LOOPS = 1000000;
+
+
+    /**
+     * Create a SearchResultEntry with a PagedResults and a SyncStateValue control
+     */
+    private SearchResultEntry createSearchResultEntry() throws Exception
+    {
+        SearchResultEntry searchResultEntry = new SearchResultEntryImpl( 12 );
+        searchResultEntry.setEntry( new DefaultEntry( "uid=jdoe,ou=people,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: person",
+            "uid: jdoe",
+            "cn: John Doe",
+            "sn: Doe" ) );
+
+        PagedResultsDecorator pagedResults = new PagedResultsDecorator( codec );
+        pagedResults.setSize( 100 );
+        pagedResults.setCookie( Strings.getBytesUtf8( "page-cookie" ) );
+        searchResultEntry.addControl( pagedResults );
+
+        SyncStateValue syncStateValue = new SyncStateValueDecorator( codec );
+        syncStateValue.setSyncStateType( SyncStateTypeEnum.ADD );
+        syncStateValue.setEntryUUID( Strings.getBytesUtf8( "0123456789abcdef" ) );
+        syncStateValue.setCookie( Strings.getBytesUtf8( "sync-cookie" ) );
+        searchResultEntry.addControl( syncStateValue );
+
+        return searchResultEntry;
+    }
+
+
+    /**
+     * Encode the same message NB_LOOPS times
+     */
+    private long encode( SearchResultEntry searchResultEntry ) throws Exception
+    {
+        long t0 = System.currentTimeMillis();
+        int length = 0;
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            ByteBuffer pdu = encoder.encodeMessage( searchResultEntry );
+            length += pdu.limit();
+        }
+
+        long delta = System.currentTimeMillis() - t0;
+        assertEquals( 0, length % NB_LOOPS );
+
+        return delta;
+    }
+
+
+    @Test
+    public void testEncodeControlsPerf() throws Exception
+    {
+        SearchResultEntry searchResultEntry = createSearchResultEntry();
+
+        // Warm up
+        encode( searchResultEntry );
+
+        long delta = encode( searchResultEntry );
+
+        codec.registerControl( new SyncStateValueFactory( codec ) );
+
+        try
+        {
+            encode( searchResultEntry );
+            long registeredDelta = encode( searchResultEntry );
+
+            System.out.println( "testEncodeControlsPerf, " + NB_LOOPS + " loops, Delta = " + delta
+                + ", Delta with registered SyncStateValue OID = " + registeredDelta + ", "
+                + ( NB_LOOPS * 1000L / Math.max( 1L, registeredDelta ) ) + " PDUs/s" );
+        }
+        finally
+        {
+            codec.unregisterControl( SyncStateValue.OID );
+        }
+    }
+}
@@ -0,0 +1,958 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.util.tree;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.shared.ldap.model.exception.LdapUnwillingToPerformException;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.name.Rdn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A tree mapping DNs to elements, like the {@link DnNode}, but which can be read by
+ * many threads without any locking : the lookups, like {@link #getElement(Dn)},
+ * {@link #hasParentElement(Dn)} or {@link #getParentWithElement(Dn)}, never block,
+ * even while the tree is being modified.<br/>
+ * The modifications only lock the nodes they modify : adding or removing nodes in
+ * two different branches can be done concurrently. The renames and moves, which
+ * modify whole subtrees, are serialized.<br/>
+ * A lookup done while the tree is modified sees the tree either before or after
+ * the modification of each node it goes through.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ * @param <N> The type of node we store
+ */
+public class ConcurrentDnNode<N>
+{
+    /** The logger for this class */
+    private static final Logger LOG = LoggerFactory.getLogger( ConcurrentDnNode.class );
+
+    /** The stored element */
+    private volatile N nodeElement;
+
+    /** The node's key */
+    private volatile Rdn nodeRdn;
+
+    /** The node's Dn */
+    private volatile Dn nodeDn;
+
+    /** The parent, if any */
+    private volatile ConcurrentDnNode<N> parent;
+
+    /** The children, which can be read without locking */
+    private final ConcurrentMap<Rdn, ConcurrentDnNode<N>> children = new ConcurrentHashMap<Rdn, ConcurrentDnNode<N>>();
+
+    /** Set when the node has been removed from the tree. Protected by the node's lock */
+    private boolean removed;
+
+    /** The lock serializing the renames and moves in the whole tree */
+    private final Object modDnLock;
+
+
+    //-------------------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------------------
+    /**
+     * Creates a new root ConcurrentDnNode, with no element.
+     */
+    public ConcurrentDnNode()
+    {
+        nodeDn = Dn.EMPTY_DN;
+        nodeRdn = Rdn.EMPTY_RDN;
+        modDnLock = new Object();
+    }
+
+
+    /**
+     * Creates a new child node
+     */
+    private ConcurrentDnNode( ConcurrentDnNode<N> parent, Rdn rdn, Dn dn, N element )
+    {
+        this.parent = parent;
+        this.nodeRdn = rdn;
+        this.nodeDn = dn;
+        this.nodeElement = element;
+        this.modDnLock = parent.modDnLock;
+    }
+
+
+    //-------------------------------------------------------------------------
+    // Helper methods
+    //-------------------------------------------------------------------------
+    /**
+     * Check that the Dn is not null
+     */
+    private void checkDn( Dn dn ) throws LdapException
+    {
+        if ( ( dn == null ) || dn.isEmpty() )
+        {
+            String message = "Cannot process an empty Dn";
+            LOG.error( message );
+            throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+        }
+    }
+
+
+    /**
+     * Computes the Dn of a child of this node
+     */
+    private Dn childDn( Rdn rdn, Dn dn ) throws LdapInvalidDnException
+    {
+        if ( nodeDn.isEmpty() )
+        {
+            // The root node
+            return new Dn( dn.getSchemaManager(), rdn );
+        }
+
+        return nodeDn.add( rdn );
+    }
+
+
+    /**
+     * @return The root of the tree this node belongs to
+     */
+    private ConcurrentDnNode<N> getRoot()
+    {
+        ConcurrentDnNode<N> root = this;
+
+        while ( root.parent != null )
+        {
+            root = root.parent;
+        }
+
+        return root;
+    }
+
+
+    //-------------------------------------------------------------------------
+    // Read methods : no lock is taken
+    //-------------------------------------------------------------------------
+    /**
+     * Tells if the node is a leaf node.
+     *
+     * @return <code>true</code> if the node has no children
+     */
+    public boolean isLeaf()
+    {
+        return children.isEmpty();
+    }
+
+
+    /**
+     * Tells if the node associated with a Dn is a leaf node.
+     *
+     * @param dn The Dn we want to check
+     * @return <code>true</code> if this is a leaf node, false otherwise.
+     */
+    public boolean isLeaf( Dn dn )
+    {
+        ConcurrentDnNode<N> node = getNode( dn );
+
+        return ( node != null ) && node.children.isEmpty();
+    }
+
+
+    /**
+     * Returns the number of nodes under this node. It includes
+     * the node itself, plus the number of all it children and descendants.
+     *
+     * @return The number of descendents
+     */
+    public int size()
+    {
+        // The node itself
+        int size = 1;
+
+        for ( ConcurrentDnNode<N> node : children.values() )
+        {
+            size += node.size();
+        }
+
+        return size;
+    }
+
+
+    /**
+     * @return Return the stored element, if any
+     */
+    public N getElement()
+    {
+        return nodeElement;
+    }
+
+
+    /**
+     * @return Return the stored element, if any
+     * @param dn The Dn we want to get the element for
+     */
+    public N getElement( Dn dn )
+    {
+        ConcurrentDnNode<N> node = getNode( dn );
+
+        if ( node == null )
+        {
+            return null;
+        }
+
+        return node.nodeElement;
+    }
+
+
+    /**
+     * @return True if the Node stores an element. BranchNode may not hold any
+     * element.
+     */
+    public boolean hasElement()
+    {
+        return nodeElement != null;
+    }
+
+
+    /**
+     * @return True if the Node stores an element. BranchNode may not hold any
+     * element.
+     * @param dn The Dn we want to get the element for
+     */
+    public boolean hasElement( Dn dn )
+    {
+        ConcurrentDnNode<N> node = getNode( dn );
+
+        return ( node != null ) && ( node.nodeElement != null );
+    }
+
+
+    /**
+     * recursively check if the node has a descendant having an element
+     */
+    private boolean hasDescendantElement( ConcurrentDnNode<N> node )
+    {
+        if ( node.nodeElement != null )
+        {
+            return true;
+        }
+
+        for ( ConcurrentDnNode<N> child : node.children.values() )
+        {
+            if ( hasDescendantElement( child ) )
+            {
+                return true;
+            }
+        }
+
+        // Nothing found ...
+        return false;
+    }
+
+
+    /**
+     * @return True if one of the node below the node associated with the Dn has
+     * an element, False otherwise
+     * @param dn The Dn we want to get the element for
+     */
+    public boolean hasDescendantElement( Dn dn )
+    {
+        ConcurrentDnNode<N> node = getNode( dn );
+
+        // We must be at the right place in the tree
+        if ( ( node == null ) || ( node.nodeDn.size() != dn.size() ) )
+        {
+            return false;
+        }
+
+        for ( ConcurrentDnNode<N> child : node.children.values() )
+        {
+            if ( hasDescendantElement( child ) )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * recursively get all the elements from nodes having an element
+     */
+    private void getDescendantElements( ConcurrentDnNode<N> node, List<N> descendants )
+    {
+        N element = node.nodeElement;
+
+        if ( element != null )
+        {
+            descendants.add( element );
+
+            // Stop here
+            return;
+        }
+
+        for ( ConcurrentDnNode<N> child : node.children.values() )
+        {
+            getDescendantElements( child, descendants );
+        }
+    }
+
+
+    /**
+     * @return The elements of the closest descendants of the node associated with
+     * the Dn which have an element
+     * @param dn The Dn we want to get the descendant elements for
+     */
+    public List<N> getDescendantElements( Dn dn )
+    {
+        List<N> descendants = new ArrayList<N>();
+
+        ConcurrentDnNode<N> node = getNode( dn );
+
+        // We must be at the right place in the tree
+        if ( ( node == null ) || ( node.nodeDn.size() != dn.size() ) )
+        {
+            return descendants;
+        }
+
+        for ( ConcurrentDnNode<N> child : node.children.values() )
+        {
+            getDescendantElements( child, descendants );
+        }
+
+        return descendants;
+    }
+
+
+    /**
+     * Tells if the current node has some children or not
+     *
+     * @return <code>true</code> if the node has some children
+     */
+    public boolean hasChildren()
+    {
+        return !children.isEmpty();
+    }
+
+
+    /**
+     * Tells if a node has some children or not.
+     *
+     * @param dn the node's Dn
+     * @return <code>true</code> if the node has some children
+     * @throws LdapException if the Dn is null or empty
+     */
+    public boolean hasChildren( Dn dn ) throws LdapException
+    {
+        checkDn( dn );
+
+        ConcurrentDnNode<N> node = getNode( dn );
+
+        return ( node != null ) && node.hasChildren();
+    }
+
+
+    /**
+     * @return An unmodifiable view of the children
+     */
+    public Map<Rdn, ConcurrentDnNode<N>> getChildren()
+    {
+        return Collections.unmodifiableMap( children );
+    }
+
+
+    /**
+     * @return The parent node, if any
+     */
+    public ConcurrentDnNode<N> getParent()
+    {
+        return parent;
+    }
+
+
+    /**
+     * @return True if the current node has a parent
+     */
+    public boolean hasParent()
+    {
+        return parent != null;
+    }
+
+
+    /**
+     * Tells if there is a node in the tree for the Dn or one of its ancestors.<br>
+     * For instance, if we have stored dc=acme, dc=org into the tree,
+     * the Dn: ou=example, dc=acme, dc=org will have a parent
+     * <br>For the Dn ou=apache, dc=org, there is no parent, so false will be returned.
+     *
+     * @param dn the normalized distinguished name to resolve to a parent
+     * @return true if there is a parent associated with the normalized dn
+     */
+    public boolean hasParent( Dn dn )
+    {
+        return getNode( dn ) != null;
+    }
+
+
+    /**
+     * Tells if the current node contains another node associated
+     * with an rdn.
+     *
+     * @param rdn The name we are looking for
+     * @return <code>true</code> if the tree instance contains this name
+     */
+    public boolean contains( Rdn rdn )
+    {
+        return children.containsKey( rdn );
+    }
+
+
+    /**
+     * Get's a child using an rdn.
+     *
+     * @param rdn the rdn to use as the node key
+     * @return the child node corresponding to the rdn.
+     */
+    public ConcurrentDnNode<N> getChild( Rdn rdn )
+    {
+        return children.get( rdn );
+    }
+
+
+    /**
+     * @return The Node's Rdn
+     */
+    public Rdn getRdn()
+    {
+        return nodeRdn;
+    }
+
+
+    /**
+     * @return the dn
+     */
+    public Dn getDn()
+    {
+        return nodeDn;
+    }
+
+
+    /**
+     * Get the deepest node in the tree for a Dn or one of its ancestors.<br>
+     * For instance, if we have stored dc=acme, dc=org into the tree,
+     * the Dn: ou=example, dc=acme, dc=org will have a parent, and
+     * dc=acme, dc=org will be returned.
+     * <br>For the Dn ou=apache, dc=org, there is no parent, so null will be returned.
+     *
+     * @param dn the normalized distinguished name to resolve to a parent
+     * @return the Node associated with the normalized dn
+     */
+    public ConcurrentDnNode<N> getNode( Dn dn )
+    {
+        List<Rdn> rdns = dn.getRdns();
+
+        ConcurrentDnNode<N> currentNode = this;
+        ConcurrentDnNode<N> parentNode = null;
+
+        for ( int i = rdns.size() - 1; i >= 0; i-- )
+        {
+            currentNode = currentNode.children.get( rdns.get( i ) );
+
+            if ( currentNode == null )
+            {
+                break;
+            }
+
+            parentNode = currentNode;
+        }
+
+        return parentNode;
+    }
+
+
+    /**
+     * Tells if the Dn, or one of its ancestors, is associated with a node having an
+     * element.
+     *
+     * @param dn the normalized distinguished name to resolve to a parent
+     * @return <code>true</code> if an element is associated with the Dn or one of its ancestors
+     */
+    public boolean hasParentElement( Dn dn )
+    {
+        List<Rdn> rdns = dn.getRdns();
+
+        ConcurrentDnNode<N> currentNode = this;
+
+        for ( int i = rdns.size() - 1; i >= 0; i-- )
+        {
+            currentNode = currentNode.children.get( rdns.get( i ) );
+
+            if ( currentNode == null )
+            {
+                break;
+            }
+
+            if ( currentNode.nodeElement != null )
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Get the closest node for one of the ancestors of a Dn which has an element.<br>
+     * For instance, if we have stored dc=acme, dc=org into the tree,
+     * the Dn: ou=example, dc=acme, dc=org will have a parent, and
+     * dc=acme, dc=org will be returned if it has an associated element.
+     * <br>For the Dn ou=apache, dc=org, there is no parent, so null will be returned.
+     *
+     * @param dn the normalized distinguished name to resolve to a parent
+     * @return the Node associated with the closest ancestor having an element
+     */
+    public ConcurrentDnNode<N> getParentWithElement( Dn dn )
+    {
+        List<Rdn> rdns = dn.getRdns();
+
+        ConcurrentDnNode<N> currentNode = this;
+        ConcurrentDnNode<N> element = null;
+
+        for ( int i = rdns.size() - 1; i >= 1; i-- )
+        {
+            currentNode = currentNode.children.get( rdns.get( i ) );
+
+            if ( currentNode == null )
+            {
+                break;
+            }
+
+            if ( currentNode.nodeElement != null )
+            {
+                element = currentNode;
+            }
+        }
+
+        return element;
+    }
+
+
+    /**
+     * Get the closest ancestor of this node which has an element.
+     *
+     * @return the closest ancestor having an element, if any
+     */
+    public ConcurrentDnNode<N> getParentWithElement()
+    {
+        ConcurrentDnNode<N> currentNode = parent;
+
+        while ( currentNode != null )
+        {
+            if ( currentNode.nodeElement != null )
+            {
+                return currentNode;
+            }
+
+            currentNode = currentNode.parent;
+        }
+
+        return null;
+    }
+
+
+    //-------------------------------------------------------------------------
+    // Write methods
+    //-------------------------------------------------------------------------
+    /**
+     * Add a new node in the tree. The added node won't have any element.
+     *
+     * @param dn The node's Dn
+     * @throws LdapException if the Dn is null or empty, or if the node already exists
+     */
+    public void add( Dn dn ) throws LdapException
+    {
+        add( dn, null );
+    }
+
+
+    /**
+     * Add a new node in the tree, creating the missing intermediate nodes. We can't add
+     * a node if its Dn is empty. The added element is attached to the node, which is
+     * named by the Dn's Rdn.
+     *
+     * @param dn The node's Dn
+     * @param element The element to associate with this Node. Can be null.
+     * @throws LdapException if the Dn is null or empty, or if the node already exists
+     */
+    public void add( Dn dn, N element ) throws LdapException
+    {
+        checkDn( dn );
+
+        List<Rdn> rdns = dn.getRdns();
+
+        // Retry from the top when a node has been removed by another thread
+        // while we were walking through it
+        while ( true )
+        {
+            ConcurrentDnNode<N> currentNode = this;
+            boolean created = false;
+            boolean retry = false;
+
+            for ( int i = rdns.size() - 1; i >= 0; i-- )
+            {
+                Rdn rdn = rdns.get( i );
+                ConcurrentDnNode<N> child = currentNode.children.get( rdn );
+
+                if ( child == null )
+                {
+                    synchronized ( currentNode )
+                    {
+                        if ( currentNode.removed )
+                        {
+                            retry = true;
+                            break;
+                        }
+
+                        child = currentNode.children.get( rdn );
+
+                        if ( child == null )
+                        {
+                            child = new ConcurrentDnNode<N>( currentNode, rdn, currentNode.childDn( rdn, dn ),
+                                i == 0 ? element : null );
+                            currentNode.children.put( rdn, child );
+                            created = ( i == 0 );
+                        }
+                    }
+                }
+
+                currentNode = child;
+            }
+
+            if ( retry )
+            {
+                continue;
+            }
+
+            if ( created )
+            {
+                return;
+            }
+
+            synchronized ( currentNode )
+            {
+                if ( currentNode.removed )
+                {
+                    continue;
+                }
+
+                // The added Dn is already present. Check if it already has an element
+                if ( currentNode.nodeElement != null )
+                {
+                    String message = "Cannot add a node to a node already having an element";
+                    LOG.error( message );
+                    throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+                }
+                // We may try to add twice the same Dn, without any element
+                else if ( element == null )
+                {
+                    String message = "Cannot add a node with no element if it already exists";
+                    LOG.error( message );
+                    throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+                }
+
+                // All is fine : we are just injecting some data into an existing node
+                currentNode.nodeElement = element;
+
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Removes a node from the tree, if it has no children. Its ancestors which
+     * have neither an element nor other children are also removed.
+     *
+     * @param dn the node's Dn
+     * @throws LdapException if the Dn is null or empty
+     */
+    public void remove( Dn dn ) throws LdapException
+    {
+        checkDn( dn );
+
+        ConcurrentDnNode<N> node = getNode( dn );
+
+        // Check that the node has the same Dn than the one we gave
+        if ( ( node == null ) || ( dn.size() != node.nodeDn.size() ) )
+        {
+            return;
+        }
+
+        boolean isTarget = true;
+
+        while ( true )
+        {
+            ConcurrentDnNode<N> parentNode = node.parent;
+
+            if ( parentNode == null )
+            {
+                return;
+            }
+
+            // Always lock the parent before the child
+            synchronized ( parentNode )
+            {
+                synchronized ( node )
+                {
+                    if ( node.removed || ( node.parent != parentNode ) || !node.children.isEmpty()
+                        || ( !isTarget && ( node.nodeElement != null ) ) )
+                    {
+                        return;
+                    }
+
+                    parentNode.children.remove( node.nodeRdn, node );
+                    node.removed = true;
+                }
+            }
+
+            isTarget = false;
+            node = parentNode;
+        }
+    }
+
+
+    /**
+     * rename the node's Dn
+     *
+     * @param newRdn the new Rdn of this node
+     * @throws LdapException if the node is the root or has been removed, if the new Rdn
+     * is invalid, or if a sibling already has the new Rdn
+     */
+    public void rename( Rdn newRdn ) throws LdapException
+    {
+        synchronized ( modDnLock )
+        {
+            ConcurrentDnNode<N> parentNode = parent;
+
+            if ( parentNode == null )
+            {
+                String message = "Cannot rename the root node";
+                LOG.error( message );
+                throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+            }
+
+            synchronized ( parentNode )
+            {
+                synchronized ( this )
+                {
+                    checkNotRemoved();
+
+                    Dn newDn = nodeDn.getParent().add( newRdn );
+                    Rdn oldRdn = nodeRdn;
+
+                    checkNoSibling( parentNode, newDn.getRdn() );
+
+                    nodeRdn = newDn.getRdn();
+                    nodeDn = newDn;
+
+                    parentNode.children.remove( oldRdn, this );
+                    parentNode.children.put( nodeRdn, this );
+                }
+            }
+
+            updateAfterModDn();
+        }
+    }
+
+
+    /**
+     * move the node below another node
+     *
+     * @param newParent the new parent Dn, which must be in the tree
+     * @throws LdapException if the new parent does not exist, or is below this node, if
+     * this node has been removed, or if the new parent already has a child with the same Rdn
+     */
+    public void move( Dn newParent ) throws LdapException
+    {
+        synchronized ( modDnLock )
+        {
+            ConcurrentDnNode<N> oldParentNode = parent;
+            ConcurrentDnNode<N> newParentNode = getRoot().getNode( newParent );
+
+            if ( ( oldParentNode == null ) || ( newParentNode == null )
+                || ( newParentNode.nodeDn.size() != newParent.size() ) || newParentNode.nodeDn.isDescendantOf( nodeDn ) )
+            {
+                String message = "Cannot move the node " + nodeDn + " below " + newParent;
+                LOG.error( message );
+                throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+            }
+
+            // Lock the two parents from the root down, as the removals lock a parent before
+            // its child, so that the node is never detached from the tree. The depths can't
+            // change, as the moves are serialized.
+            ConcurrentDnNode<N> firstNode = oldParentNode;
+            ConcurrentDnNode<N> secondNode = newParentNode;
+
+            if ( newParentNode.nodeDn.size() < oldParentNode.nodeDn.size() )
+            {
+                firstNode = newParentNode;
+                secondNode = oldParentNode;
+            }
+
+            synchronized ( firstNode )
+            {
+                synchronized ( secondNode )
+                {
+                    synchronized ( this )
+                    {
+                        checkNotRemoved();
+
+                        if ( newParentNode.removed )
+                        {
+                            String message = "The new parent " + newParent + " has been removed";
+                            LOG.error( message );
+                            throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+                        }
+
+                        checkNoSibling( newParentNode, nodeRdn );
+
+                        oldParentNode.children.remove( nodeRdn, this );
+                        parent = newParentNode;
+                        nodeDn = newParentNode.nodeDn.add( nodeRdn );
+                        newParentNode.children.put( nodeRdn, this );
+                    }
+                }
+            }
+
+            updateAfterModDn();
+        }
+    }
+
+
+    /**
+     * Check that this node has not been removed. The node's lock must be held.
+     */
+    private void checkNotRemoved() throws LdapUnwillingToPerformException
+    {
+        if ( removed )
+        {
+            String message = "The node " + nodeDn + " has been removed";
+            LOG.error( message );
+            throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+        }
+    }
+
+
+    /**
+     * Check that a parent has no other child with the given Rdn. The parent's lock must be held.
+     */
+    private void checkNoSibling( ConcurrentDnNode<N> parentNode, Rdn rdn ) throws LdapUnwillingToPerformException
+    {
+        ConcurrentDnNode<N> sibling = parentNode.children.get( rdn );
+
+        if ( ( sibling != null ) && ( sibling != this ) )
+        {
+            String message = "The node " + parentNode.nodeDn + " already has a child named " + rdn;
+            LOG.error( message );
+            throw new LdapUnwillingToPerformException( ResultCodeEnum.UNWILLING_TO_PERFORM, message );
+        }
+    }
+
+
+    /**
+     * update the descendants Dn after a rename or a move operation
+     */
+    private void updateAfterModDn() throws LdapInvalidDnException
+    {
+        for ( ConcurrentDnNode<N> child : children.values() )
+        {
+            synchronized ( child )
+            {
+                child.nodeDn = nodeDn.add( child.nodeRdn );
+            }
+
+            child.updateAfterModDn();
+        }
+    }
+
+
+    private String toString( String tabs )
+    {
+        if ( nodeRdn == null )
+        {
+            return tabs;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append( tabs );
+
+        if ( isLeaf() )
+        {
+            sb.append( "Leaf[" ).append( nodeDn ).append( "]: " ).append( "'" ).append( nodeElement ).append( "'" );
+            return sb.toString();
+        }
+
+        sb.append( "Branch[" ).append( nodeDn ).append( "]: " );
+
+        if ( nodeElement != null )
+        {
+            sb.append( "'" ).append( nodeElement ).append( "'" );
+        }
+
+        tabs += "    ";
+
+        boolean isFirst = true;
+
+        sb.append( '\n' );
+
+        for ( ConcurrentDnNode<N> child : children.values() )
+        {
+            if ( isFirst )
+            {
+                isFirst = false;
+            }
+            else
+            {
+                sb.append( "\n" );
+            }
+
+            sb.append( child.toString( tabs ) );
+        }
+
+        return sb.toString();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString()
+    {
+        return toString( "" );
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.util.tree;
+
+
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compare the lookup throughput of the DnNode and of the ConcurrentDnNode, used
+ * as a partition router, with 1, 4, 16 and 64 threads.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class ConcurrentDnNodePerfTest
+{
+    /** The total number of lookups, shared between the threads */
+    private static final int NB_LOOKUPS = 4000000;
+
+    /** The number of partitions */
+    private static final int NB_PARTITIONS = 50;
+
+    /** The tested numbers of threads */
+    private static final int[] NB_THREADS = new int[]
+        { 1, 4, 16, 64 };
+
+    /**
+     * The lookup done on the tested tree
+     */
+    private interface Router
+    {
+        Object route( Dn dn );
+    }
+
+
+    /**
+     * Run NB_LOOKUPS lookups with nbThreads threads, and return the elapsed time
+     */
+    private long run( final Router router, final Dn[] dns, int nbThreads ) throws Exception
+    {
+        final int nbLookups = NB_LOOKUPS / nbThreads;
+        Thread[] threads = new Thread[nbThreads];
+
+        for ( int t = 0; t < nbThreads; t++ )
+        {
+            final int start = t;
+
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    for ( int i = 0; i < nbLookups; i++ )
+                    {
+                        if ( router.route( dns[( start + i ) % dns.length] ) == null )
+                        {
+                            throw new IllegalStateException();
+                        }
+                    }
+                }
+            };
+        }
+
+        long t0 = System.currentTimeMillis();
+
+        for ( Thread thread : threads )
+        {
+            thread.start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        return System.currentTimeMillis() - t0;
+    }
+
+
+    @Test
+    public void testLookupPerf() throws Exception
+    {
+        final DnNode<Dn> dnNode = new DnNode<Dn>();
+        final ConcurrentDnNode<Dn> concurrentDnNode = new ConcurrentDnNode<Dn>();
+        Dn[] dns = new Dn[NB_PARTITIONS * 10];
+
+        for ( int i = 0; i < NB_PARTITIONS; i++ )
+        {
+            Dn suffix = new Dn( "dc=partition" + i + ",dc=example,dc=com" );
+            dnNode.add( suffix, suffix );
+            concurrentDnNode.add( suffix, suffix );
+
+            for ( int j = 0; j < 10; j++ )
+            {
+                dns[i * 10 + j] = new Dn( "cn=user" + j + ",ou=people,dc=partition" + i + ",dc=example,dc=com" );
+            }
+        }
+
+        Router synchronizedRouter = new Router()
+        {
+            public Object route( Dn dn )
+            {
+                return dnNode.getParentWithElement( dn );
+            }
+        };
+
+        Router concurrentRouter = new Router()
+        {
+            public Object route( Dn dn )
+            {
+                return concurrentDnNode.getParentWithElement( dn );
+            }
+        };
+
+        // Warm up
+        run( synchronizedRouter, dns, 4 );
+        run( concurrentRouter, dns, 4 );
+
+        for ( int nbThreads : NB_THREADS )
+        {
+            long synchronizedDelta = run( synchronizedRouter, dns, nbThreads );
+            long concurrentDelta = run( concurrentRouter, dns, nbThreads );
+
+            System.out.println( "testLookupPerf, " + nbThreads + " threads, " + NB_LOOKUPS + " lookups, DnNode = "
+                + synchronizedDelta + " ms, ConcurrentDnNode = " + concurrentDelta + " ms" );
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.util.tree;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.exception.LdapUnwillingToPerformException;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.name.Rdn;
+import org.junit.Test;
+
+
+/**
+ * Test the ConcurrentDnNode class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ConcurrentDnNodeTest
+{
+    @Test(expected = LdapUnwillingToPerformException.class)
+    public void testAddNullDn() throws LdapException
+    {
+        new ConcurrentDnNode<Dn>().add( null );
+    }
+
+
+    @Test
+    public void testAdd() throws LdapException
+    {
+        ConcurrentDnNode<Dn> tree = new ConcurrentDnNode<Dn>();
+        Dn dn1 = new Dn( "dc=c,dc=b,dc=a" );
+        Dn dn2 = new Dn( "dc=d,dc=b,dc=a" );
+
+        tree.add( dn1, dn1 );
+        tree.add( dn2 );
+
+        assertEquals( 5, tree.size() );
+        assertEquals( 1, tree.getChildren().size() );
+
+        ConcurrentDnNode<Dn> level1 = tree.getChild( new Rdn( "dc=a" ) );
+        ConcurrentDnNode<Dn> level2 = level1.getChild( new Rdn( "dc=b" ) );
+        ConcurrentDnNode<Dn> level3 = level2.getChild( new Rdn( "dc=c" ) );
+
+        assertSame( tree, level1.getParent() );
+        assertEquals( new Dn( "dc=b,dc=a" ), level2.getDn() );
+        assertEquals( dn1, level3.getDn() );
+        assertEquals( dn1, level3.getElement() );
+        assertFalse( level2.hasElement() );
+        assertTrue( level3.isLeaf() );
+        assertFalse( level2.isLeaf() );
+
+        // Add an element to an existing intermediate node
+        Dn dn3 = new Dn( "dc=b,dc=a" );
+        tree.add( dn3, dn3 );
+        assertEquals( dn3, tree.getElement( dn3 ) );
+        assertEquals( 5, tree.size() );
+    }
+
+
+    @Test(expected = LdapUnwillingToPerformException.class)
+    public void testAddExistingElement() throws LdapException
+    {
+        ConcurrentDnNode<Dn> tree = new ConcurrentDnNode<Dn>();
+        Dn dn = new Dn( "dc=b,dc=a" );
+
+        tree.add( dn, dn );
+        tree.add( dn, dn );
+    }
+
+
+    @Test(expected = LdapUnwillingToPerformException.class)
+    public void testAddExistingNodeNoElement() throws LdapException
+    {
+        ConcurrentDnNode<Dn> tree = new ConcurrentDnNode<Dn>();
+
+        tree.add( new Dn( "dc=c,dc=b,dc=a" ) );
+        tree.add( new Dn( "dc=b,dc=a" ) );
+    }
+
+
+    @Test
+    public void testComplexTreeDeletion() throws LdapException
+    {
+        ConcurrentDnNode<Dn> dnLookupTree = new ConcurrentDnNode<Dn>();
+        Dn dn1 = new Dn( "dc=directory,dc=apache,dc=org" );
+        Dn dn2 = new Dn( "dc=mina,dc=apache,dc=org" );
+        Dn dn3 = new Dn( "dc=test,dc=com" );
+        Dn dn4 = new Dn( "dc=acme,dc=com" );
+        Dn dn5 = new Dn( "dc=acme,c=us,dc=com" );
+        Dn dn6 = new Dn( "dc=empty" );
+
+        dnLookupTree.add( dn1, dn1 );
+        dnLookupTree.add( dn2, dn2 );
+        dnLookupTree.add( dn3, dn3 );
+        dnLookupTree.add( dn4, dn4 );
+        dnLookupTree.add( dn5, dn5 );
+        dnLookupTree.add( dn6, dn6 );
+
+        assertEquals( 11, dnLookupTree.size() );
+
+        dnLookupTree.remove( dn3 );
+        assertEquals( 10, dnLookupTree.size() );
+        assertTrue( dnLookupTree.hasParent( new Dn( "dc=nothing,dc=empty" ) ) );
+
+        dnLookupTree.remove( dn6 );
+        assertEquals( 9, dnLookupTree.size() );
+        assertFalse( dnLookupTree.hasParent( new Dn( "dc=nothing,dc=empty" ) ) );
+
+        // Not removed, as it has children
+        dnLookupTree.remove( new Dn( "dc=apache,dc=org" ) );
+        assertEquals( 9, dnLookupTree.size() );
+
+        dnLookupTree.remove( dn1 );
+        assertEquals( 8, dnLookupTree.size() );
+
+        dnLookupTree.remove( dn5 );
+        assertEquals( 6, dnLookupTree.size() );
+
+        dnLookupTree.remove( dn2 );
+        assertEquals( 3, dnLookupTree.size() );
+        assertTrue( dnLookupTree.hasParent( dn4 ) );
+
+        dnLookupTree.remove( dn4 );
+        assertEquals( 1, dnLookupTree.size() );
+    }
+
+
+    @Test
+    public void testRemoveKeepsAncestorsWithElement() throws LdapException
+    {
+        ConcurrentDnNode<Dn> tree = new ConcurrentDnNode<Dn>();
+        Dn org = new Dn( "dc=org" );
+        Dn dn = new Dn( "dc=directory,dc=apache,dc=org" );
+
+        tree.add( org, org );
+        tree.add( dn, dn );
+        assertEquals( 4, tree.size() );
+
+        tree.remove( dn );
+
+        assertEquals( 2, tree.size() );
+        assertEquals( org, tree.getElement( org ) );
+    }
+
+
+    @Test
+    public void testParentElement() throws Exception
+    {
+        ConcurrentDnNode<Dn> dnLookupTree = new ConcurrentDnNode<Dn>();
+        Dn dn1 = new Dn( "dc=directory,dc=apache,dc=org" );
+        Dn dn2 = new Dn( "dc=mina,dc=apache,dc=org" );
+        Dn dn5 = new Dn( "dc=acme,c=us,dc=com" );
+        Dn dn7 = new Dn( "dc=elem,dc=mina,dc=apache,dc=org" );
+
+        Dn org = new Dn( "dc=org" );
+        Dn apache = new Dn( "dc=apache,dc=org" );
+        Dn test = new Dn( "dc=test,dc=directory,dc=apache,dc=org" );
+
+        dnLookupTree.add( dn1, dn1 );
+        dnLookupTree.add( dn2, dn2 );
+        dnLookupTree.add( dn5 );
+        dnLookupTree.add( dn7, dn7 );
+
+        assertFalse( dnLookupTree.hasParentElement( apache ) );
+        assertTrue( dnLookupTree.hasParentElement( test ) );
+
+        dnLookupTree.add( org, org );
+
+        assertTrue( dnLookupTree.hasParentElement( apache ) );
+        assertEquals( org, dnLookupTree.getParentWithElement( dn1 ).getElement() );
+        assertEquals( org, dnLookupTree.getParentWithElement( apache ).getElement() );
+        assertEquals( dn1, dnLookupTree.getParentWithElement( test ).getElement() );
+        assertNull( dnLookupTree.getParentWithElement( org ) );
+        assertEquals( dn2, dnLookupTree.getNode( dn7 ).getParentWithElement().getElement() );
+
+        // The lookups don't modify the tree
+        assertSame( dnLookupTree, dnLookupTree.getChild( new Rdn( "dc=org" ) ).getParent() );
+        assertNull( dnLookupTree.getParent() );
+
+        assertTrue( dnLookupTree.hasDescendantElement( org ) );
+        assertFalse( dnLookupTree.hasDescendantElement( new Dn( "c=us,dc=com" ) ) );
+
+        // With dc=org, we should get back dn1 and dn2, but not dn7
+        List<Dn> dns = dnLookupTree.getDescendantElements( org );
+
+        assertEquals( 2, dns.size() );
+        assertTrue( dns.contains( dn1 ) );
+        assertTrue( dns.contains( dn2 ) );
+    }
+
+
+    @Test
+    public void testRename() throws Exception
+    {
+        ConcurrentDnNode<Dn> rootNode = new ConcurrentDnNode<Dn>();
+        Dn dn = new Dn( "dc=directory,dc=apache,dc=org" );
+        rootNode.add( dn );
+
+        Rdn childRdn = new Rdn( "dc=org" );
+        ConcurrentDnNode<Dn> child = rootNode.getChild( childRdn );
+
+        Rdn newChildRdn = new Rdn( "dc=neworg" );
+        child.rename( newChildRdn );
+
+        assertNull( rootNode.getChild( childRdn ) );
+        assertSame( child, rootNode.getChild( newChildRdn ) );
+        assertEquals( new Dn( "dc=neworg" ), child.getDn() );
+
+        ConcurrentDnNode<Dn> child2 = child.getChild( new Rdn( "dc=apache" ) );
+        assertEquals( new Dn( "dc=apache,dc=neworg" ), child2.getDn() );
+        assertEquals( new Dn( "dc=directory,dc=apache,dc=neworg" ), child2.getChild( new Rdn( "dc=directory" ) )
+            .getDn() );
+    }
+
+
+    @Test
+    public void testMove() throws Exception
+    {
+        ConcurrentDnNode<Dn> rootNode = new ConcurrentDnNode<Dn>();
+        Dn dn1 = new Dn( "dc=vysper,dc=mina,dc=directory,dc=apache,dc=org" );
+        Dn dn2 = new Dn( "dc=kayyagari,dc=apache,dc=org" );
+        rootNode.add( dn1, dn1 );
+        rootNode.add( dn2 );
+
+        Rdn directoryRdn = new Rdn( "dc=directory" );
+        ConcurrentDnNode<Dn> apacheNode = rootNode.getNode( new Dn( "dc=apache,dc=org" ) );
+        ConcurrentDnNode<Dn> directoryNode = apacheNode.getChild( directoryRdn );
+
+        directoryNode.move( dn2 );
+
+        ConcurrentDnNode<Dn> newParentNode = rootNode.getNode( dn2 );
+        assertSame( directoryNode, newParentNode.getChild( directoryRdn ) );
+        assertSame( newParentNode, directoryNode.getParent() );
+        assertFalse( apacheNode.contains( directoryRdn ) );
+
+        assertEquals( new Dn( "dc=directory,dc=kayyagari,dc=apache,dc=org" ), directoryNode.getDn() );
+        Dn movedDn = new Dn( "dc=vysper,dc=mina,dc=directory,dc=kayyagari,dc=apache,dc=org" );
+        assertEquals( movedDn, rootNode.getNode( movedDn ).getDn() );
+        assertEquals( dn1, rootNode.getElement( movedDn ) );
+    }
+
+
+    @Test(expected = LdapUnwillingToPerformException.class)
+    public void testMoveBelowItself() throws Exception
+    {
+        ConcurrentDnNode<Dn> rootNode = new ConcurrentDnNode<Dn>();
+        rootNode.add( new Dn( "dc=mina,dc=apache,dc=org" ) );
+
+        rootNode.getNode( new Dn( "dc=apache,dc=org" ) ).move( new Dn( "dc=mina,dc=apache,dc=org" ) );
+    }
+
+
+    @Test
+    public void testRenameOrMoveOverSibling() throws Exception
+    {
+        ConcurrentDnNode<Dn> rootNode = new ConcurrentDnNode<Dn>();
+        Dn dn1 = new Dn( "ou=a,dc=apache,dc=org" );
+        Dn dn2 = new Dn( "cn=x,ou=b,dc=apache,dc=org" );
+        Dn dn3 = new Dn( "ou=b,ou=c,dc=apache,dc=org" );
+        rootNode.add( dn1, dn1 );
+        rootNode.add( dn2, dn2 );
+        rootNode.add( dn3, dn3 );
+
+        try
+        {
+            rootNode.getNode( dn1 ).rename( new Rdn( "ou=b" ) );
+            fail();
+        }
+        catch ( LdapUnwillingToPerformException lutpe )
+        {
+            // Expected
+        }
+
+        try
+        {
+            rootNode.getNode( dn3 ).move( new Dn( "dc=apache,dc=org" ) );
+            fail();
+        }
+        catch ( LdapUnwillingToPerformException lutpe )
+        {
+            // Expected
+        }
+
+        // The siblings are left untouched
+        assertEquals( dn1, rootNode.getElement( dn1 ) );
+        assertEquals( dn2, rootNode.getElement( dn2 ) );
+        assertEquals( dn3, rootNode.getElement( dn3 ) );
+    }
+
+
+    @Test
+    public void testRenameOrMoveRemovedNode() throws Exception
+    {
+        ConcurrentDnNode<Dn> rootNode = new ConcurrentDnNode<Dn>();
+        Dn dn = new Dn( "ou=a,dc=apache,dc=org" );
+        rootNode.add( dn, dn );
+        rootNode.add( new Dn( "ou=b,dc=apache,dc=org" ) );
+
+        ConcurrentDnNode<Dn> node = rootNode.getNode( dn );
+        rootNode.remove( dn );
+
+        try
+        {
+            node.rename( new Rdn( "ou=c" ) );
+            fail();
+        }
+        catch ( LdapUnwillingToPerformException lutpe )
+        {
+            // Expected
+        }
+
+        try
+        {
+            node.move( new Dn( "ou=b,dc=apache,dc=org" ) );
+            fail();
+        }
+        catch ( LdapUnwillingToPerformException lutpe )
+        {
+            // Expected
+        }
+
+        // The removed node has not been put back in the tree
+        ConcurrentDnNode<Dn> parentNode = rootNode.getNode( new Dn( "dc=apache,dc=org" ) );
+        assertFalse( parentNode.contains( new Rdn( "ou=a" ) ) );
+        assertFalse( parentNode.contains( new Rdn( "ou=c" ) ) );
+        rootNode.add( dn, dn );
+        assertEquals( dn, rootNode.getElement( dn ) );
+    }
+
+
+    @Test
+    public void testConcurrentAddAndLookup() throws Exception
+    {
+        final ConcurrentDnNode<Dn> tree = new ConcurrentDnNode<Dn>();
+        final Dn suffix = new Dn( "dc=example,dc=com" );
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        tree.add( suffix, suffix );
+
+        Thread[] threads = new Thread[8];
+
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            final int threadNumber = t;
+
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for ( int i = 0; i < 200; i++ )
+                        {
+                            Dn dn = new Dn( "cn=e" + i + ",ou=t" + threadNumber + ",dc=example,dc=com" );
+                            tree.add( dn, dn );
+
+                            assertEquals( dn, tree.getElement( dn ) );
+                            assertEquals( suffix, tree.getParentWithElement( dn ).getElement() );
+                        }
+
+                        for ( int i = 0; i < 200; i += 2 )
+                        {
+                            tree.remove( new Dn( "cn=e" + i + ",ou=t" + threadNumber + ",dc=example,dc=com" ) );
+                        }
+                    }
+                    catch ( Throwable th )
+                    {
+                        error.set( th );
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertNull( error.get() );
+
+        // The root, dc=com, dc=example, 8 ou and 8 * 100 cn
+        assertEquals( 811, tree.size() );
+        assertNotNull( tree.getNode( new Dn( "cn=e1,ou=t7,dc=example,dc=com" ) ) );
+    }
+}
@@ -276,7 +276,7 @@ public abstract class AbstractValue<T> implements Value<T>
     /**
      * {@inheritDoc}
      */
-    public final boolean isNull()
+    public boolean isNull()
     {
         return wrappedValue == null;
     }
@@ -285,7 +285,7 @@ public abstract class AbstractValue<T> implements Value<T>
     /**
      * {@inheritDoc}
      */
-    public final boolean isValid( SyntaxChecker syntaxChecker ) throws LdapInvalidAttributeValueException
+    public boolean isValid( SyntaxChecker syntaxChecker ) throws LdapInvalidAttributeValueException
     {
         if ( syntaxChecker == null )
         {
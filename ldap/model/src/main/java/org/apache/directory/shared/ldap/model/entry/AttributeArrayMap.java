@@ -0,0 +1,293 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.entry;
+
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * The attributes of a {@link CompactEntry}, stored in two parallel arrays sorted on
+ * the attribute ID (the OID for a schema aware entry). An attribute is found with a
+ * binary search, and an entry with 20 attributes uses two small arrays instead of a
+ * hash table and 20 map entries.
+ * <br/>
+ * The attributes added to this map are compacted : when they are DefaultAttributes,
+ * their values are moved to a {@link ValueArraySet}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+class AttributeArrayMap extends AbstractMap<String, Attribute>
+{
+    /** The sorted attribute IDs */
+    private String[] ids;
+
+    /** The attributes, in the same order as their IDs */
+    private Attribute[] attributes;
+
+    /** The number of attributes */
+    private int size;
+
+
+    /**
+     * Creates a new instance of AttributeArrayMap.
+     *
+     * @param capacity The expected number of attributes
+     */
+    AttributeArrayMap( int capacity )
+    {
+        ids = new String[Math.max( capacity, 1 )];
+        attributes = new Attribute[ids.length];
+    }
+
+
+    /**
+     * @return The position of the ID if it's present, otherwise -(insertion point) - 1
+     */
+    private int indexOf( Object id )
+    {
+        if ( !( id instanceof String ) )
+        {
+            return -size - 1;
+        }
+
+        String key = ( String ) id;
+        int low = 0;
+        int high = size - 1;
+
+        while ( low <= high )
+        {
+            int middle = ( low + high ) >>> 1;
+            int comparison = ids[middle].compareTo( key );
+
+            if ( comparison < 0 )
+            {
+                low = middle + 1;
+            }
+            else if ( comparison > 0 )
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                return middle;
+            }
+        }
+
+        return -( low + 1 );
+    }
+
+
+    /**
+     * Removes the attribute at a given position
+     */
+    private Attribute removeAt( int pos )
+    {
+        Attribute removed = attributes[pos];
+
+        size--;
+        System.arraycopy( ids, pos + 1, ids, pos, size - pos );
+        System.arraycopy( attributes, pos + 1, attributes, pos, size - pos );
+        ids[size] = null;
+        attributes[size] = null;
+
+        return removed;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute get( Object id )
+    {
+        int pos = indexOf( id );
+
+        return pos >= 0 ? attributes[pos] : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsKey( Object id )
+    {
+        return indexOf( id ) >= 0;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( String id, Attribute attribute )
+    {
+        if ( attribute instanceof DefaultAttribute )
+        {
+            ( ( DefaultAttribute ) attribute ).compact();
+        }
+
+        int pos = indexOf( id );
+
+        if ( pos >= 0 )
+        {
+            Attribute previous = attributes[pos];
+            attributes[pos] = attribute;
+
+            return previous;
+        }
+
+        pos = -pos - 1;
+
+        if ( size == ids.length )
+        {
+            int newLength = size + ( size >> 1 ) + 1;
+            String[] newIds = new String[newLength];
+            Attribute[] newAttributes = new Attribute[newLength];
+            System.arraycopy( ids, 0, newIds, 0, size );
+            System.arraycopy( attributes, 0, newAttributes, 0, size );
+            ids = newIds;
+            attributes = newAttributes;
+        }
+
+        System.arraycopy( ids, pos, ids, pos + 1, size - pos );
+        System.arraycopy( attributes, pos, attributes, pos + 1, size - pos );
+        ids[pos] = id;
+        attributes[pos] = attribute;
+        size++;
+
+        return null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute remove( Object id )
+    {
+        int pos = indexOf( id );
+
+        return pos >= 0 ? removeAt( pos ) : null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear()
+    {
+        Arrays.fill( ids, 0, size, null );
+        Arrays.fill( attributes, 0, size, null );
+        size = 0;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<Map.Entry<String, Attribute>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, Attribute>>()
+        {
+            public int size()
+            {
+                return size;
+            }
+
+
+            public Iterator<Map.Entry<String, Attribute>> iterator()
+            {
+                return new Iterator<Map.Entry<String, Attribute>>()
+                {
+                    /** The position of the next attribute */
+                    private int pos;
+
+                    /** The position of the last returned attribute, or -1 */
+                    private int last = -1;
+
+
+                    public boolean hasNext()
+                    {
+                        return pos < size;
+                    }
+
+
+                    public Map.Entry<String, Attribute> next()
+                    {
+                        if ( pos >= size )
+                        {
+                            throw new NoSuchElementException();
+                        }
+
+                        last = pos++;
+                        final String id = ids[last];
+                        final Attribute attribute = attributes[last];
+
+                        return new Map.Entry<String, Attribute>()
+                        {
+                            public String getKey()
+                            {
+                                return id;
+                            }
+
+
+                            public Attribute getValue()
+                            {
+                                return attribute;
+                            }
+
+
+                            public Attribute setValue( Attribute value )
+                            {
+                                throw new UnsupportedOperationException();
+                            }
+                        };
+                    }
+
+
+                    public void remove()
+                    {
+                        if ( last < 0 )
+                        {
+                            throw new IllegalStateException();
+                        }
+
+                        removeAt( last );
+                        pos = last;
+                        last = -1;
+                    }
+                };
+            }
+        };
+    }
+}
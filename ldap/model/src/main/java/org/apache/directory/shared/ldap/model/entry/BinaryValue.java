@@ -22,6 +22,7 @@ package org.apache.directory.shared.ldap.model.entry;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
 
@@ -32,6 +33,7 @@ import org.apache.directory.shared.ldap.model.schema.AttributeType;
 import org.apache.directory.shared.ldap.model.schema.LdapComparator;
 import org.apache.directory.shared.ldap.model.schema.MatchingRule;
 import org.apache.directory.shared.ldap.model.schema.Normalizer;
+import org.apache.directory.shared.ldap.model.schema.SyntaxChecker;
 import org.apache.directory.shared.ldap.model.schema.comparators.ByteArrayComparator;
 import org.apache.directory.shared.util.Strings;
 
@@ -49,6 +51,12 @@ public class BinaryValue extends AbstractValue<byte[]>
     /** Used for serialization */
     public static final long serialVersionUID = 2L;
 
+    /**
+     * The value, when it has been created from a buffer and has not been read yet.
+     * It is copied into the wrapped value the first time the bytes are needed.
+     */
+    private volatile ByteBuffer bufferedValue;
+
 
     /**
      * Creates a BinaryValue without an initial wrapped value.
@@ -97,6 +105,143 @@ public class BinaryValue extends AbstractValue<byte[]>
     }
 
 
+    /**
+     * Creates a BinaryValue wrapping the remaining bytes of a buffer. The bytes
+     * are not copied until they are read, so the buffer content must not be
+     * modified afterward. The buffer's position and limit are not modified.
+     *
+     * @param value the buffer containing the binary value, which may be null
+     * @return The created BinaryValue
+     */
+    public static BinaryValue wrap( ByteBuffer value )
+    {
+        BinaryValue binaryValue = new BinaryValue( ( AttributeType ) null );
+
+        if ( value != null )
+        {
+            binaryValue.bufferedValue = value.slice();
+        }
+
+        return binaryValue;
+    }
+
+
+    /**
+     * Creates a BinaryValue using the given byte[] as is. The array is not copied,
+     * so it must not be modified afterward.
+     *
+     * @param value the binary value to adopt, which may be null
+     * @return The created BinaryValue
+     */
+    public static BinaryValue adopt( byte[] value )
+    {
+        BinaryValue binaryValue = new BinaryValue( ( AttributeType ) null );
+
+        // As the value has no AttributeType, the wrapped and normalized values are the same
+        binaryValue.wrappedValue = value;
+        binaryValue.normalizedValue = value;
+
+        return binaryValue;
+    }
+
+
+    /**
+     * Copy the buffered value, if any, into the wrapped and normalized values.
+     * As the value has no AttributeType, both share the same byte[].
+     */
+    private synchronized void loadBuffer()
+    {
+        ByteBuffer buffer = bufferedValue;
+
+        if ( buffer != null )
+        {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get( bytes );
+
+            wrappedValue = bytes;
+            normalizedValue = bytes;
+            bufferedValue = null;
+        }
+    }
+
+
+    /**
+     * Tells if the value is still held by the buffer it has been created from,
+     * and has not been copied yet.
+     *
+     * @return <code>true</code> if the value has not been copied from its buffer
+     */
+    public boolean isBuffered()
+    {
+        return bufferedValue != null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isNull()
+    {
+        return ( bufferedValue == null ) && ( wrappedValue == null );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getReference()
+    {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
+        return super.getReference();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] getNormReference()
+    {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
+        return super.getNormReference();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isValid( SyntaxChecker syntaxChecker ) throws LdapInvalidAttributeValueException
+    {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
+        return super.isValid( syntaxChecker );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    protected void apply( AttributeType attributeType ) throws LdapInvalidAttributeValueException
+    {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
+        super.apply( attributeType );
+    }
+
+
     /**
      * Creates a BinaryValue with an initial wrapped binary value.
      *
@@ -127,6 +272,11 @@ public class BinaryValue extends AbstractValue<byte[]>
             return null;
         }
 
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
         byte[] copy = new byte[normalizedValue.length];
         System.arraycopy( normalizedValue, 0, copy, 0, normalizedValue.length );
         return copy;
@@ -209,8 +359,25 @@ public class BinaryValue extends AbstractValue<byte[]>
                 return 0;
             }
 
-            byte[] normalizedValue = getNormReference();
-            h = Arrays.hashCode( normalizedValue );
+            ByteBuffer buffer = bufferedValue;
+
+            if ( buffer != null )
+            {
+                // Compute the same hash than Arrays.hashCode(), without copying the buffer
+                int hash = 1;
+
+                for ( int i = buffer.position(); i < buffer.limit(); i++ )
+                {
+                    hash = 31 * hash + buffer.get( i );
+                }
+
+                h = hash;
+            }
+            else
+            {
+                byte[] normalizedValue = getNormReference();
+                h = Arrays.hashCode( normalizedValue );
+            }
         }
 
         return h;
@@ -236,6 +403,25 @@ public class BinaryValue extends AbstractValue<byte[]>
         }
 
         BinaryValue other = ( BinaryValue ) obj;
+
+        // If both values are still buffered, they have no AttributeType : compare the buffers
+        ByteBuffer buffer = bufferedValue;
+        ByteBuffer otherBuffer = other.bufferedValue;
+
+        if ( ( buffer != null ) && ( otherBuffer != null ) )
+        {
+            return buffer.equals( otherBuffer );
+        }
+
+        if ( buffer != null )
+        {
+            loadBuffer();
+        }
+
+        if ( otherBuffer != null )
+        {
+            other.loadBuffer();
+        }
         
         // First check if we have an attrbuteType.
         if ( attributeType != null )
@@ -399,6 +585,11 @@ public class BinaryValue extends AbstractValue<byte[]>
      */
     public BinaryValue clone()
     {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
         BinaryValue clone = ( BinaryValue ) super.clone();
 
         // We have to copy the byte[], they are just referenced by suoer.clone()
@@ -423,6 +614,11 @@ public class BinaryValue extends AbstractValue<byte[]>
      */
     public byte[] getValue()
     {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
         if ( wrappedValue == null )
         {
             return null;
@@ -451,6 +647,13 @@ public class BinaryValue extends AbstractValue<byte[]>
      */
     public int length()
     {
+        ByteBuffer buffer = bufferedValue;
+
+        if ( buffer != null )
+        {
+            return buffer.remaining();
+        }
+
         return wrappedValue != null ? wrappedValue.length : 0;
     }
 
@@ -474,6 +677,11 @@ public class BinaryValue extends AbstractValue<byte[]>
      */
     public String getString()
     {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
         return Strings.utf8ToString( wrappedValue );
     }
 
@@ -592,6 +800,11 @@ public class BinaryValue extends AbstractValue<byte[]>
      */
     public void writeExternal( ObjectOutput out ) throws IOException
     {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
         // Write the BINARY flag
         out.writeBoolean( BINARY );
 
@@ -649,6 +862,11 @@ public class BinaryValue extends AbstractValue<byte[]>
      */
     public String toString()
     {
+        if ( bufferedValue != null )
+        {
+            loadBuffer();
+        }
+
         if ( wrappedValue == null )
         {
             return "null";
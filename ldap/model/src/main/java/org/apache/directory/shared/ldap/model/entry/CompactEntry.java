@@ -0,0 +1,692 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.entry;
+
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.ldap.model.schema.AttributeType;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+
+
+/**
+ * An Entry which uses less memory than a {@link DefaultEntry}, for the applications
+ * keeping many entries in memory, like caches or in-memory partitions.
+ * <br/>
+ * A DefaultEntry stores its attributes in a HashMap, and each DefaultAttribute stores
+ * its values in a LinkedHashSet : for an entry with 20 attributes of one or two values,
+ * the tables and the map entries take more memory than the values themselves. A
+ * CompactEntry stores its attributes in two arrays sorted on the attribute OID (the
+ * lowercased ID when the entry is not schema aware), found with a binary search, and
+ * the values of its DefaultAttributes in flat arrays.
+ * <br/>
+ * The attributes added to a CompactEntry are compacted, so they should not be shared
+ * with another entry which is modified concurrently. Apart from its footprint, a
+ * CompactEntry behaves exactly like a DefaultEntry, to which it delegates the
+ * attribute handling. Like the DefaultEntry, it's not thread safe.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class CompactEntry implements Entry
+{
+    /** Used for serialization */
+    private static final long serialVersionUID = 1L;
+
+    /** The initial number of attributes */
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /** The DefaultEntry storing its attributes in arrays */
+    private DefaultEntry entry;
+
+
+    //-------------------------------------------------------------------------
+    // Constructors
+    //-------------------------------------------------------------------------
+    /**
+     * Creates a new instance of CompactEntry, not schema aware.
+     * <p>
+     * This entry <b>must</b> be initialized before being used !
+     */
+    public CompactEntry()
+    {
+        this( ( SchemaManager ) null );
+    }
+
+
+    /**
+     * Creates a new instance of CompactEntry, schema aware, with an empty Dn.
+     *
+     * @param schemaManager The reference to the schemaManager
+     */
+    public CompactEntry( SchemaManager schemaManager )
+    {
+        this( schemaManager, ( Dn ) null );
+    }
+
+
+    /**
+     * Creates a new instance of CompactEntry, schema aware.
+     *
+     * @param schemaManager The reference to the schemaManager
+     * @param dn The Dn for this entry. Can be null.
+     */
+    public CompactEntry( SchemaManager schemaManager, Dn dn )
+    {
+        entry = new DefaultEntry( schemaManager, dn, new AttributeArrayMap( DEFAULT_CAPACITY ) );
+    }
+
+
+    /**
+     * Creates a new instance of CompactEntry, schema aware.
+     *
+     * @param schemaManager The reference to the schemaManager
+     * @param dn The String Dn for this entry. Can be null.
+     * @throws LdapInvalidDnException If the Dn is invalid
+     */
+    public CompactEntry( SchemaManager schemaManager, String dn ) throws LdapInvalidDnException
+    {
+        this( schemaManager, new Dn( schemaManager, dn ) );
+    }
+
+
+    /**
+     * Creates a new instance of CompactEntry, with a Dn and a list of attributes,
+     * described the same way as for a {@link DefaultEntry}.
+     *
+     * @param schemaManager The reference to the schemaManager
+     * @param dn The Dn for this entry. Can be null.
+     * @param elements The attributes, in LDIF format
+     * @throws LdapException If the attributes are invalid
+     */
+    public CompactEntry( SchemaManager schemaManager, Dn dn, Object... elements ) throws LdapException
+    {
+        this( schemaManager, new DefaultEntry( schemaManager, dn, elements ) );
+    }
+
+
+    /**
+     * Creates a new instance of CompactEntry, copying an existing entry. The
+     * attributes are copied, and made schema aware if needed.
+     *
+     * @param schemaManager The reference to the schemaManager
+     * @param entry The entry to copy
+     * @throws LdapException If one of the attributes is invalid
+     */
+    public CompactEntry( SchemaManager schemaManager, Entry entry ) throws LdapException
+    {
+        if ( schemaManager == null )
+        {
+            this.entry = new DefaultEntry( null, entry.getDn(), new AttributeArrayMap( entry.size() ) );
+
+            for ( Attribute attribute : entry )
+            {
+                this.entry.put( attribute.clone() );
+            }
+        }
+        else
+        {
+            // The DefaultEntry copy makes the attributes schema aware
+            DefaultEntry copy = new DefaultEntry( schemaManager, entry );
+
+            this.entry = new DefaultEntry( schemaManager, copy.getDn(), new AttributeArrayMap( copy.size() ) );
+
+            for ( Attribute attribute : copy )
+            {
+                this.entry.put( attribute );
+            }
+        }
+    }
+
+
+    /**
+     * Creates a new instance of CompactEntry wrapping a DefaultEntry which stores its
+     * attributes in arrays.
+     */
+    private CompactEntry( DefaultEntry entry )
+    {
+        this.entry = entry;
+    }
+
+
+    //-------------------------------------------------------------------------
+    // Entry methods
+    //-------------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    public void clear()
+    {
+        entry.clear();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Entry clone()
+    {
+        return new CompactEntry( ( DefaultEntry ) entry.clone() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Dn getDn()
+    {
+        return entry.getDn();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasObjectClass( String... objectClasses )
+    {
+        return entry.hasObjectClass( objectClasses );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasObjectClass( Attribute... objectClasses )
+    {
+        return entry.hasObjectClass( objectClasses );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute get( String alias )
+    {
+        return entry.get( alias );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute get( AttributeType attributeType )
+    {
+        return entry.get( attributeType );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<Attribute> getAttributes()
+    {
+        return entry.getAttributes();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDn( Dn dn )
+    {
+        entry.setDn( dn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setDn( String dn ) throws LdapInvalidDnException
+    {
+        entry.setDn( dn );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<Attribute> iterator()
+    {
+        return entry.iterator();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( Attribute... attributes ) throws LdapException
+    {
+        entry.add( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        entry.add( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( AttributeType attributeType, String... values ) throws LdapException
+    {
+        entry.add( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( AttributeType attributeType, Value<?>... values ) throws LdapException
+    {
+        entry.add( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( String upId, AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        entry.add( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( String upId, AttributeType attributeType, String... values ) throws LdapException
+    {
+        entry.add( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( String upId, AttributeType attributeType, Value<?>... values ) throws LdapException
+    {
+        entry.add( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( String upId, String... values ) throws LdapException
+    {
+        entry.add( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( String upId, byte[]... values ) throws LdapException
+    {
+        entry.add( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void add( String upId, Value<?>... values ) throws LdapException
+    {
+        entry.add( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Attribute> put( Attribute... attributes ) throws LdapException
+    {
+        return entry.put( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( AttributeType attributeType, String... values ) throws LdapException
+    {
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( AttributeType attributeType, Value<?>... values ) throws LdapException
+    {
+        return entry.put( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( String upId, AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( String upId, AttributeType attributeType, String... values ) throws LdapException
+    {
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( String upId, AttributeType attributeType, Value<?>... values ) throws LdapException
+    {
+        return entry.put( upId, attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( String upId, byte[]... values )
+    {
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( String upId, String... values )
+    {
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Attribute put( String upId, Value<?>... values )
+    {
+        return entry.put( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove( AttributeType attributeType, byte[]... values ) throws LdapException
+    {
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove( AttributeType attributeType, String... values ) throws LdapException
+    {
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove( AttributeType attributeType, Value<?>... values ) throws LdapException
+    {
+        return entry.remove( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<Attribute> remove( Attribute... attributes ) throws LdapException
+    {
+        return entry.remove( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void removeAttributes( AttributeType... attributes )
+    {
+        entry.removeAttributes( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove( String upId, byte[]... values ) throws LdapException
+    {
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove( String upId, String... values ) throws LdapException
+    {
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove( String upId, Value<?>... values ) throws LdapException
+    {
+        return entry.remove( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void removeAttributes( String... attributes )
+    {
+        entry.removeAttributes( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( AttributeType attributeType, byte[]... values )
+    {
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( AttributeType attributeType, String... values )
+    {
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( AttributeType attributeType, Value<?>... values )
+    {
+        return entry.contains( attributeType, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsAttribute( AttributeType attributeType )
+    {
+        return entry.containsAttribute( attributeType );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( Attribute... attributes )
+    {
+        return entry.contains( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( String upId, byte[]... values )
+    {
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( String upId, String... values )
+    {
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( String upId, Value<?>... values )
+    {
+        return entry.contains( upId, values );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean containsAttribute( String... attributes )
+    {
+        return entry.containsAttribute( attributes );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size()
+    {
+        return entry.size();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isSchemaAware()
+    {
+        return entry.isSchemaAware();
+    }
+
+
+    //-------------------------------------------------------------------------
+    // Serialization methods
+    //-------------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    public void writeExternal( ObjectOutput out ) throws IOException
+    {
+        entry.writeExternal( out );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void readExternal( ObjectInput in ) throws IOException, ClassNotFoundException
+    {
+        entry.readExternal( in );
+    }
+
+
+    //-------------------------------------------------------------------------
+    // Object methods
+    //-------------------------------------------------------------------------
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode()
+    {
+        return entry.hashCode();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean equals( Object o )
+    {
+        if ( this == o )
+        {
+            return true;
+        }
+
+        return entry.equals( o );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public String toString()
+    {
+        return entry.toString();
+    }
+}
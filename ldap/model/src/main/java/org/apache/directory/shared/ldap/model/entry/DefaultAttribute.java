@@ -152,6 +152,33 @@ public class DefaultAttribute implements Attribute, Cloneable
     }
 
 
+    /**
+     * Moves the values of this attribute to a compact array based Set. Used by the
+     * {@link CompactEntry} attributes.
+     */
+    /* No protection*/void compact()
+    {
+        if ( !( values instanceof ValueArraySet ) )
+        {
+            values = new ValueArraySet( values );
+        }
+    }
+
+
+    /**
+     * Creates an empty Set of values, of the same kind as the current one
+     */
+    private Set<Value<?>> newValueSet( int size )
+    {
+        if ( values instanceof ValueArraySet )
+        {
+            return new ValueArraySet( size );
+        }
+
+        return new LinkedHashSet<Value<?>>( size );
+    }
+
+
     /**
      * Create a new instance of a schema aware Attribute, without ID nor value.
      * 
@@ -1768,7 +1795,7 @@ public class DefaultAttribute implements Attribute, Cloneable
 
         if ( values != null )
         {
-            Set<Value<?>> newValues = new LinkedHashSet<Value<?>>( values.size() );
+            Set<Value<?>> newValues = newValueSet( values.size() );
 
             for ( Value<?> value : values )
             {
@@ -1936,7 +1963,7 @@ public class DefaultAttribute implements Attribute, Cloneable
                 attribute.attributeType = attributeType;
             }
             
-            attribute.values = new LinkedHashSet<Value<?>>( values.size() );
+            attribute.values = newValueSet( values.size() );
 
             for ( Value<?> value : values )
             {
@@ -202,6 +202,21 @@ public final class DefaultEntry implements Entry
     }
 
 
+    /**
+     * Creates a new instance of DefaultEntry, schema aware, storing its attributes
+     * in a given Map. Used by the {@link CompactEntry}.
+     *
+     * @param schemaManager The reference to the schemaManager
+     * @param dn The Dn for this serverEntry. Can be null.
+     * @param attributes The empty Map which will contain the attributes
+     */
+    /* No protection*/DefaultEntry( SchemaManager schemaManager, Dn dn, Map<String, Attribute> attributes )
+    {
+        this( schemaManager, dn );
+        this.attributes = attributes;
+    }
+
+
     /**
      * Creates a new instance of DefaultEntry, with a
      * Dn and a list of IDs.
@@ -1002,12 +1017,17 @@ public final class DefaultEntry implements Entry
             // An Entry has a Dn and many attributes.
             clone.dn = dn; // note that Dn is immutable now
 
-            // then clone the ClientAttribute Map.
-            clone.attributes = ( Map<String, Attribute> ) ( ( ( HashMap<String, Attribute> ) attributes )
-                .clone() );
+            // then create a new Attribute Map, of the same kind as ours
+            if ( attributes instanceof AttributeArrayMap )
+            {
+                clone.attributes = new AttributeArrayMap( attributes.size() );
+            }
+            else
+            {
+                clone.attributes = new HashMap<String, Attribute>( attributes.size() );
+            }
 
             // now clone all the attributes
-            clone.attributes.clear();
 
             if ( schemaManager != null )
             {
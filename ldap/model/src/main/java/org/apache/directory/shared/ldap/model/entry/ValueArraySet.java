@@ -0,0 +1,275 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.entry;
+
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+
+/**
+ * A Set of Values stored in a flat array, in insertion order, used by the attributes
+ * of a {@link CompactEntry}. Most attributes have one to three values, for which a
+ * linear scan is cheaper than hashing, and an array costs a few bytes where a
+ * LinkedHashSet costs a table and a linked entry per value.
+ * <br/>
+ * When the set grows above {@link #MAX_ARRAY_SIZE} values, the values are moved to a
+ * LinkedHashSet, so that large attributes like <i>member</i> keep constant time lookups.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+class ValueArraySet extends AbstractSet<Value<?>>
+{
+    /** The number of values above which we switch to a LinkedHashSet */
+    static final int MAX_ARRAY_SIZE = 16;
+
+    /** The values, when stored in an array */
+    private Value<?>[] values;
+
+    /** The number of values in the array */
+    private int size;
+
+    /** The values, when there are too many of them to be stored in an array */
+    private Set<Value<?>> hashedValues;
+
+
+    /**
+     * Creates a new instance of ValueArraySet.
+     *
+     * @param capacity The expected number of values
+     */
+    ValueArraySet( int capacity )
+    {
+        if ( capacity > MAX_ARRAY_SIZE )
+        {
+            hashedValues = new LinkedHashSet<Value<?>>( capacity );
+        }
+        else
+        {
+            values = new Value<?>[Math.max( capacity, 1 )];
+        }
+    }
+
+
+    /**
+     * Creates a new instance of ValueArraySet containing some values.
+     *
+     * @param values The initial values
+     */
+    ValueArraySet( Set<Value<?>> values )
+    {
+        this( values.size() );
+        addAll( values );
+    }
+
+
+    /**
+     * @return The position of a value in the array, or -1
+     */
+    private int indexOf( Object value )
+    {
+        if ( value == null )
+        {
+            return -1;
+        }
+
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( value.equals( values[i] ) )
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Removes the value at a given position in the array
+     */
+    private void removeAt( int pos )
+    {
+        size--;
+        System.arraycopy( values, pos + 1, values, pos, size - pos );
+        values[size] = null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean add( Value<?> value )
+    {
+        if ( hashedValues != null )
+        {
+            return hashedValues.add( value );
+        }
+
+        if ( indexOf( value ) >= 0 )
+        {
+            return false;
+        }
+
+        if ( size == MAX_ARRAY_SIZE )
+        {
+            hashedValues = new LinkedHashSet<Value<?>>( MAX_ARRAY_SIZE * 2 );
+
+            for ( int i = 0; i < size; i++ )
+            {
+                hashedValues.add( values[i] );
+            }
+
+            values = null;
+            size = 0;
+
+            return hashedValues.add( value );
+        }
+
+        if ( size == values.length )
+        {
+            Value<?>[] newValues = new Value<?>[Math.min( size * 2, MAX_ARRAY_SIZE )];
+            System.arraycopy( values, 0, newValues, 0, size );
+            values = newValues;
+        }
+
+        values[size++] = value;
+
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean contains( Object value )
+    {
+        if ( hashedValues != null )
+        {
+            return hashedValues.contains( value );
+        }
+
+        return indexOf( value ) >= 0;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean remove( Object value )
+    {
+        if ( hashedValues != null )
+        {
+            return hashedValues.remove( value );
+        }
+
+        int pos = indexOf( value );
+
+        if ( pos < 0 )
+        {
+            return false;
+        }
+
+        removeAt( pos );
+
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void clear()
+    {
+        hashedValues = null;
+        values = new Value<?>[1];
+        size = 0;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int size()
+    {
+        if ( hashedValues != null )
+        {
+            return hashedValues.size();
+        }
+
+        return size;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<Value<?>> iterator()
+    {
+        if ( hashedValues != null )
+        {
+            return hashedValues.iterator();
+        }
+
+        return new Iterator<Value<?>>()
+        {
+            /** The position of the next value */
+            private int pos;
+
+            /** The position of the last returned value, or -1 */
+            private int last = -1;
+
+
+            public boolean hasNext()
+            {
+                return pos < size;
+            }
+
+
+            public Value<?> next()
+            {
+                if ( pos >= size )
+                {
+                    throw new NoSuchElementException();
+                }
+
+                last = pos;
+
+                return values[pos++];
+            }
+
+
+            public void remove()
+            {
+                if ( last < 0 )
+                {
+                    throw new IllegalStateException();
+                }
+
+                removeAt( last );
+                pos = last;
+                last = -1;
+            }
+        };
+    }
+}
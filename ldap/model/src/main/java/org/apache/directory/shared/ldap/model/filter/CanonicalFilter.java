@@ -0,0 +1,530 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.filter;
+
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.directory.shared.ldap.model.entry.StringValue;
+import org.apache.directory.shared.ldap.model.entry.Value;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.schema.AttributeType;
+import org.apache.directory.shared.ldap.model.schema.MatchingRule;
+import org.apache.directory.shared.ldap.model.schema.Normalizer;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.util.Strings;
+
+
+/**
+ * The canonical form of a filter, which can be used as a cache key : two filters
+ * which only differ by the order of the AND and OR children, the names used for
+ * the AttributeTypes or the case and spaces the matching rules ignore, have the same
+ * canonical form.
+ * <br/>
+ * The filter is made canonical this way :
+ * <ul>
+ * <li>the AttributeTypes are replaced by their OID, the matching rules of the
+ * extensible assertions too</li>
+ * <li>the assertion values are normalized with the normalizer of the matching rule
+ * used to evaluate them</li>
+ * <li>the nested AND and OR nodes are flattened, the duplicated children removed,
+ * and the remaining children sorted</li>
+ * <li>the AND and OR nodes with a single child are replaced by the child, and the
+ * double negations are removed</li>
+ * </ul>
+ * The canonical filter also has a 64 bits hash, computed from the hashes of its
+ * nodes, which does not depend on the JVM : it can be used to share the keys between
+ * processes.
+ * <br/>
+ * The attributes unknown to the SchemaManager are only lower cased, and their values
+ * left as is. A filter containing undefined assertions, which is what the parser
+ * produces for the attributes it does not know when it's given a SchemaManager, has
+ * no canonical form : two such filters could not be told apart.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class CanonicalFilter
+{
+    /** The FNV-1a 64 bits offset basis */
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+
+    /** The FNV-1a 64 bits prime */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /** The canonical filter */
+    private final String filter;
+
+    /** The 64 bits hash of the canonical filter */
+    private final long hash;
+
+
+    /**
+     * Creates the canonical form of a filter. The filter is parsed without the
+     * SchemaManager, so that the assertions on unknown attributes are kept, and the
+     * attributes are resolved while the filter is made canonical.
+     *
+     * @param schemaManager The SchemaManager
+     * @param filter The filter
+     * @throws ParseException If the filter is invalid
+     */
+    public CanonicalFilter( SchemaManager schemaManager, String filter ) throws ParseException
+    {
+        this( schemaManager, FilterParser.parse( filter ) );
+    }
+
+
+    /**
+     * Creates the canonical form of a filter.
+     *
+     * @param schemaManager The SchemaManager
+     * @param filter The filter
+     * @throws IllegalArgumentException If the filter contains undefined assertions
+     */
+    public CanonicalFilter( SchemaManager schemaManager, ExprNode filter )
+    {
+        Node root = canonicalize( schemaManager, filter );
+
+        this.filter = root.filter;
+        this.hash = root.hash;
+    }
+
+
+    /**
+     * @return The 64 bits hash of the canonical filter
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int hashCode()
+    {
+        return ( int ) ( hash ^ ( hash >>> 32 ) );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean equals( Object obj )
+    {
+        if ( obj == this )
+        {
+            return true;
+        }
+
+        if ( !( obj instanceof CanonicalFilter ) )
+        {
+            return false;
+        }
+
+        CanonicalFilter that = ( CanonicalFilter ) obj;
+
+        return ( hash == that.hash ) && filter.equals( that.filter );
+    }
+
+
+    /**
+     * @return The canonical filter, which can be parsed again
+     */
+    public String toString()
+    {
+        return filter;
+    }
+
+
+    /**
+     * A canonical node : its filter, its hash and, for the AND and OR nodes, the
+     * canonical children.
+     */
+    private static final class Node
+    {
+        /** The canonical filter */
+        private final String filter;
+
+        /** The hash of the node */
+        private final long hash;
+
+        /** The operator of the branch nodes, null for the others */
+        private final AssertionType operator;
+
+        /** The children of the AND and OR nodes */
+        private final List<Node> children;
+
+
+        /**
+         * Creates a leaf node
+         */
+        private Node( String filter )
+        {
+            this.filter = filter;
+            this.operator = null;
+            this.children = null;
+
+            long h = FNV_OFFSET;
+
+            for ( int i = 0; i < filter.length(); i++ )
+            {
+                h = mix( h, filter.charAt( i ) );
+            }
+
+            this.hash = h;
+        }
+
+
+        /**
+         * Creates a branch node
+         */
+        private Node( AssertionType operator, List<Node> children )
+        {
+            this.operator = operator;
+            this.children = children;
+
+            char tag;
+
+            switch ( operator )
+            {
+                case AND:
+                    tag = '&';
+                    break;
+
+                case OR:
+                    tag = '|';
+                    break;
+
+                default:
+                    tag = '!';
+                    break;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            sb.append( '(' ).append( tag );
+            long h = mix( FNV_OFFSET, tag );
+
+            for ( Node child : children )
+            {
+                sb.append( child.filter );
+                h = mix( h, child.hash );
+            }
+
+            this.filter = sb.append( ')' ).toString();
+            this.hash = h;
+        }
+    }
+
+
+    /**
+     * Mix a value into a FNV-1a hash, a byte at a time
+     */
+    private static long mix( long h, long value )
+    {
+        for ( int i = 0; i < 8; i++ )
+        {
+            h ^= value & 0xFF;
+            h *= FNV_PRIME;
+            value >>>= 8;
+        }
+
+        return h;
+    }
+
+
+    /**
+     * Makes a node canonical
+     */
+    private static Node canonicalize( SchemaManager schemaManager, ExprNode node )
+    {
+        if ( ( node == null ) || ( node instanceof UndefinedNode ) )
+        {
+            // The parser returns null or an undefined node for the assertions on unknown
+            // AttributeTypes, which would all get the same canonical form
+            throw new IllegalArgumentException( "The filter contains an undefined assertion" );
+        }
+
+        if ( node instanceof NotNode )
+        {
+            Node child = canonicalize( schemaManager, ( ( NotNode ) node ).getFirstChild() );
+
+            if ( child.operator == AssertionType.NOT )
+            {
+                // (!(!x)) is x
+                return child.children.get( 0 );
+            }
+
+            List<Node> children = new ArrayList<Node>( 1 );
+            children.add( child );
+
+            return new Node( AssertionType.NOT, children );
+        }
+        else if ( node instanceof BranchNode )
+        {
+            AssertionType operator = ( node instanceof AndNode ) ? AssertionType.AND : AssertionType.OR;
+
+            // The children sorted on their canonical filter, without duplicates
+            Map<String, Node> children = new TreeMap<String, Node>();
+
+            for ( ExprNode child : ( ( BranchNode ) node ).getChildren() )
+            {
+                Node canonicalChild = canonicalize( schemaManager, child );
+
+                if ( canonicalChild.operator == operator )
+                {
+                    // Flatten the nested nodes of the same kind
+                    for ( Node grandChild : canonicalChild.children )
+                    {
+                        children.put( grandChild.filter, grandChild );
+                    }
+                }
+                else
+                {
+                    children.put( canonicalChild.filter, canonicalChild );
+                }
+            }
+
+            if ( children.size() == 1 )
+            {
+                return children.values().iterator().next();
+            }
+
+            return new Node( operator, new ArrayList<Node>( children.values() ) );
+        }
+        else if ( node instanceof LeafNode )
+        {
+            return new Node( canonicalizeLeaf( schemaManager, ( LeafNode ) node ) );
+        }
+
+        return new Node( node.toString() );
+    }
+
+
+    /**
+     * @return The canonical filter of an assertion
+     */
+    private static String canonicalizeLeaf( SchemaManager schemaManager, LeafNode node )
+    {
+        AttributeType attributeType = node.getAttributeType();
+
+        if ( ( attributeType == null ) && ( node.getAttribute() != null ) && ( schemaManager != null ) )
+        {
+            attributeType = schemaManager.getAttributeType( node.getAttribute() );
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append( '(' );
+
+        if ( attributeType != null )
+        {
+            sb.append( attributeType.getOid() );
+        }
+        else if ( node.getAttribute() != null )
+        {
+            sb.append( Strings.toLowerCase( node.getAttribute() ) );
+        }
+
+        if ( node instanceof PresenceNode )
+        {
+            sb.append( "=*" );
+        }
+        else if ( node instanceof SubstringNode )
+        {
+            SubstringNode substringNode = ( SubstringNode ) node;
+            Normalizer normalizer = null;
+
+            if ( attributeType != null )
+            {
+                normalizer = getNormalizer( attributeType.getSubstring(), attributeType.getEquality() );
+            }
+
+            sb.append( '=' );
+
+            if ( substringNode.getInitial() != null )
+            {
+                appendValue( sb, normalizer, new StringValue( substringNode.getInitial() ) );
+            }
+
+            sb.append( '*' );
+
+            if ( substringNode.getAny() != null )
+            {
+                for ( String any : substringNode.getAny() )
+                {
+                    appendValue( sb, normalizer, new StringValue( any ) );
+                    sb.append( '*' );
+                }
+            }
+
+            if ( substringNode.getFinal() != null )
+            {
+                appendValue( sb, normalizer, new StringValue( substringNode.getFinal() ) );
+            }
+        }
+        else if ( node instanceof ExtensibleNode )
+        {
+            ExtensibleNode extensibleNode = ( ExtensibleNode ) node;
+            MatchingRule matchingRule = null;
+
+            if ( extensibleNode.hasDnAttributes() )
+            {
+                sb.append( ":dn" );
+            }
+
+            if ( extensibleNode.getMatchingRuleId() != null )
+            {
+                if ( schemaManager != null )
+                {
+                    try
+                    {
+                        matchingRule = schemaManager.lookupMatchingRuleRegistry( extensibleNode.getMatchingRuleId() );
+                    }
+                    catch ( LdapException le )
+                    {
+                        // Unknown matching rule, keep its name
+                    }
+                }
+
+                sb.append( ':' );
+
+                if ( matchingRule != null )
+                {
+                    sb.append( matchingRule.getOid() );
+                }
+                else
+                {
+                    sb.append( Strings.toLowerCase( extensibleNode.getMatchingRuleId() ) );
+                }
+            }
+            else if ( attributeType != null )
+            {
+                matchingRule = attributeType.getEquality();
+            }
+
+            sb.append( ":=" );
+            appendValue( sb, getNormalizer( matchingRule, null ), extensibleNode.getValue() );
+        }
+        else if ( node instanceof SimpleNode )
+        {
+            Normalizer normalizer = null;
+
+            if ( node instanceof GreaterEqNode )
+            {
+                sb.append( ">=" );
+            }
+            else if ( node instanceof LessEqNode )
+            {
+                sb.append( "<=" );
+            }
+            else if ( node instanceof ApproximateNode )
+            {
+                sb.append( "~=" );
+            }
+            else
+            {
+                sb.append( '=' );
+            }
+
+            if ( attributeType != null )
+            {
+                if ( ( node instanceof GreaterEqNode ) || ( node instanceof LessEqNode ) )
+                {
+                    normalizer = getNormalizer( attributeType.getOrdering(), attributeType.getEquality() );
+                }
+                else
+                {
+                    normalizer = getNormalizer( attributeType.getEquality(), null );
+                }
+            }
+
+            appendValue( sb, normalizer, ( ( SimpleNode<?> ) node ).getValue() );
+        }
+        else
+        {
+            return node.toString();
+        }
+
+        return sb.append( ')' ).toString();
+    }
+
+
+    /**
+     * @return The normalizer of the first matching rule which has one, or null
+     */
+    private static Normalizer getNormalizer( MatchingRule matchingRule, MatchingRule fallback )
+    {
+        if ( ( matchingRule != null ) && ( matchingRule.getNormalizer() != null ) )
+        {
+            return matchingRule.getNormalizer();
+        }
+
+        if ( ( fallback != null ) && ( fallback.getNormalizer() != null ) )
+        {
+            return fallback.getNormalizer();
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Normalize and escape a value. The value is kept as is if it can't be normalized.
+     */
+    private static void appendValue( StringBuilder sb, Normalizer normalizer, Value<?> value )
+    {
+        if ( ( value == null ) || value.isNull() )
+        {
+            return;
+        }
+
+        Value<?> normValue = value;
+
+        if ( normalizer != null )
+        {
+            try
+            {
+                if ( value.isHumanReadable() )
+                {
+                    normValue = new StringValue( normalizer.normalize( value.getString() ) );
+                }
+                else
+                {
+                    // The values of filters parsed without a SchemaManager are binary
+                    normValue = normalizer.normalize( value );
+                }
+            }
+            catch ( LdapException le )
+            {
+                normValue = value;
+            }
+            catch ( RuntimeException re )
+            {
+                normValue = value;
+            }
+        }
+
+        sb.append( AbstractExprNode.escapeFilterValue( normValue ) );
+    }
+}
@@ -0,0 +1,1161 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.filter;
+
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.directory.shared.ldap.model.constants.SchemaConstants;
+import org.apache.directory.shared.ldap.model.entry.Attribute;
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.entry.Value;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.schema.AttributeType;
+import org.apache.directory.shared.ldap.model.schema.LdapComparator;
+import org.apache.directory.shared.ldap.model.schema.MatchingRule;
+import org.apache.directory.shared.ldap.model.schema.Normalizer;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.ldap.model.schema.normalizers.NoOpNormalizer;
+import org.apache.directory.shared.ldap.model.schema.registries.AttributeTypeRegistry;
+
+
+/**
+ * Compiles a filter into an {@link EntryMatcher}, which can then be used to check
+ * as many entries as needed.
+ * <br/>
+ * All the work which does not depend on the checked entries is done once, when the
+ * filter is compiled : the AttributeTypes and their descendants are resolved, the
+ * assertion values are normalized with the matching rules normalizers, the comparators
+ * are fetched and the substring matchers are built. The checked entries values are
+ * compared using their normalized form.
+ * <br/>
+ * The children of the AND and OR nodes are evaluated in an order based on their
+ * estimated cost and selectivity, so that the evaluation stops as early as possible :
+ * the cheap and discriminant assertions are checked first in an AND, the cheap and
+ * likely ones are checked first in an OR.
+ * <br/>
+ * An assertion on an unknown AttributeType or with an unknown matching rule is
+ * Undefined, and never matches. As stated by RFC 4511, section 4.5.1.7, the filters
+ * are evaluated using a three-valued logic : the negation of an Undefined assertion
+ * is also Undefined, and does not match either.
+ * <br/>
+ * The dnAttributes flag of the extensible assertions is not supported : only the
+ * entry attributes are checked.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class FilterCompiler
+{
+    /** The estimated probability for an entry to match an equality assertion */
+    private static final double EQUALITY_SELECTIVITY = 0.1d;
+
+    /** The estimated probability for an entry to match an ObjectClass equality assertion */
+    private static final double OBJECT_CLASS_SELECTIVITY = 0.5d;
+
+    /** The estimated probability for an entry to match an approximate assertion */
+    private static final double APPROXIMATE_SELECTIVITY = 0.2d;
+
+    /** The estimated probability for an entry to match a substring assertion */
+    private static final double SUBSTRING_SELECTIVITY = 0.2d;
+
+    /** The estimated probability for an entry to match a greater or equal or a less or equal assertion */
+    private static final double ORDERING_SELECTIVITY = 0.5d;
+
+    /** The estimated probability for an entry to match a presence assertion */
+    private static final double PRESENCE_SELECTIVITY = 0.8d;
+
+    /** The estimated probability for an entry to match an extensible assertion */
+    private static final double EXTENSIBLE_SELECTIVITY = 0.1d;
+
+    /** The relative cost of checking an attribute presence */
+    private static final double PRESENCE_COST = 1d;
+
+    /** The relative cost of comparing the values of an attribute with an assertion value */
+    private static final double COMPARISON_COST = 2d;
+
+    /** The relative cost of matching the values of an attribute with a substring assertion */
+    private static final double SUBSTRING_COST = 6d;
+
+    /** The relative cost of normalizing and comparing the values of an attribute */
+    private static final double EXTENSIBLE_COST = 8d;
+
+
+    /**
+     * Private constructor.
+     */
+    private FilterCompiler()
+    {
+    }
+
+
+    /**
+     * Parses and compiles a filter.
+     *
+     * @param schemaManager The SchemaManager
+     * @param filter The filter to compile
+     * @return The matcher for the filter
+     * @throws ParseException If the filter is invalid
+     * @throws LdapException If the filter can't be compiled
+     */
+    public static EntryMatcher compile( SchemaManager schemaManager, String filter ) throws ParseException,
+        LdapException
+    {
+        return compile( schemaManager, FilterParser.parse( schemaManager, filter ) );
+    }
+
+
+    /**
+     * Compiles a filter. The filter should have been parsed with the same SchemaManager,
+     * its AttributeTypes are otherwise resolved when it's compiled.
+     *
+     * @param schemaManager The SchemaManager
+     * @param filter The filter to compile
+     * @return The matcher for the filter
+     * @throws LdapException If the filter can't be compiled
+     */
+    public static EntryMatcher compile( SchemaManager schemaManager, ExprNode filter ) throws LdapException
+    {
+        return new CompiledFilter( schemaManager, compileNode( schemaManager, filter ) );
+    }
+
+
+    /**
+     * Compiles a node and its children
+     */
+    private static NodeMatcher compileNode( SchemaManager schemaManager, ExprNode node ) throws LdapException
+    {
+        if ( node == null )
+        {
+            // The parser returns null for the assertions on unknown AttributeTypes
+            return new UndefinedMatcher( UndefinedNode.UNDEFINED_NODE );
+        }
+
+        if ( node instanceof BranchNode )
+        {
+            List<NodeMatcher> children = new ArrayList<NodeMatcher>();
+
+            for ( ExprNode child : ( ( BranchNode ) node ).getChildren() )
+            {
+                children.add( compileNode( schemaManager, child ) );
+            }
+
+            if ( node instanceof AndNode )
+            {
+                return new AndMatcher( children );
+            }
+            else if ( node instanceof OrNode )
+            {
+                return new OrMatcher( children );
+            }
+            else if ( node instanceof NotNode )
+            {
+                return new NotMatcher( children.get( 0 ) );
+            }
+        }
+        else if ( node instanceof LeafNode )
+        {
+            return compileLeaf( schemaManager, ( LeafNode ) node );
+        }
+        else if ( node instanceof UndefinedNode )
+        {
+            return new UndefinedMatcher( node );
+        }
+
+        throw new IllegalArgumentException( "Cannot compile the filter " + node );
+    }
+
+
+    /**
+     * Compiles an assertion
+     */
+    private static NodeMatcher compileLeaf( SchemaManager schemaManager, LeafNode node ) throws LdapException
+    {
+        if ( node instanceof ExtensibleNode )
+        {
+            return compileExtensible( schemaManager, ( ExtensibleNode ) node );
+        }
+
+        AttributeType attributeType = getAttributeType( schemaManager, node );
+
+        if ( attributeType == null )
+        {
+            // Unknown AttributeType
+            return new UndefinedMatcher( node );
+        }
+
+        AttributeType[] attributeTypes = getAttributeTypes( schemaManager, attributeType );
+
+        if ( node instanceof PresenceNode )
+        {
+            return new PresenceMatcher( node, attributeTypes );
+        }
+        else if ( node instanceof SubstringNode )
+        {
+            MatchingRule matchingRule = attributeType.getSubstring();
+
+            if ( matchingRule == null )
+            {
+                matchingRule = attributeType.getEquality();
+            }
+
+            return new SubstringAssertionMatcher( ( SubstringNode ) node, attributeTypes, getNormalizer( matchingRule,
+                attributeType ), attributeType.getEquality() );
+        }
+        else if ( ( node instanceof GreaterEqNode ) || ( node instanceof LessEqNode ) )
+        {
+            MatchingRule matchingRule = attributeType.getOrdering();
+
+            if ( matchingRule == null )
+            {
+                matchingRule = attributeType.getEquality();
+            }
+
+            if ( matchingRule == null )
+            {
+                // The AttributeType can't be ordered
+                return new UndefinedMatcher( node );
+            }
+
+            Object assertion = normalize( getNormalizer( matchingRule, attributeType ),
+                ( ( SimpleNode<?> ) node ).getValue() );
+
+            return new OrderingMatcher( ( SimpleNode<?> ) node, attributeTypes, assertion,
+                matchingRule.getLdapComparator(), node instanceof GreaterEqNode );
+        }
+        else if ( node instanceof SimpleNode )
+        {
+            // Equality and approximate assertions
+            MatchingRule matchingRule = attributeType.getEquality();
+            Object assertion = normalize( getNormalizer( matchingRule, attributeType ),
+                ( ( SimpleNode<?> ) node ).getValue() );
+            LdapComparator<? super Object> comparator = null;
+
+            if ( matchingRule != null )
+            {
+                comparator = matchingRule.getLdapComparator();
+            }
+
+            double selectivity = EQUALITY_SELECTIVITY;
+
+            if ( node instanceof ApproximateNode )
+            {
+                selectivity = APPROXIMATE_SELECTIVITY;
+            }
+            else if ( SchemaConstants.OBJECT_CLASS_AT_OID.equals( attributeType.getOid() ) )
+            {
+                selectivity = OBJECT_CLASS_SELECTIVITY;
+            }
+
+            return new EqualityMatcher( node, attributeTypes, assertion, comparator, selectivity );
+        }
+
+        throw new IllegalArgumentException( "Cannot compile the filter " + node );
+    }
+
+
+    /**
+     * Compiles an extensible assertion
+     */
+    private static NodeMatcher compileExtensible( SchemaManager schemaManager, ExtensibleNode node )
+        throws LdapException
+    {
+        AttributeType[] attributeTypes = null;
+        AttributeType attributeType = null;
+
+        if ( ( node.getAttributeType() != null ) || ( node.getAttribute() != null ) )
+        {
+            attributeType = getAttributeType( schemaManager, node );
+
+            if ( attributeType == null )
+            {
+                return new UndefinedMatcher( node );
+            }
+
+            attributeTypes = getAttributeTypes( schemaManager, attributeType );
+        }
+
+        MatchingRule matchingRule = null;
+
+        if ( node.getMatchingRuleId() != null )
+        {
+            try
+            {
+                matchingRule = schemaManager.lookupMatchingRuleRegistry( node.getMatchingRuleId() );
+            }
+            catch ( LdapException le )
+            {
+                // Unknown matching rule
+                return new UndefinedMatcher( node );
+            }
+        }
+        else if ( attributeType != null )
+        {
+            matchingRule = attributeType.getEquality();
+        }
+
+        if ( ( matchingRule == null ) || ( matchingRule.getLdapComparator() == null ) )
+        {
+            return new UndefinedMatcher( node );
+        }
+
+        Normalizer normalizer = getNormalizer( matchingRule, attributeType );
+        Object assertion = normalize( normalizer, node.getValue() );
+
+        return new ExtensibleMatcher( node, attributeTypes, assertion, matchingRule, normalizer );
+    }
+
+
+    /**
+     * @return The AttributeType of an assertion, or null if it's unknown
+     */
+    private static AttributeType getAttributeType( SchemaManager schemaManager, LeafNode node )
+    {
+        if ( node.getAttributeType() != null )
+        {
+            return node.getAttributeType();
+        }
+
+        return schemaManager.getAttributeType( node.getAttribute() );
+    }
+
+
+    /**
+     * @return The AttributeType and its descendants
+     */
+    private static AttributeType[] getAttributeTypes( SchemaManager schemaManager, AttributeType attributeType )
+        throws LdapException
+    {
+        List<AttributeType> attributeTypes = new ArrayList<AttributeType>();
+        attributeTypes.add( attributeType );
+
+        AttributeTypeRegistry registry = schemaManager.getAttributeTypeRegistry();
+
+        if ( registry.hasDescendants( attributeType ) )
+        {
+            Iterator<AttributeType> descendants = registry.descendants( attributeType );
+
+            while ( descendants.hasNext() )
+            {
+                attributeTypes.add( descendants.next() );
+            }
+        }
+
+        return attributeTypes.toArray( new AttributeType[attributeTypes.size()] );
+    }
+
+
+    /**
+     * @return The normalizer of a matching rule, or a NoOpNormalizer if there is none
+     */
+    private static Normalizer getNormalizer( MatchingRule matchingRule, AttributeType attributeType )
+    {
+        if ( ( matchingRule != null ) && ( matchingRule.getNormalizer() != null ) )
+        {
+            return matchingRule.getNormalizer();
+        }
+
+        if ( attributeType != null )
+        {
+            return new NoOpNormalizer( attributeType.getOid() );
+        }
+
+        return new NoOpNormalizer();
+    }
+
+
+    /**
+     * Normalize an assertion value
+     *
+     * @return The normalized value, or null for an empty assertion value
+     */
+    private static Object normalize( Normalizer normalizer, Value<?> value ) throws LdapException
+    {
+        if ( ( value == null ) || value.isNull() )
+        {
+            return null;
+        }
+
+        if ( value.isHumanReadable() )
+        {
+            return normalizer.normalize( value.getString() );
+        }
+
+        return normalizer.normalize( value ).getReference();
+    }
+
+
+    /**
+     * Tells if two normalized values are equal
+     */
+    private static boolean equalsNormalized( Object value1, Object value2 )
+    {
+        if ( ( value1 instanceof byte[] ) && ( value2 instanceof byte[] ) )
+        {
+            return Arrays.equals( ( byte[] ) value1, ( byte[] ) value2 );
+        }
+
+        return value1.equals( value2 );
+    }
+
+
+    /**
+     * The matcher returned by the compiler. Entries which are not schema aware are
+     * made schema aware before being checked.
+     */
+    private static final class CompiledFilter implements EntryMatcher
+    {
+        /** The SchemaManager used to make the entries schema aware */
+        private final SchemaManager schemaManager;
+
+        /** The matcher for the root node */
+        private final NodeMatcher root;
+
+
+        private CompiledFilter( SchemaManager schemaManager, NodeMatcher root )
+        {
+            this.schemaManager = schemaManager;
+            this.root = root;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean matches( Entry entry )
+        {
+            if ( entry == null )
+            {
+                return false;
+            }
+
+            if ( !entry.isSchemaAware() )
+            {
+                try
+                {
+                    entry = new DefaultEntry( schemaManager, entry );
+                }
+                catch ( LdapException le )
+                {
+                    return false;
+                }
+            }
+
+            return root.matches( entry );
+        }
+
+
+        /**
+         * @return The filter, the children of the AND and OR nodes being in evaluation order
+         */
+        public String toString()
+        {
+            return root.toString();
+        }
+    }
+
+
+    /**
+     * The outcome of the evaluation of a filter against an entry (RFC 4511, section 4.5.1.7)
+     */
+    private enum Evaluation
+    {
+        TRUE,
+        FALSE,
+        UNDEFINED
+    }
+
+
+    /**
+     * The base class of the node matchers. It holds the estimated probability for an entry
+     * to match the node, and the estimated cost of the evaluation.
+     */
+    private abstract static class NodeMatcher implements EntryMatcher
+    {
+        /** The estimated probability for an entry to match, between 0 and 1 */
+        protected double selectivity;
+
+        /** The estimated cost of the evaluation */
+        protected double cost;
+
+
+        /**
+         * Evaluates the node against an entry. The assertions are either TRUE or FALSE,
+         * unless they can't be evaluated.
+         *
+         * @param entry The entry to check
+         * @return The outcome of the evaluation
+         */
+        protected Evaluation evaluate( Entry entry )
+        {
+            return matches( entry ) ? Evaluation.TRUE : Evaluation.FALSE;
+        }
+    }
+
+
+    /**
+     * Sorts the children of an AND node : the children which cost less and have more
+     * chances to reject the entry come first.
+     */
+    private static final Comparator<NodeMatcher> AND_ORDER = new Comparator<NodeMatcher>()
+    {
+        public int compare( NodeMatcher matcher1, NodeMatcher matcher2 )
+        {
+            return Double.compare( matcher1.cost / ( 1d - matcher1.selectivity ), matcher2.cost
+                / ( 1d - matcher2.selectivity ) );
+        }
+    };
+
+
+    /**
+     * Sorts the children of an OR node : the children which cost less and have more
+     * chances to accept the entry come first.
+     */
+    private static final Comparator<NodeMatcher> OR_ORDER = new Comparator<NodeMatcher>()
+    {
+        public int compare( NodeMatcher matcher1, NodeMatcher matcher2 )
+        {
+            return Double.compare( matcher1.cost / matcher1.selectivity, matcher2.cost / matcher2.selectivity );
+        }
+    };
+
+
+    /**
+     * The AND matcher
+     */
+    private static final class AndMatcher extends NodeMatcher
+    {
+        /** The children, in evaluation order */
+        private final NodeMatcher[] children;
+
+
+        private AndMatcher( List<NodeMatcher> children )
+        {
+            Collections.sort( children, AND_ORDER );
+            this.children = children.toArray( new NodeMatcher[children.size()] );
+
+            // The next child is only evaluated if the previous ones have matched
+            selectivity = 1d;
+
+            for ( NodeMatcher child : this.children )
+            {
+                cost += selectivity * child.cost;
+                selectivity *= child.selectivity;
+            }
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean matches( Entry entry )
+        {
+            return evaluate( entry ) == Evaluation.TRUE;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected Evaluation evaluate( Entry entry )
+        {
+            Evaluation evaluation = Evaluation.TRUE;
+
+            for ( NodeMatcher child : children )
+            {
+                switch ( child.evaluate( entry ) )
+                {
+                    case FALSE:
+                        return Evaluation.FALSE;
+
+                    case UNDEFINED:
+                        evaluation = Evaluation.UNDEFINED;
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+            return evaluation;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder( "(&" );
+
+            for ( NodeMatcher child : children )
+            {
+                sb.append( child );
+            }
+
+            return sb.append( ')' ).toString();
+        }
+    }
+
+
+    /**
+     * The OR matcher
+     */
+    private static final class OrMatcher extends NodeMatcher
+    {
+        /** The children, in evaluation order */
+        private final NodeMatcher[] children;
+
+
+        private OrMatcher( List<NodeMatcher> children )
+        {
+            Collections.sort( children, OR_ORDER );
+            this.children = children.toArray( new NodeMatcher[children.size()] );
+
+            // The next child is only evaluated if the previous ones have not matched
+            double rejected = 1d;
+
+            for ( NodeMatcher child : this.children )
+            {
+                cost += rejected * child.cost;
+                rejected *= 1d - child.selectivity;
+            }
+
+            selectivity = 1d - rejected;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean matches( Entry entry )
+        {
+            return evaluate( entry ) == Evaluation.TRUE;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected Evaluation evaluate( Entry entry )
+        {
+            Evaluation evaluation = Evaluation.FALSE;
+
+            for ( NodeMatcher child : children )
+            {
+                switch ( child.evaluate( entry ) )
+                {
+                    case TRUE:
+                        return Evaluation.TRUE;
+
+                    case UNDEFINED:
+                        evaluation = Evaluation.UNDEFINED;
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+            return evaluation;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder( "(|" );
+
+            for ( NodeMatcher child : children )
+            {
+                sb.append( child );
+            }
+
+            return sb.append( ')' ).toString();
+        }
+    }
+
+
+    /**
+     * The NOT matcher
+     */
+    private static final class NotMatcher extends NodeMatcher
+    {
+        /** The negated matcher */
+        private final NodeMatcher child;
+
+
+        private NotMatcher( NodeMatcher child )
+        {
+            this.child = child;
+
+            // The negation of an Undefined assertion is Undefined too
+            selectivity = ( child instanceof UndefinedMatcher ) ? 0d : 1d - child.selectivity;
+            cost = child.cost;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean matches( Entry entry )
+        {
+            return evaluate( entry ) == Evaluation.TRUE;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected Evaluation evaluate( Entry entry )
+        {
+            switch ( child.evaluate( entry ) )
+            {
+                case TRUE:
+                    return Evaluation.FALSE;
+
+                case FALSE:
+                    return Evaluation.TRUE;
+
+                default:
+                    return Evaluation.UNDEFINED;
+            }
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString()
+        {
+            return "(!" + child + ")";
+        }
+    }
+
+
+    /**
+     * The matcher for the assertions which can't be evaluated : they are Undefined, and
+     * never match
+     */
+    private static final class UndefinedMatcher extends NodeMatcher
+    {
+        /** The assertion */
+        private final ExprNode node;
+
+
+        private UndefinedMatcher( ExprNode node )
+        {
+            this.node = node;
+            selectivity = 0d;
+            cost = 0d;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean matches( Entry entry )
+        {
+            return false;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected Evaluation evaluate( Entry entry )
+        {
+            return Evaluation.UNDEFINED;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString()
+        {
+            return node.toString();
+        }
+    }
+
+
+    /**
+     * The base class of the assertion matchers : they check the values of an AttributeType
+     * and of its descendants.
+     */
+    private abstract static class AttributeMatcher extends NodeMatcher
+    {
+        /** The assertion */
+        private final ExprNode node;
+
+        /** The AttributeType and its descendants, null to check all the attributes */
+        protected final AttributeType[] attributeTypes;
+
+
+        private AttributeMatcher( ExprNode node, AttributeType[] attributeTypes, double selectivity,
+            double costPerAttribute )
+        {
+            this.node = node;
+            this.attributeTypes = attributeTypes;
+            this.selectivity = selectivity;
+
+            if ( attributeTypes == null )
+            {
+                cost = costPerAttribute * 10d;
+            }
+            else
+            {
+                cost = costPerAttribute * attributeTypes.length;
+            }
+        }
+
+
+        /**
+         * Tells if a value matches the assertion
+         *
+         * @param attributeType The AttributeType of the value
+         * @param value The value to check
+         * @return <code>true</code> if the value matches
+         */
+        protected abstract boolean matches( AttributeType attributeType, Value<?> value );
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean matches( Entry entry )
+        {
+            if ( attributeTypes == null )
+            {
+                for ( Attribute attribute : entry )
+                {
+                    if ( matches( attribute ) )
+                    {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+
+            for ( AttributeType attributeType : attributeTypes )
+            {
+                Attribute attribute = entry.get( attributeType );
+
+                if ( ( attribute != null ) && matches( attribute ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+
+        /**
+         * Tells if one of the values of an attribute matches
+         */
+        private boolean matches( Attribute attribute )
+        {
+            AttributeType attributeType = attribute.getAttributeType();
+
+            for ( Value<?> value : attribute )
+            {
+                if ( matches( attributeType, value ) )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public String toString()
+        {
+            return node.toString();
+        }
+    }
+
+
+    /**
+     * The presence matcher
+     */
+    private static final class PresenceMatcher extends AttributeMatcher
+    {
+        private PresenceMatcher( LeafNode node, AttributeType[] attributeTypes )
+        {
+            super( node, attributeTypes, SchemaConstants.OBJECT_CLASS_AT_OID.equals( attributeTypes[0].getOid() ) ? 1d
+                : PRESENCE_SELECTIVITY, PRESENCE_COST );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean matches( Entry entry )
+        {
+            for ( AttributeType attributeType : attributeTypes )
+            {
+                if ( entry.get( attributeType ) != null )
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected boolean matches( AttributeType attributeType, Value<?> value )
+        {
+            return true;
+        }
+    }
+
+
+    /**
+     * The equality and approximate matcher
+     */
+    private static final class EqualityMatcher extends AttributeMatcher
+    {
+        /** The normalized assertion value */
+        private final Object assertion;
+
+        /** The equality comparator, if any */
+        private final LdapComparator<? super Object> comparator;
+
+
+        private EqualityMatcher( LeafNode node, AttributeType[] attributeTypes, Object assertion,
+            LdapComparator<? super Object> comparator, double selectivity )
+        {
+            super( node, attributeTypes, selectivity, COMPARISON_COST );
+            this.assertion = assertion;
+            this.comparator = comparator;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected boolean matches( AttributeType attributeType, Value<?> value )
+        {
+            Object normValue = value.getNormReference();
+
+            if ( ( assertion == null ) || ( normValue == null ) )
+            {
+                // An empty assertion value only matches empty values
+                return ( assertion == null ) && ( value.length() == 0 );
+            }
+
+            if ( equalsNormalized( assertion, normValue ) )
+            {
+                return true;
+            }
+
+            return ( comparator != null ) && ( comparator.compare( normValue, assertion ) == 0 );
+        }
+    }
+
+
+    /**
+     * The greater or equal and less or equal matcher
+     */
+    private static final class OrderingMatcher extends AttributeMatcher
+    {
+        /** The normalized assertion value */
+        private final Object assertion;
+
+        /** The ordering comparator */
+        private final LdapComparator<? super Object> comparator;
+
+        /** Tells if the values must be greater or equal to the assertion, or less or equal */
+        private final boolean greater;
+
+
+        private OrderingMatcher( SimpleNode<?> node, AttributeType[] attributeTypes, Object assertion,
+            LdapComparator<? super Object> comparator, boolean greater )
+        {
+            super( node, attributeTypes, ORDERING_SELECTIVITY, COMPARISON_COST );
+            this.assertion = assertion;
+            this.comparator = comparator;
+            this.greater = greater;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected boolean matches( AttributeType attributeType, Value<?> value )
+        {
+            Object normValue = value.getNormReference();
+
+            if ( ( assertion == null ) || ( normValue == null ) || ( comparator == null ) )
+            {
+                return false;
+            }
+
+            int comparison = comparator.compare( normValue, assertion );
+
+            return greater ? comparison >= 0 : comparison <= 0;
+        }
+    }
+
+
+    /**
+     * The substring matcher
+     */
+    private static final class SubstringAssertionMatcher extends AttributeMatcher
+    {
+        /** The matcher built from the normalized initial, any and final parts */
+        private final SubstringMatcher matcher;
+
+        /** The substring normalizer */
+        private final Normalizer normalizer;
+
+        /**
+         * Tells if the substring normalizer is the equality normalizer : the normalized values
+         * of the entry can then be used as is
+         */
+        private final boolean normalizedValues;
+
+
+        private SubstringAssertionMatcher( SubstringNode node, AttributeType[] attributeTypes, Normalizer normalizer,
+            MatchingRule equality ) throws LdapException
+        {
+            super( node, attributeTypes, SUBSTRING_SELECTIVITY, SUBSTRING_COST );
+            this.normalizer = normalizer;
+            matcher = node.getMatcher( normalizer );
+            normalizedValues = ( equality != null ) && ( equality.getNormalizer() != null )
+                && ( equality.getNormalizer().getClass() == normalizer.getClass() );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected boolean matches( AttributeType attributeType, Value<?> value )
+        {
+            if ( !value.isHumanReadable() || value.isNull() )
+            {
+                return false;
+            }
+
+            String normValue;
+
+            if ( normalizedValues )
+            {
+                normValue = ( String ) value.getNormReference();
+            }
+            else
+            {
+                try
+                {
+                    normValue = normalizer.normalize( value.getString() );
+                }
+                catch ( LdapException le )
+                {
+                    return false;
+                }
+            }
+
+            return matcher.matches( normValue );
+        }
+    }
+
+
+    /**
+     * The extensible matcher
+     */
+    private static final class ExtensibleMatcher extends AttributeMatcher
+    {
+        /** The normalized assertion value */
+        private final Object assertion;
+
+        /** The matching rule */
+        private final MatchingRule matchingRule;
+
+        /** The matching rule normalizer */
+        private final Normalizer normalizer;
+
+
+        private ExtensibleMatcher( ExtensibleNode node, AttributeType[] attributeTypes, Object assertion,
+            MatchingRule matchingRule, Normalizer normalizer )
+        {
+            super( node, attributeTypes, EXTENSIBLE_SELECTIVITY, EXTENSIBLE_COST );
+            this.assertion = assertion;
+            this.matchingRule = matchingRule;
+            this.normalizer = normalizer;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        protected boolean matches( AttributeType attributeType, Value<?> value )
+        {
+            if ( ( assertion == null ) || value.isNull() )
+            {
+                return false;
+            }
+
+            try
+            {
+                Object normValue;
+
+                if ( matchingRule.equals( attributeType.getEquality() ) )
+                {
+                    // The entry value has already been normalized with this matching rule
+                    normValue = value.getNormReference();
+                }
+                else
+                {
+                    normValue = normalize( normalizer, value );
+                }
+
+                return equalsNormalized( assertion, normValue )
+                    || ( matchingRule.getLdapComparator().compare( normValue, assertion ) == 0 );
+            }
+            catch ( LdapException le )
+            {
+                return false;
+            }
+            catch ( RuntimeException re )
+            {
+                // The matching rule does not apply to this value
+                return false;
+            }
+        }
+    }
+}
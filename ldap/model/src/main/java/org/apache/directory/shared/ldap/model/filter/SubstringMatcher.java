@@ -0,0 +1,174 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.filter;
+
+
+/**
+ * Matches a value against the initial, any and final parts of a substring assertion,
+ * without using a regular expression : the initial and final parts are checked at both
+ * ends of the value, then the any parts are searched in order in what remains, each one
+ * after the previous one. This is equivalent to the pattern built by
+ * {@link SubstringNode#getRegex(String, String[], String)}, except that the values
+ * may contain line terminators.
+ * <br/>
+ * The parts are expected to be normalized the same way as the checked values. The
+ * matcher is immutable and can be shared by many threads.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class SubstringMatcher
+{
+    /** The initial part, or null */
+    private final String initialPart;
+
+    /** The any parts, never null */
+    private final String[] anyParts;
+
+    /** The final part, or null */
+    private final String finalPart;
+
+    /** The minimal length of a matching value */
+    private final int minLength;
+
+
+    /**
+     * Creates a new SubstringMatcher.
+     *
+     * @param initialPart The initial part, or null
+     * @param anyParts The any parts, or null
+     * @param finalPart The final part, or null
+     */
+    public SubstringMatcher( String initialPart, String[] anyParts, String finalPart )
+    {
+        this.initialPart = initialPart;
+        this.finalPart = finalPart;
+
+        if ( anyParts == null )
+        {
+            this.anyParts = new String[0];
+        }
+        else
+        {
+            this.anyParts = new String[anyParts.length];
+            System.arraycopy( anyParts, 0, this.anyParts, 0, anyParts.length );
+        }
+
+        int length = 0;
+
+        if ( initialPart != null )
+        {
+            length += initialPart.length();
+        }
+
+        for ( String anyPart : this.anyParts )
+        {
+            length += anyPart.length();
+        }
+
+        if ( finalPart != null )
+        {
+            length += finalPart.length();
+        }
+
+        minLength = length;
+    }
+
+
+    /**
+     * Tells if a value matches the substring assertion.
+     *
+     * @param value The normalized value
+     * @return <code>true</code> if the value starts with the initial part, ends with the
+     * final part, and contains the any parts in order between them
+     */
+    public boolean matches( String value )
+    {
+        if ( ( value == null ) || ( value.length() < minLength ) )
+        {
+            return false;
+        }
+
+        int start = 0;
+        int end = value.length();
+
+        if ( initialPart != null )
+        {
+            if ( !value.startsWith( initialPart ) )
+            {
+                return false;
+            }
+
+            start = initialPart.length();
+        }
+
+        if ( finalPart != null )
+        {
+            if ( !value.endsWith( finalPart ) )
+            {
+                return false;
+            }
+
+            end -= finalPart.length();
+        }
+
+        // The leftmost position of each any part leaves the most room for the next ones
+        for ( String anyPart : anyParts )
+        {
+            int pos = value.indexOf( anyPart, start );
+
+            if ( ( pos < 0 ) || ( pos + anyPart.length() > end ) )
+            {
+                return false;
+            }
+
+            start = pos + anyPart.length();
+        }
+
+        return true;
+    }
+
+
+    /**
+     * @see Object#toString()
+     */
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        if ( initialPart != null )
+        {
+            sb.append( initialPart );
+        }
+
+        sb.append( '*' );
+
+        for ( String anyPart : anyParts )
+        {
+            sb.append( anyPart ).append( '*' );
+        }
+
+        if ( finalPart != null )
+        {
+            sb.append( finalPart );
+        }
+
+        return sb.toString();
+    }
+}
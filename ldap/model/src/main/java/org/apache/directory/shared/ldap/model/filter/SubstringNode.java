@@ -47,6 +47,9 @@ public class SubstringNode extends LeafNode
     /** List of fragments between wildcard */
     private List<String> anyPattern;
 
+    /** The last matcher built by getMatcher, with its normalizer */
+    private volatile CachedMatcher cachedMatcher;
+
 
     /**
      * Creates a new SubstringNode object with only one wildcard and no internal
@@ -239,6 +242,7 @@ public class SubstringNode extends LeafNode
     public void setInitial( String initialPattern )
     {
         this.initialPattern = initialPattern;
+        cachedMatcher = null;
     }
 
 
@@ -260,6 +264,7 @@ public class SubstringNode extends LeafNode
     public void setFinal( String finalPattern )
     {
         this.finalPattern = finalPattern;
+        cachedMatcher = null;
     }
 
 
@@ -281,6 +286,7 @@ public class SubstringNode extends LeafNode
     public void setAny( List<String> anyPattern )
     {
         this.anyPattern = anyPattern;
+        cachedMatcher = null;
     }
 
 
@@ -291,6 +297,7 @@ public class SubstringNode extends LeafNode
     public void addAny( String anyPattern )
     {
         this.anyPattern.add( anyPattern );
+        cachedMatcher = null;
     }
 
 
@@ -303,52 +310,77 @@ public class SubstringNode extends LeafNode
      */
     public final Pattern getRegex( Normalizer normalizer ) throws LdapException
     {
-        if ( ( anyPattern != null ) && ( anyPattern.size() > 0 ) )
-        {
-            String[] any = new String[anyPattern.size()];
+        return getRegex( normalize( normalizer, initialPattern ), normalizeAny( normalizer ), normalize( normalizer,
+            finalPattern ) );
+    }
 
-            for ( int i = 0; i < any.length; i++ )
-            {
-                any[i] = ( String ) normalizer.normalize( anyPattern.get( i ) );
 
-                if ( any[i].length() == 0 )
-                {
-                    any[i] = " ";
-                }
-            }
+    /**
+     * Gets a matcher for the substring expression, which checks the values without
+     * using a regular expression. The matcher is built once for a given normalizer,
+     * and built again if the fragments are changed.
+     * 
+     * @param normalizer the normalizer to use for pattern component normalization
+     * @return the matcher for the normalized values
+     * @throws LdapException if there are problems while normalizing
+     */
+    public final SubstringMatcher getMatcher( Normalizer normalizer ) throws LdapException
+    {
+        CachedMatcher cached = cachedMatcher;
 
-            String initialStr = null;
+        if ( ( cached != null ) && ( cached.normalizer == normalizer ) )
+        {
+            return cached.matcher;
+        }
 
-            if ( initialPattern != null )
-            {
-                initialStr = ( String ) normalizer.normalize( initialPattern );
-            }
+        SubstringMatcher matcher = new SubstringMatcher( normalize( normalizer, initialPattern ),
+            normalizeAny( normalizer ), normalize( normalizer, finalPattern ) );
+        cachedMatcher = new CachedMatcher( normalizer, matcher );
 
-            String finalStr = null;
+        return matcher;
+    }
 
-            if ( finalPattern != null )
-            {
-                finalStr = ( String ) normalizer.normalize( finalPattern );
-            }
 
-            return getRegex( initialStr, any, finalStr );
+    /**
+     * Normalize a fragment, if not null
+     */
+    private static String normalize( Normalizer normalizer, String pattern ) throws LdapException
+    {
+        if ( pattern == null )
+        {
+            return null;
         }
 
-        String initialStr = null;
+        return ( String ) normalizer.normalize( pattern );
+    }
 
-        if ( initialPattern != null )
+
+    /**
+     * Normalize the any fragments. The fragments which are empty once normalized are
+     * replaced by a space.
+     * 
+     * @return The normalized any fragments, or null if there are none
+     */
+    private String[] normalizeAny( Normalizer normalizer ) throws LdapException
+    {
+        if ( ( anyPattern == null ) || ( anyPattern.size() == 0 ) )
         {
-            initialStr = ( String ) normalizer.normalize( initialPattern );
+            return null;
         }
 
-        String finalStr = null;
+        String[] any = new String[anyPattern.size()];
 
-        if ( finalPattern != null )
+        for ( int i = 0; i < any.length; i++ )
         {
-            finalStr = ( String ) normalizer.normalize( finalPattern );
+            any[i] = ( String ) normalizer.normalize( anyPattern.get( i ) );
+
+            if ( any[i].length() == 0 )
+            {
+                any[i] = " ";
+            }
         }
 
-        return getRegex( initialStr, null, finalStr );
+        return any;
     }
 
 
@@ -479,4 +511,22 @@ public class SubstringNode extends LeafNode
 
         return buf.toString();
     }
+
+
+    /**
+     * A matcher and the normalizer it has been built with
+     */
+    private static final class CachedMatcher
+    {
+        private final Normalizer normalizer;
+
+        private final SubstringMatcher matcher;
+
+
+        private CachedMatcher( Normalizer normalizer, SubstringMatcher matcher )
+        {
+            this.normalizer = normalizer;
+            this.matcher = matcher;
+        }
+    }
 }
@@ -0,0 +1,940 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.shared.ldap.model.ldif;
+
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+import org.apache.directory.shared.i18n.I18n;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.shared.ldap.model.name.Dn;
+import org.apache.directory.shared.util.Base64;
+import org.apache.directory.shared.util.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * A LDIF reader working on the bytes read from a channel, or from a ByteBuffer, like
+ * a memory mapped file. Unlike the {@link LdifReader}, it does not decode the input into
+ * lines of characters : the records are unfolded and their base 64 values decoded in place,
+ * in the reader buffer, and the attribute names are lower cased and shared between the
+ * entries. The entries are read one by one, with {@link #readEntry()}, or handed to a
+ * {@link LdifEntryListener}, so that a whole LDIF file is never loaded in memory.
+ * <br/>
+ * The content records are parsed by this reader, as the LdifReader would do. The change
+ * records, which are not expected in large files, are delegated to a LdifReader. The
+ * input is decoded as UTF-8.
+ * <br/>
+ * Here is how a LDIF file can be imported :
+ * <pre>
+ * LdifChannelReader reader = new LdifChannelReader( new File( "data.ldif" ) );
+ * 
+ * try
+ * {
+ *     reader.read( new LdifEntryListener()
+ *     {
+ *         public void entryRead( LdifEntry entry ) throws LdapException
+ *         {
+ *             // Process the entry
+ *         }
+ *     } );
+ * }
+ * finally
+ * {
+ *     reader.close();
+ * }
+ * </pre>
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdifChannelReader implements Closeable
+{
+    /** A logger */
+    private static final Logger LOG = LoggerFactory.getLogger( LdifChannelReader.class );
+
+    /** The default buffer size : the buffer grows if a record does not fit in it */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** The number of attribute names kept, a power of 2 */
+    private static final int NAMES_CACHE_SIZE = 256;
+
+    /** The channel the LDIF is read from, if any */
+    private ReadableByteChannel channel;
+
+    /** The ByteBuffer the LDIF is read from, if any */
+    private ByteBuffer source;
+
+    /** The buffer containing the bytes read so far */
+    private byte[] buffer;
+
+    /** The position of the first byte not yet parsed in the buffer */
+    private int pos;
+
+    /** The position after the last byte read in the buffer */
+    private int limit;
+
+    /** A flag set when all the input has been read */
+    private boolean eof;
+
+    /** The number of bytes read from the input */
+    private long bytesRead;
+
+    /** The position of the current record in the buffer */
+    private int recordStart;
+
+    /** The position after the end of the current record in the buffer */
+    private int recordEnd;
+
+    /** The unfolded lines of the current record, as positions in the buffer */
+    private int[] lineStarts = new int[32];
+    private int[] lineEnds = new int[32];
+
+    /** The number of unfolded lines in the current record */
+    private int nbLines;
+
+    /** The lower cased attribute names already read, and their bytes */
+    private final String[] names = new String[NAMES_CACHE_SIZE];
+    private final byte[][] namesBytes = new byte[NAMES_CACHE_SIZE][];
+
+    /** The reader used to parse the change records, and the values read from URLs */
+    private final LdifReader ldifReader = new LdifReader();
+
+    /** A flag set until the first record has been read */
+    private boolean firstRecord = true;
+
+    /** The ldif version */
+    private int version = LdifReader.DEFAULT_VERSION;
+
+    /** A flag set if the ldif contains entries */
+    private boolean containsEntries;
+
+    /** A flag set if the ldif contains changes */
+    private boolean containsChanges;
+
+
+    /**
+     * Creates a new LdifChannelReader, reading from a channel.
+     * 
+     * @param channel The channel containing ldif formated input
+     */
+    public LdifChannelReader( ReadableByteChannel channel )
+    {
+        this( channel, DEFAULT_BUFFER_SIZE );
+    }
+
+
+    /**
+     * Creates a new LdifChannelReader, reading from a channel.
+     * 
+     * @param channel The channel containing ldif formated input
+     * @param bufferSize The initial size of the buffer
+     */
+    public LdifChannelReader( ReadableByteChannel channel, int bufferSize )
+    {
+        if ( bufferSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Invalid buffer size : " + bufferSize );
+        }
+
+        this.channel = channel;
+        buffer = new byte[bufferSize];
+    }
+
+
+    /**
+     * Creates a new LdifChannelReader, reading the remaining bytes of a ByteBuffer,
+     * like a memory mapped file region.
+     * 
+     * @param source The ByteBuffer containing ldif formated input
+     */
+    public LdifChannelReader( ByteBuffer source )
+    {
+        this.source = source;
+        buffer = new byte[Math.max( 1, Math.min( DEFAULT_BUFFER_SIZE, source.remaining() ) )];
+    }
+
+
+    /**
+     * Creates a new LdifChannelReader, reading a file.
+     * 
+     * @param file A File containing ldif formated input
+     * @throws LdapLdifException If the file cannot be read
+     */
+    public LdifChannelReader( File file ) throws LdapLdifException
+    {
+        if ( !file.exists() )
+        {
+            String msg = I18n.err( I18n.ERR_12010_CANNOT_FIND_FILE, file.getAbsoluteFile() );
+            LOG.error( msg );
+            throw new LdapLdifException( msg );
+        }
+
+        if ( !file.canRead() )
+        {
+            String msg = I18n.err( I18n.ERR_12011_CANNOT_READ_FILE, file.getName() );
+            LOG.error( msg );
+            throw new LdapLdifException( msg );
+        }
+
+        try
+        {
+            channel = new FileInputStream( file ).getChannel();
+        }
+        catch ( FileNotFoundException fnfe )
+        {
+            String msg = I18n.err( I18n.ERR_12010_CANNOT_FIND_FILE, file.getAbsoluteFile() );
+            LOG.error( msg );
+            throw new LdapLdifException( msg, fnfe );
+        }
+
+        buffer = new byte[DEFAULT_BUFFER_SIZE];
+    }
+
+
+    /**
+     * @return The ldif file version, known once the first entry has been read
+     */
+    public int getVersion()
+    {
+        return version;
+    }
+
+
+    /**
+     * @return The maximum size of a file value, read from an URL
+     */
+    public long getSizeLimit()
+    {
+        return ldifReader.getSizeLimit();
+    }
+
+
+    /**
+     * Set the maximum size of a file value, read from an URL
+     * 
+     * @param sizeLimit The size limit
+     */
+    public void setSizeLimit( long sizeLimit )
+    {
+        ldifReader.setSizeLimit( sizeLimit );
+    }
+
+
+    /**
+     * @return True if the ldif file contains entries, false if it contains changes
+     */
+    public boolean containsEntries()
+    {
+        return containsEntries;
+    }
+
+
+    /**
+     * @return The number of bytes read from the input so far
+     */
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+
+    /**
+     * Reads all the remaining entries, handing them to a listener.
+     * 
+     * @param listener The listener notified of each entry
+     * @return The number of entries read
+     * @throws LdapException If the input is not valid, or if the listener failed
+     */
+    public long read( LdifEntryListener listener ) throws LdapException
+    {
+        long nbEntries = 0L;
+        LdifEntry entry = readEntry();
+
+        while ( entry != null )
+        {
+            listener.entryRead( entry );
+            nbEntries++;
+            entry = readEntry();
+        }
+
+        return nbEntries;
+    }
+
+
+    /**
+     * Reads the next entry.
+     * 
+     * @return The next entry, or null if the end of the input has been reached
+     * @throws LdapLdifException If the input is not valid, or can't be read
+     */
+    public LdifEntry readEntry() throws LdapLdifException
+    {
+        while ( readRecord() )
+        {
+            unfoldRecord();
+            int first = 0;
+
+            if ( firstRecord && ( nbLines > 0 ) )
+            {
+                // The version, if any, is the first line which is not a comment
+                firstRecord = false;
+
+                if ( startsWith( 0, "version:", false ) )
+                {
+                    parseVersion();
+                    first = 1;
+                }
+            }
+
+            if ( nbLines > first )
+            {
+                return parseRecord( first );
+            }
+
+            // A record containing only comments, or the version
+        }
+
+        return null;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException
+    {
+        if ( channel != null )
+        {
+            channel.close();
+        }
+    }
+
+
+    /**
+     * Finds the next record in the input, reading it if needed. Once found, the
+     * record is between recordStart and recordEnd in the buffer, without the empty
+     * lines around it.
+     * 
+     * @return true if a record has been found, false if the end of the input has been reached
+     */
+    private boolean readRecord() throws LdapLdifException
+    {
+        // The positions are relative to pos, as the buffer content may be moved
+        int lineStart = 0;
+        int start = -1;
+
+        while ( true )
+        {
+            int eol = indexOfEol( pos + lineStart, limit );
+
+            if ( eol < 0 )
+            {
+                if ( !eof )
+                {
+                    fill();
+                    continue;
+                }
+
+                if ( ( start < 0 ) && ( pos + lineStart < limit ) )
+                {
+                    // The last line has no end of line
+                    start = lineStart;
+                }
+
+                if ( start < 0 )
+                {
+                    pos = limit;
+
+                    return false;
+                }
+
+                recordStart = pos + start;
+                recordEnd = limit;
+                pos = limit;
+
+                return true;
+            }
+
+            boolean emptyLine = ( eol == pos + lineStart )
+                || ( ( eol == pos + lineStart + 1 ) && ( buffer[eol - 1] == '\r' ) );
+
+            if ( emptyLine )
+            {
+                if ( start >= 0 )
+                {
+                    // The end of the record
+                    recordStart = pos + start;
+                    recordEnd = pos + lineStart;
+                    pos = eol + 1;
+
+                    return true;
+                }
+            }
+            else if ( start < 0 )
+            {
+                start = lineStart;
+            }
+
+            lineStart = eol + 1 - pos;
+        }
+    }
+
+
+    /**
+     * @return The position of the next '\n' between start and end, or -1
+     */
+    private int indexOfEol( int start, int end )
+    {
+        byte[] bytes = buffer;
+
+        for ( int i = start; i < end; i++ )
+        {
+            if ( bytes[i] == '\n' )
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Reads more bytes from the input, after having moved the bytes not yet parsed at
+     * the beginning of the buffer, or having grown the buffer if it is full.
+     */
+    private void fill() throws LdapLdifException
+    {
+        if ( pos > 0 )
+        {
+            System.arraycopy( buffer, pos, buffer, 0, limit - pos );
+            limit -= pos;
+            pos = 0;
+        }
+        else if ( limit == buffer.length )
+        {
+            // The record does not fit in the buffer
+            byte[] newBuffer = new byte[buffer.length * 2];
+            System.arraycopy( buffer, 0, newBuffer, 0, limit );
+            buffer = newBuffer;
+        }
+
+        int nbRead;
+
+        if ( source != null )
+        {
+            nbRead = Math.min( source.remaining(), buffer.length - limit );
+
+            if ( nbRead == 0 )
+            {
+                nbRead = -1;
+            }
+            else
+            {
+                source.get( buffer, limit, nbRead );
+            }
+        }
+        else
+        {
+            try
+            {
+                nbRead = channel.read( ByteBuffer.wrap( buffer, limit, buffer.length - limit ) );
+            }
+            catch ( IOException ioe )
+            {
+                throw new LdapLdifException( I18n.err( I18n.ERR_12063_ERROR_WHILE_READING_LDIF_LINE ), ioe );
+            }
+        }
+
+        if ( nbRead < 0 )
+        {
+            eof = true;
+        }
+        else
+        {
+            limit += nbRead;
+            bytesRead += nbRead;
+        }
+    }
+
+
+    /**
+     * Unfolds the lines of the current record in place, removing the comments, and
+     * stores the lines positions.
+     */
+    private void unfoldRecord() throws LdapLdifException
+    {
+        byte[] bytes = buffer;
+        int write = recordStart;
+        int read = recordStart;
+        boolean insideComment = false;
+        boolean insideLine = false;
+        nbLines = 0;
+
+        while ( read < recordEnd )
+        {
+            int eol = indexOfEol( read, recordEnd );
+            int next;
+
+            if ( eol < 0 )
+            {
+                eol = recordEnd;
+                next = recordEnd;
+            }
+            else
+            {
+                next = eol + 1;
+            }
+
+            if ( ( eol > read ) && ( bytes[eol - 1] == '\r' ) )
+            {
+                eol--;
+            }
+
+            switch ( bytes[read] )
+            {
+                case '#':
+                    if ( insideLine )
+                    {
+                        endLine( write );
+                        insideLine = false;
+                    }
+
+                    insideComment = true;
+                    break;
+
+                case ' ':
+                    if ( insideComment )
+                    {
+                        break;
+                    }
+
+                    if ( !insideLine )
+                    {
+                        LOG.error( I18n.err( I18n.ERR_12062_EMPTY_CONTINUATION_LINE ) );
+                        throw new LdapLdifException( I18n.err( I18n.ERR_12061_LDIF_PARSING_ERROR ) );
+                    }
+
+                    // Append the line, without its leading space
+                    System.arraycopy( bytes, read + 1, bytes, write, eol - read - 1 );
+                    write += eol - read - 1;
+                    break;
+
+                default:
+                    if ( insideLine )
+                    {
+                        endLine( write );
+                    }
+
+                    if ( nbLines == lineStarts.length )
+                    {
+                        int[] newStarts = new int[nbLines * 2];
+                        int[] newEnds = new int[nbLines * 2];
+                        System.arraycopy( lineStarts, 0, newStarts, 0, nbLines );
+                        System.arraycopy( lineEnds, 0, newEnds, 0, nbLines );
+                        lineStarts = newStarts;
+                        lineEnds = newEnds;
+                    }
+
+                    lineStarts[nbLines] = write;
+
+                    if ( write != read )
+                    {
+                        System.arraycopy( bytes, read, bytes, write, eol - read );
+                    }
+
+                    write += eol - read;
+                    insideLine = true;
+                    insideComment = false;
+                    break;
+            }
+
+            read = next;
+        }
+
+        if ( insideLine )
+        {
+            endLine( write );
+        }
+    }
+
+
+    /**
+     * Stores the end of the current line
+     */
+    private void endLine( int end )
+    {
+        lineEnds[nbLines] = end;
+        nbLines++;
+    }
+
+
+    /**
+     * Parse the version line, the first line of the first record :
+     * <pre>
+     * &lt;version-spec&gt; ::= "version:" &lt;fill&gt; &lt;version-number&gt;
+     * </pre>
+     */
+    private void parseVersion() throws LdapLdifException
+    {
+        int start = lineStarts[0] + "version:".length();
+        int end = lineEnds[0];
+
+        while ( ( start < end ) && ( buffer[start] == ' ' ) )
+        {
+            start++;
+        }
+
+        if ( start == end )
+        {
+            LOG.error( I18n.err( I18n.ERR_12060_VERSION_NOT_A_NUMBER ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12061_LDIF_PARSING_ERROR ) );
+        }
+
+        int ver = 0;
+
+        for ( int i = start; i < end; i++ )
+        {
+            byte b = buffer[i];
+
+            if ( ( b < '0' ) || ( b > '9' ) || ( ver > Integer.MAX_VALUE / 10 ) )
+            {
+                LOG.error( I18n.err( I18n.ERR_12060_VERSION_NOT_A_NUMBER ) );
+                throw new LdapLdifException( I18n.err( I18n.ERR_12061_LDIF_PARSING_ERROR ) );
+            }
+
+            ver = ver * 10 + ( b - '0' );
+        }
+
+        version = ver;
+        LOG.debug( "Ldif version : {}", version );
+    }
+
+
+    /**
+     * Parse the current record, starting at the given line.
+     */
+    private LdifEntry parseRecord( int first ) throws LdapLdifException
+    {
+        // A change record has a "control:" or a "changetype:" line after the Dn
+        for ( int i = first + 1; i < nbLines; i++ )
+        {
+            if ( startsWith( i, "changetype:", true ) || startsWith( i, "control:", true ) )
+            {
+                return parseChangeRecord( first );
+            }
+        }
+
+        if ( containsChanges )
+        {
+            LOG.error( I18n.err( I18n.ERR_12004_CHANGE_NOT_ALLOWED ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12005_NO_CHANGE ) );
+        }
+
+        containsEntries = true;
+
+        LdifEntry entry = new LdifEntry();
+        entry.setDn( parseDn( first ) );
+
+        if ( nbLines == first + 1 )
+        {
+            LOG.error( I18n.err( I18n.ERR_12058_UNKNOWN_ENTRY_TYPE ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12059_UNKNOWN_ENTRY ) );
+        }
+
+        try
+        {
+            for ( int i = first + 1; i < nbLines; i++ )
+            {
+                parseAttributeValue( entry, lineStarts[i], lineEnds[i] );
+            }
+        }
+        catch ( LdapLdifException lle )
+        {
+            throw lle;
+        }
+        catch ( LdapException le )
+        {
+            throw new LdapLdifException( le.getMessage(), le );
+        }
+
+        LOG.debug( "Read an entry : {}", entry );
+
+        return entry;
+    }
+
+
+    /**
+     * Parse a change record, using a LdifReader
+     */
+    private LdifEntry parseChangeRecord( int first ) throws LdapLdifException
+    {
+        if ( containsEntries )
+        {
+            LOG.error( I18n.err( I18n.ERR_12004_CHANGE_NOT_ALLOWED ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12005_NO_CHANGE ) );
+        }
+
+        containsChanges = true;
+
+        StringBuilder sb = new StringBuilder();
+
+        for ( int i = first; i < nbLines; i++ )
+        {
+            sb.append( Strings.utf8ToString( buffer, lineStarts[i], lineEnds[i] - lineStarts[i] ) ).append( '\n' );
+        }
+
+        List<LdifEntry> entries = ldifReader.parseLdif( sb.toString() );
+
+        return entries.get( 0 );
+    }
+
+
+    /**
+     * Parse the Dn of an entry :
+     * <pre>
+     * &lt;dn-spec&gt; ::= "dn:" &lt;fill&gt; &lt;distinguishedName&gt; | "dn::" &lt;fill&gt; &lt;base64-distinguishedName&gt;
+     * </pre>
+     */
+    private Dn parseDn( int line ) throws LdapLdifException
+    {
+        if ( !startsWith( line, "dn:", true ) )
+        {
+            LOG.error( I18n.err( I18n.ERR_12016_DN_EXPECTED ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12013_NO_DN ) );
+        }
+
+        int start = lineStarts[line] + 3;
+        int end = lineEnds[line];
+        String name;
+
+        if ( ( start < end ) && ( buffer[start] == ':' ) )
+        {
+            int length = Base64.decodeInPlace( buffer, start + 1, end - start - 1 );
+            name = Strings.utf8ToString( buffer, start + 1, length );
+        }
+        else
+        {
+            name = Strings.utf8ToString( buffer, start, end - start );
+        }
+
+        name = name.trim();
+
+        if ( name.length() == 0 )
+        {
+            LOG.error( I18n.err( I18n.ERR_12012_EMPTY_DN_NOT_ALLOWED ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12013_NO_DN ) );
+        }
+
+        try
+        {
+            return new Dn( name );
+        }
+        catch ( LdapInvalidDnException lide )
+        {
+            String message = I18n.err( I18n.ERR_12017_INVALID_DN, name );
+            LOG.error( message );
+            throw new LdapLdifException( message, lide );
+        }
+    }
+
+
+    /**
+     * Parse an AttributeType/AttributeValue line, and add the value to the entry :
+     * <pre>
+     * &lt;attrval-spec&gt; ::= &lt;AttributeDescription&gt; &lt;value-spec&gt;
+     * &lt;value-spec&gt; ::= ":" &lt;fill&gt; &lt;SAFE-STRING-e&gt; | "::" &lt;fill&gt; &lt;BASE64-STRING&gt; | ":<" &lt;fill&gt; &lt;url&gt;
+     * </pre>
+     */
+    private void parseAttributeValue( LdifEntry entry, int start, int end ) throws LdapException
+    {
+        byte[] bytes = buffer;
+        int colon = start;
+
+        while ( ( colon < end ) && ( bytes[colon] != ':' ) )
+        {
+            colon++;
+        }
+
+        if ( ( colon == start ) || ( colon == end ) )
+        {
+            // Invalid attribute Value
+            LOG.error( I18n.err( I18n.ERR_12056 ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12057_BAD_ATTRIBUTE ) );
+        }
+
+        String attributeType = getAttributeName( start, colon );
+
+        // We should *not* have a Dn twice
+        if ( "dn".equals( attributeType ) )
+        {
+            LOG.error( I18n.err( I18n.ERR_12002_ENTRY_WITH_TWO_DNS ) );
+            throw new LdapLdifException( I18n.err( I18n.ERR_12003_LDIF_ENTRY_WITH_TWO_DNS ) );
+        }
+
+        int valueStart = colon + 1;
+
+        if ( valueStart == end )
+        {
+            // No value
+            entry.addAttribute( attributeType, ( Object ) null );
+        }
+        else if ( bytes[valueStart] == ':' )
+        {
+            // A base 64 encoded value, decoded in place
+            int length = Base64.decodeInPlace( bytes, valueStart + 1, end - valueStart - 1 );
+            byte[] value = new byte[length];
+            System.arraycopy( bytes, valueStart + 1, value, 0, length );
+            entry.addAttribute( attributeType, value );
+        }
+        else if ( bytes[valueStart] == '<' )
+        {
+            // A value read from an URL
+            String line = Strings.utf8ToString( bytes, start, end - start );
+            entry.addAttribute( attributeType, ldifReader.parseValue( line, line.indexOf( ':' ) ) );
+        }
+        else
+        {
+            // Remove the leading spaces, and the trailing ones, unless escaped
+            while ( ( valueStart < end ) && ( bytes[valueStart] == ' ' ) )
+            {
+                valueStart++;
+            }
+
+            int valueEnd = end;
+
+            for ( int i = end - 1; i > valueStart; i-- )
+            {
+                if ( ( bytes[i] != ' ' ) || ( bytes[i - 1] == '\\' ) )
+                {
+                    break;
+                }
+
+                valueEnd = i;
+            }
+
+            entry.addAttribute( attributeType, Strings.utf8ToString( bytes, valueStart, valueEnd - valueStart ) );
+        }
+    }
+
+
+    /**
+     * Gets the lower cased attribute name stored in the buffer. The names already
+     * read are kept, so that the same String is used by all the entries.
+     */
+    private String getAttributeName( int start, int end )
+    {
+        byte[] bytes = buffer;
+        int length = end - start;
+        int hash = 0;
+
+        for ( int i = start; i < end; i++ )
+        {
+            hash = 31 * hash + toLowerCase( bytes[i] );
+        }
+
+        int slot = ( hash ^ ( hash >>> 16 ) ) & ( NAMES_CACHE_SIZE - 1 );
+        byte[] nameBytes = namesBytes[slot];
+
+        if ( ( nameBytes != null ) && ( nameBytes.length == length ) )
+        {
+            int i = 0;
+
+            while ( ( i < length ) && ( nameBytes[i] == toLowerCase( bytes[start + i] ) ) )
+            {
+                i++;
+            }
+
+            if ( i == length )
+            {
+                return names[slot];
+            }
+        }
+
+        // A new name, replacing the one sharing the same slot
+        nameBytes = new byte[length];
+
+        for ( int i = 0; i < length; i++ )
+        {
+            nameBytes[i] = toLowerCase( bytes[start + i] );
+        }
+
+        String name = Strings.utf8ToString( nameBytes );
+        namesBytes[slot] = nameBytes;
+        names[slot] = name;
+
+        return name;
+    }
+
+
+    /**
+     * Lower case an ASCII byte
+     */
+    private static byte toLowerCase( byte b )
+    {
+        if ( ( b >= 'A' ) && ( b <= 'Z' ) )
+        {
+            return ( byte ) ( b + ( 'a' - 'A' ) );
+        }
+
+        return b;
+    }
+
+
+    /**
+     * Tells if a line starts with the given ASCII prefix.
+     */
+    private boolean startsWith( int line, String prefix, boolean ignoreCase )
+    {
+        int start = lineStarts[line];
+        int length = prefix.length();
+
+        if ( lineEnds[line] - start < length )
+        {
+            return false;
+        }
+
+        for ( int i = 0; i < length; i++ )
+        {
+            byte b = buffer[start + i];
+
+            if ( ignoreCase )
+            {
+                b = toLowerCase( b );
+            }
+
+            if ( b != prefix.charAt( i ) )
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
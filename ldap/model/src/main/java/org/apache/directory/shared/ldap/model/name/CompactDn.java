@@ -0,0 +1,300 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.name;
+
+
+import java.util.Arrays;
+
+import org.apache.directory.shared.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.util.Strings;
+
+
+/**
+ * A compact and immutable form of a normalized Dn, meant to be kept in memory in large
+ * numbers, for instance in indexes. A CompactDn only stores the normalized form of its
+ * leftmost Rdn, as UTF-8 bytes, and a reference to its parent : the Dns created by the
+ * same {@link CompactDnPool} share their common suffixes, which are stored only once.
+ * <br/>
+ * The user provided form of the Dn is not kept. The parent and the ancestors of a
+ * CompactDn are available without building any String, in O(depth). A CompactDn can be
+ * converted back to a {@link Dn} using {@link #toDn(SchemaManager)}.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class CompactDn
+{
+    /** The empty Dn, which is the root of all the CompactDns */
+    public static final CompactDn ROOT = new CompactDn( null, new byte[0] );
+
+    /** The parent, null for the root */
+    private final CompactDn parent;
+
+    /** The normalized leftmost Rdn, as UTF-8 bytes */
+    private final byte[] normRdn;
+
+    /** The number of Rdns */
+    private final int size;
+
+    /** The precomputed hashCode */
+    private final int h;
+
+
+    /**
+     * Creates a new instance of CompactDn. It's only created by the CompactDnPool.
+     *
+     * @param parent The parent Dn
+     * @param normRdn The normalized leftmost Rdn, as UTF-8 bytes
+     */
+    /* No protection */CompactDn( CompactDn parent, byte[] normRdn )
+    {
+        this.parent = parent;
+        this.normRdn = normRdn;
+
+        if ( parent == null )
+        {
+            size = 0;
+            h = 0;
+        }
+        else
+        {
+            size = parent.size + 1;
+            h = parent.h * 31 + Arrays.hashCode( normRdn );
+        }
+    }
+
+
+    /**
+     * @return The parent of this Dn, or null if this Dn is the root
+     */
+    public CompactDn getParent()
+    {
+        return parent;
+    }
+
+
+    /**
+     * @return The number of Rdns
+     */
+    public int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * @return <code>true</code> if this Dn is the root, ie the empty Dn
+     */
+    public boolean isRoot()
+    {
+        return parent == null;
+    }
+
+
+    /**
+     * @return The normalized leftmost Rdn, or an empty String for the root
+     */
+    public String getNormRdn()
+    {
+        return Strings.utf8ToString( normRdn );
+    }
+
+
+    /**
+     * @return A copy of the normalized leftmost Rdn, as UTF-8 bytes
+     */
+    public byte[] getNormRdnBytes()
+    {
+        byte[] copy = new byte[normRdn.length];
+        System.arraycopy( normRdn, 0, copy, 0, normRdn.length );
+
+        return copy;
+    }
+
+
+    /**
+     * Gets the ancestor of this Dn which has the given number of Rdns
+     *
+     * @param ancestorSize The number of Rdns of the ancestor
+     * @return The ancestor, this Dn if its size is the given size, or null if this Dn is shorter
+     */
+    public CompactDn getAncestor( int ancestorSize )
+    {
+        if ( ( ancestorSize < 0 ) || ( ancestorSize > size ) )
+        {
+            return null;
+        }
+
+        CompactDn ancestor = this;
+
+        for ( int i = size; i > ancestorSize; i-- )
+        {
+            ancestor = ancestor.parent;
+        }
+
+        return ancestor;
+    }
+
+
+    /**
+     * Tells if this Dn is a descendant of another Dn, or is equal to it.
+     *
+     * @param ancestor The potential ancestor
+     * @return <code>true</code> if this Dn is below, or equal to the given Dn
+     */
+    public boolean isDescendantOf( CompactDn ancestor )
+    {
+        if ( ancestor == null )
+        {
+            return true;
+        }
+
+        CompactDn candidate = getAncestor( ancestor.size );
+
+        return ( candidate != null ) && candidate.equals( ancestor );
+    }
+
+
+    /**
+     * Tells if this Dn is an ancestor of another Dn, or is equal to it.
+     *
+     * @param descendant The potential descendant
+     * @return <code>true</code> if this Dn is above, or equal to the given Dn
+     */
+    public boolean isAncestorOf( CompactDn descendant )
+    {
+        return ( descendant != null ) && descendant.isDescendantOf( this );
+    }
+
+
+    /**
+     * @return The normalized Dn, as UTF-8 bytes
+     */
+    public byte[] getBytes()
+    {
+        if ( size == 0 )
+        {
+            return new byte[0];
+        }
+
+        // The Rdns, separated by commas
+        int length = size - 1;
+
+        for ( CompactDn dn = this; dn.parent != null; dn = dn.parent )
+        {
+            length += dn.normRdn.length;
+        }
+
+        byte[] bytes = new byte[length];
+        int pos = 0;
+
+        for ( CompactDn dn = this; dn.parent != null; dn = dn.parent )
+        {
+            if ( pos != 0 )
+            {
+                bytes[pos++] = ',';
+            }
+
+            System.arraycopy( dn.normRdn, 0, bytes, pos, dn.normRdn.length );
+            pos += dn.normRdn.length;
+        }
+
+        return bytes;
+    }
+
+
+    /**
+     * @return The normalized Dn, as returned by {@link Dn#getNormName()}
+     */
+    public String getNormName()
+    {
+        return Strings.utf8ToString( getBytes() );
+    }
+
+
+    /**
+     * Converts this CompactDn to a Dn. As the user provided name is not kept, the
+     * name of the created Dn is the normalized name.
+     *
+     * @param schemaManager The SchemaManager used to create a schema aware Dn, if any
+     * @return The Dn
+     * @throws LdapInvalidDnException If the normalized name can't be parsed
+     */
+    public Dn toDn( SchemaManager schemaManager ) throws LdapInvalidDnException
+    {
+        return new Dn( schemaManager, getNormName() );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode()
+    {
+        return h;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals( Object obj )
+    {
+        if ( !( obj instanceof CompactDn ) )
+        {
+            return false;
+        }
+
+        CompactDn dn = this;
+        CompactDn other = ( CompactDn ) obj;
+
+        if ( ( other.size != size ) || ( other.h != h ) )
+        {
+            return false;
+        }
+
+        // Walk up until both Dns share the same ancestor, which is
+        // immediate when they come from the same pool
+        while ( dn != other )
+        {
+            if ( !Arrays.equals( dn.normRdn, other.normRdn ) )
+            {
+                return false;
+            }
+
+            dn = dn.parent;
+            other = other.parent;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return getNormName();
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.name;
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.directory.shared.util.Strings;
+
+
+/**
+ * Creates the {@link CompactDn}s, and keeps them so that each Dn, and thus each suffix,
+ * is stored only once : all the Dns below <i>ou=people,dc=example,dc=com</i> share the
+ * same parent instance. It can be used by any number of threads.
+ * <br/>
+ * The pool holds all the Dns it has created, until they are removed or the pool is
+ * cleared : it's meant to be used with a set of Dns which doesn't change much, like the
+ * Dns of an in-memory index.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CompactDnPool
+{
+    /** The pooled Dns */
+    private final ConcurrentMap<CompactDn, CompactDn> pool = new ConcurrentHashMap<CompactDn, CompactDn>();
+
+
+    /**
+     * Gets the CompactDn for a Dn. The Dn should be schema aware, otherwise two Dns
+     * written differently will not be considered as equal.
+     *
+     * @param dn The Dn
+     * @return The pooled CompactDn
+     */
+    public CompactDn getCompactDn( Dn dn )
+    {
+        CompactDn compactDn = CompactDn.ROOT;
+
+        if ( dn == null )
+        {
+            return compactDn;
+        }
+
+        // The iterator starts with the rightmost Rdn
+        for ( Rdn rdn : dn )
+        {
+            compactDn = getCompactDn( compactDn, rdn );
+        }
+
+        return compactDn;
+    }
+
+
+    /**
+     * Gets the CompactDn for a child of a CompactDn.
+     *
+     * @param parent The parent Dn
+     * @param rdn The child Rdn
+     * @return The pooled CompactDn
+     */
+    public CompactDn getCompactDn( CompactDn parent, Rdn rdn )
+    {
+        return intern( new CompactDn( parent, Strings.getBytesUtf8( rdn.getNormName() ) ) );
+    }
+
+
+    /**
+     * Returns the pooled instance equal to a CompactDn, adding it to the pool if
+     * it's not already there.
+     */
+    private CompactDn intern( CompactDn compactDn )
+    {
+        CompactDn pooled = pool.get( compactDn );
+
+        if ( pooled != null )
+        {
+            return pooled;
+        }
+
+        pooled = pool.putIfAbsent( compactDn, compactDn );
+
+        return pooled == null ? compactDn : pooled;
+    }
+
+
+    /**
+     * Removes a Dn from the pool. Its descendants, if any, are still valid, and
+     * still reference it.
+     *
+     * @param compactDn The Dn to remove
+     */
+    public void remove( CompactDn compactDn )
+    {
+        pool.remove( compactDn );
+    }
+
+
+    /**
+     * Removes all the Dns from the pool.
+     */
+    public void clear()
+    {
+        pool.clear();
+    }
+
+
+    /**
+     * @return The number of pooled Dns, including the suffixes
+     */
+    public int size()
+    {
+        return pool.size();
+    }
+}
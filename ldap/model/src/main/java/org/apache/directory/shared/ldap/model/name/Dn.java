@@ -118,6 +118,9 @@ public class Dn implements Iterable<Rdn>, Externalizable
     /** the schema manager */
     private SchemaManager schemaManager;
 
+    /** Tells if this Dn is shared, for instance by a DnCache, and must not be modified */
+    private volatile boolean shared;
+
     /**
      * An iterator over RDNs
      */
@@ -1172,13 +1175,24 @@ public class Dn implements Iterable<Rdn>, Externalizable
      *
      * @param schemaManager The schemaManagerto use to normalize the Dn
      * @param force Tells if we should replace an existing SchemaManager by a new one
-     * @return The normalized Dn
+     * @return The normalized Dn, which is a copy of this Dn if it is shared
      * @throws LdapInvalidDnException If the Dn is invalid.
      */
     public Dn apply( SchemaManager schemaManager, boolean force ) throws LdapInvalidDnException
     {
         if ( ( this.schemaManager == null ) || force )
         {
+            if ( shared )
+            {
+                // A shared Dn can't be modified : normalize a copy of it instead
+                Dn dn = copy();
+                dn.upName = upName;
+                dn.normName = normName;
+                dn.bytes = bytes;
+
+                return dn.apply( schemaManager, force );
+            }
+
 
             this.schemaManager = schemaManager;
 
@@ -1267,7 +1281,7 @@ public class Dn implements Iterable<Rdn>, Externalizable
      * Normalizes the Dn using the given the schema manager, unless the Dn is already normalized
      *
      * @param schemaManager The schemaManagerto use to normalize the Dn
-     * @return The normalized Dn
+     * @return The normalized Dn, which is a copy of this Dn if it is shared
      * @throws LdapInvalidDnException If the Dn is invalid.
      */
     public Dn apply( SchemaManager schemaManager ) throws LdapInvalidDnException
@@ -1283,6 +1297,28 @@ public class Dn implements Iterable<Rdn>, Externalizable
     }
 
 
+    /**
+     * Tells if the Dn is shared, for instance because it has been returned by a
+     * {@link DnCache}. A shared Dn is never modified : the <tt>apply</tt> methods
+     * return a normalized copy of it instead, so their result must always be used.
+     *
+     * @return <code>true</code> if the Dn is shared.
+     */
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+
+    /**
+     * Marks this Dn as shared. It can't be reverted.
+     */
+    /* No protection */void setShared()
+    {
+        shared = true;
+    }
+
+
     /**
      * Tells if the Dn is schema aware
      *
@@ -0,0 +1,280 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.name;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.directory.shared.ldap.model.exception.LdapInvalidDnException;
+import org.apache.directory.shared.ldap.model.schema.SchemaManager;
+import org.apache.directory.shared.util.ConcurrentLruCache;
+
+
+/**
+ * A bounded cache of parsed and normalized Dns, keyed by the user provided name and
+ * the SchemaManager used to normalize it. It can be used by any number of threads.
+ * <br/>
+ * The returned Dns are shared between all the callers, and are thus marked as shared :
+ * they are never modified, and the <tt>apply</tt> methods return a normalized copy
+ * instead (see {@link Dn#isShared()}). When the cache is full, the least recently
+ * used Dns are evicted first. The cache is split into segments, one per expected
+ * concurrent thread, each one evicting its own least recently used Dns : with a
+ * concurrency level of 1, the eviction order is strictly LRU.
+ * <br/>
+ * Using the cache is optional : it's worth it when the same names are parsed over and
+ * over, like the base Dns of searches or the members of groups.
+ * <pre>
+ * DnCache dnCache = new DnCache( 10000 );
+ *
+ * Dn dn = dnCache.getDn( schemaManager, "ou=people, dc=example, dc=com" );
+ * </pre>
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class DnCache
+{
+    /** The default maximum number of cached Dns */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /** The cached Dns */
+    private final ConcurrentLruCache<DnKey, Dn> cache;
+
+    /** The maximum number of cached Dns */
+    private final int maxSize;
+
+    /**
+     * The key of a cached Dn. The SchemaManagers are compared by reference, as
+     * two different instances may not normalize the names the same way.
+     */
+    private static final class DnKey
+    {
+        /** The user provided name */
+        private final String upName;
+
+        /** The SchemaManager used to normalize the Dn, if any */
+        private final SchemaManager schemaManager;
+
+        /** The precomputed hashCode */
+        private final int h;
+
+
+        private DnKey( String upName, SchemaManager schemaManager )
+        {
+            this.upName = upName;
+            this.schemaManager = schemaManager;
+            h = upName.hashCode() * 31 + System.identityHashCode( schemaManager );
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode()
+        {
+            return h;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals( Object obj )
+        {
+            if ( obj == this )
+            {
+                return true;
+            }
+
+            if ( !( obj instanceof DnKey ) )
+            {
+                return false;
+            }
+
+            DnKey that = ( DnKey ) obj;
+
+            return ( schemaManager == that.schemaManager ) && upName.equals( that.upName );
+        }
+    }
+
+
+    /**
+     * Creates a new instance of DnCache, holding at most DEFAULT_MAX_SIZE Dns.
+     */
+    public DnCache()
+    {
+        this( DEFAULT_MAX_SIZE );
+    }
+
+
+    /**
+     * Creates a new instance of DnCache.
+     *
+     * @param maxSize The maximum number of cached Dns
+     */
+    public DnCache( int maxSize )
+    {
+        this( maxSize, ConcurrentLruCache.DEFAULT_CONCURRENCY_LEVEL );
+    }
+
+
+    /**
+     * Creates a new instance of DnCache.
+     *
+     * @param maxSize The maximum number of cached Dns
+     * @param concurrencyLevel The expected number of threads using the cache concurrently
+     */
+    public DnCache( int maxSize, int concurrencyLevel )
+    {
+        if ( maxSize <= 0 )
+        {
+            throw new IllegalArgumentException( "Invalid cache size : " + maxSize );
+        }
+
+        this.maxSize = maxSize;
+        cache = new ConcurrentLruCache<DnKey, Dn>( maxSize, null, 0L, TimeUnit.MILLISECONDS, concurrencyLevel );
+    }
+
+
+    /**
+     * Gets the Dn for a name, parsing it only if it's not already in the cache. The
+     * returned Dn is shared : it must not be modified.
+     *
+     * @param upName The user provided name
+     * @return The Dn, which is not schema aware
+     * @throws LdapInvalidDnException If the name is not a valid Dn
+     */
+    public Dn getDn( String upName ) throws LdapInvalidDnException
+    {
+        return getDn( null, upName );
+    }
+
+
+    /**
+     * Gets the normalized Dn for a name, parsing and normalizing it only if it's not
+     * already in the cache. The returned Dn is shared : it must not be modified.
+     *
+     * @param schemaManager The SchemaManager used to normalize the Dn, if any
+     * @param upName The user provided name
+     * @return The Dn, which is schema aware if a SchemaManager has been given
+     * @throws LdapInvalidDnException If the name is not a valid Dn
+     */
+    public Dn getDn( SchemaManager schemaManager, String upName ) throws LdapInvalidDnException
+    {
+        if ( upName == null )
+        {
+            return new Dn( schemaManager );
+        }
+
+        DnKey key = new DnKey( upName, schemaManager );
+        Dn dn = cache.get( key );
+
+        if ( dn != null )
+        {
+            return dn;
+        }
+
+        // Parse the name outside of any lock : two threads parsing the same
+        // name at the same time will both get a valid Dn, the last one is kept
+        dn = new Dn( schemaManager, upName );
+        dn.setShared();
+        cache.put( key, dn );
+
+        return dn;
+    }
+
+
+    /**
+     * Removes all the Dns from the cache. The statistics are not reset.
+     */
+    public void clear()
+    {
+        cache.clear();
+    }
+
+
+    /**
+     * @return The number of cached Dns
+     */
+    public int size()
+    {
+        return cache.size();
+    }
+
+
+    /**
+     * @return The maximum number of cached Dns
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+
+    /**
+     * @return The number of Dns which have been found in the cache
+     */
+    public long getHitCount()
+    {
+        return cache.getHitCount();
+    }
+
+
+    /**
+     * @return The number of Dns which have been parsed because they were not in the cache
+     */
+    public long getMissCount()
+    {
+        return cache.getMissCount();
+    }
+
+
+    /**
+     * @return The ratio of Dns found in the cache, between 0 and 1
+     */
+    public double getHitRatio()
+    {
+        long hits = cache.getHitCount();
+        long requests = hits + cache.getMissCount();
+
+        return requests == 0 ? 0d : ( double ) hits / requests;
+    }
+
+
+    /**
+     * Resets the hit and miss counters.
+     */
+    public void resetStatistics()
+    {
+        cache.resetStatistics();
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "DnCache : " + size() + "/" + maxSize + " Dns, " + getHitCount() + " hits, " + getMissCount()
+            + " misses";
+    }
+}
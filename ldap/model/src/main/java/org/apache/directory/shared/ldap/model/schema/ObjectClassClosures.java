@@ -0,0 +1,365 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.schema;
+
+
+import java.util.BitSet;
+
+import org.apache.directory.shared.ldap.model.constants.SchemaConstants;
+import org.apache.directory.shared.ldap.model.entry.Attribute;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.entry.Value;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.ldap.model.exception.LdapSchemaViolationException;
+import org.apache.directory.shared.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.shared.ldap.model.schema.registries.AttributeTypeRegistry;
+import org.apache.directory.shared.ldap.model.schema.registries.ObjectClassRegistry;
+
+
+/**
+ * The transitive closure of each ObjectClass of the registries : its superiors, and
+ * the MUST and MAY AttributeTypes it inherits. They are computed once, as bitsets
+ * over the ObjectClass and AttributeType ids, so that checking an entry against its
+ * ObjectClasses doesn't have to walk the superior chains and merge the MUST and MAY
+ * lists again.
+ * <br/>
+ * The closures reflect the registries at the time they were built : they must be
+ * rebuilt when the schema changes, which can be detected with {@link #isBuiltFrom}.
+ * An instance is immutable, and can be used by any number of threads.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public final class ObjectClassClosures
+{
+    /** The ObjectClass registry the closures are built from */
+    private final ObjectClassRegistry objectClassRegistry;
+
+    /** The AttributeType registry the closures are built from */
+    private final AttributeTypeRegistry attributeTypeRegistry;
+
+    /** The state of the registries when the closures were built */
+    private final int objectClassIdCount;
+    private final int objectClassCount;
+    private final int attributeTypeIdCount;
+    private final int attributeTypeCount;
+
+    /** For each ObjectClass id, the ids of the ObjectClass and of all its superiors */
+    private final BitSet[] superiors;
+
+    /** For each ObjectClass id, the ids of the MUST AttributeTypes, inherited ones included */
+    private final BitSet[] mustAttributeTypes;
+
+    /** For each ObjectClass id, the ids of the MAY AttributeTypes, inherited ones included */
+    private final BitSet[] mayAttributeTypes;
+
+    /** The ids of the STRUCTURAL ObjectClasses */
+    private final BitSet structuralObjectClasses = new BitSet();
+
+    /** The extensibleObject ObjectClass id, or -1 */
+    private final int extensibleObjectId;
+
+
+    /**
+     * Computes the closures of all the ObjectClasses stored in the registries.
+     *
+     * @param objectClassRegistry The ObjectClass registry
+     * @param attributeTypeRegistry The AttributeType registry
+     */
+    public ObjectClassClosures( ObjectClassRegistry objectClassRegistry, AttributeTypeRegistry attributeTypeRegistry )
+    {
+        this.objectClassRegistry = objectClassRegistry;
+        this.attributeTypeRegistry = attributeTypeRegistry;
+        objectClassIdCount = objectClassRegistry.getIdCount();
+        objectClassCount = objectClassRegistry.size();
+        attributeTypeIdCount = attributeTypeRegistry.getIdCount();
+        attributeTypeCount = attributeTypeRegistry.size();
+
+        superiors = new BitSet[objectClassIdCount];
+        mustAttributeTypes = new BitSet[objectClassIdCount];
+        mayAttributeTypes = new BitSet[objectClassIdCount];
+
+        for ( ObjectClass objectClass : objectClassRegistry )
+        {
+            computeClosure( getId( objectClass.getOid() ), 0 );
+        }
+
+        extensibleObjectId = getId( SchemaConstants.EXTENSIBLE_OBJECT_OC );
+    }
+
+
+    /**
+     * @return The id of an ObjectClass, or -1 if it's not registered
+     */
+    private int getId( String objectClass )
+    {
+        try
+        {
+            return objectClassRegistry.getId( objectClass );
+        }
+        catch ( LdapException le )
+        {
+            return -1;
+        }
+    }
+
+
+    /**
+     * Sets the AttributeTypes ids in a bitset. The unknown AttributeTypes, which
+     * can exist in relaxed mode, are ignored.
+     */
+    private void setAttributeTypes( BitSet bitSet, Iterable<String> attributeTypes )
+    {
+        for ( String attributeType : attributeTypes )
+        {
+            try
+            {
+                bitSet.set( attributeTypeRegistry.getId( attributeType ) );
+            }
+            catch ( LdapException le )
+            {
+                // Ignore it
+            }
+        }
+    }
+
+
+    /**
+     * Computes the closure of an ObjectClass, after the closures of its superiors.
+     * The depth protects us against the cycles, which can exist in relaxed mode.
+     */
+    private void computeClosure( int id, int depth )
+    {
+        if ( ( id < 0 ) || ( superiors[id] != null ) || ( depth > objectClassIdCount ) )
+        {
+            return;
+        }
+
+        ObjectClass objectClass = null;
+
+        try
+        {
+            objectClass = objectClassRegistry.lookup( id );
+        }
+        catch ( LdapException le )
+        {
+            return;
+        }
+
+        BitSet superiorIds = new BitSet();
+        BitSet must = new BitSet();
+        BitSet may = new BitSet();
+
+        superiorIds.set( id );
+        setAttributeTypes( must, objectClass.getMustAttributeTypeOids() );
+        setAttributeTypes( may, objectClass.getMayAttributeTypeOids() );
+
+        for ( String superiorOid : objectClass.getSuperiorOids() )
+        {
+            int superiorId = getId( superiorOid );
+            computeClosure( superiorId, depth + 1 );
+
+            if ( ( superiorId >= 0 ) && ( superiors[superiorId] != null ) )
+            {
+                superiorIds.or( superiors[superiorId] );
+                must.or( mustAttributeTypes[superiorId] );
+                may.or( mayAttributeTypes[superiorId] );
+            }
+        }
+
+        if ( objectClass.isStructural() )
+        {
+            structuralObjectClasses.set( id );
+        }
+
+        superiors[id] = superiorIds;
+        mustAttributeTypes[id] = must;
+        mayAttributeTypes[id] = may;
+    }
+
+
+    /**
+     * Tells if the closures are up to date with some registries : they have been built
+     * from them, and no SchemaObject has been added or removed since.
+     *
+     * @param objectClassRegistry The ObjectClass registry
+     * @param attributeTypeRegistry The AttributeType registry
+     * @return <code>true</code> if the closures can be used with these registries
+     */
+    public boolean isBuiltFrom( ObjectClassRegistry objectClassRegistry, AttributeTypeRegistry attributeTypeRegistry )
+    {
+        return ( this.objectClassRegistry == objectClassRegistry )
+            && ( this.attributeTypeRegistry == attributeTypeRegistry )
+            && ( objectClassIdCount == objectClassRegistry.getIdCount() )
+            && ( objectClassCount == objectClassRegistry.size() )
+            && ( attributeTypeIdCount == attributeTypeRegistry.getIdCount() )
+            && ( attributeTypeCount == attributeTypeRegistry.size() );
+    }
+
+
+    /**
+     * Gets the ids of an ObjectClass and of all its superiors.
+     *
+     * @param objectClass The ObjectClass OID or name
+     * @return The ObjectClass ids, or null if the ObjectClass is unknown
+     */
+    public BitSet getSuperiors( String objectClass )
+    {
+        return copy( superiors, getId( objectClass ) );
+    }
+
+
+    /**
+     * Gets the ids of the AttributeTypes an ObjectClass requires, including the ones
+     * required by its superiors.
+     *
+     * @param objectClass The ObjectClass OID or name
+     * @return The AttributeType ids, or null if the ObjectClass is unknown
+     */
+    public BitSet getMustAttributeTypes( String objectClass )
+    {
+        return copy( mustAttributeTypes, getId( objectClass ) );
+    }
+
+
+    /**
+     * Gets the ids of the AttributeTypes an ObjectClass allows, including the ones
+     * allowed by its superiors.
+     *
+     * @param objectClass The ObjectClass OID or name
+     * @return The AttributeType ids, or null if the ObjectClass is unknown
+     */
+    public BitSet getMayAttributeTypes( String objectClass )
+    {
+        return copy( mayAttributeTypes, getId( objectClass ) );
+    }
+
+
+    /**
+     * @return A copy of a closure, which can't be modified by the caller
+     */
+    private BitSet copy( BitSet[] closures, int id )
+    {
+        if ( ( id < 0 ) || ( id >= closures.length ) || ( closures[id] == null ) )
+        {
+            return null;
+        }
+
+        return ( BitSet ) closures[id].clone();
+    }
+
+
+    /**
+     * Checks an entry against its ObjectClasses :
+     * <ul>
+     * <li>all its ObjectClasses must be known</li>
+     * <li>it must have at least one STRUCTURAL ObjectClass</li>
+     * <li>all the AttributeTypes required by its ObjectClasses and their superiors must be present</li>
+     * <li>all its user AttributeTypes must be allowed by its ObjectClasses, unless
+     * it's an extensibleObject</li>
+     * </ul>
+     *
+     * @param entry The entry to check
+     * @throws LdapException If the entry does not comply with its ObjectClasses, or if
+     * one of its attributes is unknown
+     */
+    public void validate( Entry entry ) throws LdapException
+    {
+        Attribute objectClasses = entry.get( SchemaConstants.OBJECT_CLASS_AT );
+
+        if ( ( objectClasses == null ) || ( objectClasses.size() == 0 ) )
+        {
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION, "The entry "
+                + entry.getDn() + " has no ObjectClass" );
+        }
+
+        // Gather the ObjectClasses with their superiors
+        BitSet closure = new BitSet();
+
+        for ( Value<?> value : objectClasses )
+        {
+            int id = getId( value.getString() );
+
+            if ( ( id < 0 ) || ( id >= superiors.length ) || ( superiors[id] == null ) )
+            {
+                throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION, "The ObjectClass "
+                    + value.getString() + " of the entry " + entry.getDn() + " does not exist" );
+            }
+
+            closure.or( superiors[id] );
+        }
+
+        if ( !closure.intersects( structuralObjectClasses ) )
+        {
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION, "The entry "
+                + entry.getDn() + " has no STRUCTURAL ObjectClass" );
+        }
+
+        // Merge their MUST and MAY AttributeTypes
+        BitSet must = new BitSet();
+        BitSet allowed = new BitSet();
+
+        for ( int id = closure.nextSetBit( 0 ); id >= 0; id = closure.nextSetBit( id + 1 ) )
+        {
+            must.or( mustAttributeTypes[id] );
+            allowed.or( mayAttributeTypes[id] );
+        }
+
+        allowed.or( must );
+        boolean isExtensible = ( extensibleObjectId >= 0 ) && closure.get( extensibleObjectId );
+
+        // Check the entry attributes
+        for ( Attribute attribute : entry )
+        {
+            AttributeType attributeType = attribute.getAttributeType();
+            int id = attributeTypeRegistry.getId( attributeType != null ? attributeType.getOid() : attribute.getId() );
+
+            if ( attributeType == null )
+            {
+                attributeType = attributeTypeRegistry.lookup( id );
+            }
+
+            if ( !isExtensible && !allowed.get( id ) && ( attributeType.getUsage() == UsageEnum.USER_APPLICATIONS ) )
+            {
+                throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION, "The attribute "
+                    + attribute.getUpId() + " is not allowed by the ObjectClasses of the entry " + entry.getDn() );
+            }
+
+            must.clear( id );
+        }
+
+        if ( !must.isEmpty() )
+        {
+            StringBuilder sb = new StringBuilder();
+
+            for ( int id = must.nextSetBit( 0 ); id >= 0; id = must.nextSetBit( id + 1 ) )
+            {
+                if ( sb.length() > 0 )
+                {
+                    sb.append( ", " );
+                }
+
+                sb.append( attributeTypeRegistry.lookup( id ).getName() );
+            }
+
+            throw new LdapSchemaViolationException( ResultCodeEnum.OBJECT_CLASS_VIOLATION, "The entry "
+                + entry.getDn() + " is missing the required attributes " + sb );
+        }
+    }
+}
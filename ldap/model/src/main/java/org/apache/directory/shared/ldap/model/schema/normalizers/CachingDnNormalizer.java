@@ -46,6 +46,6 @@ public class CachingDnNormalizer extends CachingNormalizer
      */
     public void setSchemaManager( SchemaManager schemaManager )
     {
-        super.normalizer.setSchemaManager( schemaManager );
+        super.setSchemaManager( schemaManager );
     }
 }
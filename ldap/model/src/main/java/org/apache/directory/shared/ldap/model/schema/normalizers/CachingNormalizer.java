@@ -20,6 +20,7 @@
 package org.apache.directory.shared.ldap.model.schema.normalizers;
 
 
+import org.apache.directory.shared.ldap.model.entry.StringValue;
 import org.apache.directory.shared.ldap.model.entry.Value;
 import org.apache.directory.shared.ldap.model.exception.LdapException;
 import org.apache.directory.shared.ldap.model.schema.Normalizer;
@@ -27,7 +28,12 @@ import org.apache.directory.shared.ldap.model.schema.SchemaManager;
 
 
 /**
- * Caches previously normalized values.
+ * Caches previously normalized values. The cache is bounded, and can be used by
+ * many threads without any locking. As a Normalizer is associated with a single
+ * MatchingRule, the cache size can be tuned per MatchingRule, using
+ * {@link #setCacheSize(int)}. A size of 0 disables the cache.
+ * <br/>
+ * Only the human readable values are cached.
  * 
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -40,6 +46,12 @@ public class CachingNormalizer extends Normalizer
     /** The underlying decorated Normalizer */
     protected final Normalizer normalizer;
 
+    /** The maximum number of cached values */
+    private volatile int cacheSize;
+
+    /** The cache of normalized values, created lazily, as it's not serialized */
+    private transient volatile NormalizationCache cache;
+
 
     // ------------------------------------------------------------------------
     // C O N S T R U C T O R S
@@ -68,6 +80,102 @@ public class CachingNormalizer extends Normalizer
     {
         super( normalizer.getOid() );
         this.normalizer = normalizer;
+        this.cacheSize = Math.max( 0, cacheSz );
+    }
+
+
+    /**
+     * @return The cache, or null if caching is disabled
+     */
+    private NormalizationCache getCache()
+    {
+        NormalizationCache currentCache = cache;
+
+        if ( ( currentCache == null ) && ( cacheSize > 0 ) )
+        {
+            currentCache = new NormalizationCache( cacheSize );
+            cache = currentCache;
+        }
+
+        return currentCache;
+    }
+
+
+    /**
+     * Sets the maximum number of cached values. The values already cached are
+     * discarded.
+     *
+     * @param cacheSize The maximum number of cached values, 0 to disable the cache
+     */
+    public void setCacheSize( int cacheSize )
+    {
+        this.cacheSize = Math.max( 0, cacheSize );
+        cache = null;
+    }
+
+
+    /**
+     * @return The maximum number of cached values, 0 if the cache is disabled
+     */
+    public int getCacheSize()
+    {
+        return cacheSize;
+    }
+
+
+    /**
+     * @return The number of values found in the cache since it has been created
+     */
+    public long getCacheHitCount()
+    {
+        NormalizationCache currentCache = cache;
+
+        return currentCache == null ? 0L : currentCache.getHitCount();
+    }
+
+
+    /**
+     * @return The number of values which have been normalized because they weren't
+     * in the cache, since it has been created
+     */
+    public long getCacheMissCount()
+    {
+        NormalizationCache currentCache = cache;
+
+        return currentCache == null ? 0L : currentCache.getMissCount();
+    }
+
+
+    /**
+     * @return The ratio of values found in the cache, between 0 and 1
+     */
+    public double getCacheHitRatio()
+    {
+        NormalizationCache currentCache = cache;
+
+        if ( currentCache == null )
+        {
+            return 0d;
+        }
+
+        long hits = currentCache.getHitCount();
+        long requests = hits + currentCache.getMissCount();
+
+        return requests == 0 ? 0d : ( double ) hits / requests;
+    }
+
+
+    /**
+     * Removes all the values from the cache
+     */
+    public void clearCache()
+    {
+        NormalizationCache currentCache = cache;
+
+        if ( currentCache != null )
+        {
+            currentCache.clear();
+        }
     }
 
 
@@ -105,8 +213,29 @@ public class CachingNormalizer extends Normalizer
             return null;
         }
 
+        NormalizationCache currentCache = getCache();
+
+        if ( ( currentCache == null ) || !value.isHumanReadable() || ( value.getString() == null ) )
+        {
+            return normalizer.normalize( value );
+        }
+
+        String cached = currentCache.get( value.getString() );
+
+        if ( cached != null )
+        {
+            return new StringValue( cached );
+        }
+
         Value<?> normalized = normalizer.normalize( value );
 
+        // Only the plain String values can be rebuilt from the cache
+        if ( ( normalized instanceof StringValue ) && ( normalized.getAttributeType() == null )
+            && ( normalized.getString() != null ) )
+        {
+            currentCache.put( value.getString(), normalized.getString() );
+        }
+
         return normalized;
     }
 
@@ -121,7 +250,24 @@ public class CachingNormalizer extends Normalizer
             return null;
         }
 
-        String normalized = normalizer.normalize( value );
+        NormalizationCache currentCache = getCache();
+
+        if ( currentCache == null )
+        {
+            return normalizer.normalize( value );
+        }
+
+        String normalized = currentCache.get( value );
+
+        if ( normalized == null )
+        {
+            normalized = normalizer.normalize( value );
+
+            if ( normalized != null )
+            {
+                currentCache.put( value, normalized );
+            }
+        }
 
         return normalized;
     }
@@ -135,5 +281,8 @@ public class CachingNormalizer extends Normalizer
     public void setSchemaManager( SchemaManager schemaManager )
     {
         normalizer.setSchemaManager( schemaManager );
+
+        // The values may be normalized differently with another SchemaManager
+        clearCache();
     }
 }
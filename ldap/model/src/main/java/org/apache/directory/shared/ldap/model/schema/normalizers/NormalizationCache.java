@@ -0,0 +1,306 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.schema.normalizers;
+
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A bounded cache of normalized values, used by the {@link CachingNormalizer}. The reads
+ * are lock-free, and the writes only rely on the concurrent map and queue holding the
+ * values : the frequency counts are not synchronized, and are approximate when many
+ * threads update them at the same time. The cache size may also briefly exceed its bound
+ * under contention.
+ * <br/>
+ * The values are evicted in insertion order, but a new value only replaces the oldest
+ * one if it has been requested at least as often, as in the TinyLFU admission policy :
+ * the values normalized only once, like the values of unique attributes, don't flush
+ * the frequently used values out of the cache. The frequencies are estimated with a
+ * small count-min sketch of 4 bits counters, which are halved periodically so that
+ * the cache adapts when the workload changes.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+final class NormalizationCache
+{
+    /** The seeds used to compute the sketch indexes of a value */
+    private static final int[] SEEDS = new int[]
+        { 0x97CB3127, 0xB0CFDBB7, 0x4ED3A5C5, 0x6F93A6E1 };
+
+    /** The maximum value of a sketch counter */
+    private static final int MAX_FREQUENCY = 15;
+
+    /** The cached normalized values */
+    private final ConcurrentMap<String, String> cache = new ConcurrentHashMap<String, String>();
+
+    /** The cached values, in insertion order */
+    private final Queue<String> keys = new ConcurrentLinkedQueue<String>();
+
+    /** The number of cached values */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** The maximum number of cached values */
+    private final int maxSize;
+
+    /** The frequency sketch. Concurrent updates may be lost, which is harmless for an estimate */
+    private final int[] sketch;
+
+    /** The shift used to compute an index in the sketch from a hash */
+    private final int sketchShift;
+
+    /** The number of sketch increments since the counters have been halved */
+    private final AtomicInteger samples = new AtomicInteger();
+
+    /** The number of sketch increments after which the counters are halved */
+    private final int sampleSize;
+
+    /** The number of values found in the cache */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** The number of values not found in the cache */
+    private final AtomicLong missCount = new AtomicLong();
+
+
+    /**
+     * Creates a new instance of NormalizationCache.
+     *
+     * @param maxSize The maximum number of cached values
+     */
+    NormalizationCache( int maxSize )
+    {
+        this.maxSize = maxSize;
+
+        int sketchBits = 4;
+
+        while ( ( 1 << sketchBits ) < maxSize * 4 )
+        {
+            sketchBits++;
+        }
+
+        sketch = new int[1 << sketchBits];
+        sketchShift = 32 - sketchBits;
+        sampleSize = maxSize * 10;
+    }
+
+
+    /**
+     * Gets the normalized form of a value, if it's cached.
+     *
+     * @param value The value to normalize
+     * @return The normalized value, or null if it's not cached
+     */
+    String get( String value )
+    {
+        increment( value );
+
+        String normalized = cache.get( value );
+
+        if ( normalized != null )
+        {
+            hitCount.incrementAndGet();
+        }
+        else
+        {
+            missCount.incrementAndGet();
+        }
+
+        return normalized;
+    }
+
+
+    /**
+     * Caches the normalized form of a value. If the cache is full, the value is cached only if
+     * it's requested at least as often as the oldest cached value, which is evicted.
+     *
+     * @param value The value
+     * @param normalized The normalized value
+     */
+    void put( String value, String normalized )
+    {
+        if ( size.get() >= maxSize )
+        {
+            String oldest = keys.peek();
+
+            if ( ( oldest != null ) && ( frequency( oldest ) > frequency( value ) ) )
+            {
+                // The oldest value is more popular : give it a second chance
+                // and don't admit the new value
+                String head = keys.poll();
+
+                if ( head != null )
+                {
+                    keys.add( head );
+                }
+
+                return;
+            }
+        }
+
+        if ( cache.putIfAbsent( value, normalized ) != null )
+        {
+            return;
+        }
+
+        keys.add( value );
+
+        if ( size.incrementAndGet() > maxSize )
+        {
+            evict();
+        }
+    }
+
+
+    /**
+     * Removes the oldest values until the cache size is below its maximum size
+     */
+    private void evict()
+    {
+        while ( size.get() > maxSize )
+        {
+            String oldest = keys.poll();
+
+            if ( oldest == null )
+            {
+                return;
+            }
+
+            if ( cache.remove( oldest ) != null )
+            {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+
+    /**
+     * Removes all the cached values. The statistics are not reset.
+     */
+    void clear()
+    {
+        String key = keys.poll();
+
+        while ( key != null )
+        {
+            if ( cache.remove( key ) != null )
+            {
+                size.decrementAndGet();
+            }
+
+            key = keys.poll();
+        }
+    }
+
+
+    /**
+     * Computes the index of a value in the sketch for a given seed
+     */
+    private int index( int hash, int seed )
+    {
+        return ( ( hash ^ seed ) * 0x9E3779B9 ) >>> sketchShift;
+    }
+
+
+    /**
+     * Records a request for a value in the sketch
+     */
+    private void increment( String value )
+    {
+        int hash = value.hashCode();
+
+        for ( int seed : SEEDS )
+        {
+            int index = index( hash, seed );
+
+            if ( sketch[index] < MAX_FREQUENCY )
+            {
+                sketch[index]++;
+            }
+        }
+
+        if ( samples.incrementAndGet() >= sampleSize )
+        {
+            samples.set( 0 );
+
+            for ( int i = 0; i < sketch.length; i++ )
+            {
+                sketch[i] >>>= 1;
+            }
+        }
+    }
+
+
+    /**
+     * Estimates the number of times a value has been requested recently
+     */
+    private int frequency( String value )
+    {
+        int hash = value.hashCode();
+        int frequency = MAX_FREQUENCY;
+
+        for ( int seed : SEEDS )
+        {
+            frequency = Math.min( frequency, sketch[index( hash, seed )] );
+        }
+
+        return frequency;
+    }
+
+
+    /**
+     * @return The number of cached values
+     */
+    int size()
+    {
+        return cache.size();
+    }
+
+
+    /**
+     * @return The maximum number of cached values
+     */
+    int getMaxSize()
+    {
+        return maxSize;
+    }
+
+
+    /**
+     * @return The number of values found in the cache
+     */
+    long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+
+    /**
+     * @return The number of values not found in the cache
+     */
+    long getMissCount()
+    {
+        return missCount.get();
+    }
+}
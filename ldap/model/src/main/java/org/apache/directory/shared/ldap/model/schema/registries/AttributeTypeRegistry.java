@@ -127,6 +127,34 @@ public interface AttributeTypeRegistry extends SchemaObjectRegistry<AttributeTyp
     void removeMappingFor( AttributeType attributeType ) throws LdapException;
 
 
+    /**
+     * Gets the integer id of a registered AttributeType. The ids are assigned when the
+     * AttributeTypes are registered, starting at 0, and are never reused : they can be
+     * used to index arrays instead of hashing the AttributeType OID.
+     *
+     * @param name The OID or one of the names of the AttributeType
+     * @return The AttributeType id
+     * @throws LdapException If the AttributeType is not registered
+     */
+    int getId( String name ) throws LdapException;
+
+
+    /**
+     * Looks up an AttributeType using its integer id.
+     *
+     * @param id The AttributeType id
+     * @return The AttributeType with this id
+     * @throws LdapException If no AttributeType has this id
+     */
+    AttributeType lookup( int id ) throws LdapException;
+
+
+    /**
+     * @return The number of ids assigned so far : all the ids are lower than this value.
+     */
+    int getIdCount();
+
+
     /**
      * Copy the AttributeTypeRegistry
      */
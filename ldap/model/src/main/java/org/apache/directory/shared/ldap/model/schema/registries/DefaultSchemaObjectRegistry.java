@@ -20,8 +20,10 @@
 package org.apache.directory.shared.ldap.model.schema.registries;
 
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.directory.shared.asn1.util.Oid;
@@ -60,6 +62,12 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     /** the global OID Registry */
     protected OidRegistry<T> oidRegistry;
 
+    /** The SchemaObjects, indexed by their id. The slot of an unregistered SchemaObject is null */
+    protected List<T> byId;
+
+    /** The SchemaObjects ids, by OID */
+    protected Map<String, Integer> idByOid;
+
 
     /**
      * Creates a new DefaultSchemaObjectRegistry instance.
@@ -67,6 +75,8 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     protected DefaultSchemaObjectRegistry( SchemaObjectType schemaObjectType, OidRegistry<T> oidRegistry )
     {
         byName = new HashMap<String, T>();
+        byId = new ArrayList<T>();
+        idByOid = new HashMap<String, Integer>();
         this.schemaObjectType = schemaObjectType;
         this.oidRegistry = oidRegistry;
     }
@@ -230,6 +240,10 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
         // And register the oid -> schemaObject relation
         oidRegistry.register( schemaObject );
 
+        // Last, give it the next id
+        idByOid.put( oid, byId.size() );
+        byId.add( schemaObject );
+
         if ( LOG.isDebugEnabled() )
         {
             LOG.debug( "registered " + schemaObject.getName() + " for OID {}", oid );
@@ -258,6 +272,7 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
 
         // And remove the SchemaObject from the oidRegistry
         oidRegistry.unregister( numericOid );
+        releaseId( numericOid );
 
         if ( DEBUG )
         {
@@ -296,6 +311,7 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
 
         // And unregister the oid -> schemaObject relation
         oidRegistry.unregister( oid );
+        releaseId( oid );
 
         return removed;
     }
@@ -329,6 +345,91 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
     }
 
 
+    /**
+     * Frees the id of an unregistered SchemaObject. The ids are never reused, so that
+     * an id kept by a user never designates another SchemaObject.
+     */
+    private void releaseId( String oid )
+    {
+        Integer id = idByOid.remove( oid );
+
+        if ( id != null )
+        {
+            byId.set( id, null );
+        }
+    }
+
+
+    /**
+     * Gets the integer id of a registered SchemaObject. The ids are assigned when the
+     * SchemaObjects are registered, starting at 0, and can be used to index arrays.
+     *
+     * @param name The OID or one of the names of the SchemaObject
+     * @return The SchemaObject id
+     * @throws LdapException If the SchemaObject is not registered
+     */
+    public int getId( String name ) throws LdapException
+    {
+        T schemaObject = null;
+
+        if ( name != null )
+        {
+            schemaObject = byName.get( name );
+
+            if ( schemaObject == null )
+            {
+                schemaObject = byName.get( Strings.trim( Strings.toLowerCase( name ) ) );
+            }
+        }
+
+        if ( schemaObject == null )
+        {
+            String msg = I18n.err( I18n.ERR_04269, schemaObjectType.name(), name );
+            LOG.debug( msg );
+            throw new LdapException( msg );
+        }
+
+        return idByOid.get( schemaObject.getOid() );
+    }
+
+
+    /**
+     * Looks up a SchemaObject using its integer id.
+     *
+     * @param id The SchemaObject id
+     * @return The SchemaObject with this id
+     * @throws LdapException If no SchemaObject has this id
+     */
+    public T lookup( int id ) throws LdapException
+    {
+        T schemaObject = null;
+
+        if ( ( id >= 0 ) && ( id < byId.size() ) )
+        {
+            schemaObject = byId.get( id );
+        }
+
+        if ( schemaObject == null )
+        {
+            String msg = I18n.err( I18n.ERR_04269, schemaObjectType.name(), Integer.toString( id ) );
+            LOG.debug( msg );
+            throw new LdapException( msg );
+        }
+
+        return schemaObject;
+    }
+
+
+    /**
+     * @return The number of ids assigned so far, including the ids of the unregistered
+     * SchemaObjects : all the ids are lower than this value.
+     */
+    public int getIdCount()
+    {
+        return byId.size();
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -408,6 +509,28 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
             }
         }
 
+        // Keep the same ids, so that the arrays indexed by id are still valid
+        for ( T value : ( ( DefaultSchemaObjectRegistry<T> ) original ).byId )
+        {
+            T copiedValue = null;
+
+            if ( value != null )
+            {
+                try
+                {
+                    copiedValue = oidRegistry.getSchemaObject( value.getOid() );
+                }
+                catch ( LdapException ne )
+                {
+                    // Can't happen
+                }
+            }
+
+            byId.add( copiedValue );
+        }
+
+        idByOid.putAll( ( ( DefaultSchemaObjectRegistry<T> ) original ).idByOid );
+
         return this;
     }
 
@@ -494,6 +617,10 @@ public abstract class DefaultSchemaObjectRegistry<T extends SchemaObject> implem
         // Remove the byName elements
         byName.clear();
 
+        // And the ids
+        byId.clear();
+        idByOid.clear();
+
         // Clear the OidRegistry
         oidRegistry.clear();
     }
@@ -164,6 +164,33 @@ public class ImmutableAttributeTypeRegistry implements AttributeTypeRegistry
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public int getId( String name ) throws LdapException
+    {
+        return immutableAttributeTypeRegistry.getId( name );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public AttributeType lookup( int id ) throws LdapException
+    {
+        return immutableAttributeTypeRegistry.lookup( id );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getIdCount()
+    {
+        return immutableAttributeTypeRegistry.getIdCount();
+    }
+
+
     /**
      * {@inheritDoc}
      */
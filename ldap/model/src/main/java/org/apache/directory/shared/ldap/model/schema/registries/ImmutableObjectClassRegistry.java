@@ -170,6 +170,33 @@ public class ImmutableObjectClassRegistry implements ObjectClassRegistry, Clonea
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public int getId( String name ) throws LdapException
+    {
+        return immutableObjectClassRegistry.getId( name );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public ObjectClass lookup( int id ) throws LdapException
+    {
+        return immutableObjectClassRegistry.lookup( id );
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public int getIdCount()
+    {
+        return immutableObjectClassRegistry.getIdCount();
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -103,6 +103,34 @@ public interface ObjectClassRegistry extends SchemaObjectRegistry<ObjectClass>,
     ObjectClass unregister( String numericOid ) throws LdapException;
 
 
+    /**
+     * Gets the integer id of a registered ObjectClass. The ids are assigned when the
+     * ObjectClasss are registered, starting at 0, and are never reused : they can be
+     * used to index arrays instead of hashing the ObjectClass OID.
+     *
+     * @param name The OID or one of the names of the ObjectClass
+     * @return The ObjectClass id
+     * @throws LdapException If the ObjectClass is not registered
+     */
+    int getId( String name ) throws LdapException;
+
+
+    /**
+     * Looks up an ObjectClass using its integer id.
+     *
+     * @param id The ObjectClass id
+     * @return The ObjectClass with this id
+     * @throws LdapException If no ObjectClass has this id
+     */
+    ObjectClass lookup( int id ) throws LdapException;
+
+
+    /**
+     * @return The number of ids assigned so far : all the ids are lower than this value.
+     */
+    int getIdCount();
+
+
     /**
      * Copy the ObjectClassRegistry
      */
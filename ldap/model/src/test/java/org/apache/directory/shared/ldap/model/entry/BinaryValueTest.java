@@ -24,6 +24,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -31,6 +32,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import org.apache.directory.shared.ldap.model.exception.LdapException;
@@ -298,6 +300,57 @@ public class BinaryValueTest
     }
 
 
+    @Test
+    public void testBinaryValueFromBuffer() throws LdapException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap( new byte[]
+            { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05 } );
+        buffer.position( 1 );
+        buffer.limit( 5 );
+        BinaryValue cbv = BinaryValue.wrap( buffer.asReadOnlyBuffer() );
+        BinaryValue cbv2 = BinaryValue.wrap( ByteBuffer.wrap( BYTES1 ) );
+
+        // Nothing is copied as long as the value is not read
+        assertTrue( cbv.isBuffered() );
+        assertFalse( cbv.isNull() );
+        assertEquals( 4, cbv.length() );
+        assertEquals( new BinaryValue( BYTES1 ).hashCode(), cbv.hashCode() );
+        assertEquals( cbv, cbv2 );
+        assertTrue( cbv.isBuffered() );
+        assertEquals( 1, buffer.position() );
+
+        assertEquals( new BinaryValue( BYTES1 ), cbv );
+        assertFalse( cbv.isBuffered() );
+        assertTrue( Arrays.equals( BYTES1, cbv.getBytes() ) );
+        assertTrue( Arrays.equals( BYTES1, cbv.getNormValue() ) );
+        assertTrue( cbv.isValid( BINARY_CHECKER ) );
+
+        assertTrue( Arrays.equals( BYTES1, cbv2.getReference() ) );
+        assertFalse( cbv2.isBuffered() );
+
+        assertTrue( BinaryValue.wrap( null ).isNull() );
+        assertFalse( BinaryValue.wrap( ByteBuffer.allocate( 0 ) ).isNull() );
+    }
+
+
+    @Test
+    public void testAdoptedBinaryValue() throws LdapException
+    {
+        byte[] bytes = new byte[]
+            { 0x01, 0x02, 0x03, 0x04 };
+        BinaryValue cbv = BinaryValue.adopt( bytes );
+
+        // The array is used as is
+        assertSame( bytes, cbv.getReference() );
+        assertSame( bytes, cbv.getNormReference() );
+        assertFalse( cbv.isBuffered() );
+        assertEquals( new BinaryValue( BYTES1 ), cbv );
+        assertEquals( new BinaryValue( BYTES1 ).hashCode(), cbv.hashCode() );
+
+        assertTrue( BinaryValue.adopt( null ).isNull() );
+    }
+
+
     @Test
     public void testSetByteArray() throws LdapException
     {
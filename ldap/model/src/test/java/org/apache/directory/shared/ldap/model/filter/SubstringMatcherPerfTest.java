@@ -0,0 +1,127 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.filter;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.regex.Pattern;
+
+import org.apache.directory.shared.ldap.model.schema.Normalizer;
+import org.apache.directory.shared.ldap.model.schema.normalizers.DeepTrimToLowerNormalizer;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compare the SubstringMatcher with the regex built by the SubstringNode, checking
+ * the values of a large multi-valued attribute.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class SubstringMatcherPerfTest
+{
+    /** The number of values of the attribute */
+    private static final int NB_VALUES = 10000;
+
+    /** The number of times the values are checked */
+    private static final int NB_LOOPS = 100;
+
+    /** The substring assertions */
+    private static final String[] FILTERS = new String[]
+        { "(member=uid=user1*)", "(member=*,ou=people,dc=example,dc=com)", "(member=*user42*people*)",
+            "(member=uid=*9,ou=*example*com)" };
+
+
+    /**
+     * @return The values of a large group member attribute, normalized
+     */
+    private static String[] createValues( Normalizer normalizer ) throws Exception
+    {
+        String[] values = new String[NB_VALUES];
+
+        for ( int i = 0; i < NB_VALUES; i++ )
+        {
+            values[i] = normalizer.normalize( "uid=User" + i + ",ou=People,dc=Example,dc=com" );
+        }
+
+        return values;
+    }
+
+
+    @Test
+    public void testSubstringMatching() throws Exception
+    {
+        Normalizer normalizer = new DeepTrimToLowerNormalizer();
+        String[] values = createValues( normalizer );
+
+        for ( String filter : FILTERS )
+        {
+            SubstringNode node = ( SubstringNode ) FilterParser.parse( filter );
+            Pattern pattern = node.getRegex( normalizer );
+            SubstringMatcher matcher = node.getMatcher( normalizer );
+            int nbRegex = 0;
+            int nbMatcher = 0;
+
+            // Warm up and check the two matchings agree
+            for ( String value : values )
+            {
+                if ( pattern.matcher( value ).matches() )
+                {
+                    nbRegex++;
+                }
+
+                if ( matcher.matches( value ) )
+                {
+                    nbMatcher++;
+                }
+            }
+
+            assertEquals( nbRegex, nbMatcher );
+
+            long t0 = System.currentTimeMillis();
+
+            for ( int i = 0; i < NB_LOOPS; i++ )
+            {
+                for ( String value : values )
+                {
+                    pattern.matcher( value ).matches();
+                }
+            }
+
+            long t1 = System.currentTimeMillis();
+
+            for ( int i = 0; i < NB_LOOPS; i++ )
+            {
+                for ( String value : values )
+                {
+                    matcher.matches( value );
+                }
+            }
+
+            long t2 = System.currentTimeMillis();
+
+            System.out.println( "Filter " + filter + " matches " + nbMatcher + " values out of " + NB_VALUES );
+            System.out.println( "Delta with the regex : " + ( t1 - t0 ) );
+            System.out.println( "Delta with the matcher : " + ( t2 - t1 ) );
+        }
+    }
+}
@@ -23,6 +23,8 @@ package org.apache.directory.shared.ldap.model.filter;
 import com.mycila.junit.concurrent.Concurrency;
 import com.mycila.junit.concurrent.ConcurrentJunitRunner;
 import org.apache.directory.shared.ldap.model.filter.SubstringNode;
+import org.apache.directory.shared.ldap.model.schema.Normalizer;
+import org.apache.directory.shared.ldap.model.schema.normalizers.DeepTrimToLowerNormalizer;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -138,4 +140,104 @@ public class SubstringNodeTest
             assertFalse( b3 );
         }
     }
+
+
+    @Test
+    public void testMatcher() throws Exception
+    {
+        SubstringMatcher matcher = new SubstringMatcher( "Test", new String[]
+            { "just", "a" }, "test" );
+
+        assertTrue( matcher.matches( "Test (this is) just (truly !) a (little) test" ) );
+        assertTrue( matcher.matches( "Testjustatest" ) );
+        assertFalse( matcher.matches( "Test (this is) just (truly !) A (little) test" ) );
+        assertFalse( matcher.matches( "Test a just test" ) );
+        assertFalse( matcher.matches( "Testjustatst" ) );
+        assertFalse( matcher.matches( null ) );
+
+        // The initial and final parts can't overlap
+        matcher = new SubstringMatcher( "ab", null, "ba" );
+
+        assertTrue( matcher.matches( "abba" ) );
+        assertFalse( matcher.matches( "aba" ) );
+
+        // An any part can't overlap the final part
+        matcher = new SubstringMatcher( null, new String[]
+            { "aa" }, "a" );
+
+        assertTrue( matcher.matches( "xaaa" ) );
+        assertFalse( matcher.matches( "xaa" ) );
+
+        // Unlike the regex, the values can span many lines
+        matcher = new SubstringMatcher( "a", null, "b" );
+
+        assertTrue( matcher.matches( "a\nb" ) );
+        assertFalse( SubstringNode.getRegex( "a", null, "b" ).matcher( "a\nb" ).matches() );
+    }
+
+
+    /**
+     * Check the matcher gives the same results as the regex on all the combinations of
+     * parts and values made of 'a' and 'b'.
+     */
+    @Test
+    public void testMatcherAgainstRegex() throws Exception
+    {
+        String[] words = new String[]
+            { "", "a", "b", "ab", "ba", "aa", "aba", "bab", "abba" };
+
+        for ( String initial : new String[]
+            { null, "a", "ab" } )
+        {
+            for ( String any : new String[]
+                { null, "a", "b", "ba" } )
+            {
+                for ( String fin : new String[]
+                    { null, "a", "ba" } )
+                {
+                    String[] anys = ( any == null ) ? null : new String[]
+                        { any, any };
+                    Pattern pattern = SubstringNode.getRegex( initial, anys, fin );
+                    SubstringMatcher matcher = new SubstringMatcher( initial, anys, fin );
+
+                    for ( String word1 : words )
+                    {
+                        for ( String word2 : words )
+                        {
+                            String value = word1 + word2;
+
+                            assertEquals( pattern + " " + value, pattern.matcher( value ).matches(), matcher
+                                .matches( value ) );
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+
+    @Test
+    public void testGetMatcher() throws Exception
+    {
+        SubstringNode node = new SubstringNode( "cn", "  John ", null );
+        node.addAny( "  M. " );
+        Normalizer normalizer = new DeepTrimToLowerNormalizer();
+
+        SubstringMatcher matcher = node.getMatcher( normalizer );
+
+        assertEquals( "john*m.*", matcher.toString() );
+        assertTrue( matcher.matches( "john m. doe" ) );
+        assertFalse( matcher.matches( "john doe" ) );
+
+        // The matcher is cached for the normalizer
+        assertSame( matcher, node.getMatcher( normalizer ) );
+        assertNotSame( matcher, node.getMatcher( new DeepTrimToLowerNormalizer() ) );
+
+        // And built again when the node is modified
+        node.setFinal( "Doe" );
+        matcher = node.getMatcher( normalizer );
+
+        assertEquals( "john*m.*doe", matcher.toString() );
+        assertFalse( matcher.matches( "john m. smith" ) );
+    }
 }
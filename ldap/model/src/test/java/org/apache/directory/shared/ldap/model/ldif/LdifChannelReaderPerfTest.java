@@ -0,0 +1,224 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.shared.ldap.model.ldif;
+
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.util.Base64;
+import org.apache.directory.shared.util.Strings;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Measure the throughput of the LdifReader and of the LdifChannelReader, in MB/s,
+ * reading a generated LDIF file.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class LdifChannelReaderPerfTest
+{
+    /** The number of entries in the file */
+    private static final int NB_ENTRIES = 100000;
+
+    /** The number of times the file is read */
+    private static final int NB_LOOPS = 5;
+
+    /** The generated LDIF file */
+    private static File ldifFile;
+
+
+    @BeforeClass
+    public static void createLdifFile() throws Exception
+    {
+        ldifFile = File.createTempFile( "LdifChannelReaderPerfTest", ".ldif" );
+        ldifFile.deleteOnExit();
+
+        byte[] certificate = new byte[300];
+
+        for ( int i = 0; i < certificate.length; i++ )
+        {
+            certificate[i] = ( byte ) i;
+        }
+
+        String encodedCertificate = new String( Base64.encode( certificate ) );
+        OutputStream out = new FileOutputStream( ldifFile );
+        StringBuilder sb = new StringBuilder();
+
+        sb.append( "version: 1\n\n" );
+
+        for ( int i = 0; i < NB_ENTRIES; i++ )
+        {
+            sb.append( "# Entry " ).append( i ).append( '\n' );
+            sb.append( "dn: uid=user" ).append( i ).append( ",ou=People,dc=example,dc=com\n" );
+            sb.append( "objectClass: top\n" );
+            sb.append( "objectClass: person\n" );
+            sb.append( "objectClass: organizationalPerson\n" );
+            sb.append( "objectClass: inetOrgPerson\n" );
+            sb.append( "uid: user" ).append( i ).append( '\n' );
+            sb.append( "cn: User " ).append( i ).append( '\n' );
+            sb.append( "sn: Number " ).append( i ).append( '\n' );
+            sb.append( "mail: user" ).append( i ).append( "@example.com\n" );
+            sb.append( "telephoneNumber: +1 408 555 " ).append( i % 10000 ).append( '\n' );
+            sb.append( "description: A long description, folded on a few lines, as the LDIF files\n" );
+            sb.append( "  exported by the servers usually are when the values are longer than\n" );
+            sb.append( "  seventy six characters.\n" );
+            sb.append( "userCertificate;binary:: " );
+
+            // Fold the base 64 value every 76 characters
+            for ( int j = 0; j < encodedCertificate.length(); j += 76 )
+            {
+                if ( j > 0 )
+                {
+                    sb.append( "\n " );
+                }
+
+                sb.append( encodedCertificate, j, Math.min( j + 76, encodedCertificate.length() ) );
+            }
+
+            sb.append( "\n\n" );
+
+            if ( sb.length() > 64 * 1024 )
+            {
+                out.write( Strings.getBytesUtf8( sb.toString() ) );
+                sb.setLength( 0 );
+            }
+        }
+
+        out.write( Strings.getBytesUtf8( sb.toString() ) );
+        out.close();
+    }
+
+
+    @AfterClass
+    public static void deleteLdifFile()
+    {
+        ldifFile.delete();
+    }
+
+
+    private static void printThroughput( String name, long delta )
+    {
+        double megaBytes = ( double ) ldifFile.length() * NB_LOOPS / ( 1024 * 1024 );
+
+        System.out.println( name + " : " + delta + " ms, " + ( long ) ( megaBytes * 1000 / delta ) + " MB/s" );
+    }
+
+
+    @Test
+    public void testLdifReader() throws Exception
+    {
+        // Warm up
+        readWithLdifReader();
+
+        long t0 = System.currentTimeMillis();
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            assertEquals( NB_ENTRIES, readWithLdifReader() );
+        }
+
+        printThroughput( "LdifReader", System.currentTimeMillis() - t0 );
+    }
+
+
+    private int readWithLdifReader() throws Exception
+    {
+        LdifReader reader = new LdifReader( ldifFile );
+        int nbEntries = 0;
+
+        for ( LdifEntry entry : reader )
+        {
+            if ( entry != null )
+            {
+                nbEntries++;
+            }
+        }
+
+        reader.close();
+
+        return nbEntries;
+    }
+
+
+    @Test
+    public void testLdifChannelReader() throws Exception
+    {
+        // Warm up
+        readWithLdifChannelReader( false );
+
+        long t0 = System.currentTimeMillis();
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            assertEquals( NB_ENTRIES, readWithLdifChannelReader( false ) );
+        }
+
+        printThroughput( "LdifChannelReader on a FileChannel", System.currentTimeMillis() - t0 );
+
+        t0 = System.currentTimeMillis();
+
+        for ( int i = 0; i < NB_LOOPS; i++ )
+        {
+            assertEquals( NB_ENTRIES, readWithLdifChannelReader( true ) );
+        }
+
+        printThroughput( "LdifChannelReader on a mapped file", System.currentTimeMillis() - t0 );
+    }
+
+
+    private long readWithLdifChannelReader( boolean mapped ) throws Exception
+    {
+        FileChannel channel = new FileInputStream( ldifFile ).getChannel();
+        LdifChannelReader reader;
+
+        if ( mapped )
+        {
+            reader = new LdifChannelReader( channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() ) );
+        }
+        else
+        {
+            reader = new LdifChannelReader( channel );
+        }
+
+        long nbEntries = reader.read( new LdifEntryListener()
+        {
+            public void entryRead( LdifEntry entry ) throws LdapException
+            {
+                // Nothing to do
+            }
+        } );
+
+        channel.close();
+
+        return nbEntries;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.shared.ldap.model.ldif;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.apache.directory.shared.util.Strings;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.mycila.junit.concurrent.Concurrency;
+import com.mycila.junit.concurrent.ConcurrentJunitRunner;
+
+
+/**
+ * Test the LdifChannelReader class, checking it reads the same entries as the LdifReader.
+ * 
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@RunWith(ConcurrentJunitRunner.class)
+@Concurrency()
+public class LdifChannelReaderTest
+{
+    private static List<LdifEntry> readAll( LdifChannelReader reader ) throws Exception
+    {
+        final List<LdifEntry> entries = new ArrayList<LdifEntry>();
+
+        reader.read( new LdifEntryListener()
+        {
+            public void entryRead( LdifEntry entry ) throws LdapException
+            {
+                entries.add( entry );
+            }
+        } );
+
+        reader.close();
+
+        return entries;
+    }
+
+
+    /**
+     * Check the entries read from a ByteBuffer, and from channels using tiny buffers
+     * so that the records are split, are the ones read by the LdifReader
+     */
+    private static void assertSameEntries( String ldif ) throws Exception
+    {
+        List<LdifEntry> expected = new LdifReader().parseLdif( ldif );
+        byte[] bytes = Strings.getBytesUtf8( ldif );
+
+        assertEquals( expected, readAll( new LdifChannelReader( ByteBuffer.wrap( bytes ) ) ) );
+
+        for ( int bufferSize = 1; bufferSize < 32; bufferSize += 7 )
+        {
+            assertEquals( expected, readAll( new LdifChannelReader( Channels.newChannel( new ByteArrayInputStream(
+                bytes ) ), bufferSize ) ) );
+        }
+    }
+
+
+    @Test
+    public void testEmptyLdif() throws Exception
+    {
+        LdifChannelReader reader = new LdifChannelReader( ByteBuffer.wrap( new byte[0] ) );
+
+        assertNull( reader.readEntry() );
+        assertEquals( 0L, reader.getBytesRead() );
+
+        reader = new LdifChannelReader( ByteBuffer.wrap( Strings.getBytesUtf8( "\n\n# A comment\n\nversion: 1\n" ) ) );
+
+        assertNull( reader.readEntry() );
+        assertEquals( 1, reader.getVersion() );
+    }
+
+
+    @Test
+    public void testEntries() throws Exception
+    {
+        String ldif =
+            "# The header\n" +
+            "version: 1\n" +
+            "\n" +
+            "dn: cn=app1,ou=applications,ou=conf,dc=apache,dc=org\n" +
+            "objectClass: top\n" +
+            "ObjectClass: apApplication\n" +
+            "displayName: app1   \n" +
+            "dependencies:\n" +
+            "envVars:\n" +
+            "\n" +
+            "\n" +
+            "# A folded entry\n" +
+            "dn: cn=Horatio Jensen, ou=Product Testing, dc=airius,\n" +
+            "  dc=com\n" +
+            "objectclass: top\n" +
+            "# A comment between two attributes\n" +
+            "#  continued\n" +
+            "objectclass: person\n" +
+            "CN: Horatio J\n" +
+            " ensen\n" +
+            "cn: Horatio N Jensen\n" +
+            "description: A trailing escaped space\\ \n" +
+            "userPassword:: c2VjcmV0\n" +
+            "jpegPhoto::\n" +
+            "seeAlso:: Y249Ym\n" +
+            " 9i\n" +
+            "\n" +
+            "dn:: Y249w6lsaWUsb3U9cGVvcGxlLGRjPWV4YW1wbGUsZGM9Y29t\n" +
+            "cn:: w6lsaWU=\n" +
+            "sn: \u00c9lie\n";
+
+        assertSameEntries( ldif );
+        assertSameEntries( ldif.replaceAll( "\n", "\r\n" ) );
+
+        List<LdifEntry> entries = readAll( new LdifChannelReader( ByteBuffer.wrap( Strings.getBytesUtf8( ldif ) ) ) );
+        assertEquals( 3, entries.size() );
+
+        Entry entry = entries.get( 1 ).getEntry();
+        assertEquals( "cn=Horatio Jensen, ou=Product Testing, dc=airius, dc=com", entry.getDn().getName() );
+        assertTrue( entry.contains( "cn", "Horatio Jensen", "Horatio N Jensen" ) );
+        assertTrue( entry.contains( "userpassword", Strings.getBytesUtf8( "secret" ) ) );
+        assertTrue( entry.contains( "description", "A trailing escaped space\\ " ) );
+
+        assertEquals( "cn=\u00e9lie,ou=people,dc=example,dc=com", entries.get( 2 ).getDn().getName() );
+    }
+
+
+    @Test
+    public void testChanges() throws Exception
+    {
+        String ldif =
+            "version: 1\n" +
+            "dn: cn=Paula Jensen, ou=Product Development, dc=airius, dc=com\n" +
+            "changetype: modify\n" +
+            "add: postaladdress\n" +
+            "postaladdress: 123 Anystreet $ Sunnyvale, CA $ 94086\n" +
+            "-\n" +
+            "delete: description\n" +
+            "-\n" +
+            "\n" +
+            "dn: ou=Product Development, dc=airius, dc=com\n" +
+            "control: 1.2.840.113556.1.4.805 true\n" +
+            "changetype: delete\n" +
+            "\n" +
+            "dn: cn=Bjorn Jensen, ou=Accounting, dc=airius, dc=com\n" +
+            "changetype: add\n" +
+            "objectclass: person\n" +
+            "cn: Bjorn Jensen\n";
+
+        assertSameEntries( ldif );
+
+        LdifChannelReader reader = new LdifChannelReader( ByteBuffer.wrap( Strings.getBytesUtf8( ldif ) ) );
+        List<LdifEntry> entries = readAll( reader );
+
+        assertFalse( reader.containsEntries() );
+        assertEquals( ChangeType.Modify, entries.get( 0 ).getChangeType() );
+        assertEquals( ChangeType.Delete, entries.get( 1 ).getChangeType() );
+        assertEquals( ChangeType.Add, entries.get( 2 ).getChangeType() );
+    }
+
+
+    private static void assertInvalid( String ldif ) throws Exception
+    {
+        LdifChannelReader reader = new LdifChannelReader( ByteBuffer.wrap( Strings.getBytesUtf8( ldif ) ) );
+
+        try
+        {
+            readAll( reader );
+            fail();
+        }
+        catch ( LdapLdifException lle )
+        {
+            // Expected
+        }
+    }
+
+
+    @Test
+    public void testInvalidLdif() throws Exception
+    {
+        // Two Dns
+        assertInvalid( "dn: cn=a,dc=example,dc=com\ncn: a\ndn: cn=b,dc=example,dc=com\n" );
+
+        // No Dn
+        assertInvalid( "cn: a\nsn: b\n" );
+
+        // An invalid Dn
+        assertInvalid( "dn: cn\ncn: a\n" );
+
+        // A Dn without attributes
+        assertInvalid( "dn: cn=a,dc=example,dc=com\n" );
+
+        // A continuation line without a line to continue
+        assertInvalid( " dn: cn=a,dc=example,dc=com\ncn: a\n" );
+
+        // An attribute without value
+        assertInvalid( "dn: cn=a,dc=example,dc=com\ncn\n" );
+
+        // An invalid version
+        assertInvalid( "version: 1a\n\ndn: cn=a,dc=example,dc=com\ncn: a\n" );
+
+        // Entries and changes
+        assertInvalid( "dn: cn=a,dc=example,dc=com\ncn: a\n\ndn: cn=b,dc=example,dc=com\nchangetype: delete\n" );
+        assertInvalid( "dn: cn=b,dc=example,dc=com\nchangetype: delete\n\ndn: cn=a,dc=example,dc=com\ncn: a\n" );
+    }
+
+
+    @Test
+    public void testFile() throws Exception
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            sb.append( "dn: uid=user" ).append( i ).append( ",ou=people,dc=example,dc=com\n" );
+            sb.append( "objectClass: inetOrgPerson\n" );
+            sb.append( "uid: user" ).append( i ).append( '\n' );
+            sb.append( "cn: User " ).append( i ).append( "\n\n" );
+        }
+
+        File file = File.createTempFile( "LdifChannelReaderTest", ".ldif" );
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream( file );
+        out.write( Strings.getBytesUtf8( sb.toString() ) );
+        out.close();
+
+        LdifChannelReader reader = new LdifChannelReader( file );
+        List<LdifEntry> entries = readAll( reader );
+
+        assertEquals( 1000, entries.size() );
+        assertEquals( file.length(), reader.getBytesRead() );
+        assertEquals( "uid=user999,ou=people,dc=example,dc=com", entries.get( 999 ).getDn().getName() );
+
+        // The attribute names are shared between the entries
+        assertTrue( entries.get( 0 ).getEntry().get( "uid" ).getUpId() == entries.get( 999 ).getEntry().get( "uid" )
+            .getUpId() );
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.name;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.directory.shared.util.Strings;
+import org.junit.Test;
+
+
+/**
+ * Test the CompactDn and CompactDnPool classes
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CompactDnTest
+{
+    @Test
+    public void testSharedSuffixes() throws Exception
+    {
+        CompactDnPool pool = new CompactDnPool();
+
+        CompactDn jdoe = pool.getCompactDn( new Dn( "uid=jdoe,ou=people,dc=example,dc=com" ) );
+        CompactDn asmith = pool.getCompactDn( new Dn( "uid=asmith,ou=people,dc=example,dc=com" ) );
+        CompactDn people = pool.getCompactDn( new Dn( "ou=people,dc=example,dc=com" ) );
+
+        assertSame( jdoe.getParent(), asmith.getParent() );
+        assertSame( people, jdoe.getParent() );
+        assertEquals( 5, pool.size() );
+
+        assertEquals( 4, jdoe.size() );
+        assertEquals( "uid=jdoe", jdoe.getNormRdn() );
+        assertEquals( "uid=jdoe,ou=people,dc=example,dc=com", jdoe.getNormName() );
+        assertArrayEquals( Strings.getBytesUtf8( "uid=jdoe,ou=people,dc=example,dc=com" ), jdoe.getBytes() );
+        assertSame( CompactDn.ROOT, jdoe.getAncestor( 0 ) );
+        assertNull( jdoe.getAncestor( 5 ) );
+    }
+
+
+    @Test
+    public void testDescendant() throws Exception
+    {
+        CompactDnPool pool = new CompactDnPool();
+
+        CompactDn jdoe = pool.getCompactDn( new Dn( "uid=jdoe,ou=people,dc=example,dc=com" ) );
+        CompactDn example = pool.getCompactDn( new Dn( "dc=example,dc=com" ) );
+        CompactDn groups = pool.getCompactDn( new Dn( "ou=groups,dc=example,dc=com" ) );
+
+        assertTrue( jdoe.isDescendantOf( example ) );
+        assertTrue( jdoe.isDescendantOf( jdoe ) );
+        assertTrue( jdoe.isDescendantOf( CompactDn.ROOT ) );
+        assertTrue( example.isAncestorOf( jdoe ) );
+        assertFalse( jdoe.isDescendantOf( groups ) );
+        assertFalse( example.isDescendantOf( jdoe ) );
+
+        // A CompactDn from another pool is compared by value
+        CompactDn otherExample = new CompactDnPool().getCompactDn( new Dn( "dc=example,dc=com" ) );
+
+        assertTrue( jdoe.isDescendantOf( otherExample ) );
+        assertEquals( example, otherExample );
+        assertEquals( example.hashCode(), otherExample.hashCode() );
+    }
+
+
+    @Test
+    public void testConversion() throws Exception
+    {
+        CompactDnPool pool = new CompactDnPool();
+        Dn dn = new Dn( "cn=John Doe+uid=jdoe,ou=people,dc=example,dc=com" );
+
+        CompactDn compactDn = pool.getCompactDn( dn );
+
+        assertEquals( dn.getNormName(), compactDn.getNormName() );
+        assertEquals( dn, compactDn.toDn( null ) );
+        assertEquals( dn.getParent(), compactDn.getParent().toDn( null ) );
+
+        assertSame( CompactDn.ROOT, pool.getCompactDn( Dn.EMPTY_DN ) );
+        assertEquals( "", CompactDn.ROOT.getNormName() );
+        assertTrue( CompactDn.ROOT.isRoot() );
+    }
+}
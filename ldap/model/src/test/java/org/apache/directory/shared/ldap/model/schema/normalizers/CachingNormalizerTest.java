@@ -0,0 +1,106 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.model.schema.normalizers;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.apache.directory.shared.ldap.model.entry.StringValue;
+import org.apache.directory.shared.ldap.model.exception.LdapException;
+import org.junit.Test;
+
+
+/**
+ * Test the CachingNormalizer class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class CachingNormalizerTest
+{
+    @Test
+    public void testCachedString() throws LdapException
+    {
+        CachingNormalizer normalizer = new CachingNormalizer( new DeepTrimToLowerNormalizer( "1.1.1" ), 10 );
+
+        assertEquals( "a b c", normalizer.normalize( "  A  B   C " ) );
+        assertEquals( "a b c", normalizer.normalize( "  A  B   C " ) );
+        assertEquals( "a b c", normalizer.normalize( "a b c" ) );
+
+        assertEquals( 1, normalizer.getCacheHitCount() );
+        assertEquals( 2, normalizer.getCacheMissCount() );
+        assertNull( normalizer.normalize( ( String ) null ) );
+    }
+
+
+    @Test
+    public void testCachedValue() throws LdapException
+    {
+        CachingNormalizer normalizer = new CachingNormalizer( new DeepTrimNormalizer( "1.1.1" ), 10 );
+
+        assertEquals( "A B", normalizer.normalize( new StringValue( "  A   B " ) ).getString() );
+        assertEquals( "A B", normalizer.normalize( new StringValue( "  A   B " ) ).getString() );
+
+        assertEquals( 1, normalizer.getCacheHitCount() );
+        assertEquals( 1, normalizer.getCacheMissCount() );
+        assertEquals( 0.5d, normalizer.getCacheHitRatio(), 0d );
+    }
+
+
+    @Test
+    public void testBoundedCache() throws LdapException
+    {
+        CachingNormalizer normalizer = new CachingNormalizer( new DeepTrimToLowerNormalizer( "1.1.1" ), 16 );
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            assertEquals( "value " + i, normalizer.normalize( "Value  " + i ) );
+        }
+
+        // Popular values are kept, even if many other values are normalized
+        for ( int i = 0; i < 10; i++ )
+        {
+            normalizer.normalize( "Popular" );
+        }
+
+        for ( int i = 20; i < 60; i++ )
+        {
+            normalizer.normalize( "Value  " + i );
+        }
+
+        long hits = normalizer.getCacheHitCount();
+        assertEquals( "popular", normalizer.normalize( "Popular" ) );
+        assertEquals( hits + 1, normalizer.getCacheHitCount() );
+    }
+
+
+    @Test
+    public void testDisabledCache() throws LdapException
+    {
+        CachingNormalizer normalizer = new CachingDeepTrimToLowerNormalizer();
+        normalizer.setCacheSize( 0 );
+
+        assertEquals( "a b", normalizer.normalize( " A B" ) );
+        assertEquals( "a b", normalizer.normalize( " A B" ) );
+
+        assertEquals( 0, normalizer.getCacheHitCount() );
+        assertEquals( 0, normalizer.getCacheMissCount() );
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.directory.shared.ldap.model.schema.registries;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -103,4 +104,55 @@ public class AttributeTypeRegistryTest
             assertTrue( true );
         }
     }
+
+
+    @Test
+    public void testIds() throws LdapException
+    {
+        MutableAttributeType at0 = new MutableAttributeType( "1.1" );
+        at0.addName( "t", "test" );
+        MutableAttributeType at1 = new MutableAttributeType( "1.2" );
+        at1.addName( "u" );
+        atRegistry.register( at0 );
+        atRegistry.register( at1 );
+
+        assertEquals( 0, atRegistry.getId( "1.1" ) );
+        assertEquals( 0, atRegistry.getId( "TEST" ) );
+        assertEquals( 1, atRegistry.getId( "u" ) );
+        assertSame( at1, atRegistry.lookup( 1 ) );
+        assertEquals( 2, atRegistry.getIdCount() );
+
+        // The ids are kept by the copies
+        AttributeTypeRegistry copy = atRegistry.copy();
+        assertEquals( 1, copy.getId( "1.2" ) );
+        assertEquals( "1.2", copy.lookup( 1 ).getOid() );
+
+        // The ids are not reused
+        atRegistry.unregister( "1.1" );
+        MutableAttributeType at2 = new MutableAttributeType( "1.3" );
+        atRegistry.register( at2 );
+
+        assertEquals( 2, atRegistry.getId( "1.3" ) );
+        assertEquals( 3, atRegistry.getIdCount() );
+
+        try
+        {
+            atRegistry.lookup( 0 );
+            fail();
+        }
+        catch ( LdapException ne )
+        {
+            assertTrue( true );
+        }
+
+        try
+        {
+            atRegistry.getId( "test" );
+            fail();
+        }
+        catch ( LdapException ne )
+        {
+            assertTrue( true );
+        }
+    }
 }
@@ -20,6 +20,7 @@
 package org.apache.directory.shared.ldap.codec.protocol.mina;
 
 
+import org.apache.mina.core.session.AttributeKey;
 import org.apache.mina.core.session.IoSession;
 import org.apache.mina.filter.codec.ProtocolCodecFactory;
 import org.apache.mina.filter.codec.ProtocolDecoder;
@@ -42,16 +43,28 @@ public class LdapProtocolCodecFactory implements ProtocolCodecFactory
     /** The LdapEncoder key */
     public static final String LDAP_ENCODER = "LDAP_ENCODER";
 
+    /** The key under which the session's decoder is stored */
+    private static final AttributeKey SESSION_DECODER = new AttributeKey( LdapProtocolCodecFactory.class, "decoder" );
+
 
     /**
-     * Get the LDAP decoder.
+     * Get the LDAP decoder. The decoder is created once per session, and
+     * stored into it, as the codec filter asks for it on each read.
      *
      * @param session the IO session
      * @return the decoder
      */
     public ProtocolDecoder getDecoder( IoSession session )
     {
-        return new LdapProtocolDecoder();
+        ProtocolDecoder decoder = ( ProtocolDecoder ) session.getAttribute( SESSION_DECODER );
+
+        if ( decoder == null )
+        {
+            decoder = new LdapProtocolDecoder();
+            session.setAttribute( SESSION_DECODER, decoder );
+        }
+
+        return decoder;
     }
 
 
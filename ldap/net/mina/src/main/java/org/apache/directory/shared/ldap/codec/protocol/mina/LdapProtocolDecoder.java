@@ -44,6 +44,11 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A LDAP message decoder. It is based on shared-ldap decoder.
+ * <br/>
+ * An instance is bound to a single session, as created by the {@link LdapProtocolCodecFactory} :
+ * the message container, the maximum PDU size, the decoding options and the delivery mode are
+ * read from the session attributes when the first buffer is decoded, and kept for the session's
+ * lifetime.
  *
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
  */
@@ -58,11 +63,21 @@ public class LdapProtocolDecoder implements ProtocolDecoder
     /** The ASN 1 decoder instance */
     private Asn1Decoder asn1Decoder;
 
+    /** The session this decoder has been initialized for */
+    private IoSession session;
+
+    /** The session's message container */
+    private LdapMessageContainer<MessageDecorator<? extends Message>> messageContainer;
+
+    /** Tells if the decoded messages are delivered as a batch */
+    private boolean batchedDelivery;
+
+    /** The messages decoded from the current buffer, reused from one read to the other */
+    private List<Message> decodedMessages = new ArrayList<Message>();
+
 
     /**
-     * Creates a new instance of LdapProtocolEncoder.
-     *
-     * @param codec The LDAP codec service associated with this encoder.
+     * Creates a new instance of LdapProtocolDecoder.
      */
     public LdapProtocolDecoder()
     {
@@ -71,30 +86,71 @@ public class LdapProtocolDecoder implements ProtocolDecoder
 
 
     /**
-     * {@inheritDoc}
+     * Reads the message container, the maximum PDU size, the decoding options and the
+     * delivery mode from the session's attributes.
      */
-    public void decode( IoSession session, IoBuffer in, ProtocolDecoderOutput out ) throws Exception
+    @SuppressWarnings("unchecked")
+    private void initialize( IoSession session )
     {
-        @SuppressWarnings("unchecked")
-        LdapMessageContainer<MessageDecorator<? extends Message>> messageContainer =
-            ( LdapMessageContainer<MessageDecorator<? extends Message>> )
+        messageContainer = ( LdapMessageContainer<MessageDecorator<? extends Message>> )
             session.getAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR );
 
-        if ( session.containsAttribute( LdapDecoder.MAX_PDU_SIZE_ATTR ) )
-        {
-            int maxPDUSize = ( Integer ) session.getAttribute( LdapDecoder.MAX_PDU_SIZE_ATTR );
+        Integer maxPDUSize = ( Integer ) session.getAttribute( LdapDecoder.MAX_PDU_SIZE_ATTR );
 
+        if ( maxPDUSize != null )
+        {
             messageContainer.setMaxPDUSize( maxPDUSize );
         }
 
-        List<Message> decodedMessages = new ArrayList<Message>();
+        if ( session.containsAttribute( LdapDecoder.TLV_POOL_ENABLED_ATTR ) )
+        {
+            messageContainer.setTlvPoolEnabled( Boolean.TRUE.equals( session
+                .getAttribute( LdapDecoder.TLV_POOL_ENABLED_ATTR ) ) );
+        }
+
+        if ( session.containsAttribute( LdapDecoder.STREAM_RETAINED_ATTR ) )
+        {
+            messageContainer.setStreamRetained( Boolean.TRUE.equals( session
+                .getAttribute( LdapDecoder.STREAM_RETAINED_ATTR ) ) );
+        }
+
+        batchedDelivery = Boolean.TRUE.equals( session.getAttribute( LdapDecoder.BATCHED_DELIVERY_ATTR ) );
+
+        this.session = session;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public void decode( IoSession session, IoBuffer in, ProtocolDecoderOutput out ) throws Exception
+    {
+        if ( this.session != session )
+        {
+            initialize( session );
+        }
+
         ByteBuffer buf = in.buf();
 
+        decodedMessages.clear();
+
         decode( buf, messageContainer, decodedMessages );
 
-        for ( Message message : decodedMessages )
+        if ( batchedDelivery )
+        {
+            // All the messages decoded from this buffer are handed to the handler at once,
+            // in a list of its own as the handler may process it after the next read
+            if ( !decodedMessages.isEmpty() )
+            {
+                out.write( new ArrayList<Message>( decodedMessages ) );
+            }
+        }
+        else
         {
-            out.write( message );
+            for ( Message message : decodedMessages )
+            {
+                out.write( message );
+            }
         }
     }
 
@@ -194,6 +250,8 @@ public class LdapProtocolDecoder implements ProtocolDecoder
      */
     public void dispose( IoSession session ) throws Exception
     {
-        // Nothing to do
+        this.session = null;
+        messageContainer = null;
+        decodedMessages.clear();
     }
 }
@@ -0,0 +1,238 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.codec.protocol.mina;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Queue;
+
+import org.apache.directory.shared.ldap.codec.api.LdapDecoder;
+import org.apache.directory.shared.ldap.codec.api.LdapMessageContainer;
+import org.apache.directory.shared.ldap.codec.api.MessageDecorator;
+import org.apache.directory.shared.ldap.codec.osgi.DefaultLdapCodecService;
+import org.apache.directory.shared.ldap.model.message.AbandonRequest;
+import org.apache.directory.shared.ldap.model.message.Message;
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilter.NextFilter;
+import org.apache.mina.core.session.DummySession;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.filter.codec.AbstractProtocolDecoderOutput;
+import org.apache.mina.filter.codec.ProtocolDecoder;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+/**
+ * Test the LdapProtocolDecoder, fed with buffers carrying several PDUs.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class LdapProtocolDecoderTest
+{
+    /** The codec service */
+    private static DefaultLdapCodecService codec;
+
+    /** The factory creating the decoders */
+    private LdapProtocolCodecFactory factory;
+
+    /** The output the decoded messages are written to */
+    private AbstractProtocolDecoderOutput out;
+
+
+    @BeforeClass
+    public static void setupCodec()
+    {
+        codec = new DefaultLdapCodecService();
+    }
+
+
+    @Before
+    public void init()
+    {
+        factory = new LdapProtocolCodecFactory();
+
+        out = new AbstractProtocolDecoderOutput()
+        {
+            public void flush( NextFilter nextFilter, IoSession session )
+            {
+                // The messages are read from the queue
+            }
+        };
+    }
+
+
+    /**
+     * Creates a session with its own message container
+     */
+    private static IoSession newSession( boolean batched )
+    {
+        IoSession session = new DummySession();
+        session.setAttribute( LdapDecoder.MESSAGE_CONTAINER_ATTR,
+            new LdapMessageContainer<MessageDecorator<? extends Message>>( codec ) );
+
+        if ( batched )
+        {
+            session.setAttribute( LdapDecoder.BATCHED_DELIVERY_ATTR, Boolean.TRUE );
+        }
+
+        return session;
+    }
+
+
+    /**
+     * Encodes AbandonRequests, the Nth one having the message ID N + 1, and abandoning
+     * the message N.
+     */
+    private static IoBuffer abandonRequests( int count )
+    {
+        IoBuffer buffer = IoBuffer.allocate( count * 8 );
+
+        for ( int i = 1; i <= count; i++ )
+        {
+            buffer.put( new byte[]
+                { 0x30, 0x06, // LdapMessage
+                    0x02, 0x01, ( byte ) ( i + 1 ), // messageID
+                    0x50, 0x01, ( byte ) i } ); // AbandonRequest
+        }
+
+        return buffer.flip();
+    }
+
+
+    private static void assertAbandonRequest( int abandoned, Object message )
+    {
+        assertTrue( message instanceof AbandonRequest );
+        assertEquals( abandoned + 1, ( ( AbandonRequest ) message ).getMessageId() );
+        assertEquals( abandoned, ( ( AbandonRequest ) message ).getAbandoned() );
+    }
+
+
+    @Test
+    public void testSeveralPdusInOneBuffer() throws Exception
+    {
+        IoSession session = newSession( false );
+
+        factory.getDecoder( session ).decode( session, abandonRequests( 3 ), out );
+
+        // Each message is written on its own
+        Queue<Object> messages = out.getMessageQueue();
+
+        assertEquals( 3, messages.size() );
+        assertAbandonRequest( 1, messages.poll() );
+        assertAbandonRequest( 2, messages.poll() );
+        assertAbandonRequest( 3, messages.poll() );
+    }
+
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchedDelivery() throws Exception
+    {
+        IoSession session = newSession( true );
+        ProtocolDecoder decoder = factory.getDecoder( session );
+
+        decoder.decode( session, abandonRequests( 3 ), out );
+
+        // The messages decoded from a buffer are written at once
+        Queue<Object> messages = out.getMessageQueue();
+
+        assertEquals( 1, messages.size() );
+
+        List<Message> batch = ( List<Message> ) messages.poll();
+
+        assertEquals( 3, batch.size() );
+        assertAbandonRequest( 1, batch.get( 0 ) );
+        assertAbandonRequest( 2, batch.get( 1 ) );
+        assertAbandonRequest( 3, batch.get( 2 ) );
+
+        // Each batch is a list of its own
+        decoder.decode( session, abandonRequests( 2 ), out );
+
+        List<Message> nextBatch = ( List<Message> ) messages.poll();
+
+        assertNotSame( batch, nextBatch );
+        assertEquals( 3, batch.size() );
+        assertEquals( 2, nextBatch.size() );
+    }
+
+
+    @Test
+    public void testPduSpanningBuffers() throws Exception
+    {
+        IoSession session = newSession( false );
+        ProtocolDecoder decoder = factory.getDecoder( session );
+        IoBuffer buffer = abandonRequests( 2 );
+
+        // The first buffer ends in the middle of the second PDU
+        IoBuffer first = buffer.getSlice( 0, 11 );
+        IoBuffer second = buffer.getSlice( 11, 5 );
+
+        decoder.decode( session, first, out );
+
+        Queue<Object> messages = out.getMessageQueue();
+
+        assertEquals( 1, messages.size() );
+        assertAbandonRequest( 1, messages.poll() );
+
+        decoder.decode( session, second, out );
+
+        assertEquals( 1, messages.size() );
+        assertAbandonRequest( 2, messages.poll() );
+    }
+
+
+    @Test
+    public void testDecoderIsCachedPerSession() throws Exception
+    {
+        IoSession session = newSession( false );
+        IoSession otherSession = newSession( false );
+
+        ProtocolDecoder decoder = factory.getDecoder( session );
+
+        assertSame( decoder, factory.getDecoder( session ) );
+        assertNotSame( decoder, factory.getDecoder( otherSession ) );
+
+        decoder.decode( session, abandonRequests( 1 ), out );
+        out.getMessageQueue().clear();
+
+        // The session's state has been read by the first decoding, and is kept
+        session.setAttribute( LdapDecoder.BATCHED_DELIVERY_ATTR, Boolean.TRUE );
+        factory.getDecoder( session ).decode( session, abandonRequests( 2 ), out );
+
+        Queue<Object> messages = out.getMessageQueue();
+
+        assertEquals( 2, messages.size() );
+        assertAbandonRequest( 1, messages.poll() );
+        assertAbandonRequest( 2, messages.poll() );
+
+        // Until the decoder is disposed
+        decoder.dispose( session );
+        decoder.decode( session, abandonRequests( 2 ), out );
+
+        assertEquals( 1, messages.size() );
+        assertTrue( messages.poll() instanceof List<?> );
+    }
+}
@@ -275,8 +275,13 @@ public class SchemaEntityFactory implements EntityFactory
         }
         else
         {
-            classLoader.setAttribute( byteCode );
-            clazz = classLoader.loadClass( className );
+            // The class loader is shared, the SchemaObjects may be created by many threads
+            synchronized ( classLoader )
+            {
+                classLoader.setAttribute( byteCode );
+                clazz = classLoader.loadClass( className );
+            }
+
             byteCodeStr = new String( Base64.encode( byteCode.getBytes() ) );
         }
 
@@ -407,8 +412,13 @@ public class SchemaEntityFactory implements EntityFactory
         }
         else
         {
-            classLoader.setAttribute( byteCode );
-            clazz = classLoader.loadClass( className );
+            // The class loader is shared, the SchemaObjects may be created by many threads
+            synchronized ( classLoader )
+            {
+                classLoader.setAttribute( byteCode );
+                clazz = classLoader.loadClass( className );
+            }
+
             byteCodeStr = new String( Base64.encode( byteCode.getBytes() ) );
         }
 
@@ -557,8 +567,13 @@ public class SchemaEntityFactory implements EntityFactory
         }
         else
         {
-            classLoader.setAttribute( byteCode );
-            clazz = classLoader.loadClass( className );
+            // The class loader is shared, the SchemaObjects may be created by many threads
+            synchronized ( classLoader )
+            {
+                classLoader.setAttribute( byteCode );
+                clazz = classLoader.loadClass( className );
+            }
+
             byteCodeStr = new String( Base64.encode( byteCode.getBytes() ) );
         }
 
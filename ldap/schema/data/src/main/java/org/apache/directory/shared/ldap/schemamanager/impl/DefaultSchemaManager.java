@@ -24,9 +24,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.directory.shared.i18n.I18n;
 import org.apache.directory.shared.ldap.model.constants.MetaSchemaConstants;
@@ -48,8 +54,10 @@ import org.apache.directory.shared.ldap.model.schema.LoadableSchemaObject;
 import org.apache.directory.shared.ldap.model.schema.MatchingRule;
 import org.apache.directory.shared.ldap.model.schema.Normalizer;
 import org.apache.directory.shared.ldap.model.schema.ObjectClass;
+import org.apache.directory.shared.ldap.model.schema.ObjectClassClosures;
 import org.apache.directory.shared.ldap.model.schema.SchemaManager;
 import org.apache.directory.shared.ldap.model.schema.SchemaObject;
+import org.apache.directory.shared.ldap.model.schema.SchemaObjectType;
 import org.apache.directory.shared.ldap.model.schema.SchemaObjectWrapper;
 import org.apache.directory.shared.ldap.model.schema.SyntaxChecker;
 import org.apache.directory.shared.ldap.model.schema.normalizers.OidNormalizer;
@@ -104,6 +112,12 @@ public class DefaultSchemaManager implements SchemaManager
     /** The global registries for this namingContext */
     private volatile Registries registries;
 
+    /**
+     * The copy of the registries the single SchemaObject changes which don't need to be
+     * checked are applied to, until it's published. Null if there is no pending change.
+     */
+    private volatile Registries workingRegistries;
+
     /** The list of errors produced when loading some schema elements */
     private List<Throwable> errors;
 
@@ -122,6 +136,26 @@ public class DefaultSchemaManager implements SchemaManager
     /** A flag indicating that the SchemaManager is relaxed or not */
     private boolean isRelaxed = STRICT;
 
+    /** The ObjectClasses closures, computed from the registries when they have changed */
+    private volatile ObjectClassClosures objectClassClosures;
+
+    /** The number of threads used to read the schemas, 1 if they are read sequentially */
+    private int loadingThreads = 1;
+
+    /** The SchemaObjects already read for the schemas being loaded, per schema name */
+    private Map<String, List<SchemaObject>> readSchemaObjects;
+
+    /** The order in which the SchemaObjects of a schema are added into the registries */
+    private static final SchemaObjectType[] LOADING_ORDER = new SchemaObjectType[]
+        {
+            SchemaObjectType.COMPARATOR,
+            SchemaObjectType.NORMALIZER,
+            SchemaObjectType.SYNTAX_CHECKER,
+            SchemaObjectType.LDAP_SYNTAX,
+            SchemaObjectType.MATCHING_RULE,
+            SchemaObjectType.ATTRIBUTE_TYPE,
+            SchemaObjectType.OBJECT_CLASS };
+
     /** Two flags for RELAXED and STRICT, this is STRICT */
     public static final boolean STRICT = false;
 
@@ -196,8 +230,8 @@ public class DefaultSchemaManager implements SchemaManager
             // Relax the controls at first
             errors = new ArrayList<Throwable>();
 
-            // Clone the Registries
-            Registries clonedRegistries = registries.clone();
+            // Clone the Registries, with their pending changes
+            Registries clonedRegistries = latest().clone();
 
             // And update references. We may have errors, that may be fixed
             // by the new loaded schemas.
@@ -215,6 +249,101 @@ public class DefaultSchemaManager implements SchemaManager
     }
 
 
+    /**
+     * Copy the registries before modifying a single SchemaObject. The errors
+     * and the flags are kept as they are.
+     */
+    private Registries copyRegistries() throws LdapException
+    {
+        try
+        {
+            return latest().clone();
+        }
+        catch ( CloneNotSupportedException cnse )
+        {
+            throw new LdapOtherException( cnse.getMessage() );
+        }
+    }
+
+
+    /**
+     * Replace the current registries by some new registries. The published registries
+     * are never modified afterwards : every modification is done on a copy which is
+     * published once it has been checked, so the readers always see a consistent
+     * set of SchemaObjects without having to take any lock. The changes which are not
+     * checked share a single working copy until it's published (see {@link #commit()}).
+     * The writers are serialized by the synchronized modification methods.
+     */
+    private void publish( Registries newRegistries )
+    {
+        // The new registries are built from the working copy, if any
+        registries = newRegistries;
+        workingRegistries = null;
+    }
+
+
+    /**
+     * Gets the registries the pending single SchemaObject changes are applied to. The
+     * registries are copied once, by the first change : the following ones are applied
+     * in place, until the copy is published. Must be called by a modification method.
+     */
+    private Registries working() throws LdapException
+    {
+        if ( workingRegistries == null )
+        {
+            workingRegistries = copyRegistries();
+        }
+
+        return workingRegistries;
+    }
+
+
+    /**
+     * Gets the most recent registries, including the pending changes. Must be called
+     * by a modification method.
+     */
+    private Registries latest()
+    {
+        Registries working = workingRegistries;
+
+        return ( working != null ) ? working : registries;
+    }
+
+
+    /**
+     * Gets the published registries, after having published the pending changes if any
+     */
+    private Registries current()
+    {
+        if ( workingRegistries != null )
+        {
+            commit();
+        }
+
+        return registries;
+    }
+
+
+    /**
+     * Publishes the pending changes done by the single SchemaObject modifications : the
+     * relaxed additions and deletions, the additions and deletions in disabled schemas
+     * and the unregistrations. They are applied to a single working copy of the
+     * registries, so that a bulk of changes costs one copy instead of one per change.
+     * <br/>
+     * The pending changes are published by this method, by {@link #setStrict()}, by any
+     * other successful modification, and as soon as the registries are read through this
+     * SchemaManager : a reader running concurrently with a bulk of changes may then
+     * force some extra copies.
+     */
+    public synchronized void commit()
+    {
+        if ( workingRegistries != null )
+        {
+            publish( workingRegistries );
+        }
+    }
+
+
     /**
      * Transform a String[] array of schema to a Schema[]
      */
@@ -247,6 +376,24 @@ public class DefaultSchemaManager implements SchemaManager
         // Create a content container for this schema
         registries.addSchema( schema.getSchemaName() );
 
+        List<SchemaObject> schemaObjects = null;
+
+        if ( readSchemaObjects != null )
+        {
+            schemaObjects = readSchemaObjects.remove( Strings.toLowerCase( schema.getSchemaName() ) );
+        }
+
+        if ( schemaObjects != null )
+        {
+            // The SchemaObjects have already been read, in the LOADING_ORDER
+            for ( SchemaObject schemaObject : schemaObjects )
+            {
+                addSchemaObject( registries, schemaObject, schema );
+            }
+
+            return;
+        }
+
         // And inject any existing SchemaObject into the registries
         try
         {
@@ -304,7 +451,7 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean disable( Schema... schemas ) throws LdapException
+    public synchronized boolean disable( Schema... schemas ) throws LdapException
     {
         boolean disabled = false;
 
@@ -326,9 +473,6 @@ public class DefaultSchemaManager implements SchemaManager
         // Build the cross references
         errors = clonedRegistries.buildReferences();
 
-        // Destroy the clonedRegistry
-        clonedRegistries.clear();
-
         if ( errors.isEmpty() )
         {
             // Ok no errors. Check the registries now
@@ -336,23 +480,24 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( errors.isEmpty() )
             {
-                // We are golden : let's apply the schemas in the real registries
+                // We are golden : let's publish the cloned registries
                 for ( Schema schema : schemas )
                 {
-                    unload( registries, schema );
                     schema.disable();
                 }
 
-                // Build the cross references
-                errors = registries.buildReferences();
-                registries.setStrict();
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
 
                 disabled = true;
             }
         }
 
-        // clear the cloned registries
-        clonedRegistries.clear();
+        if ( !disabled )
+        {
+            // clear the cloned registries
+            clonedRegistries.clear();
+        }
 
         return disabled;
     }
@@ -396,7 +541,7 @@ public class DefaultSchemaManager implements SchemaManager
     {
         List<Schema> disabled = new ArrayList<Schema>();
 
-        for ( Schema schema : registries.getLoadedSchemas().values() )
+        for ( Schema schema : current().getLoadedSchemas().values() )
         {
             if ( schema.isDisabled() )
             {
@@ -411,7 +556,7 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean enable( Schema... schemas ) throws LdapException
+    public synchronized boolean enable( Schema... schemas ) throws LdapException
     {
         boolean enabled = false;
 
@@ -446,21 +591,9 @@ public class DefaultSchemaManager implements SchemaManager
             load( clonedRegistries, schema );
         }
 
-        // Revert back the disabled schema to disabled
-        for ( Schema disabledSchema : disabledSchemas )
-        {
-            if ( disabledSchema.isEnabled() )
-            {
-                disabledSchema.disable();
-            }
-        }
-
         // Build the cross references
         errors = clonedRegistries.buildReferences();
 
-        // Destroy the clonedRegistry
-        clonedRegistries.clear();
-
         if ( errors.isEmpty() )
         {
             // Ok no errors. Check the registries now
@@ -468,23 +601,28 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( errors.isEmpty() )
             {
-                // We are golden : let's apply the schemas in the real registries
-                for ( Schema schema : schemas )
-                {
-                    schema.enable();
-                    load( registries, schema );
-                }
-
-                // Build the cross references
-                errors = registries.buildReferences();
-                registries.setStrict();
+                // We are golden : let's publish the cloned registries
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
 
                 enabled = true;
             }
         }
 
-        // clear the cloned registries
-        clonedRegistries.clear();
+        if ( !enabled )
+        {
+            // Revert back the disabled schema to disabled
+            for ( Schema disabledSchema : disabledSchemas )
+            {
+                if ( disabledSchema.isEnabled() )
+                {
+                    disabledSchema.disable();
+                }
+            }
+
+            // clear the cloned registries
+            clonedRegistries.clear();
+        }
 
         return enabled;
     }
@@ -527,7 +665,7 @@ public class DefaultSchemaManager implements SchemaManager
     {
         List<Schema> enabled = new ArrayList<Schema>();
 
-        for ( Schema schema : registries.getLoadedSchemas().values() )
+        for ( Schema schema : current().getLoadedSchemas().values() )
         {
             if ( schema.isEnabled() )
             {
@@ -553,7 +691,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public Registries getRegistries()
     {
-        return registries;
+        return current();
     }
 
 
@@ -570,7 +708,7 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean load( Schema... schemas ) throws LdapException
+    public synchronized boolean load( Schema... schemas ) throws LdapException
     {
         if ( schemas.length == 0 )
         {
@@ -597,6 +735,8 @@ public class DefaultSchemaManager implements SchemaManager
             // return false if the schema was not loaded in the first place
             if ( !singleSchemaLoaded )
             {
+                clonedRegistries.clear();
+
                 return false;
             }
         }
@@ -611,14 +751,9 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( errors.isEmpty() )
             {
-                // We are golden : let's apply the schema in the real registries
-                registries.setRelaxed();
-
-                // Load the schemas
+                // We are golden : let's publish the cloned registries
                 for ( Schema schema : schemas )
                 {
-                    load( registries, schema );
-
                     // Update the schema dependences if needed
 
                     if ( schema.getDependencies() != null )
@@ -642,16 +777,18 @@ public class DefaultSchemaManager implements SchemaManager
                     schemaLoader.addSchema( schema );
                 }
 
-                // Build the cross references
-                errors = registries.buildReferences();
-                registries.setStrict();
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
 
                 loaded = true;
             }
         }
 
-        // clear the cloned registries
-        clonedRegistries.clear();
+        if ( !loaded )
+        {
+            // clear the cloned registries
+            clonedRegistries.clear();
+        }
 
         return loaded;
     }
@@ -1002,7 +1139,7 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean loadDisabled( Schema... schemas ) throws LdapException
+    public synchronized boolean loadDisabled( Schema... schemas ) throws LdapException
     {
         // Work on a cloned and relaxed registries
         Registries clonedRegistries = cloneRegistries();
@@ -1018,21 +1155,25 @@ public class DefaultSchemaManager implements SchemaManager
             load( clonedRegistries, schema );
         }
 
-        clonedRegistries.clear();
-
-        // Apply the change to the correct registries if no errors
+        // Publish the cloned registries if no errors
         if ( errors.size() == 0 )
         {
-            // No error, we can enable the schema in the real registries
-            for ( Schema schema : schemas )
+            // Restore the flags of the current registries
+            clonedRegistries.setDisabledAccepted( latest().isDisabledAccepted() );
+
+            if ( latest().isStrict() )
             {
-                load( registries, schema );
+                clonedRegistries.setStrict();
             }
 
+            publish( clonedRegistries );
+
             return true;
         }
         else
         {
+            clonedRegistries.clear();
+
             for ( Schema schema : schemas )
             {
                 schema.disable();
@@ -1077,7 +1218,7 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean loadWithDeps( Schema... schemas ) throws Exception
+    public synchronized boolean loadWithDeps( Schema... schemas ) throws Exception
     {
         boolean loaded = false;
 
@@ -1092,9 +1233,18 @@ public class DefaultSchemaManager implements SchemaManager
         clonedRegistries.setRelaxed();
 
         // Load the schemas
-        for ( Schema schema : schemas )
+        readAhead( clonedRegistries, schemas );
+
+        try
+        {
+            for ( Schema schema : schemas )
+            {
+                loadDepsFirst( clonedRegistries, schema );
+            }
+        }
+        finally
         {
-            loadDepsFirst( clonedRegistries, schema );
+            readSchemaObjects = null;
         }
 
         // Build the cross references
@@ -1107,9 +1257,9 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( errors.isEmpty() )
             {
-                // We are golden : let's apply the schema in the real registries
-                registries = clonedRegistries;
-                registries.setStrict();
+                // We are golden : let's publish the cloned registries
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
                 loaded = true;
             }
         }
@@ -1133,101 +1283,217 @@ public class DefaultSchemaManager implements SchemaManager
 
 
     /**
-     * Recursive method which loads schema's with their dependent schemas first
-     * and tracks what schemas it has seen so the recursion does not go out of
-     * control with dependency cycle detection.
-     *
-     * @param registries The Registries in which the schemas will be loaded
-     * @param schema the current schema we are attempting to load
-     * @throws Exception if there is a cycle detected and/or another
-     * failure results while loading, producing and or registering schema objects
+     * Collect the schemas which will be loaded by loadDepsFirst, dependencies included.
      */
-    private void loadDepsFirst( Registries registries, Schema schema ) throws Exception
+    private void collectSchemas( Registries registries, Schema schema, Map<String, Schema> schemas )
     {
-        if ( schema == null )
+        if ( ( schema == null ) || ( schema.isDisabled() && !registries.isDisabledAccepted() ) )
         {
-            LOG.info( "The schema is null" );
             return;
         }
 
-        if ( schema.isDisabled() && !registries.isDisabledAccepted() )
+        String schemaName = Strings.toLowerCase( schema.getSchemaName() );
+
+        if ( registries.isSchemaLoaded( schemaName ) || schemas.containsKey( schemaName ) )
         {
-            LOG.info( "The schema is disabled and the registries does not accepted disabled schema" );
             return;
         }
 
-        String schemaName = schema.getSchemaName();
+        schemas.put( schemaName, schema );
 
-        if ( registries.isSchemaLoaded( schemaName ) )
+        if ( schema.getDependencies() != null )
         {
-            LOG.info( "{} schema has already been loaded", schema.getSchemaName() );
-            return;
+            for ( String dependency : schema.getDependencies() )
+            {
+                collectSchemas( registries, schemaLoader.getSchema( dependency ), schemas );
+            }
         }
+    }
 
-        String[] deps = schema.getDependencies();
 
-        // if no deps then load this guy and return
-        if ( ( deps == null ) || ( deps.length == 0 ) )
+    /**
+     * Read the schemas which are about to be loaded, and create their SchemaObjects, using
+     * the loading threads. Nothing is done if the schemas are read sequentially.
+     * <br/>
+     * The SchemaObjects are kept until their schema is loaded : they are then added into
+     * the registries in the same order as when they are read sequentially, and the
+     * references are built once all the schemas are loaded. A schema which can't be read
+     * here is simply read again when it's loaded, which reports the error.
+     */
+    private void readAhead( Registries registries, Schema... schemas ) throws LdapException
+    {
+        if ( loadingThreads <= 1 )
         {
-            load( registries, schema );
-
             return;
         }
 
-        /*
-         * We got deps and need to load them before this schema.  We go through
-         * all deps loading them with their deps first if they have not been
-         * loaded.
-         */
-        for ( String depName : deps )
+        Map<String, Schema> toRead = new LinkedHashMap<String, Schema>();
+
+        for ( Schema schema : schemas )
         {
-            if ( registries.isSchemaLoaded( schemaName ) )
+            collectSchemas( registries, schema, toRead );
+        }
+
+        // The factory gets the Schema of the SchemaObjects it creates from these registries
+        Registries readRegistries = new Registries();
+        List<Callable<List<SchemaObject>>> readers = new ArrayList<Callable<List<SchemaObject>>>();
+
+        for ( Schema schema : toRead.values() )
+        {
+            readRegistries.schemaLoaded( schema );
+
+            for ( SchemaObjectType type : LOADING_ORDER )
             {
-                // The schema is already loaded. Loop on the next schema
-                continue;
+                readers.add( new SchemaObjectsReader( schema, type, readRegistries ) );
             }
-            else
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( loadingThreads );
+        readSchemaObjects = new HashMap<String, List<SchemaObject>>();
+
+        try
+        {
+            List<Future<List<SchemaObject>>> results = executor.invokeAll( readers );
+            int pos = 0;
+
+            for ( Map.Entry<String, Schema> schema : toRead.entrySet() )
             {
-                // Call recursively this method
-                Schema schemaDep = schemaLoader.getSchema( depName );
-                loadDepsFirst( registries, schemaDep );
+                List<SchemaObject> schemaObjects = new ArrayList<SchemaObject>();
+                boolean read = true;
+
+                for ( int i = 0; i < LOADING_ORDER.length; i++ )
+                {
+                    try
+                    {
+                        schemaObjects.addAll( results.get( pos++ ).get() );
+                    }
+                    catch ( ExecutionException ee )
+                    {
+                        LOG.debug( "Cannot read the {} schema : {}", schema.getKey(), ee.getCause() );
+                        read = false;
+                    }
+                }
+
+                if ( read )
+                {
+                    readSchemaObjects.put( schema.getKey(), schemaObjects );
+                }
             }
         }
-
-        // Now load the current schema
-        load( registries, schema );
+        catch ( InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+            readSchemaObjects = null;
+            throw new LdapOtherException( ie.getMessage() );
+        }
+        finally
+        {
+            executor.shutdown();
+        }
     }
 
 
     /**
-     * {@inheritDoc}
+     * Reads the SchemaObjects of a given type from a schema, and creates them.
      */
-    public boolean loadWithDepsRelaxed( Schema... schemas ) throws Exception
+    private final class SchemaObjectsReader implements Callable<List<SchemaObject>>
     {
-        registries.setRelaxed();
+        /** The schema to read */
+        private final Schema schema;
 
-        // Load the schemas
-        for ( Schema schema : schemas )
+        /** The type of the SchemaObjects to read */
+        private final SchemaObjectType type;
+
+        /** The registries the factory gets the schema from */
+        private final Registries targetRegistries;
+
+
+        private SchemaObjectsReader( Schema schema, SchemaObjectType type, Registries targetRegistries )
         {
-            loadDepsFirstRelaxed( schema );
+            this.schema = schema;
+            this.type = type;
+            this.targetRegistries = targetRegistries;
         }
 
-        // Build the cross references
-        errors = registries.buildReferences();
 
-        // Check the registries now
-        errors = registries.checkRefInteg();
+        /**
+         * {@inheritDoc}
+         */
+        public List<SchemaObject> call() throws Exception
+        {
+            List<SchemaObject> schemaObjects = new ArrayList<SchemaObject>();
+            String schemaName = schema.getSchemaName();
+            DefaultSchemaManager schemaManager = DefaultSchemaManager.this;
 
-        return true;
-    }
+            switch ( type )
+            {
+                case COMPARATOR:
+                    for ( Entry entry : schemaLoader.loadComparators( schema ) )
+                    {
+                        schemaObjects.add( factory.getLdapComparator( schemaManager, entry, targetRegistries,
+                            schemaName ) );
+                    }
 
+                    break;
 
-    /**
-     * {@inheritDoc}
-     */
-    public boolean loadWithDepsRelaxed( String... schemas ) throws Exception
-    {
-        return loadWithDepsRelaxed( toArray( schemas ) );
+                case NORMALIZER:
+                    for ( Entry entry : schemaLoader.loadNormalizers( schema ) )
+                    {
+                        schemaObjects.add( factory.getNormalizer( schemaManager, entry, targetRegistries, schemaName ) );
+                    }
+
+                    break;
+
+                case SYNTAX_CHECKER:
+                    for ( Entry entry : schemaLoader.loadSyntaxCheckers( schema ) )
+                    {
+                        schemaObjects.add( factory.getSyntaxChecker( schemaManager, entry, targetRegistries,
+                            schemaName ) );
+                    }
+
+                    break;
+
+                case LDAP_SYNTAX:
+                    for ( Entry entry : schemaLoader.loadSyntaxes( schema ) )
+                    {
+                        schemaObjects.add( factory.getSyntax( schemaManager, entry, targetRegistries, schemaName ) );
+                    }
+
+                    break;
+
+                case MATCHING_RULE:
+                    for ( Entry entry : schemaLoader.loadMatchingRules( schema ) )
+                    {
+                        schemaObjects.add( factory.getMatchingRule( schemaManager, entry, targetRegistries,
+                            schemaName ) );
+                    }
+
+                    break;
+
+                case ATTRIBUTE_TYPE:
+                    for ( Entry entry : schemaLoader.loadAttributeTypes( schema ) )
+                    {
+                        schemaObjects.add( factory.getAttributeType( schemaManager, entry, targetRegistries,
+                            schemaName ) );
+                    }
+
+                    break;
+
+                case OBJECT_CLASS:
+                    for ( Entry entry : schemaLoader.loadObjectClasses( schema ) )
+                    {
+                        schemaObjects.add( factory.getObjectClass( schemaManager, entry, targetRegistries,
+                            schemaName ) );
+                    }
+
+                    break;
+
+                default:
+                    throw new IllegalArgumentException( type.name() );
+            }
+
+            return schemaObjects;
+        }
     }
 
 
@@ -1236,11 +1502,12 @@ public class DefaultSchemaManager implements SchemaManager
      * and tracks what schemas it has seen so the recursion does not go out of
      * control with dependency cycle detection.
      *
+     * @param registries The Registries in which the schemas will be loaded
      * @param schema the current schema we are attempting to load
      * @throws Exception if there is a cycle detected and/or another
      * failure results while loading, producing and or registering schema objects
      */
-    private void loadDepsFirstRelaxed( Schema schema ) throws Exception
+    private void loadDepsFirst( Registries registries, Schema schema ) throws Exception
     {
         if ( schema == null )
         {
@@ -1288,7 +1555,7 @@ public class DefaultSchemaManager implements SchemaManager
             {
                 // Call recursively this method
                 Schema schemaDep = schemaLoader.getSchema( depName );
-                loadDepsFirstRelaxed( schemaDep );
+                loadDepsFirst( registries, schemaDep );
             }
         }
 
@@ -1297,6 +1564,76 @@ public class DefaultSchemaManager implements SchemaManager
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized boolean loadWithDepsRelaxed( Schema... schemas ) throws Exception
+    {
+        // Work on a cloned and relaxed registries
+        Registries clonedRegistries = cloneRegistries();
+        clonedRegistries.setRelaxed();
+
+        // Load the schemas
+        readAhead( clonedRegistries, schemas );
+
+        try
+        {
+            for ( Schema schema : schemas )
+            {
+                loadDepsFirst( clonedRegistries, schema );
+            }
+        }
+        finally
+        {
+            readSchemaObjects = null;
+        }
+
+        // Build the cross references
+        errors = clonedRegistries.buildReferences();
+
+        // Check the registries now
+        errors = clonedRegistries.checkRefInteg();
+
+        // The registries are published even if they have some errors
+        publish( clonedRegistries );
+
+        return true;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean loadWithDepsRelaxed( String... schemas ) throws Exception
+    {
+        return loadWithDepsRelaxed( toArray( schemas ) );
+    }
+
+
+    /**
+     * Sets the number of threads used to read the schema files and to create the
+     * SchemaObjects when loading schemas with their dependencies ({@link #loadAllEnabled()},
+     * {@link #loadWithDeps(Schema...)}...). The SchemaObjects are still added into the
+     * registries sequentially, and the references are built once all the schemas are
+     * loaded, so the resulting registries don't depend on the number of threads.
+     *
+     * @param loadingThreads The number of threads. 1, the default, reads the schemas sequentially
+     */
+    public void setLoadingThreads( int loadingThreads )
+    {
+        this.loadingThreads = Math.max( loadingThreads, 1 );
+    }
+
+
+    /**
+     * @return The number of threads used to read the schemas
+     */
+    public int getLoadingThreads()
+    {
+        return loadingThreads;
+    }
+
+
     /**
      * {@inheritDoc}
      */
@@ -1310,7 +1647,7 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean unload( Schema... schemas ) throws LdapException
+    public synchronized boolean unload( Schema... schemas ) throws LdapException
     {
         boolean unloaded = false;
 
@@ -1340,14 +1677,9 @@ public class DefaultSchemaManager implements SchemaManager
 
             if ( errors.isEmpty() )
             {
-                // We are golden : let's apply the schema in the real registries
-                registries.setRelaxed();
-
-                // Load the schemas
+                // We are golden : let's publish the cloned registries
                 for ( Schema schema : schemas )
                 {
-                    unload( registries, schema );
-
                     // Update the schema dependences
                     for ( String dep : schema.getDependencies() )
                     {
@@ -1362,16 +1694,18 @@ public class DefaultSchemaManager implements SchemaManager
                     schemaLoader.removeSchema( schema );
                 }
 
-                // Build the cross references
-                errors = registries.buildReferences();
-                registries.setStrict();
+                clonedRegistries.setStrict();
+                publish( clonedRegistries );
 
                 unloaded = true;
             }
         }
 
-        // clear the cloned registries
-        clonedRegistries.clear();
+        if ( !unloaded )
+        {
+            // clear the cloned registries
+            clonedRegistries.clear();
+        }
 
         return unloaded;
     }
@@ -1499,7 +1833,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public AttributeTypeRegistry getAttributeTypeRegistry()
     {
-        return new ImmutableAttributeTypeRegistry( registries.getAttributeTypeRegistry() );
+        return new ImmutableAttributeTypeRegistry( current().getAttributeTypeRegistry() );
     }
 
 
@@ -1508,7 +1842,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public ComparatorRegistry getComparatorRegistry()
     {
-        return new ImmutableComparatorRegistry( registries.getComparatorRegistry() );
+        return new ImmutableComparatorRegistry( current().getComparatorRegistry() );
     }
 
 
@@ -1517,7 +1851,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public DitContentRuleRegistry getDITContentRuleRegistry()
     {
-        return new ImmutableDitContentRuleRegistry( registries.getDitContentRuleRegistry() );
+        return new ImmutableDitContentRuleRegistry( current().getDitContentRuleRegistry() );
     }
 
 
@@ -1526,7 +1860,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public DitStructureRuleRegistry getDITStructureRuleRegistry()
     {
-        return new ImmutableDitStructureRuleRegistry( registries.getDitStructureRuleRegistry() );
+        return new ImmutableDitStructureRuleRegistry( current().getDitStructureRuleRegistry() );
     }
 
 
@@ -1535,7 +1869,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public MatchingRuleRegistry getMatchingRuleRegistry()
     {
-        return new ImmutableMatchingRuleRegistry( registries.getMatchingRuleRegistry() );
+        return new ImmutableMatchingRuleRegistry( current().getMatchingRuleRegistry() );
     }
 
 
@@ -1544,7 +1878,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public MatchingRuleUseRegistry getMatchingRuleUseRegistry()
     {
-        return new ImmutableMatchingRuleUseRegistry( registries.getMatchingRuleUseRegistry() );
+        return new ImmutableMatchingRuleUseRegistry( current().getMatchingRuleUseRegistry() );
     }
 
 
@@ -1553,7 +1887,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public NameFormRegistry getNameFormRegistry()
     {
-        return new ImmutableNameFormRegistry( registries.getNameFormRegistry() );
+        return new ImmutableNameFormRegistry( current().getNameFormRegistry() );
     }
 
 
@@ -1562,7 +1896,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public NormalizerRegistry getNormalizerRegistry()
     {
-        return new ImmutableNormalizerRegistry( registries.getNormalizerRegistry() );
+        return new ImmutableNormalizerRegistry( current().getNormalizerRegistry() );
     }
 
 
@@ -1571,7 +1905,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public ObjectClassRegistry getObjectClassRegistry()
     {
-        return new ImmutableObjectClassRegistry( registries.getObjectClassRegistry() );
+        return new ImmutableObjectClassRegistry( current().getObjectClassRegistry() );
     }
 
 
@@ -1580,7 +1914,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public LdapSyntaxRegistry getLdapSyntaxRegistry()
     {
-        return new ImmutableLdapSyntaxRegistry( registries.getLdapSyntaxRegistry() );
+        return new ImmutableLdapSyntaxRegistry( current().getLdapSyntaxRegistry() );
     }
 
 
@@ -1589,7 +1923,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public SyntaxCheckerRegistry getSyntaxCheckerRegistry()
     {
-        return new ImmutableSyntaxCheckerRegistry( registries.getSyntaxCheckerRegistry() );
+        return new ImmutableSyntaxCheckerRegistry( current().getSyntaxCheckerRegistry() );
     }
 
 
@@ -1620,7 +1954,7 @@ public class DefaultSchemaManager implements SchemaManager
     {
         String oidTrimmed = Strings.toLowerCase( oid ).trim();
         String oidNoOption = stripOptions( oidTrimmed );
-        return registries.getAttributeTypeRegistry().lookup( oidNoOption );
+        return current().getAttributeTypeRegistry().lookup( oidNoOption );
     }
 
 
@@ -1631,7 +1965,7 @@ public class DefaultSchemaManager implements SchemaManager
     {
         try
         {
-            return registries.getAttributeTypeRegistry().lookup( Strings.toLowerCase( oid ).trim() );
+            return current().getAttributeTypeRegistry().lookup( Strings.toLowerCase( oid ).trim() );
         }
         catch ( LdapException lnsae )
         {
@@ -1645,7 +1979,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public LdapComparator<?> lookupComparatorRegistry( String oid ) throws LdapException
     {
-        return registries.getComparatorRegistry().lookup( oid );
+        return current().getComparatorRegistry().lookup( oid );
     }
 
 
@@ -1654,7 +1988,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public MatchingRule lookupMatchingRuleRegistry( String oid ) throws LdapException
     {
-        return registries.getMatchingRuleRegistry().lookup( Strings.toLowerCase( oid ).trim() );
+        return current().getMatchingRuleRegistry().lookup( Strings.toLowerCase( oid ).trim() );
     }
 
 
@@ -1663,7 +1997,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public Normalizer lookupNormalizerRegistry( String oid ) throws LdapException
     {
-        return registries.getNormalizerRegistry().lookup( oid );
+        return current().getNormalizerRegistry().lookup( oid );
     }
 
 
@@ -1672,7 +2006,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public ObjectClass lookupObjectClassRegistry( String oid ) throws LdapException
     {
-        return registries.getObjectClassRegistry().lookup( Strings.toLowerCase( oid ).trim() );
+        return current().getObjectClassRegistry().lookup( Strings.toLowerCase( oid ).trim() );
     }
 
 
@@ -1681,7 +2015,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public LdapSyntax lookupLdapSyntaxRegistry( String oid ) throws LdapException
     {
-        return registries.getLdapSyntaxRegistry().lookup( Strings.toLowerCase( oid ).trim() );
+        return current().getLdapSyntaxRegistry().lookup( Strings.toLowerCase( oid ).trim() );
     }
 
 
@@ -1690,7 +2024,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public SyntaxChecker lookupSyntaxCheckerRegistry( String oid ) throws LdapException
     {
-        return registries.getSyntaxCheckerRegistry().lookup( oid );
+        return current().getSyntaxCheckerRegistry().lookup( oid );
     }
 
 
@@ -1701,22 +2035,22 @@ public class DefaultSchemaManager implements SchemaManager
     {
         if ( !( schemaObject instanceof LoadableSchemaObject ) )
         {
-            return registries.getGlobalOidRegistry().contains( schemaObject.getOid() );
+            return latest().getGlobalOidRegistry().contains( schemaObject.getOid() );
         }
 
         if ( schemaObject instanceof LdapComparator<?> )
         {
-            return registries.getComparatorRegistry().contains( schemaObject.getOid() );
+            return latest().getComparatorRegistry().contains( schemaObject.getOid() );
         }
 
         if ( schemaObject instanceof SyntaxChecker )
         {
-            return registries.getSyntaxCheckerRegistry().contains( schemaObject.getOid() );
+            return latest().getSyntaxCheckerRegistry().contains( schemaObject.getOid() );
         }
 
         if ( schemaObject instanceof Normalizer )
         {
-            return registries.getNormalizerRegistry().contains( schemaObject.getOid() );
+            return latest().getNormalizerRegistry().contains( schemaObject.getOid() );
         }
 
         return false;
@@ -1734,7 +2068,7 @@ public class DefaultSchemaManager implements SchemaManager
         }
         else
         {
-            return registries.getGlobalOidRegistry().getSchemaObject( schemaObject.getOid() );
+            return latest().getGlobalOidRegistry().getSchemaObject( schemaObject.getOid() );
         }
     }
 
@@ -1796,7 +2130,7 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean add( SchemaObject schemaObject ) throws LdapException
+    public synchronized boolean add( SchemaObject schemaObject ) throws LdapException
     {
         // First, clear the errors
         errors.clear();
@@ -1809,10 +2143,10 @@ public class DefaultSchemaManager implements SchemaManager
             return false;
         }
 
-        if ( registries.isRelaxed() )
+        if ( latest().isRelaxed() )
         {
-            // Apply the addition right away
-            registries.add( errors, copy, true );
+            // Apply the addition right away on the working copy of the registries
+            working().add( errors, copy, true );
 
             return errors.isEmpty();
         }
@@ -1865,31 +2199,15 @@ public class DefaultSchemaManager implements SchemaManager
             if ( schema.isEnabled() && copy.isEnabled() )
             {
                 // As we may break the registries, work on a cloned registries
-                Registries clonedRegistries = null;
-
-                try
-                {
-                    clonedRegistries = registries.clone();
-                }
-                catch ( CloneNotSupportedException cnse )
-                {
-                    throw new LdapOtherException( cnse.getMessage() );
-                }
+                Registries clonedRegistries = copyRegistries();
 
                 // Inject the new SchemaObject in the cloned registries
                 clonedRegistries.add( errors, copy, true );
 
-                // Remove the cloned registries
-                clonedRegistries.clear();
-
-                // If we didn't get any error, apply the addition to the real retistries
+                // If we didn't get any error, publish the cloned registries
                 if ( errors.isEmpty() )
                 {
-                    // Copy again as the clonedRegistries clear has removed the previous copy
-                    copy = copy( schemaObject );
-
-                    // Apply the addition to the real registries
-                    registries.add( errors, copy, true );
+                    publish( clonedRegistries );
 
                     LOG.debug( "Added {} into the enabled schema {}", copy.getName(), schemaName );
 
@@ -1902,6 +2220,9 @@ public class DefaultSchemaManager implements SchemaManager
                         + "the resulting registries would be inconsistent :" + Strings.listToString( errors );
                     LOG.info( msg );
 
+                    // Remove the cloned registries
+                    clonedRegistries.clear();
+
                     return false;
                 }
             }
@@ -1909,7 +2230,7 @@ public class DefaultSchemaManager implements SchemaManager
             {
                 // At least, we register the OID in the globalOidRegistry, and associates it with the
                 // schema
-                registries.associateWithSchema( errors, copy );
+                working().associateWithSchema( errors, copy );
 
                 LOG.debug( "Added {} into the disabled schema {}", copy.getName(), schemaName );
                 return errors.isEmpty();
@@ -1921,15 +2242,15 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public boolean delete( SchemaObject schemaObject ) throws LdapException
+    public synchronized boolean delete( SchemaObject schemaObject ) throws LdapException
     {
         // First, clear the errors
         errors.clear();
 
-        if ( registries.isRelaxed() )
+        if ( latest().isRelaxed() )
         {
-            // Apply the addition right away
-            registries.delete( errors, schemaObject );
+            // Apply the deletion right away on the working copy of the registries
+            working().delete( errors, schemaObject );
 
             return errors.isEmpty();
         }
@@ -1948,7 +2269,7 @@ public class DefaultSchemaManager implements SchemaManager
             SchemaObject toDelete = getSchemaObject( schemaObject );
 
             // First check that this SchemaObject does not have any referencing SchemaObjects
-            Set<SchemaObjectWrapper> referencing = registries.getReferencing( toDelete );
+            Set<SchemaObjectWrapper> referencing = latest().getReferencing( toDelete );
 
             if ( ( referencing != null ) && !referencing.isEmpty() )
             {
@@ -1978,28 +2299,15 @@ public class DefaultSchemaManager implements SchemaManager
             if ( schema.isEnabled() && schemaObject.isEnabled() )
             {
                 // As we may break the registries, work on a cloned registries
-                Registries clonedRegistries = null;
-
-                try
-                {
-                    clonedRegistries = registries.clone();
-                }
-                catch ( CloneNotSupportedException cnse )
-                {
-                    throw new LdapOtherException( cnse.getMessage() );
-                }
+                Registries clonedRegistries = copyRegistries();
 
                 // Delete the SchemaObject from the cloned registries
                 clonedRegistries.delete( errors, toDelete );
 
-                // Remove the cloned registries
-                clonedRegistries.clear();
-
-                // If we didn't get any error, apply the deletion to the real retistries
+                // If we didn't get any error, publish the cloned registries
                 if ( errors.isEmpty() )
                 {
-                    // Apply the deletion to the real registries
-                    registries.delete( errors, toDelete );
+                    publish( clonedRegistries );
 
                     LOG.debug( "Removed {} from the enabled schema {}", toDelete.getName(), schemaName );
 
@@ -2012,6 +2320,9 @@ public class DefaultSchemaManager implements SchemaManager
                         + "the resulting registries would be inconsistent :" + Strings.listToString( errors );
                     LOG.info( msg );
 
+                    // Remove the cloned registries
+                    clonedRegistries.clear();
+
                     return false;
                 }
             }
@@ -2019,7 +2330,7 @@ public class DefaultSchemaManager implements SchemaManager
             {
                 // At least, we register the OID in the globalOidRegistry, and associates it with the
                 // schema
-                registries.associateWithSchema( errors, schemaObject );
+                working().associateWithSchema( errors, schemaObject );
 
                 LOG.debug( "Removed {} from the disabled schema {}", schemaObject.getName(), schemaName );
                 return errors.isEmpty();
@@ -2028,12 +2339,51 @@ public class DefaultSchemaManager implements SchemaManager
     }
 
 
+    /**
+     * Gets the closures of the ObjectClasses : for each ObjectClass, the ids of its
+     * superiors and of the MUST and MAY AttributeTypes it inherits. They are computed
+     * the first time they are needed after the schema has been loaded or modified,
+     * and shared until the next modification.
+     *
+     * @return The ObjectClasses closures for the current registries
+     */
+    public ObjectClassClosures getObjectClassClosures()
+    {
+        Registries currentRegistries = current();
+        ObjectClassRegistry objectClassRegistry = currentRegistries.getObjectClassRegistry();
+        AttributeTypeRegistry attributeTypeRegistry = currentRegistries.getAttributeTypeRegistry();
+        ObjectClassClosures closures = objectClassClosures;
+
+        if ( ( closures == null ) || !closures.isBuiltFrom( objectClassRegistry, attributeTypeRegistry ) )
+        {
+            closures = new ObjectClassClosures( objectClassRegistry, attributeTypeRegistry );
+            objectClassClosures = closures;
+        }
+
+        return closures;
+    }
+
+
+    /**
+     * Checks an entry against its ObjectClasses : they must all exist, one of them must
+     * be STRUCTURAL, the attributes they require must be present and the user attributes
+     * of the entry must be allowed by them, unless the entry is an extensibleObject.
+     *
+     * @param entry The entry to check
+     * @throws LdapException If the entry does not comply with the schema
+     */
+    public void validate( Entry entry ) throws LdapException
+    {
+        getObjectClassClosures().validate( entry );
+    }
+
+
     /**
      * {@inheritDoc}
      */
     public Map<String, OidNormalizer> getNormalizerMapping()
     {
-        return registries.getAttributeTypeRegistry().getNormalizerMapping();
+        return current().getAttributeTypeRegistry().getNormalizerMapping();
     }
 
 
@@ -2043,7 +2393,7 @@ public class DefaultSchemaManager implements SchemaManager
     @SuppressWarnings("rawtypes")
     public OidRegistry getGlobalOidRegistry()
     {
-        return registries.getGlobalOidRegistry();
+        return current().getGlobalOidRegistry();
     }
 
 
@@ -2076,99 +2426,121 @@ public class DefaultSchemaManager implements SchemaManager
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterAttributeType( String attributeTypeOid ) throws LdapException
+    public synchronized SchemaObject unregisterAttributeType( String attributeTypeOid ) throws LdapException
     {
-        return registries.getAttributeTypeRegistry().unregister( attributeTypeOid );
+        SchemaObject removed = working().getAttributeTypeRegistry().unregister( attributeTypeOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterComparator( String comparatorOid ) throws LdapException
+    public synchronized SchemaObject unregisterComparator( String comparatorOid ) throws LdapException
     {
-        return registries.getComparatorRegistry().unregister( comparatorOid );
+        SchemaObject removed = working().getComparatorRegistry().unregister( comparatorOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterDitControlRule( String ditControlRuleOid ) throws LdapException
+    public synchronized SchemaObject unregisterDitControlRule( String ditControlRuleOid ) throws LdapException
     {
-        return registries.getDitContentRuleRegistry().unregister( ditControlRuleOid );
+        SchemaObject removed = working().getDitContentRuleRegistry().unregister( ditControlRuleOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterDitStructureRule( String ditStructureRuleOid ) throws LdapException
+    public synchronized SchemaObject unregisterDitStructureRule( String ditStructureRuleOid ) throws LdapException
     {
-        return registries.getDitStructureRuleRegistry().unregister( ditStructureRuleOid );
+        SchemaObject removed = working().getDitStructureRuleRegistry().unregister( ditStructureRuleOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterLdapSyntax( String ldapSyntaxOid ) throws LdapException
+    public synchronized SchemaObject unregisterLdapSyntax( String ldapSyntaxOid ) throws LdapException
     {
-        return registries.getLdapSyntaxRegistry().unregister( ldapSyntaxOid );
+        SchemaObject removed = working().getLdapSyntaxRegistry().unregister( ldapSyntaxOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterMatchingRule( String matchingRuleOid ) throws LdapException
+    public synchronized SchemaObject unregisterMatchingRule( String matchingRuleOid ) throws LdapException
     {
-        return registries.getMatchingRuleRegistry().unregister( matchingRuleOid );
+        SchemaObject removed = working().getMatchingRuleRegistry().unregister( matchingRuleOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterMatchingRuleUse( String matchingRuleUseOid ) throws LdapException
+    public synchronized SchemaObject unregisterMatchingRuleUse( String matchingRuleUseOid ) throws LdapException
     {
-        return registries.getMatchingRuleUseRegistry().unregister( matchingRuleUseOid );
+        SchemaObject removed = working().getMatchingRuleUseRegistry().unregister( matchingRuleUseOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterNameForm( String nameFormOid ) throws LdapException
+    public synchronized SchemaObject unregisterNameForm( String nameFormOid ) throws LdapException
     {
-        return registries.getNameFormRegistry().unregister( nameFormOid );
+        SchemaObject removed = working().getNameFormRegistry().unregister( nameFormOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterNormalizer( String normalizerOid ) throws LdapException
+    public synchronized SchemaObject unregisterNormalizer( String normalizerOid ) throws LdapException
     {
-        return registries.getNormalizerRegistry().unregister( normalizerOid );
+        SchemaObject removed = working().getNormalizerRegistry().unregister( normalizerOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterObjectClass( String objectClassOid ) throws LdapException
+    public synchronized SchemaObject unregisterObjectClass( String objectClassOid ) throws LdapException
     {
-        return registries.getObjectClassRegistry().unregister( objectClassOid );
+        SchemaObject removed = working().getObjectClassRegistry().unregister( objectClassOid );
+
+        return removed;
     }
 
 
     /**
      * {@inheritDoc}
      */
-    public SchemaObject unregisterSyntaxChecker( String syntaxCheckerOid ) throws LdapException
+    public synchronized SchemaObject unregisterSyntaxChecker( String syntaxCheckerOid ) throws LdapException
     {
-        return registries.getSyntaxCheckerRegistry().unregister( syntaxCheckerOid );
+        SchemaObject removed = working().getSyntaxCheckerRegistry().unregister( syntaxCheckerOid );
+
+        return removed;
     }
 
 
@@ -2221,6 +2593,7 @@ public class DefaultSchemaManager implements SchemaManager
     public void setStrict()
     {
         isRelaxed = STRICT;
+        commit();
     }
 
 
@@ -2229,7 +2602,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public boolean isDisabled( String schemaName )
     {
-        Schema schema = registries.getLoadedSchema( schemaName );
+        Schema schema = current().getLoadedSchema( schemaName );
 
         return ( schema != null ) && schema.isDisabled();
     }
@@ -2249,7 +2622,7 @@ public class DefaultSchemaManager implements SchemaManager
      */
     public boolean isEnabled( String schemaName )
     {
-        Schema schema = registries.getLoadedSchema( schemaName );
+        Schema schema = current().getLoadedSchema( schemaName );
 
         return ( schema != null ) && schema.isEnabled();
     }
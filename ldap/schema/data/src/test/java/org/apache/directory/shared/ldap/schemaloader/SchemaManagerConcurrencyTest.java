@@ -0,0 +1,213 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.schemaloader;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.directory.shared.ldap.model.schema.AttributeType;
+import org.apache.directory.shared.ldap.model.schema.ObjectClass;
+import org.apache.directory.shared.ldap.model.schema.registries.Registries;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * A test class checking that the SchemaManager readers always see consistent
+ * registries while the schemas are being enabled and disabled, and that the single
+ * SchemaObject changes are published together.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SchemaManagerConcurrencyTest
+{
+    /** The number of reader threads */
+    private static final int NB_READERS = 8;
+
+    /** The number of times the nis schema is enabled then disabled */
+    private static final int NB_RELOADS = 10;
+
+    private DefaultSchemaManager schemaManager;
+
+
+    @Before
+    public void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    @Test
+    public void testPublishedRegistriesAreNotModified() throws Exception
+    {
+        Registries before = schemaManager.getRegistries();
+        int nbAttributeTypes = before.getAttributeTypeRegistry().size();
+
+        assertTrue( schemaManager.enable( "nis" ) );
+
+        Registries after = schemaManager.getRegistries();
+
+        // The registries have been replaced, the previous ones are unchanged
+        assertNotSame( before, after );
+        assertEquals( nbAttributeTypes, before.getAttributeTypeRegistry().size() );
+        assertFalse( before.getAttributeTypeRegistry().contains( "uidNumber" ) );
+        assertTrue( after.getAttributeTypeRegistry().contains( "uidNumber" ) );
+        assertTrue( after.isStrict() );
+
+        // Reading does not replace the registries
+        schemaManager.lookupAttributeTypeRegistry( "uidNumber" );
+        assertSame( after, schemaManager.getRegistries() );
+
+        assertTrue( schemaManager.disable( "nis" ) );
+        assertTrue( after.getAttributeTypeRegistry().contains( "uidNumber" ) );
+        assertFalse( schemaManager.getRegistries().getAttributeTypeRegistry().contains( "uidNumber" ) );
+    }
+
+
+    @Test
+    public void testPendingChangesArePublishedTogether() throws Exception
+    {
+        Registries before = schemaManager.getRegistries();
+
+        // The unregistrations are applied to a working copy of the registries
+        assertNotNull( schemaManager.unregisterAttributeType( "2.5.4.34" ) );
+        assertNotNull( schemaManager.unregisterAttributeType( "2.5.4.13" ) );
+        assertTrue( before.getAttributeTypeRegistry().contains( "2.5.4.34" ) );
+        assertTrue( before.getAttributeTypeRegistry().contains( "2.5.4.13" ) );
+
+        schemaManager.commit();
+
+        Registries after = schemaManager.getRegistries();
+
+        assertNotSame( before, after );
+        assertFalse( after.getAttributeTypeRegistry().contains( "2.5.4.34" ) );
+        assertFalse( after.getAttributeTypeRegistry().contains( "2.5.4.13" ) );
+        assertTrue( before.getAttributeTypeRegistry().contains( "2.5.4.34" ) );
+
+        // Nothing is pending anymore
+        schemaManager.commit();
+        assertSame( after, schemaManager.getRegistries() );
+    }
+
+
+    @Test
+    public void testPendingChangesAreSeenByTheReaders() throws Exception
+    {
+        assertNotNull( schemaManager.unregisterAttributeType( "2.5.4.34" ) );
+
+        // Reading through the SchemaManager publishes the pending changes
+        assertFalse( schemaManager.getAttributeTypeRegistry().contains( "2.5.4.34" ) );
+        assertFalse( schemaManager.getRegistries().getAttributeTypeRegistry().contains( "2.5.4.34" ) );
+    }
+
+
+    @Test
+    public void testLookupsDuringReloads() throws Exception
+    {
+        final AtomicBoolean done = new AtomicBoolean( false );
+        final AtomicInteger nbLookups = new AtomicInteger();
+        final List<Throwable> failures = new CopyOnWriteArrayList<Throwable>();
+        final CountDownLatch started = new CountDownLatch( NB_READERS );
+        Thread[] readers = new Thread[NB_READERS];
+
+        for ( int i = 0; i < NB_READERS; i++ )
+        {
+            readers[i] = new Thread()
+            {
+                public void run()
+                {
+                    started.countDown();
+
+                    try
+                    {
+                        while ( !done.get() )
+                        {
+                            // The core schema is never unloaded : these lookups must always succeed,
+                            // and the returned SchemaObjects must be complete
+                            AttributeType cn = schemaManager.lookupAttributeTypeRegistry( "cn" );
+                            assertEquals( "2.5.4.3", cn.getOid() );
+                            assertNotNull( cn.getSuperior() );
+                            assertNotNull( cn.getEquality() );
+
+                            ObjectClass person = schemaManager.lookupObjectClassRegistry( "person" );
+                            assertEquals( 2, person.getMustAttributeTypes().size() );
+                            assertNotNull( person.getSuperiors().get( 0 ) );
+
+                            // The registries a reader gets are consistent : the nis
+                            // AttributeTypes and ObjectClasses come and go together
+                            Registries current = schemaManager.getRegistries();
+                            boolean hasUidNumber = current.getAttributeTypeRegistry().contains( "uidNumber" );
+                            boolean hasPosixAccount = current.getObjectClassRegistry().contains( "posixAccount" );
+                            assertEquals( hasUidNumber, hasPosixAccount );
+
+                            nbLookups.incrementAndGet();
+                        }
+                    }
+                    catch ( Throwable t )
+                    {
+                        failures.add( t );
+                    }
+                }
+            };
+
+            readers[i].start();
+        }
+
+        started.await();
+
+        try
+        {
+            for ( int i = 0; i < NB_RELOADS; i++ )
+            {
+                assertTrue( schemaManager.enable( "nis" ) );
+                assertTrue( schemaManager.disable( "nis" ) );
+            }
+        }
+        finally
+        {
+            done.set( true );
+
+            for ( Thread reader : readers )
+            {
+                reader.join();
+            }
+        }
+
+        if ( !failures.isEmpty() )
+        {
+            throw new AssertionError( failures.get( 0 ) );
+        }
+
+        assertTrue( nbLookups.get() > 0 );
+        assertFalse( schemaManager.getRegistries().getAttributeTypeRegistry().contains( "uidNumber" ) );
+    }
+}
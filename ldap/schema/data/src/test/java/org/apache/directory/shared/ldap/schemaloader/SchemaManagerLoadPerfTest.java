@@ -0,0 +1,75 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.schemaloader;
+
+
+import static org.junit.Assert.assertTrue;
+
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Measure the time needed to load all the enabled schemas, sequentially and
+ * using many threads.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class SchemaManagerLoadPerfTest
+{
+    /** The number of times the schemas are loaded */
+    private static final int NB_LOADS = 20;
+
+
+    private long load( JarLdifSchemaLoader loader, int loadingThreads ) throws Exception
+    {
+        long t0 = System.currentTimeMillis();
+
+        for ( int i = 0; i < NB_LOADS; i++ )
+        {
+            DefaultSchemaManager schemaManager = new DefaultSchemaManager( loader );
+            schemaManager.setLoadingThreads( loadingThreads );
+
+            assertTrue( schemaManager.loadAllEnabled() );
+        }
+
+        return ( System.currentTimeMillis() - t0 ) / NB_LOADS;
+    }
+
+
+    @Test
+    public void testLoadAllEnabled() throws Exception
+    {
+        JarLdifSchemaLoader loader = new JarLdifSchemaLoader();
+        int nbProcessors = Runtime.getRuntime().availableProcessors();
+
+        // Warm up
+        load( loader, 1 );
+        load( loader, nbProcessors );
+
+        long sequential = load( loader, 1 );
+        long parallel = load( loader, nbProcessors );
+
+        System.out.println( "testLoadAllEnabled, sequential : " + sequential + " ms, " + nbProcessors
+            + " threads : " + parallel + " ms" );
+    }
+}
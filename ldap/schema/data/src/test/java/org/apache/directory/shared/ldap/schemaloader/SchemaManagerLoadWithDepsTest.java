@@ -577,4 +577,54 @@ public class SchemaManagerLoadWithDepsTest
         assertNotNull( schemaManager.getRegistries().getLoadedSchema( "cosine" ) );
         assertNotNull( schemaManager.getRegistries().getLoadedSchema( "InetOrgPerson" ) );
     }
+
+
+    /**
+     * test loading all the enabled schemas using many threads : the registries must
+     * be the same as when the schemas are loaded sequentially
+     */
+    @Test
+    public void testLoadAllEnabledParallel() throws Exception
+    {
+        LdifSchemaLoader loader = new LdifSchemaLoader( schemaRepository );
+        DefaultSchemaManager sequentialSchemaManager = new DefaultSchemaManager( loader );
+        assertTrue( sequentialSchemaManager.loadAllEnabled() );
+
+        DefaultSchemaManager schemaManager = new DefaultSchemaManager( loader );
+        schemaManager.setLoadingThreads( 4 );
+        assertEquals( 4, schemaManager.getLoadingThreads() );
+        assertTrue( schemaManager.loadAllEnabled() );
+
+        assertTrue( schemaManager.getErrors().isEmpty() );
+        assertEquals( sequentialSchemaManager.getAttributeTypeRegistry().size(), schemaManager
+            .getAttributeTypeRegistry().size() );
+        assertEquals( sequentialSchemaManager.getComparatorRegistry().size(), schemaManager.getComparatorRegistry()
+            .size() );
+        assertEquals( sequentialSchemaManager.getMatchingRuleRegistry().size(), schemaManager
+            .getMatchingRuleRegistry().size() );
+        assertEquals( sequentialSchemaManager.getNormalizerRegistry().size(), schemaManager.getNormalizerRegistry()
+            .size() );
+        assertEquals( sequentialSchemaManager.getObjectClassRegistry().size(), schemaManager
+            .getObjectClassRegistry().size() );
+        assertEquals( sequentialSchemaManager.getSyntaxCheckerRegistry().size(), schemaManager
+            .getSyntaxCheckerRegistry().size() );
+        assertEquals( sequentialSchemaManager.getLdapSyntaxRegistry().size(), schemaManager.getLdapSyntaxRegistry()
+            .size() );
+        assertEquals( sequentialSchemaManager.getGlobalOidRegistry().size(), schemaManager.getGlobalOidRegistry()
+            .size() );
+        assertEquals( sequentialSchemaManager.getRegistries().getLoadedSchemas().keySet(), schemaManager
+            .getRegistries().getLoadedSchemas().keySet() );
+
+        // The SchemaObjects are registered in the same order, so they get the same ids
+        for ( String name : new String[]
+            { "cn", "objectClass", "uid", "mail", "krb5PrincipalName" } )
+        {
+            assertEquals( sequentialSchemaManager.getAttributeTypeRegistry().getId( name ), schemaManager
+                .getAttributeTypeRegistry().getId( name ) );
+        }
+
+        // The references have been built
+        assertNotNull( schemaManager.lookupAttributeTypeRegistry( "cn" ).getEquality() );
+        assertEquals( "name", schemaManager.lookupAttributeTypeRegistry( "cn" ).getSuperior().getName() );
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.ldap.schemaloader;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.BitSet;
+
+import org.apache.directory.shared.ldap.model.entry.DefaultEntry;
+import org.apache.directory.shared.ldap.model.entry.Entry;
+import org.apache.directory.shared.ldap.model.exception.LdapSchemaViolationException;
+import org.apache.directory.shared.ldap.model.schema.ObjectClassClosures;
+import org.apache.directory.shared.ldap.model.schema.registries.AttributeTypeRegistry;
+import org.apache.directory.shared.ldap.model.schema.registries.ObjectClassRegistry;
+import org.apache.directory.shared.ldap.schemamanager.impl.DefaultSchemaManager;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * A test class for the ObjectClass closures and the validation of entries by the
+ * DefaultSchemaManager.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class SchemaManagerValidateTest
+{
+    private DefaultSchemaManager schemaManager;
+
+
+    @Before
+    public void setup() throws Exception
+    {
+        schemaManager = new DefaultSchemaManager();
+    }
+
+
+    private void assertInvalid( Entry entry ) throws Exception
+    {
+        try
+        {
+            schemaManager.validate( entry );
+            fail();
+        }
+        catch ( LdapSchemaViolationException lsve )
+        {
+            assertTrue( true );
+        }
+    }
+
+
+    @Test
+    public void testClosures() throws Exception
+    {
+        ObjectClassClosures closures = schemaManager.getObjectClassClosures();
+        ObjectClassRegistry ocRegistry = schemaManager.getObjectClassRegistry();
+        AttributeTypeRegistry atRegistry = schemaManager.getAttributeTypeRegistry();
+
+        BitSet superiors = closures.getSuperiors( "inetOrgPerson" );
+
+        assertEquals( 4, superiors.cardinality() );
+        assertTrue( superiors.get( ocRegistry.getId( "inetOrgPerson" ) ) );
+        assertTrue( superiors.get( ocRegistry.getId( "organizationalPerson" ) ) );
+        assertTrue( superiors.get( ocRegistry.getId( "person" ) ) );
+        assertTrue( superiors.get( ocRegistry.getId( "top" ) ) );
+
+        BitSet must = closures.getMustAttributeTypes( "inetOrgPerson" );
+
+        assertEquals( 3, must.cardinality() );
+        assertTrue( must.get( atRegistry.getId( "cn" ) ) );
+        assertTrue( must.get( atRegistry.getId( "sn" ) ) );
+        assertTrue( must.get( atRegistry.getId( "objectClass" ) ) );
+
+        BitSet may = closures.getMayAttributeTypes( "inetOrgPerson" );
+
+        assertTrue( may.get( atRegistry.getId( "mail" ) ) );
+        assertTrue( may.get( atRegistry.getId( "userPassword" ) ) );
+        assertFalse( may.get( atRegistry.getId( "cn" ) ) );
+
+        assertNull( closures.getSuperiors( "unknown" ) );
+
+        // The closures are shared until the schema changes
+        assertSame( closures, schemaManager.getObjectClassClosures() );
+    }
+
+
+    @Test
+    public void testValidate() throws Exception
+    {
+        schemaManager.validate( new DefaultEntry( schemaManager, "uid=jdoe,ou=people,dc=example,dc=com",
+            "objectClass: inetOrgPerson",
+            "uid: jdoe",
+            "cn: John Doe",
+            "sn: Doe",
+            "mail: jdoe@example.com",
+            "entryUUID: f81d4fae-7dec-11d0-a765-00a0c91e6bf6" ) );
+
+        // Missing sn
+        assertInvalid( new DefaultEntry( schemaManager, "cn=John Doe,ou=people,dc=example,dc=com",
+            "objectClass: person",
+            "cn: John Doe" ) );
+
+        // mail is not allowed by person
+        assertInvalid( new DefaultEntry( schemaManager, "cn=John Doe,ou=people,dc=example,dc=com",
+            "objectClass: person",
+            "cn: John Doe",
+            "sn: Doe",
+            "mail: jdoe@example.com" ) );
+
+        // Unless the entry is an extensibleObject
+        schemaManager.validate( new DefaultEntry( schemaManager, "cn=John Doe,ou=people,dc=example,dc=com",
+            "objectClass: person",
+            "objectClass: extensibleObject",
+            "cn: John Doe",
+            "sn: Doe",
+            "mail: jdoe@example.com" ) );
+
+        // No structural ObjectClass
+        assertInvalid( new DefaultEntry( schemaManager, "cn=John Doe,ou=people,dc=example,dc=com",
+            "objectClass: top",
+            "objectClass: extensibleObject",
+            "cn: John Doe" ) );
+
+        // No ObjectClass at all
+        assertInvalid( new DefaultEntry( schemaManager, "cn=John Doe,ou=people,dc=example,dc=com",
+            "cn: John Doe" ) );
+
+        // Not schema aware entry
+        schemaManager.validate( new DefaultEntry( "dc=example,dc=com",
+            "objectClass: domain",
+            "DC: example" ) );
+    }
+
+
+    @Test
+    public void testSchemaChange() throws Exception
+    {
+        Entry entry = new DefaultEntry( "uid=jdoe,ou=people,dc=example,dc=com",
+            "objectClass: account",
+            "objectClass: posixAccount",
+            "uid: jdoe",
+            "cn: John Doe",
+            "uidNumber: 1000",
+            "gidNumber: 1000",
+            "homeDirectory: /home/jdoe" );
+
+        ObjectClassClosures closures = schemaManager.getObjectClassClosures();
+        assertNull( closures.getSuperiors( "posixAccount" ) );
+
+        // The nis schema is disabled
+        assertInvalid( entry );
+
+        schemaManager.enable( "nis" );
+
+        assertNotSame( closures, schemaManager.getObjectClassClosures() );
+        schemaManager.validate( entry );
+    }
+}
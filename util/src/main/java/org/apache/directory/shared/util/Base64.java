@@ -178,6 +178,47 @@ public final class Base64
         return out;
     }
 
+    /**
+     * Decodes BASE-64 encoded bytes in place : the decoded bytes are written
+     * over the encoded ones, starting at the same position, the decoded data
+     * being always shorter than the encoded one. As with {@link #decode(char[])},
+     * the non BASE-64 characters and the padding are ignored.
+     * 
+     * @param data The array containing the encoded bytes
+     * @param start The position of the first encoded byte
+     * @param length The number of encoded bytes
+     * @return The number of decoded bytes, written from <code>start</code>
+     */
+    public static int decodeInPlace( byte[] data, int start, int length )
+    {
+        int shift = 0; // # of excess bits stored in accum
+        int accum = 0; // excess bits
+        int index = start;
+        int end = start + length;
+
+        for ( int i = start; i < end; i++ )
+        {
+            int value = CODES[data[i] & 0xFF];
+
+            if ( value >= 0 ) // skip over non-code
+            {
+                accum <<= 6;
+                shift += 6;
+                accum |= value;
+
+                if ( shift >= 8 )
+                {
+                    // The write position is always behind the read position
+                    shift -= 8;
+                    data[index++] = ( byte ) ( ( accum >> shift ) & 0xff );
+                }
+            }
+        }
+
+        return index - start;
+    }
+
+
     /** code characters for values 0..63 */
     private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/="
         .toCharArray();
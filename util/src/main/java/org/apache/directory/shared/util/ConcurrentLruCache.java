@@ -0,0 +1,615 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.util;
+
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * A bounded cache which can be used by many threads, evicting the Least Recently Used
+ * entries when it's full. Unlike the {@link SynchronizedLRUMap}, which serializes all the
+ * accesses on a single monitor, the cache is split in segments, each one with its own
+ * lock and its own LRU list : threads accessing different keys rarely contend. The
+ * eviction order is thus an approximation of a global LRU order.
+ * <br/>
+ * By default, each entry counts for 1 in the cache size. A {@link Weigher} can be used
+ * to give a different weight to each entry, the maximum size being then the maximum
+ * total weight of the cached entries. The entries can also expire after a given
+ * delay since they have been added.
+ * <br/>
+ * Null keys and values are not allowed.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ConcurrentLruCache<K, V>
+{
+    /** The default number of segments */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /** The segments */
+    private final Segment<K, V>[] segments;
+
+    /** The shift used to select a segment from a key hash */
+    private final int segmentShift;
+
+    /** The maximum total weight of the cached entries */
+    private final long maxWeight;
+
+    /** The Weigher used to compute the entries weights, if any */
+    private final Weigher<K, V> weigher;
+
+    /** The delay after which an entry expires, in nanoseconds, 0 if the entries don't expire */
+    private final long expireAfterWriteNanos;
+
+
+    /**
+     * Computes the weight of the cached entries.
+     *
+     * @param <K> The key type
+     * @param <V> The value type
+     */
+    public interface Weigher<K, V>
+    {
+        /**
+         * Computes the weight of an entry. It must not change once the entry is cached.
+         *
+         * @param key The entry key
+         * @param value The entry value
+         * @return The weight of the entry, at least 1
+         */
+        int weigh( K key, V value );
+    }
+
+    /**
+     * A cached value, with its weight and its expiration time
+     */
+    private static final class Node<V>
+    {
+        private final V value;
+        private final int weight;
+        private final long expiresAt;
+
+
+        private Node( V value, int weight, long expiresAt )
+        {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * A segment of the cache : a LRU map protected by a lock. All the
+     * fields are accessed with the lock held.
+     */
+    @SuppressWarnings("serial")
+    private static final class Segment<K, V> extends ReentrantLock
+    {
+        /** The entries, from the least recently used to the most recently used */
+        private final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<K, Node<V>>( 16, 0.75f, true );
+
+        /** The maximum weight of the segment */
+        private final long maxWeight;
+
+        /** The current weight of the segment */
+        private long weight;
+
+        private long hitCount;
+        private long missCount;
+        private long evictionCount;
+
+
+        private Segment( long maxWeight )
+        {
+            this.maxWeight = maxWeight;
+        }
+
+
+        /**
+         * Removes the least recently used entries until the segment weight is
+         * below its maximum weight
+         */
+        private void evict()
+        {
+            Iterator<Node<V>> nodes = map.values().iterator();
+
+            while ( ( weight > maxWeight ) && nodes.hasNext() )
+            {
+                weight -= nodes.next().weight;
+                nodes.remove();
+                evictionCount++;
+            }
+        }
+    }
+
+
+    /**
+     * Creates a new instance of ConcurrentLruCache, holding at most the given number of entries
+     *
+     * @param maxSize The maximum number of entries
+     */
+    public ConcurrentLruCache( int maxSize )
+    {
+        this( maxSize, null, 0L, TimeUnit.MILLISECONDS, DEFAULT_CONCURRENCY_LEVEL );
+    }
+
+
+    /**
+     * Creates a new instance of ConcurrentLruCache.
+     *
+     * @param maxWeight The maximum total weight of the entries
+     * @param weigher The Weigher computing the entries weights, or null if each entry weighs 1
+     * @param expireAfterWrite The delay after which an entry expires, 0 if the entries don't expire
+     * @param unit The unit of the expiration delay
+     * @param concurrencyLevel The expected number of threads using the cache concurrently
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLruCache( long maxWeight, Weigher<K, V> weigher, long expireAfterWrite, TimeUnit unit,
+        int concurrencyLevel )
+    {
+        if ( maxWeight <= 0 )
+        {
+            throw new IllegalArgumentException( "Invalid maximum weight : " + maxWeight );
+        }
+
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = Math.max( 0L, unit.toNanos( expireAfterWrite ) );
+
+        // Use a power of 2 number of segments, not bigger than the max weight so
+        // that each segment can hold at least one entry
+        int segmentBits = 0;
+
+        while ( ( ( 1 << ( segmentBits + 1 ) ) <= concurrencyLevel ) && ( ( 1L << ( segmentBits + 1 ) ) <= maxWeight )
+            && ( segmentBits < 16 ) )
+        {
+            segmentBits++;
+        }
+
+        int nbSegments = 1 << segmentBits;
+        segmentShift = 32 - segmentBits;
+        segments = new Segment[nbSegments];
+
+        for ( int i = 0; i < nbSegments; i++ )
+        {
+            long segmentWeight = maxWeight / nbSegments + ( i < maxWeight % nbSegments ? 1 : 0 );
+            segments[i] = new Segment<K, V>( segmentWeight );
+        }
+    }
+
+
+    /**
+     * Selects the segment for a key, using the upper bits of its spread hash
+     */
+    private Segment<K, V> segmentFor( Object key )
+    {
+        if ( segmentShift == 32 )
+        {
+            return segments[0];
+        }
+
+        int h = key.hashCode() * 0x9E3779B9;
+
+        return segments[h >>> segmentShift];
+    }
+
+
+    /**
+     * Gets a value from the cache, and marks it as the most recently used.
+     *
+     * @param key The key
+     * @return The cached value, or null if there is none, or if it has expired
+     */
+    public V get( K key )
+    {
+        Segment<K, V> segment = segmentFor( key );
+        segment.lock();
+
+        try
+        {
+            Node<V> node = segment.map.get( key );
+
+            if ( node == null )
+            {
+                segment.missCount++;
+
+                return null;
+            }
+
+            if ( ( node.expiresAt != 0L ) && ( System.nanoTime() - node.expiresAt >= 0L ) )
+            {
+                segment.map.remove( key );
+                segment.weight -= node.weight;
+                segment.missCount++;
+
+                return null;
+            }
+
+            segment.hitCount++;
+
+            return node.value;
+        }
+        finally
+        {
+            segment.unlock();
+        }
+    }
+
+
+    /**
+     * Adds a value in the cache, evicting the least recently used entries if the
+     * cache is full. A value heavier than the cache segments is not cached.
+     *
+     * @param key The key
+     * @param value The value
+     * @return The value previously associated with the key, if any
+     */
+    public V put( K key, V value )
+    {
+        if ( ( key == null ) || ( value == null ) )
+        {
+            throw new IllegalArgumentException( "Null keys and values can't be cached" );
+        }
+
+        int weight = weigher == null ? 1 : weigher.weigh( key, value );
+
+        if ( weight < 1 )
+        {
+            throw new IllegalArgumentException( "Invalid weight : " + weight );
+        }
+
+        long expiresAt = 0L;
+
+        if ( expireAfterWriteNanos != 0L )
+        {
+            // 0 means that the entry never expires
+            expiresAt = ( System.nanoTime() + expireAfterWriteNanos ) | 1L;
+        }
+
+        Segment<K, V> segment = segmentFor( key );
+        segment.lock();
+
+        try
+        {
+            Node<V> previous;
+
+            if ( weight > segment.maxWeight )
+            {
+                previous = segment.map.remove( key );
+            }
+            else
+            {
+                previous = segment.map.put( key, new Node<V>( value, weight, expiresAt ) );
+                segment.weight += weight;
+            }
+
+            if ( previous != null )
+            {
+                segment.weight -= previous.weight;
+            }
+
+            segment.evict();
+
+            return previous == null ? null : previous.value;
+        }
+        finally
+        {
+            segment.unlock();
+        }
+    }
+
+
+    /**
+     * Removes a value from the cache.
+     *
+     * @param key The key
+     * @return The removed value, if any
+     */
+    public V remove( K key )
+    {
+        Segment<K, V> segment = segmentFor( key );
+        segment.lock();
+
+        try
+        {
+            Node<V> previous = segment.map.remove( key );
+
+            if ( previous == null )
+            {
+                return null;
+            }
+
+            segment.weight -= previous.weight;
+
+            return previous.value;
+        }
+        finally
+        {
+            segment.unlock();
+        }
+    }
+
+
+    /**
+     * Removes all the entries from the cache. The statistics are not reset.
+     */
+    public void clear()
+    {
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                segment.map.clear();
+                segment.weight = 0L;
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Removes the expired entries from the cache. They are otherwise removed when they
+     * are read, or evicted when the cache is full.
+     */
+    public void cleanUp()
+    {
+        if ( expireAfterWriteNanos == 0L )
+        {
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                Iterator<Map.Entry<K, Node<V>>> entries = segment.map.entrySet().iterator();
+
+                while ( entries.hasNext() )
+                {
+                    Node<V> node = entries.next().getValue();
+
+                    if ( now - node.expiresAt >= 0L )
+                    {
+                        segment.weight -= node.weight;
+                        entries.remove();
+                    }
+                }
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Gets the keys of the cached entries. The cache can be modified while the keys are
+     * being read : the returned list is a snapshot of each segment.
+     *
+     * @return The keys of the cached entries, including the expired ones not yet removed
+     */
+    public List<K> keys()
+    {
+        List<K> keys = new ArrayList<K>();
+
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                keys.addAll( segment.map.keySet() );
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+
+        return keys;
+    }
+
+
+    /**
+     * @return The number of cached entries, including the expired ones not yet removed
+     */
+    public int size()
+    {
+        int size = 0;
+
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                size += segment.map.size();
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+
+        return size;
+    }
+
+
+    /**
+     * @return The total weight of the cached entries
+     */
+    public long getWeightedSize()
+    {
+        long weight = 0L;
+
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                weight += segment.weight;
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+
+        return weight;
+    }
+
+
+    /**
+     * @return The maximum total weight of the cached entries
+     */
+    public long getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+
+    /**
+     * @return The number of values found in the cache
+     */
+    public long getHitCount()
+    {
+        long count = 0L;
+
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                count += segment.hitCount;
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * @return The number of values not found in the cache, or found expired
+     */
+    public long getMissCount()
+    {
+        long count = 0L;
+
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                count += segment.missCount;
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * @return The number of entries evicted because the cache was full
+     */
+    public long getEvictionCount()
+    {
+        long count = 0L;
+
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                count += segment.evictionCount;
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics()
+    {
+        for ( Segment<K, V> segment : segments )
+        {
+            segment.lock();
+
+            try
+            {
+                segment.hitCount = 0L;
+                segment.missCount = 0L;
+                segment.evictionCount = 0L;
+            }
+            finally
+            {
+                segment.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return "ConcurrentLruCache : " + size() + " entries, weight " + getWeightedSize() + "/" + maxWeight + ", "
+            + segments.length + " segments";
+    }
+}
@@ -41,6 +41,10 @@ import java.io.Externalizable;
  * list. LRUMap is now a subclass of SequencedHashMap, and the "LRU" key is now
  * equivalent to LRUMap.getFirst().
  * </p>
+ * <p>
+ * All the accesses are serialized on a single monitor : {@link ConcurrentLruCache}
+ * should be preferred for caches shared by many threads.
+ * </p>
  * 
  * @since Commons Collections 1.0
  * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
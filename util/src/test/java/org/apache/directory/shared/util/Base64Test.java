@@ -0,0 +1,65 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *  
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License. 
+ *  
+ */
+package org.apache.directory.shared.util;
+
+
+import static org.junit.Assert.assertEquals;
+
+import com.mycila.junit.concurrent.Concurrency;
+import com.mycila.junit.concurrent.ConcurrentJunitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+
+@RunWith(ConcurrentJunitRunner.class)
+@Concurrency()
+public class Base64Test
+{
+    @Test
+    public void testEncodeDecode()
+    {
+        String[] data = new String[]
+            { "", "a", "ab", "abc", "abcd", "abcde", "abcdef" };
+        String[] expected = new String[]
+            { "", "YQ==", "YWI=", "YWJj", "YWJjZA==", "YWJjZGU=", "YWJjZGVm" };
+
+        for ( int i = 0; i < data.length; i++ )
+        {
+            assertEquals( expected[i], new String( Base64.encode( Strings.getBytesUtf8( data[i] ) ) ) );
+            assertEquals( data[i], Strings.utf8ToString( Base64.decode( expected[i].toCharArray() ) ) );
+        }
+    }
+
+
+    @Test
+    public void testDecodeInPlace()
+    {
+        // The spaces and the padding are ignored
+        byte[] data = Strings.getBytesUtf8( "cn:: YWJj ZGU= " );
+
+        int length = Base64.decodeInPlace( data, 4, data.length - 4 );
+
+        assertEquals( 5, length );
+        assertEquals( "abcde", Strings.utf8ToString( data, 4, length ) );
+
+        // An empty value
+        assertEquals( 0, Base64.decodeInPlace( data, 0, 0 ) );
+    }
+}
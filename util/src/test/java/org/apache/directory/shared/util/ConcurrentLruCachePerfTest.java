@@ -0,0 +1,167 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.util;
+
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+
+/**
+ * Compare the throughput of the ConcurrentLruCache and of the SynchronizedLRUMap,
+ * with 1, 4, 16 and 64 threads doing 90% of reads and 10% of writes.
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+@Ignore("Ignore performance tests: should not be with integration tests")
+public class ConcurrentLruCachePerfTest
+{
+    /** The total number of operations, shared between the threads */
+    private static final int NB_OPERATIONS = 8000000;
+
+    /** The cache size */
+    private static final int CACHE_SIZE = 1000;
+
+    /** The number of distinct keys */
+    private static final int NB_KEYS = 2000;
+
+    /** The tested numbers of threads */
+    private static final int[] NB_THREADS = new int[]
+        { 1, 4, 16, 64 };
+
+    /**
+     * The operations on the tested cache
+     */
+    private interface CacheOperations
+    {
+        Object get( Integer key );
+
+
+        void put( Integer key, Integer value );
+    }
+
+
+    /**
+     * Run NB_OPERATIONS operations with nbThreads threads, and return the elapsed time
+     */
+    private long run( final CacheOperations cache, int nbThreads ) throws Exception
+    {
+        final int nbOperations = NB_OPERATIONS / nbThreads;
+        Thread[] threads = new Thread[nbThreads];
+
+        for ( int t = 0; t < nbThreads; t++ )
+        {
+            final int seed = t;
+
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    int random = seed * 0x9E3779B9 + 1;
+
+                    for ( int i = 0; i < nbOperations; i++ )
+                    {
+                        // Xorshift, to avoid contending on a shared Random
+                        random ^= random << 13;
+                        random ^= random >>> 17;
+                        random ^= random << 5;
+
+                        Integer key = ( random & 0x7FFFFFFF ) % NB_KEYS;
+
+                        if ( ( i % 10 ) == 0 )
+                        {
+                            cache.put( key, key );
+                        }
+                        else
+                        {
+                            cache.get( key );
+                        }
+                    }
+                }
+            };
+        }
+
+        long t0 = System.currentTimeMillis();
+
+        for ( Thread thread : threads )
+        {
+            thread.start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        return System.currentTimeMillis() - t0;
+    }
+
+
+    @Test
+    public void testConcurrentLruCachePerf() throws Exception
+    {
+        final ConcurrentLruCache<Integer, Integer> concurrentCache = new ConcurrentLruCache<Integer, Integer>(
+            CACHE_SIZE );
+        final SynchronizedLRUMap synchronizedMap = new SynchronizedLRUMap( CACHE_SIZE );
+
+        CacheOperations concurrentOperations = new CacheOperations()
+        {
+            public Object get( Integer key )
+            {
+                return concurrentCache.get( key );
+            }
+
+
+            public void put( Integer key, Integer value )
+            {
+                concurrentCache.put( key, value );
+            }
+        };
+
+        CacheOperations synchronizedOperations = new CacheOperations()
+        {
+            public Object get( Integer key )
+            {
+                return synchronizedMap.get( key );
+            }
+
+
+            public void put( Integer key, Integer value )
+            {
+                synchronizedMap.put( key, value );
+            }
+        };
+
+        // Warm up
+        run( concurrentOperations, 4 );
+        run( synchronizedOperations, 4 );
+
+        for ( int nbThreads : NB_THREADS )
+        {
+            long synchronizedDelta = run( synchronizedOperations, nbThreads );
+            long concurrentDelta = run( concurrentOperations, nbThreads );
+
+            System.out.println( "testConcurrentLruCachePerf, " + nbThreads + " threads, " + NB_OPERATIONS
+                + " operations, SynchronizedLRUMap = " + synchronizedDelta + " ms ("
+                + ( NB_OPERATIONS / Math.max( 1L, synchronizedDelta ) ) + " ops/ms), ConcurrentLruCache = "
+                + concurrentDelta + " ms (" + ( NB_OPERATIONS / Math.max( 1L, concurrentDelta ) ) + " ops/ms)" );
+        }
+    }
+}
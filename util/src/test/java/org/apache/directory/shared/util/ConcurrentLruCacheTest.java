@@ -0,0 +1,206 @@
+/*
+ *  Licensed to the Apache Software Foundation (ASF) under one
+ *  or more contributor license agreements.  See the NOTICE file
+ *  distributed with this work for additional information
+ *  regarding copyright ownership.  The ASF licenses this file
+ *  to you under the Apache License, Version 2.0 (the
+ *  "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.apache.directory.shared.util;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+/**
+ * Test the ConcurrentLruCache class
+ *
+ * @author <a href="mailto:dev@directory.apache.org">Apache Directory Project</a>
+ */
+public class ConcurrentLruCacheTest
+{
+    @Test
+    public void testGetPut()
+    {
+        ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>( 100 );
+
+        assertNull( cache.get( "a" ) );
+        assertNull( cache.put( "a", 1 ) );
+        assertEquals( Integer.valueOf( 1 ), cache.put( "a", 2 ) );
+        assertEquals( Integer.valueOf( 2 ), cache.get( "a" ) );
+        assertEquals( 1, cache.size() );
+
+        assertEquals( 1, cache.getHitCount() );
+        assertEquals( 1, cache.getMissCount() );
+
+        assertEquals( Integer.valueOf( 2 ), cache.remove( "a" ) );
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getWeightedSize() );
+    }
+
+
+    @Test
+    public void testKeys()
+    {
+        ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>( 100 );
+
+        assertTrue( cache.keys().isEmpty() );
+
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+        cache.remove( "b" );
+
+        List<String> keys = cache.keys();
+
+        assertEquals( 2, keys.size() );
+        assertTrue( keys.contains( "a" ) );
+        assertTrue( keys.contains( "c" ) );
+    }
+
+
+    @Test
+    public void testLruEviction()
+    {
+        // A single segment, to get a strict LRU order
+        ConcurrentLruCache<String, Integer> cache = new ConcurrentLruCache<String, Integer>( 3, null, 0L,
+            TimeUnit.MILLISECONDS, 1 );
+
+        cache.put( "a", 1 );
+        cache.put( "b", 2 );
+        cache.put( "c", 3 );
+
+        // "a" becomes the most recently used entry
+        cache.get( "a" );
+        cache.put( "d", 4 );
+
+        assertEquals( 3, cache.size() );
+        assertNull( cache.get( "b" ) );
+        assertEquals( Integer.valueOf( 1 ), cache.get( "a" ) );
+        assertEquals( Integer.valueOf( 3 ), cache.get( "c" ) );
+        assertEquals( Integer.valueOf( 4 ), cache.get( "d" ) );
+        assertEquals( 1, cache.getEvictionCount() );
+    }
+
+
+    @Test
+    public void testBounded()
+    {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>( 100 );
+
+        for ( int i = 0; i < 10000; i++ )
+        {
+            cache.put( i, i );
+        }
+
+        assertTrue( cache.size() <= 100 );
+        assertEquals( cache.size(), cache.getWeightedSize() );
+        assertEquals( 10000 - cache.size(), cache.getEvictionCount() );
+    }
+
+
+    @Test
+    public void testWeigher()
+    {
+        ConcurrentLruCache.Weigher<String, String> weigher = new ConcurrentLruCache.Weigher<String, String>()
+        {
+            public int weigh( String key, String value )
+            {
+                return value.length();
+            }
+        };
+
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>( 10, weigher, 0L,
+            TimeUnit.MILLISECONDS, 1 );
+
+        cache.put( "a", "1234" );
+        cache.put( "b", "1234" );
+        assertEquals( 8, cache.getWeightedSize() );
+
+        cache.put( "c", "1234" );
+        assertEquals( 8, cache.getWeightedSize() );
+        assertNull( cache.get( "a" ) );
+
+        // Too heavy to be cached
+        cache.put( "d", "12345678901" );
+        assertNull( cache.get( "d" ) );
+        assertEquals( 2, cache.size() );
+    }
+
+
+    @Test
+    public void testExpiry() throws Exception
+    {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<String, String>( 10, null, 50L,
+            TimeUnit.MILLISECONDS, 4 );
+
+        cache.put( "a", "1" );
+        cache.put( "b", "2" );
+        assertEquals( "1", cache.get( "a" ) );
+
+        Thread.sleep( 100L );
+
+        assertNull( cache.get( "a" ) );
+        assertEquals( 1, cache.size() );
+
+        cache.cleanUp();
+        assertEquals( 0, cache.size() );
+        assertEquals( 0, cache.getWeightedSize() );
+    }
+
+
+    @Test
+    public void testConcurrentAccess() throws Exception
+    {
+        final ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>( 64 );
+        Thread[] threads = new Thread[8];
+
+        for ( int t = 0; t < threads.length; t++ )
+        {
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    for ( int i = 0; i < 10000; i++ )
+                    {
+                        Integer key = i % 200;
+
+                        if ( cache.get( key ) == null )
+                        {
+                            cache.put( key, key );
+                        }
+                    }
+                }
+            };
+
+            threads[t].start();
+        }
+
+        for ( Thread thread : threads )
+        {
+            thread.join();
+        }
+
+        assertTrue( cache.size() <= 64 );
+        assertEquals( cache.size(), cache.getWeightedSize() );
+        assertEquals( 80000, cache.getHitCount() + cache.getMissCount() );
+    }
+}